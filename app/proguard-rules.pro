@@ -0,0 +1,16 @@
+#
+# proguard-rules.pro
+# Copyright (C) 2026 Nicholas Killewald
+#
+# This file is distributed under the terms of the BSD license.
+# The source package should have a LICENSE file at the toplevel.
+#
+
+# When a release build gets minified, R8 removes calls to LogGate.v() and
+# LogGate.d().  That's all this does.  Building the arguments for those calls
+# only goes away if R8 can tell on its own that it has no side effects, and
+# nothing else in LogGate (or android.util.Log) is touched.
+-assumenosideeffects class net.exclaimindustries.tools.LogGate {
+    public static void v(...);
+    public static void d(...);
+}
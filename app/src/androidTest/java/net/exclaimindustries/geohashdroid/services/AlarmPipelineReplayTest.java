@@ -0,0 +1,163 @@
+/*
+ * AlarmPipelineReplayTest.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.geohashdroid.services;
+
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import net.exclaimindustries.geohashdroid.util.HashBuilder;
+import net.exclaimindustries.geohashdroid.util.StockPostingHistory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>
+ * This replays the whole morning alarm chain (StockAlarmReceiver, AlarmWorker,
+ * StockWorker, StockReceiver, AlarmWorker again, then the KnownLocation sweep)
+ * for real, through the real WorkManager, but with StockRunner pointed at a
+ * tiny HTTP server on localhost instead of the actual stock sites.  When it's
+ * done, it logs the {@link AlarmTrace} timeline so you can see where the time
+ * went.
+ * </p>
+ *
+ * <p>
+ * Note that this wipes the stock cache, the trace history, and the stock
+ * posting history (the fake stock would otherwise look like a real posting
+ * time), and the device needs to think it's got a network connection
+ * (StockWorker checks that before it'll even try localhost).
+ * </p>
+ */
+public class AlarmPipelineReplayTest {
+    private static final String DEBUG_TAG = "AlarmPipelineReplay";
+
+    private static final String FAKE_STOCK = "12345.67";
+    private static final long TIMEOUT_MS = 60000L;
+
+    private Context mContext;
+    private ServerSocket mServer;
+    private Thread mServerThread;
+
+    @Before
+    public void setUp() throws IOException {
+        mContext = ApplicationProvider.getApplicationContext();
+
+        // The stand-in answers every request with the same stock, no matter
+        // the date.  That's all StockRunner needs.
+        mServer = new ServerSocket(0, 10, InetAddress.getByName("127.0.0.1"));
+        mServerThread = new Thread(() -> {
+            while(!mServer.isClosed()) {
+                try(Socket socket = mServer.accept()) {
+                    serve(socket);
+                } catch(IOException ioe) {
+                    // Closing the server socket lands us here, which is fine.
+                }
+            }
+        });
+        mServerThread.start();
+
+        HashBuilder.setStockServerOverride(new String[] {
+                "http://127.0.0.1:" + mServer.getLocalPort() + "/%Y/%m/%d"});
+        HashBuilder.deleteCache(mContext);
+        AlarmTrace.clear(mContext);
+    }
+
+    @After
+    public void tearDown() throws IOException, InterruptedException {
+        HashBuilder.setStockServerOverride(null);
+        StockPostingHistory.clear(mContext);
+        mServer.close();
+        mServerThread.join();
+    }
+
+    private static void serve(Socket socket) throws IOException {
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+
+        // Eat the headers.  We don't care what they say.
+        String line;
+        do {
+            line = reader.readLine();
+        } while(line != null && !line.isEmpty());
+
+        byte[] body = FAKE_STOCK.getBytes(StandardCharsets.US_ASCII);
+        OutputStream out = socket.getOutputStream();
+        out.write(("HTTP/1.1 200 OK\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Content-Length: " + body.length + "\r\n"
+                + "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(body);
+        out.flush();
+    }
+
+    @Test
+    public void replayMorningAlarm() throws InterruptedException {
+        // The retry action does everything the real alarm does except set up
+        // tomorrow's alarm, which we don't want a test doing.
+        new AlarmWorker.StockAlarmReceiver().onReceive(mContext,
+                new Intent(AlarmWorker.STOCK_ALARM_RETRY));
+
+        List<AlarmTrace.Run> runs = AlarmTrace.getRuns(mContext);
+        assertEquals(1, runs.size());
+        long traceId = runs.get(0).id;
+
+        // Now wait for it to work its way through.
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        AlarmTrace.Run run = AlarmTrace.getRun(mContext, traceId);
+        while(run != null && !run.isFinished() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+            run = AlarmTrace.getRun(mContext, traceId);
+        }
+
+        assertNotNull(run);
+        Log.i(DEBUG_TAG, run.getTimeline());
+
+        assertTrue("The alarm chain didn't finish in time", run.isFinished());
+        assertTrue("The alarm chain finished, but not successfully",
+                hasSpan(run, AlarmTrace.SPAN_DONE));
+
+        // One batch request (30W and non-30W together), which gets back to
+        // StockReceiver once.
+        assertEquals(1, countSpans(run, AlarmTrace.SPAN_STOCK_REQUESTED));
+        assertEquals(1, countSpans(run, AlarmTrace.SPAN_RESULT_RECEIVED));
+        assertTrue(hasSpan(run, AlarmTrace.SPAN_SWEEP));
+
+        Log.i(DEBUG_TAG, "End-to-end latency: " + run.getEndToEndMillis() + " ms");
+    }
+
+    private static boolean hasSpan(AlarmTrace.Run run, String name) {
+        return countSpans(run, name) > 0;
+    }
+
+    private static int countSpans(AlarmTrace.Run run, String name) {
+        int count = 0;
+        for(AlarmTrace.Span s : run.spans) {
+            if(s.name.equals(name)) count++;
+        }
+        return count;
+    }
+}
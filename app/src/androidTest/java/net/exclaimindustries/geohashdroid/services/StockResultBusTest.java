@@ -0,0 +1,161 @@
+/*
+ * StockResultBusTest.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.geohashdroid.services;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that {@link StockResultBus} gets results to whoever's subscribed, on
+ * the main thread, exactly once, and that it stays out of the way when nobody
+ * is (or nobody is anymore).
+ */
+@RunWith(BlockJUnit4ClassRunner.class)
+public class StockResultBusTest {
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /** Writes down every result it gets, and whether it got it on the main thread. */
+    private static class RecordingListener implements StockResultBus.Listener {
+        final List<StockResult> results = Collections.synchronizedList(new ArrayList<StockResult>());
+        volatile boolean offMainThread;
+
+        @Override
+        public void onStockResult(@NonNull StockResult result) {
+            if(Looper.myLooper() != Looper.getMainLooper()) offMainThread = true;
+            results.add(result);
+        }
+    }
+
+    private final RecordingListener mFirst = new RecordingListener();
+    private final RecordingListener mSecond = new RecordingListener();
+
+    @After
+    public void tearDown() {
+        StockResultBus.unsubscribeAll(mFirst);
+        StockResultBus.unsubscribeAll(mSecond);
+    }
+
+    private static StockResult makeResult(long requestId) {
+        return new StockResult(requestId, 0, 0, StockWorker.RESPONSE_OKAY,
+                Calendar.getInstance(), null, null, null);
+    }
+
+    /**
+     * Waits until the main thread's gotten through everything posted to it so
+     * far, which includes any deliveries.
+     */
+    private void waitForMainThread() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        mMainHandler.post(latch::countDown);
+        assertTrue("The main thread never got around to it", latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void deliversOnceOnTheMainThread() throws InterruptedException {
+        StockResultBus.subscribe(1001L, mFirst);
+
+        StockResult result = makeResult(1001L);
+        assertTrue(StockResultBus.publish(result));
+        waitForMainThread();
+
+        assertEquals(1, mFirst.results.size());
+        assertSame(result, mFirst.results.get(0));
+        assertFalse(mFirst.offMainThread);
+
+        // Subscriptions are one-shot.
+        assertFalse(StockResultBus.publish(makeResult(1001L)));
+        waitForMainThread();
+        assertEquals(1, mFirst.results.size());
+    }
+
+    @Test
+    public void laterSubscriptionWins() throws InterruptedException {
+        StockResultBus.subscribe(1002L, mFirst);
+        StockResultBus.subscribe(1002L, mSecond);
+
+        assertTrue(StockResultBus.publish(makeResult(1002L)));
+        waitForMainThread();
+
+        assertTrue(mFirst.results.isEmpty());
+        assertEquals(1, mSecond.results.size());
+    }
+
+    @Test
+    public void nobodyListening() throws InterruptedException {
+        // The caller's told to fall back to a broadcast, and nothing else
+        // hears about it.
+        StockResultBus.subscribe(1003L, mFirst);
+        assertFalse(StockResultBus.publish(makeResult(1004L)));
+        waitForMainThread();
+
+        assertTrue(mFirst.results.isEmpty());
+    }
+
+    @Test
+    public void unsubscribeTakesEverything() throws InterruptedException {
+        StockResultBus.subscribe(1005L, mFirst);
+        StockResultBus.subscribe(1006L, mFirst);
+        StockResultBus.subscribe(1007L, mSecond);
+
+        StockResultBus.unsubscribeAll(mFirst);
+
+        assertFalse(StockResultBus.publish(makeResult(1005L)));
+        assertFalse(StockResultBus.publish(makeResult(1006L)));
+        assertTrue(StockResultBus.publish(makeResult(1007L)));
+        waitForMainThread();
+
+        assertTrue(mFirst.results.isEmpty());
+        assertEquals(1, mSecond.results.size());
+    }
+
+    @Test
+    public void unsubscribeBeatsAResultInFlight() throws InterruptedException {
+        StockResultBus.subscribe(1008L, mFirst);
+
+        // Hold up the main thread so the result's stuck in line behind this,
+        // then unsubscribe before it gets through.
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        mMainHandler.post(() -> {
+            blocked.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch(InterruptedException ie) {
+                // Whatever.
+            }
+        });
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+        assertTrue(StockResultBus.publish(makeResult(1008L)));
+        StockResultBus.unsubscribeAll(mFirst);
+        release.countDown();
+        waitForMainThread();
+
+        assertTrue(mFirst.results.isEmpty());
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * StockWorkerTest.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.geohashdroid.services;
+
+import net.exclaimindustries.geohashdroid.util.Graticule;
+import net.exclaimindustries.geohashdroid.util.Info;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs batches through {@link StockWorker#resolveBatch} with a fake lookup, so
+ * nothing here touches the cache or the network.
+ */
+@RunWith(BlockJUnit4ClassRunner.class)
+public class StockWorkerTest {
+    private static final long DATE = new GregorianCalendar(2020, Calendar.JUNE, 10).getTimeInMillis();
+
+    /** Hands back the same hash for everything, and counts how often it's asked. */
+    private static class FakeLookup implements StockWorker.BatchLookup {
+        int calls;
+
+        @Override
+        public StockResult lookUp(Calendar cal, Graticule g) {
+            calls++;
+
+            double lat = g == null ? 45.25d : (g.getLatitude() + 0.25d) * (g.isSouth() ? -1 : 1);
+            double lon = g == null ? -93.75d : (g.getLongitude() + 0.75d) * (g.isWest() ? -1 : 1);
+            return new StockResult(-1L, 0, StockWorker.FLAG_CACHED, StockWorker.RESPONSE_OKAY,
+                    cal, g, new Info(lat, lon, g, cal), null);
+        }
+    }
+
+    @Test
+    public void mixedBatch() {
+        // Two good Graticules on the same side of 30W, one that's garbage, and
+        // a Globalhash.
+        boolean[] isGlobalhash = { false, false, false, true };
+        String[] lats = { "38", "not a latitude", "39", "" };
+        String[] lons = { "-84", "-84", "-84", "" };
+        long[] millis = { DATE, DATE, DATE, DATE };
+
+        FakeLookup lookup = new FakeLookup();
+        StockWorker.BatchResult result = StockWorker.resolveBatch(isGlobalhash, lats, lons, millis, lookup);
+
+        assertEquals(StockWorker.RESPONSE_OKAY, result.codes[0]);
+        assertNotNull(result.infos[0]);
+        assertNotNull(result.graticules[0]);
+
+        // The bad one says so, and doesn't look like a Globalhash just
+        // because it's got no Graticule.
+        assertEquals(StockWorker.RESPONSE_INVALID_REQUEST, result.codes[1]);
+        assertNull(result.graticules[1]);
+        assertNull(result.infos[1]);
+
+        // The third gets projected from the first rather than looked up.
+        assertEquals(StockWorker.RESPONSE_OKAY, result.codes[2]);
+        assertEquals(39.25d, result.infos[2].getLatitude(), 0.0000001d);
+        assertEquals(-84.75d, result.infos[2].getLongitude(), 0.0000001d);
+
+        assertEquals(StockWorker.RESPONSE_OKAY, result.codes[3]);
+        assertNull(result.graticules[3]);
+        assertTrue(result.infos[3].isGlobalHash());
+
+        // One lookup for the Graticules, one for the Globalhash (which follows
+        // the 30W Rule and thus counts as a different hash).
+        assertEquals(2, lookup.calls);
+        assertEquals(2, result.lookups);
+        assertTrue(result.allCached);
+    }
+
+    @Test
+    public void failuresAreShared() {
+        boolean[] isGlobalhash = { false, false };
+        String[] lats = { "38", "39" };
+        String[] lons = { "-84", "-85" };
+        long[] millis = { DATE, DATE };
+
+        final int[] calls = { 0 };
+        StockWorker.BatchResult result = StockWorker.resolveBatch(isGlobalhash, lats, lons, millis,
+                (cal, g) -> {
+                    calls[0]++;
+                    return new StockResult(-1L, 0, 0, StockWorker.RESPONSE_NOT_POSTED_YET,
+                            cal, g, null, null);
+                });
+
+        assertEquals(1, calls[0]);
+        assertEquals(StockWorker.RESPONSE_NOT_POSTED_YET, result.codes[0]);
+        assertEquals(StockWorker.RESPONSE_NOT_POSTED_YET, result.codes[1]);
+        assertFalse(result.allCached);
+    }
+}
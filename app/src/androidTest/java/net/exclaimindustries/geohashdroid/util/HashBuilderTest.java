@@ -0,0 +1,97 @@
+/*
+ * HashBuilderTest.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.geohashdroid.util;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This tests the arithmetic-only parts of {@link HashBuilder}, that being
+ * projecting one Info out to other Graticules.  Nothing here touches the
+ * database or the network.
+ */
+@RunWith(BlockJUnit4ClassRunner.class)
+public class HashBuilderTest {
+    private static final Calendar DATE = new GregorianCalendar(2020, Calendar.JUNE, 10);
+    private static final double LAT_HASH = 0.25d;
+    private static final double LON_HASH = 0.75d;
+
+    private static Info makeInfo(Graticule g) {
+        double lat = (g.getLatitude() + LAT_HASH) * (g.isSouth() ? -1 : 1);
+        double lon = (g.getLongitude() + LON_HASH) * (g.isWest() ? -1 : 1);
+        return new Info(lat, lon, g, DATE);
+    }
+
+    @Test
+    public void projectKeepsHash() {
+        Info center = makeInfo(new Graticule(38, false, 84, true));
+        Info projected = HashBuilder.projectInfo(center, new Graticule(12, true, 100, true));
+
+        assertEquals(LAT_HASH, projected.getLatitudeHash(), 0.0000001d);
+        assertEquals(LON_HASH, projected.getLongitudeHash(), 0.0000001d);
+        assertEquals(-12.25d, projected.getLatitude(), 0.0000001d);
+        assertEquals(-100.75d, projected.getLongitude(), 0.0000001d);
+    }
+
+    @Test
+    public void neighborhoodIsFullSquare() {
+        // Deep in the non-30W side, so no other side needed.
+        Info center = makeInfo(new Graticule(38, false, 84, true));
+
+        assertEquals(8, HashBuilder.projectNeighborhood(center, 1, null).length);
+        assertEquals(24, HashBuilder.projectNeighborhood(center, 2, null).length);
+        assertEquals(960, HashBuilder.projectNeighborhood(center, 15, null).length);
+        assertEquals(2600, HashBuilder.projectNeighborhood(center, 25, null).length);
+    }
+
+    @Test
+    public void neighborhoodStopsAtPoles() {
+        // 89N, so there's nothing north of it.
+        Info center = makeInfo(new Graticule(89, false, 84, true));
+
+        assertEquals(5, HashBuilder.projectNeighborhood(center, 1, null).length);
+    }
+
+    @Test
+    public void neighborhoodSkipsOtherSideWithoutInfo() {
+        // 33W through 30W are all non-30W (30W itself covers 30-31W, so it's
+        // still west of the line).  29W isn't.
+        Info center = makeInfo(new Graticule(38, false, 31, true));
+
+        Info[] nearby = HashBuilder.projectNeighborhood(center, 2, null);
+        assertEquals(19, nearby.length);
+        for(Info i : nearby)
+            assertTrue(!i.uses30WRule());
+    }
+
+    @Test
+    public void neighborhoodUsesOtherSide() {
+        Info center = makeInfo(new Graticule(38, false, 31, true));
+        Info other = new Info(38.5d, -29.5d, new Graticule(38, false, 29, true), DATE);
+
+        Info[] nearby = HashBuilder.projectNeighborhood(center, 2, other);
+        assertEquals(24, nearby.length);
+
+        int otherSide = 0;
+        for(Info i : nearby) {
+            if(i.uses30WRule()) {
+                otherSide++;
+                assertEquals(0.5d, i.getLatitudeHash(), 0.0000001d);
+            }
+        }
+        assertEquals(5, otherSide);
+    }
+}
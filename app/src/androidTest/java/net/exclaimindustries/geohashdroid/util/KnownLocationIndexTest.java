@@ -0,0 +1,240 @@
+/*
+ * KnownLocationIndexTest.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.geohashdroid.util;
+
+import android.util.Log;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import net.exclaimindustries.tools.GeoDistance;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>
+ * Checks {@link KnownLocationIndex} against plain old linear scans, then times
+ * the two against each other with ten thousand KnownLocations.  The timings
+ * just get logged; how fast a given device is isn't something to assert on.
+ * </p>
+ *
+ * <p>
+ * The fake KnownLocations are clustered the way real users' tend to be (a
+ * bunch of spots around a few home areas), with a handful of huge-range ones
+ * and some near the antimeridian thrown in to keep the edge cases honest.
+ * </p>
+ */
+@RunWith(BlockJUnit4ClassRunner.class)
+public class KnownLocationIndexTest {
+    private static final String DEBUG_TAG = "KnownLocationIndexTest";
+
+    private static final int LOCATION_COUNT = 10000;
+    private static final int QUERY_COUNT = 2000;
+
+    private List<KnownLocation> mLocations;
+    private List<LatLng> mQueries;
+
+    @Before
+    public void setUp() {
+        Random random = new Random(8675309L);
+
+        mLocations = new ArrayList<>();
+        LatLng[] centers = new LatLng[] {
+                new LatLng(37.4, -122.1),
+                new LatLng(51.5, -0.1),
+                new LatLng(-33.9, 151.2),
+                new LatLng(35.7, 139.7),
+                new LatLng(64.1, -21.9),
+                new LatLng(-17.8, 179.6),
+        };
+
+        for(int i = 0; i < LOCATION_COUNT; i++) {
+            LatLng ll;
+            if(i % 10 == 0) {
+                // Some scattered all over the place...
+                ll = new LatLng(random.nextDouble() * 160.0 - 80.0,
+                        random.nextDouble() * 360.0 - 180.0);
+            } else {
+                // ...but mostly clustered around someone's home.
+                LatLng center = centers[i % centers.length];
+                ll = new LatLng(center.latitude + random.nextGaussian() * 2.0,
+                        wrap(center.longitude + random.nextGaussian() * 2.0));
+            }
+
+            double range = 500.0 + random.nextDouble() * 20000.0;
+            if(i % 997 == 0) range = 3000000.0;
+
+            if(i % 3 == 0) {
+                mLocations.add(new KnownLocation("Spot " + i, ll, range,
+                        range * (1.0 + random.nextDouble() * 10.0), false));
+            } else {
+                mLocations.add(new KnownLocation("Spot " + i, ll, range, false));
+            }
+        }
+
+        mQueries = new ArrayList<>();
+        for(int i = 0; i < QUERY_COUNT; i++) {
+            if(i % 2 == 0) {
+                mQueries.add(new LatLng(random.nextDouble() * 180.0 - 90.0,
+                        random.nextDouble() * 360.0 - 180.0));
+            } else {
+                // Bias half the queries to somewhere there's actually
+                // something nearby, since that's the interesting case.
+                LatLng near = mLocations.get(random.nextInt(LOCATION_COUNT)).getLatLng();
+                mQueries.add(new LatLng(near.latitude + random.nextGaussian() * 0.1,
+                        wrap(near.longitude + random.nextGaussian() * 0.1)));
+            }
+        }
+    }
+
+    private static double wrap(double lon) {
+        while(lon >= 180.0) lon -= 360.0;
+        while(lon < -180.0) lon += 360.0;
+        return lon;
+    }
+
+    @Test
+    public void rangeQueriesMatchLinearScan() {
+        KnownLocationIndex index = new KnownLocationIndex(mLocations);
+        assertEquals(LOCATION_COUNT, index.size());
+
+        for(LatLng q : mQueries) {
+            assertEquals(linearInRange(q, false), new HashSet<>(index.findInRange(q)));
+            assertEquals(linearInRange(q, true), new HashSet<>(index.findInGlobalhashRange(q)));
+        }
+    }
+
+    @Test
+    public void nearestMatchesLinearScan() {
+        KnownLocationIndex index = new KnownLocationIndex(mLocations);
+
+        for(int i = 0; i < 200; i++) {
+            LatLng q = mQueries.get(i);
+            List<KnownLocation> found = index.findNearest(q, 5);
+            List<KnownLocation> expected = linearNearest(q, 5);
+
+            assertEquals(5, found.size());
+            for(int j = 0; j < 5; j++) {
+                // Ties could come back in either order, so compare distances.
+                assertEquals(distance(q, expected.get(j)), distance(q, found.get(j)), 0.001);
+            }
+        }
+    }
+
+    @Test
+    public void incrementalChanges() {
+        KnownLocationIndex index = new KnownLocationIndex();
+        LatLng home = new LatLng(37.42, -122.08);
+        KnownLocation kl = new KnownLocation("Home", home, 1000.0, false);
+
+        assertTrue(index.findInRange(home).isEmpty());
+
+        index.add(kl);
+        assertEquals(1, index.findInRange(home).size());
+        assertEquals(kl, index.findNearest(home, 1).get(0));
+
+        assertTrue(index.remove(kl));
+        assertFalse(index.remove(kl));
+        assertEquals(0, index.size());
+        assertTrue(index.findInRange(home).isEmpty());
+        assertTrue(index.findNearest(home, 1).isEmpty());
+
+        // Right on the antimeridian, the range has to wrap around.
+        KnownLocation fiji = new KnownLocation("Fiji", new LatLng(-17.0, 179.99), 5000.0, false);
+        index.add(fiji);
+        assertEquals(1, index.findInRange(new LatLng(-17.0, -179.99)).size());
+    }
+
+    @Test
+    public void replaceAllKeepsTheSameIndex() {
+        KnownLocationIndex index = new KnownLocationIndex(mLocations.subList(0, 100));
+        LatLng home = new LatLng(37.42, -122.08);
+        KnownLocation kl = new KnownLocation("Home", home, 1000.0, false);
+
+        List<KnownLocation> replacement = new ArrayList<>();
+        replacement.add(kl);
+        index.replaceAll(replacement);
+
+        assertEquals(1, index.size());
+        assertEquals(1, index.findInRange(home).size());
+        assertEquals(kl, index.findNearest(home, 5).get(0));
+        assertEquals(1, index.findNearest(home, 5).size());
+    }
+
+    @Test
+    public void benchmark() {
+        // Run each a few times first so the JIT has a chance to settle down.
+        KnownLocationIndex index = null;
+        for(int i = 0; i < 3; i++) {
+            index = new KnownLocationIndex(mLocations);
+            for(LatLng q : mQueries) {
+                index.findInGlobalhashRange(q);
+                linearInRange(q, true);
+            }
+        }
+
+        long start = System.nanoTime();
+        index = new KnownLocationIndex(mLocations);
+        long buildNanos = System.nanoTime() - start;
+
+        int indexHits = 0;
+        start = System.nanoTime();
+        for(LatLng q : mQueries) indexHits += index.findInGlobalhashRange(q).size();
+        long indexNanos = System.nanoTime() - start;
+
+        int linearHits = 0;
+        start = System.nanoTime();
+        for(LatLng q : mQueries) linearHits += linearInRange(q, true).size();
+        long linearNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for(LatLng q : mQueries) index.findNearest(q, 10);
+        long nearestNanos = System.nanoTime() - start;
+
+        assertEquals(linearHits, indexHits);
+
+        Log.i(DEBUG_TAG, String.format("%d locations: build %.2f ms; range query %.1f us/query indexed vs %.1f us/query linear; nearest-10 %.1f us/query",
+                LOCATION_COUNT,
+                buildNanos / 1e6,
+                indexNanos / 1e3 / QUERY_COUNT,
+                linearNanos / 1e3 / QUERY_COUNT,
+                nearestNanos / 1e3 / QUERY_COUNT));
+    }
+
+    private HashSet<KnownLocation> linearInRange(LatLng q, boolean globalhash) {
+        HashSet<KnownLocation> toReturn = new HashSet<>();
+        for(KnownLocation kl : mLocations) {
+            if(globalhash ? kl.isCloseEnoughForGlobalhash(q) : kl.isCloseEnough(q))
+                toReturn.add(kl);
+        }
+        return toReturn;
+    }
+
+    private List<KnownLocation> linearNearest(LatLng q, int count) {
+        List<KnownLocation> sorted = new ArrayList<>(mLocations);
+        sorted.sort((a, b) -> Double.compare(distance(q, a), distance(q, b)));
+        return sorted.subList(0, count);
+    }
+
+    private static double distance(LatLng q, KnownLocation kl) {
+        return GeoDistance.distance(q.latitude, q.longitude,
+                kl.getLatLng().latitude, kl.getLatLng().longitude);
+    }
+}
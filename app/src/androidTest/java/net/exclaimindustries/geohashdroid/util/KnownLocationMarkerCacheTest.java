@@ -0,0 +1,141 @@
+/*
+ * KnownLocationMarkerCacheTest.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.geohashdroid.util;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks what {@link KnownLocationMarkerCache} keys its pins on, that it
+ * stays under its byte cap, and how much it lets go of at each trim level.
+ */
+@RunWith(BlockJUnit4ClassRunner.class)
+public class KnownLocationMarkerCacheTest {
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+        KnownLocationMarkerCache.clear();
+    }
+
+    @After
+    public void tearDown() {
+        KnownLocationMarkerCache.clear();
+    }
+
+    private static KnownLocation makeLocation(int index) {
+        return new KnownLocation("Pin " + index, new LatLng(-80.0 + index * 0.01, 170.0 - index * 0.01), 1000.0, false);
+    }
+
+    /**
+     * Puts pins in the cache until there's no room for another one.
+     */
+    private void fill() {
+        int pin = KnownLocationMarkerCache.getBitmap(mContext, makeLocation(0)).getByteCount();
+        for(int i = 1; KnownLocationMarkerCache.size() + pin <= KnownLocationMarkerCache.maxSize(); i++)
+            KnownLocationMarkerCache.getBitmap(mContext, makeLocation(i));
+    }
+
+    @Test
+    public void keyIsPositionAndScreen() {
+        LatLng here = new LatLng(45.0, -93.0);
+        KnownLocationMarkerCache.Key key = new KnownLocationMarkerCache.Key(here, 320, 64);
+
+        assertEquals(key, new KnownLocationMarkerCache.Key(new LatLng(45.0, -93.0), 320, 64));
+        assertEquals(key.hashCode(), new KnownLocationMarkerCache.Key(new LatLng(45.0, -93.0), 320, 64).hashCode());
+        assertNotEquals(key, new KnownLocationMarkerCache.Key(new LatLng(45.0, -93.00001), 320, 64));
+        assertNotEquals(key, new KnownLocationMarkerCache.Key(new LatLng(45.00001, -93.0), 320, 64));
+        assertNotEquals(key, new KnownLocationMarkerCache.Key(here, 480, 64));
+        assertNotEquals(key, new KnownLocationMarkerCache.Key(here, 320, 96));
+    }
+
+    @Test
+    public void nameDoesNotMatter() {
+        LatLng here = new LatLng(45.0, -93.0);
+        Bitmap first = KnownLocationMarkerCache.getBitmap(mContext, new KnownLocation("Home", here, 1000.0, false));
+        Bitmap second = KnownLocationMarkerCache.getBitmap(mContext, new KnownLocation("Not home", here, 5000.0, true));
+        Bitmap elsewhere = KnownLocationMarkerCache.getBitmap(mContext, new KnownLocation("Home", new LatLng(45.0, -93.5), 1000.0, false));
+
+        assertSame(first, second);
+        assertNotSame(first, elsewhere);
+    }
+
+    @Test
+    public void densityGetsItsOwnPin() {
+        KnownLocation kl = makeLocation(0);
+        Bitmap normal = KnownLocationMarkerCache.getBitmap(mContext, kl);
+
+        Configuration config = new Configuration(mContext.getResources().getConfiguration());
+        config.densityDpi = config.densityDpi == 160 ? 480 : 160;
+        Context other = mContext.createConfigurationContext(config);
+        Bitmap different = KnownLocationMarkerCache.getBitmap(other, kl);
+
+        assertNotSame(normal, different);
+        assertNotEquals(normal.getWidth(), different.getWidth());
+        assertSame(normal, KnownLocationMarkerCache.getBitmap(mContext, kl));
+    }
+
+    @Test
+    public void staysUnderTheCap() {
+        assertTrue(KnownLocationMarkerCache.maxSize() <= 4 * 1024 * 1024);
+
+        for(int i = 0; i < 500; i++) {
+            KnownLocationMarkerCache.getBitmap(mContext, makeLocation(i));
+            assertTrue(KnownLocationMarkerCache.size() <= KnownLocationMarkerCache.maxSize());
+        }
+    }
+
+    @Test
+    public void trimLevels() {
+        fill();
+        int full = KnownLocationMarkerCache.size();
+        assertTrue(full > KnownLocationMarkerCache.maxSize() / 2);
+
+        // Below RUNNING_LOW, nothing goes.
+        KnownLocationMarkerCache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        assertEquals(full, KnownLocationMarkerCache.size());
+
+        // From RUNNING_LOW up to MODERATE, half goes.
+        KnownLocationMarkerCache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertTrue(KnownLocationMarkerCache.size() <= KnownLocationMarkerCache.maxSize() / 2);
+        assertTrue(KnownLocationMarkerCache.size() > 0);
+
+        fill();
+        KnownLocationMarkerCache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        assertTrue(KnownLocationMarkerCache.size() <= KnownLocationMarkerCache.maxSize() / 2);
+
+        // MODERATE and up, everything goes.
+        fill();
+        KnownLocationMarkerCache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_MODERATE);
+        assertEquals(0, KnownLocationMarkerCache.size());
+
+        fill();
+        KnownLocationMarkerCache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        assertEquals(0, KnownLocationMarkerCache.size());
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * KnownLocationTransferTest.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.geohashdroid.util;
+
+import android.util.Log;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that {@link KnownLocationTransfer} round-trips through both formats,
+ * copes with files from elsewhere that don't have our extensions, and can get
+ * through a 50,000-waypoint GPX file in reasonable time (that one just logs
+ * how long it took).
+ */
+@RunWith(BlockJUnit4ClassRunner.class)
+public class KnownLocationTransferTest {
+    private static final String DEBUG_TAG = "KnownLocationTransferTest";
+
+    private static List<KnownLocation> makeLocations() {
+        List<KnownLocation> toReturn = new ArrayList<>();
+        toReturn.add(new KnownLocation("Home", new LatLng(37.421, -122.084), 5000.0, false));
+        toReturn.add(new KnownLocation("Work & <stuff>", new LatLng(-33.8568, 151.2153), 10000.0, 50000.0, true));
+        toReturn.add(new KnownLocation("Antimeridian", new LatLng(-17.0, 179.99), 2000.0, false));
+        return toReturn;
+    }
+
+    private static List<KnownLocation> readAll(InputStream in, double defaultRange)
+            throws IOException, XmlPullParserException {
+        final List<KnownLocation> toReturn = new ArrayList<>();
+        KnownLocationTransfer.importLocations(in, defaultRange, toReturn::addAll);
+        return toReturn;
+    }
+
+    private static void roundTrip(KnownLocationTransfer.Format format)
+            throws IOException, XmlPullParserException {
+        List<KnownLocation> original = makeLocations();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        KnownLocationTransfer.exportLocations(original, out, format);
+
+        List<KnownLocation> read = readAll(new ByteArrayInputStream(out.toByteArray()), 1.0);
+
+        // KnownLocation.equals covers name, position, and ranges.
+        assertEquals(original, read);
+        for(int i = 0; i < original.size(); i++) {
+            assertEquals(original.get(i).isRestrictedGraticule(), read.get(i).isRestrictedGraticule());
+            assertEquals(original.get(i).usesGlobalhashRange(), read.get(i).usesGlobalhashRange());
+        }
+    }
+
+    @Test
+    public void gpxRoundTrip() throws IOException, XmlPullParserException {
+        roundTrip(KnownLocationTransfer.Format.GPX);
+    }
+
+    @Test
+    public void kmlRoundTrip() throws IOException, XmlPullParserException {
+        roundTrip(KnownLocationTransfer.Format.KML);
+    }
+
+    @Test
+    public void foreignFiles() throws IOException, XmlPullParserException {
+        // A GPX from some other app: no extensions, a link with its own name
+        // element, one waypoint without a name, and one that's nonsense.
+        String gpx = "<?xml version=\"1.0\"?>"
+                + "<gpx version=\"1.1\" creator=\"Elsewhere\" xmlns=\"http://www.topografix.com/GPX/1/1\">"
+                + "<wpt lat=\"51.5\" lon=\"-0.12\"><name>Big Ben</name>"
+                + "<link href=\"http://example.com\"><text>not the name</text></link></wpt>"
+                + "<wpt lat=\"40.0\" lon=\"-75.0\"/>"
+                + "<wpt lat=\"200\" lon=\"0\"><name>Broken</name></wpt>"
+                + "<trk><trkseg><trkpt lat=\"1\" lon=\"1\"/></trkseg></trk>"
+                + "</gpx>";
+
+        List<KnownLocation> read = readAll(new ByteArrayInputStream(gpx.getBytes(StandardCharsets.UTF_8)), 5000.0);
+        assertEquals(2, read.size());
+        assertEquals("Big Ben", read.get(0).getName());
+        assertEquals(5000.0, read.get(0).getRange(), 0.0);
+        assertFalse(read.get(0).usesGlobalhashRange());
+        assertEquals("40.0, -75.0", read.get(1).getName());
+
+        // Same for KML, with altitude in the coordinates and whitespace all
+        // over the place.
+        String kml = "<?xml version=\"1.0\"?>"
+                + "<kml xmlns=\"http://www.opengis.net/kml/2.2\"><Document><name>Mine</name>"
+                + "<Folder><Placemark><name>Somewhere</name>"
+                + "<Point><coordinates>\n  139.7, 35.7, 12.0\n</coordinates></Point></Placemark>"
+                + "<Placemark><name>Just a line</name><LineString><coordinates>1,1 2,2</coordinates></LineString></Placemark>"
+                + "</Folder></Document></kml>";
+
+        read = readAll(new ByteArrayInputStream(kml.getBytes(StandardCharsets.UTF_8)), 2000.0);
+        assertEquals(1, read.size());
+        assertEquals("Somewhere", read.get(0).getName());
+        assertEquals(35.7, read.get(0).getLatLng().latitude, 0.0);
+        assertEquals(139.7, read.get(0).getLatLng().longitude, 0.0);
+        assertEquals(2000.0, read.get(0).getRange(), 0.0);
+    }
+
+    @Test
+    public void junkRangesGetTheDefault() throws IOException, XmlPullParserException {
+        // Double.parseDouble takes all of these, but none of them are
+        // distances.
+        String gpx = "<?xml version=\"1.0\"?><gpx version=\"1.1\" creator=\"Test\" xmlns=\""
+                + KnownLocationTransfer.GPX_NAMESPACE + "\" xmlns:ghd=\""
+                + KnownLocationTransfer.GHD_NAMESPACE + "\">"
+                + "<wpt lat=\"10\" lon=\"10\"><name>NaN</name><extensions>"
+                + "<ghd:range>NaN</ghd:range><ghd:globalhashRange>-5.0</ghd:globalhashRange>"
+                + "</extensions></wpt>"
+                + "<wpt lat=\"20\" lon=\"20\"><name>Infinite</name><extensions>"
+                + "<ghd:range>Infinity</ghd:range><ghd:globalhashRange>100.0</ghd:globalhashRange>"
+                + "</extensions></wpt>"
+                + "<wpt lat=\"30\" lon=\"30\"><name>Negative</name><extensions>"
+                + "<ghd:range>-1000.0</ghd:range><ghd:globalhashRange>-Infinity</ghd:globalhashRange>"
+                + "</extensions></wpt>"
+                + "</gpx>";
+
+        List<KnownLocation> read = readAll(new ByteArrayInputStream(gpx.getBytes(StandardCharsets.UTF_8)), 5000.0);
+        assertEquals(3, read.size());
+        for(KnownLocation kl : read)
+            assertEquals(kl.getName(), 5000.0, kl.getRange(), 0.0);
+
+        // A bad globalhash range is no globalhash range.  A good one stays.
+        assertFalse(read.get(0).usesGlobalhashRange());
+        assertTrue(read.get(1).usesGlobalhashRange());
+        assertEquals(100.0, read.get(1).getGlobalhashRange(), 0.0);
+        assertFalse(read.get(2).usesGlobalhashRange());
+    }
+
+    @Test(expected = XmlPullParserException.class)
+    public void rejectsOtherXml() throws IOException, XmlPullParserException {
+        readAll(new ByteArrayInputStream("<html><body/></html>".getBytes(StandardCharsets.UTF_8)), 1.0);
+    }
+
+    @Test
+    public void largeImport() throws IOException, XmlPullParserException {
+        final int count = 50000;
+
+        // Build the file straight into bytes; the point is to time the
+        // parsing, not the building.
+        StringBuilder sb = new StringBuilder(count * 200);
+        sb.append("<?xml version=\"1.0\"?><gpx version=\"1.1\" creator=\"Test\" xmlns=\"")
+                .append(KnownLocationTransfer.GPX_NAMESPACE)
+                .append("\" xmlns:ghd=\"")
+                .append(KnownLocationTransfer.GHD_NAMESPACE)
+                .append("\">");
+        for(int i = 0; i < count; i++) {
+            sb.append("<wpt lat=\"").append((i % 1700) / 10.0 - 85.0)
+                    .append("\" lon=\"").append((i % 3500) / 10.0 - 175.0)
+                    .append("\"><name>Point ").append(i)
+                    .append("</name><extensions><ghd:range>5000.0</ghd:range></extensions></wpt>");
+        }
+        sb.append("</gpx>");
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        final int[] batches = {0};
+        final int[] total = {0};
+
+        long start = System.nanoTime();
+        KnownLocationTransfer.ImportResult result = KnownLocationTransfer.importLocations(
+                new ByteArrayInputStream(bytes), 1.0, batch -> {
+                    assertTrue(batch.size() <= KnownLocationTransfer.BATCH_SIZE);
+                    batches[0]++;
+                    total[0] += batch.size();
+                });
+        long elapsed = System.nanoTime() - start;
+
+        assertEquals(count, result.imported);
+        assertEquals(0, result.skipped);
+        assertEquals(count, total[0]);
+
+        Log.i(DEBUG_TAG, String.format("Parsed %d waypoints (%d KB) in %d batches, %.1f ms",
+                count, bytes.length / 1024, batches[0], elapsed / 1e6));
+    }
+}
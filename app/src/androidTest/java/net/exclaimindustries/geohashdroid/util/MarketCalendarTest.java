@@ -0,0 +1,73 @@
+/*
+ * MarketCalendarTest.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.geohashdroid.util;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks {@link MarketCalendar} against the NYSE's published holiday
+ * schedules.
+ */
+@RunWith(BlockJUnit4ClassRunner.class)
+public class MarketCalendarTest {
+    private static Calendar date(int year, int month, int day) {
+        return new GregorianCalendar(year, month, day);
+    }
+
+    @Test
+    public void holidays2025() {
+        assertTrue(MarketCalendar.isHoliday(date(2025, Calendar.JANUARY, 1)));
+        assertTrue(MarketCalendar.isHoliday(date(2025, Calendar.JANUARY, 20)));
+        assertTrue(MarketCalendar.isHoliday(date(2025, Calendar.FEBRUARY, 17)));
+        assertTrue(MarketCalendar.isHoliday(date(2025, Calendar.APRIL, 18)));
+        assertTrue(MarketCalendar.isHoliday(date(2025, Calendar.MAY, 26)));
+        assertTrue(MarketCalendar.isHoliday(date(2025, Calendar.JUNE, 19)));
+        assertTrue(MarketCalendar.isHoliday(date(2025, Calendar.JULY, 4)));
+        assertTrue(MarketCalendar.isHoliday(date(2025, Calendar.SEPTEMBER, 1)));
+        assertTrue(MarketCalendar.isHoliday(date(2025, Calendar.NOVEMBER, 27)));
+        assertTrue(MarketCalendar.isHoliday(date(2025, Calendar.DECEMBER, 25)));
+    }
+
+    @Test
+    public void observedDates() {
+        // July 4, 2026 is a Saturday, so it's observed Friday.
+        assertTrue(MarketCalendar.isHoliday(date(2026, Calendar.JULY, 3)));
+        // January 1, 2022 was a Saturday, which the NYSE just didn't observe.
+        assertFalse(MarketCalendar.isHoliday(date(2021, Calendar.DECEMBER, 31)));
+        // January 1, 2023 was a Sunday, so it was observed Monday.
+        assertTrue(MarketCalendar.isHoliday(date(2023, Calendar.JANUARY, 2)));
+    }
+
+    @Test
+    public void ordinaryDays() {
+        assertFalse(MarketCalendar.isHoliday(date(2025, Calendar.MAY, 19)));
+        assertFalse(MarketCalendar.isHoliday(date(2025, Calendar.NOVEMBER, 20)));
+        assertFalse(MarketCalendar.isHoliday(date(2021, Calendar.JUNE, 18)));
+    }
+
+    @Test
+    public void tradingDayRewinds() {
+        // Monday, May 26, 2025 was Memorial Day, so it rewinds to Friday.
+        Calendar trading = MarketCalendar.getTradingDay(date(2025, Calendar.MAY, 26));
+        assertEquals(23, trading.get(Calendar.DAY_OF_MONTH));
+
+        // Tuesday's just Tuesday.
+        trading = MarketCalendar.getTradingDay(date(2025, Calendar.MAY, 27));
+        assertEquals(27, trading.get(Calendar.DAY_OF_MONTH));
+    }
+}
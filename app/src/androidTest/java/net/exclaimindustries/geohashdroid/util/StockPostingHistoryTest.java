@@ -0,0 +1,145 @@
+/*
+ * StockPostingHistoryTest.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.geohashdroid.util;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the scheduling math in {@link StockPostingHistory}.  None of this
+ * touches SharedPreferences; it's all done on hand-built histories.
+ */
+@RunWith(BlockJUnit4ClassRunner.class)
+public class StockPostingHistoryTest {
+    private static StockPostingHistory.Entry makeEntry(int day, int dayOfWeek, int postedMinute) {
+        StockPostingHistory.Entry e = new StockPostingHistory.Entry("202606" + String.format(Locale.US, "%02d", day), dayOfWeek);
+        e.postedMinute = postedMinute;
+        return e;
+    }
+
+    @Test
+    public void noHistoryUsesDefault() {
+        List<StockPostingHistory.Entry> history = new ArrayList<>();
+
+        assertEquals(StockPostingHistory.DEFAULT_MINUTE,
+                StockPostingHistory.pickFirstAttemptMinute(history, Calendar.MONDAY));
+    }
+
+    @Test
+    public void firstAttemptFollowsWeekday() {
+        List<StockPostingHistory.Entry> history = new ArrayList<>();
+
+        // Mondays post late, Tuesdays post early.
+        for(int i = 0; i < 4; i++) {
+            history.add(makeEntry(i * 7 + 1, Calendar.MONDAY, 10 * 60 + i));
+            history.add(makeEntry(i * 7 + 2, Calendar.TUESDAY, 9 * 60 + 35));
+        }
+
+        assertEquals(10 * 60 + 2 + StockPostingHistory.MARGIN_MINUTES,
+                StockPostingHistory.pickFirstAttemptMinute(history, Calendar.MONDAY));
+        assertEquals(9 * 60 + 35 + StockPostingHistory.MARGIN_MINUTES,
+                StockPostingHistory.pickFirstAttemptMinute(history, Calendar.TUESDAY));
+    }
+
+    @Test
+    public void firstAttemptIsClamped() {
+        List<StockPostingHistory.Entry> history = new ArrayList<>();
+
+        for(int i = 1; i <= 5; i++)
+            history.add(makeEntry(i, Calendar.WEDNESDAY, 8 * 60));
+
+        assertEquals(StockPostingHistory.EARLIEST_MINUTE,
+                StockPostingHistory.pickFirstAttemptMinute(history, Calendar.WEDNESDAY));
+    }
+
+    /**
+     * Runs the scheduler for a number of days against a stock that always
+     * posts at the same time, the way AlarmWorker would: one first attempt,
+     * then retries a couple minutes apart until it's up.
+     *
+     * @return the first attempt minute for each day
+     */
+    private static List<Integer> simulate(List<StockPostingHistory.Entry> history, int days, int postingMinute) {
+        List<Integer> attempts = new ArrayList<>();
+
+        for(int day = 1; day <= days; day++) {
+            int attempt = StockPostingHistory.pickFirstAttemptMinute(history, Calendar.THURSDAY);
+            attempts.add(attempt);
+
+            StockPostingHistory.Entry e = new StockPostingHistory.Entry(
+                    "202607" + String.format(Locale.US, "%02d", day), Calendar.THURSDAY);
+            while(attempt < postingMinute) {
+                e.misses++;
+                attempt += 2;
+            }
+            e.markPosted(attempt);
+            history.add(e);
+        }
+
+        return attempts;
+    }
+
+    @Test
+    public void firstTrySuccessesDontClimb() {
+        // It's posted at 10:00 for a few days, and after that it's up right
+        // at the open every single day.  Every first try works.
+        List<StockPostingHistory.Entry> history = new ArrayList<>();
+        for(int i = 1; i <= StockPostingHistory.MIN_SAMPLES; i++)
+            history.add(makeEntry(i, Calendar.THURSDAY, 10 * 60));
+
+        List<Integer> attempts = simulate(history, 30, StockPostingHistory.EARLIEST_MINUTE);
+
+        for(int i = 1; i < attempts.size(); i++)
+            assertTrue("Day " + (i + 1) + " went later", attempts.get(i) <= attempts.get(i - 1));
+
+        // And it found its way back down to the open.
+        assertEquals(StockPostingHistory.EARLIEST_MINUTE, (int)attempts.get(attempts.size() - 1));
+        for(StockPostingHistory.Entry e : history.subList(StockPostingHistory.MIN_SAMPLES, history.size()))
+            assertEquals(-1, e.postedMinute);
+    }
+
+    @Test
+    public void settlesNearThePostingTime() {
+        // Posted at 9:45 every day.  It'll probe earlier now and then and
+        // miss, but it shouldn't wander far from 9:45 in either direction.
+        List<StockPostingHistory.Entry> history = new ArrayList<>();
+        for(int i = 1; i <= StockPostingHistory.MIN_SAMPLES; i++)
+            history.add(makeEntry(i, Calendar.THURSDAY, 10 * 60));
+
+        List<Integer> attempts = simulate(history, 30, 9 * 60 + 45);
+
+        for(int attempt : attempts.subList(10, attempts.size())) {
+            assertTrue(attempt >= 9 * 60 + 45 - StockPostingHistory.PROBE_MINUTES - 2);
+            assertTrue(attempt <= 9 * 60 + 45 + StockPostingHistory.MARGIN_MINUTES + 2);
+        }
+    }
+
+    @Test
+    public void retriesBackOffAndCap() {
+        List<StockPostingHistory.Entry> history = new ArrayList<>();
+
+        // With no jitter, the delay is exactly half the un-jittered one.
+        long first = StockPostingHistory.computeRetryDelay(history, Calendar.MONDAY, 1, 0.0d);
+        long second = StockPostingHistory.computeRetryDelay(history, Calendar.MONDAY, 2, 0.0d);
+        long way = StockPostingHistory.computeRetryDelay(history, Calendar.MONDAY, 20, 1.0d);
+
+        assertEquals(StockPostingHistory.DEFAULT_RETRY_BASE * 60000L / 2, first);
+        assertEquals(first * 2, second);
+        assertTrue(way <= StockPostingHistory.MAX_RETRY_MINUTES * 60000L);
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * FakeMediaWiki.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.geohashdroid.wiki;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import cz.msebera.android.httpclient.HttpEntityEnclosingRequest;
+import cz.msebera.android.httpclient.HttpHost;
+import cz.msebera.android.httpclient.HttpRequest;
+import cz.msebera.android.httpclient.HttpVersion;
+import cz.msebera.android.httpclient.NameValuePair;
+import cz.msebera.android.httpclient.client.methods.CloseableHttpResponse;
+import cz.msebera.android.httpclient.client.methods.HttpUriRequest;
+import cz.msebera.android.httpclient.client.utils.URLEncodedUtils;
+import cz.msebera.android.httpclient.conn.ClientConnectionManager;
+import cz.msebera.android.httpclient.entity.ContentType;
+import cz.msebera.android.httpclient.entity.StringEntity;
+import cz.msebera.android.httpclient.impl.client.CloseableHttpClient;
+import cz.msebera.android.httpclient.message.BasicHttpResponse;
+import cz.msebera.android.httpclient.params.HttpParams;
+import cz.msebera.android.httpclient.protocol.HttpContext;
+
+/**
+ * <p>
+ * A stand-in for the parts of the MediaWiki API that {@link WikiUtils} talks
+ * to, so the edit calls can be run against something that acts like a wiki
+ * without there being a wiki.  Pages are plain Strings in a map.  Sections
+ * are worked out from the headings the same way MediaWiki does it: section 0
+ * is everything before the first heading, and each heading's section runs
+ * until the next heading at the same level or higher.
+ * </p>
+ *
+ * <p>
+ * What's covered: {@code action=query} with {@code prop=info|revisions} (and
+ * {@code rvsection}), {@code action=parse} with {@code prop=sections}, and
+ * {@code action=edit} with {@code text} or {@code appendtext},
+ * {@code section}, {@code nocreate}, and {@code createonly}.  Errors come back
+ * with the same codes the real thing uses.  Every request's parameters get
+ * written down in {@link #requests} so tests can see what went out.
+ * </p>
+ */
+class FakeMediaWiki extends CloseableHttpClient {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Pattern RE_HEADING = Pattern.compile("^(={1,6})\\s*(.+?)\\s*\\1\\s*$", Pattern.MULTILINE);
+
+    /** The pages, by title. */
+    final Map<String, String> pages = new HashMap<>();
+
+    /** The parameters of every request, in order. */
+    final List<Map<String, String>> requests = new ArrayList<>();
+
+    /**
+     * If set, this runs right before an edit goes through, for simulating
+     * someone else getting there first.
+     */
+    Runnable beforeEdit;
+
+    private static class Section {
+        final int start;
+        final int end;
+        final int level;
+        final String line;
+
+        Section(int start, int end, int level, String line) {
+            this.start = start;
+            this.end = end;
+            this.level = level;
+            this.line = line;
+        }
+    }
+
+    private static class Response extends BasicHttpResponse implements CloseableHttpResponse {
+        Response(String xml) {
+            super(HttpVersion.HTTP_1_1, 200, "OK");
+            setEntity(new StringEntity(xml, ContentType.create("text/xml", UTF8)));
+        }
+
+        @Override
+        public void close() {
+            // Nothing to close.
+        }
+    }
+
+    /**
+     * Splits a page into sections.  Index 0 is the lead, and index N is the
+     * Nth heading, same as the API numbers them.
+     */
+    private static List<Section> getSections(String page) {
+        List<Section> headings = new ArrayList<>();
+        Matcher m = RE_HEADING.matcher(page);
+        while(m.find())
+            headings.add(new Section(m.start(), -1, m.group(1).length(), m.group(2)));
+
+        List<Section> toReturn = new ArrayList<>();
+        toReturn.add(new Section(0, headings.isEmpty() ? page.length() : headings.get(0).start, 0, ""));
+
+        for(int i = 0; i < headings.size(); i++) {
+            Section h = headings.get(i);
+            int end = page.length();
+            for(int j = i + 1; j < headings.size(); j++) {
+                if(headings.get(j).level <= h.level) {
+                    end = headings.get(j).start;
+                    break;
+                }
+            }
+            toReturn.add(new Section(h.start, end, h.level, h.line));
+        }
+
+        return toReturn;
+    }
+
+    private static String escape(String s) {
+        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private static String error(String code) {
+        return "<?xml version=\"1.0\"?><api><error code=\"" + code + "\" info=\"" + code + "\"/></api>";
+    }
+
+    @Override
+    protected CloseableHttpResponse doExecute(HttpHost target, HttpRequest request, HttpContext context) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        for(NameValuePair nvp : URLEncodedUtils.parse(URI.create(((HttpUriRequest)request).getURI().toString()), UTF8))
+            params.put(nvp.getName(), nvp.getValue());
+        if(request instanceof HttpEntityEnclosingRequest) {
+            for(NameValuePair nvp : URLEncodedUtils.parse(((HttpEntityEnclosingRequest)request).getEntity()))
+                params.put(nvp.getName(), nvp.getValue());
+        }
+        requests.add(params);
+
+        String action = params.get("action");
+        if("query".equals(action)) return new Response(query(params));
+        if("parse".equals(action)) return new Response(parse(params));
+        if("edit".equals(action)) return new Response(edit(params));
+        return new Response(error("unknown_action"));
+    }
+
+    private String query(Map<String, String> params) {
+        String title = params.get("titles");
+        String page = pages.get(title);
+
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\"?><api><query><pages><page title=\"")
+                .append(escape(title)).append("\" touched=\"2026-10-19T12:00:00Z\" edittoken=\"+\\\"");
+
+        if(page == null) return xml.append(" missing=\"\"/></pages></query></api>").toString();
+
+        String section = params.get("rvsection");
+        String text = page;
+        if(section != null) {
+            List<Section> sections = getSections(page);
+            int index = Integer.parseInt(section);
+            if(index >= sections.size()) return error("nosuchsection");
+            Section s = sections.get(index);
+            text = page.substring(s.start, s.end);
+        }
+
+        return xml.append("><revisions><rev xml:space=\"preserve\">").append(escape(text))
+                .append("</rev></revisions></page></pages></query></api>").toString();
+    }
+
+    private String parse(Map<String, String> params) {
+        String page = pages.get(params.get("page"));
+        if(page == null) return error("missingtitle");
+
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\"?><api><parse><sections>");
+        List<Section> sections = getSections(page);
+        for(int i = 1; i < sections.size(); i++) {
+            Section s = sections.get(i);
+            xml.append("<s level=\"").append(s.level).append("\" line=\"").append(escape(s.line))
+                    .append("\" index=\"").append(i).append("\" byteoffset=\"").append(s.start).append("\"/>");
+        }
+        return xml.append("</sections></parse></api>").toString();
+    }
+
+    private String edit(Map<String, String> params) {
+        if(params.get("token") == null) return error("notoken");
+        if(beforeEdit != null) beforeEdit.run();
+
+        String title = params.get("title");
+        String page = pages.get(title);
+        String section = params.get("section");
+
+        if(page != null && params.containsKey("createonly")) return error("articleexists");
+        if(page == null && (params.containsKey("nocreate") || section != null)) return error("missingtitle");
+
+        int start = 0;
+        int end = page == null ? 0 : page.length();
+        if(section != null) {
+            List<Section> sections = getSections(page);
+            int index = Integer.parseInt(section);
+            if(index >= sections.size()) return error("nosuchsection");
+            start = sections.get(index).start;
+            end = sections.get(index).end;
+        }
+
+        String before = page == null ? "" : page.substring(0, start);
+        String after = page == null ? "" : page.substring(end);
+        String current = page == null ? "" : page.substring(start, end);
+
+        String text = params.get("text");
+        String append = params.get("appendtext");
+        if(text != null) current = text;
+        else if(append != null) current = current + append;
+        else return error("missingparam");
+
+        pages.put(title, before + current + after);
+        return "<?xml version=\"1.0\"?><api><edit result=\"Success\" title=\"" + escape(title) + "\"/></api>";
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public HttpParams getParams() {
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public ClientConnectionManager getConnectionManager() {
+        return null;
+    }
+
+    @Override
+    public void close() {
+        // Nothing to close.
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * WikiImageStoreTest.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.geohashdroid.wiki;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Makes sure {@link WikiImageStore} writes what it's given, only ever hands
+ * back or deletes its own files, and that the sweep leaves newer and still
+ * queued files alone.
+ */
+@RunWith(BlockJUnit4ClassRunner.class)
+public class WikiImageStoreTest {
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = ApplicationProvider.getApplicationContext();
+        WikiImageStore.sweep(mContext, Long.MAX_VALUE, Collections.<String>emptySet());
+    }
+
+    private static byte[] readAll(File file) throws IOException {
+        byte[] toReturn = new byte[(int)file.length()];
+        try(FileInputStream in = new FileInputStream(file)) {
+            int read = 0;
+            while(read < toReturn.length) {
+                int got = in.read(toReturn, read, toReturn.length - read);
+                if(got < 0) break;
+                read += got;
+            }
+        }
+        return toReturn;
+    }
+
+    @Test
+    public void writesAndResolves() throws IOException {
+        byte[] data = new byte[300 * 1024];
+        new Random(1234L).nextBytes(data);
+
+        File file = WikiImageStore.write(mContext, data);
+        assertArrayEquals(data, readAll(file));
+
+        File resolved = WikiImageStore.resolve(mContext, file.getAbsolutePath());
+        assertNotNull(resolved);
+        assertEquals(file, resolved);
+
+        WikiImageStore.delete(mContext, resolved);
+        assertFalse(file.exists());
+        assertNull(WikiImageStore.resolve(mContext, file.getAbsolutePath()));
+    }
+
+    @Test
+    public void leavesOtherFilesAlone() throws IOException {
+        File elsewhere = new File(mContext.getCacheDir(), "not_an_upload.jpg");
+        assertTrue(elsewhere.exists() || elsewhere.createNewFile());
+
+        assertNull(WikiImageStore.resolve(mContext, elsewhere.getAbsolutePath()));
+        assertNull(WikiImageStore.resolve(mContext, null));
+        assertNull(WikiImageStore.resolve(mContext, ""));
+
+        WikiImageStore.delete(mContext, elsewhere);
+        assertTrue(elsewhere.exists());
+        assertTrue(elsewhere.delete());
+    }
+
+    @Test
+    public void sweepKeepsNewerFiles() throws IOException {
+        File old = WikiImageStore.write(mContext, new byte[] {1, 2, 3});
+        assertTrue(old.setLastModified(System.currentTimeMillis() - 3600000L));
+
+        long cutoff = System.currentTimeMillis() - 60000L;
+        File fresh = WikiImageStore.write(mContext, new byte[] {4, 5, 6});
+
+        assertEquals(1, WikiImageStore.sweep(mContext, cutoff, Collections.<String>emptySet()));
+        assertFalse(old.exists());
+        assertTrue(fresh.exists());
+
+        WikiImageStore.delete(mContext, fresh);
+    }
+
+    @Test
+    public void sweepKeepsQueuedFiles() throws IOException {
+        File queued = WikiImageStore.write(mContext, new byte[] {1, 2, 3});
+        File orphan = WikiImageStore.write(mContext, new byte[] {4, 5, 6});
+        assertTrue(queued.setLastModified(System.currentTimeMillis() - 3600000L));
+        assertTrue(orphan.setLastModified(System.currentTimeMillis() - 3600000L));
+
+        // Both are old enough, but the queue still wants one of them.
+        assertEquals(1, WikiImageStore.sweep(mContext, System.currentTimeMillis(),
+                Collections.singleton(queued.getAbsolutePath())));
+        assertTrue(queued.exists());
+        assertFalse(orphan.exists());
+
+        WikiImageStore.delete(mContext, queued);
+    }
+}
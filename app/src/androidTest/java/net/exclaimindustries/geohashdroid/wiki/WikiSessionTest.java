@@ -0,0 +1,76 @@
+/*
+ * WikiSessionTest.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.geohashdroid.wiki;
+
+import org.json.JSONArray;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import cz.msebera.android.httpclient.cookie.ClientCookie;
+import cz.msebera.android.httpclient.cookie.Cookie;
+import cz.msebera.android.httpclient.impl.cookie.BasicClientCookie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Makes sure the cookies {@link WikiSession} saves come back the same way
+ * they went out, including the bits that decide which requests they go with.
+ */
+@RunWith(BlockJUnit4ClassRunner.class)
+public class WikiSessionTest {
+    @Test
+    public void cookiesRoundTrip() throws Exception {
+        List<Cookie> cookies = new ArrayList<>();
+
+        BasicClientCookie session = new BasicClientCookie("wiki_session", "abc123");
+        session.setDomain("geohashing.site");
+        session.setPath("/");
+        session.setSecure(true);
+        session.setAttribute(ClientCookie.PATH_ATTR, "/");
+        cookies.add(session);
+
+        BasicClientCookie remember = new BasicClientCookie("wikiToken", "def456");
+        remember.setDomain(".geohashing.site");
+        remember.setPath("/");
+        remember.setExpiryDate(new Date(4102444800000L));
+        remember.setAttribute(ClientCookie.DOMAIN_ATTR, ".geohashing.site");
+        cookies.add(remember);
+
+        // Through an actual String, same as it'd be on disk.
+        JSONArray json = new JSONArray(WikiSession.cookiesToJson(cookies).toString());
+        List<Cookie> back = WikiSession.cookiesFromJson(json);
+
+        assertEquals(2, back.size());
+
+        Cookie first = back.get(0);
+        assertEquals("wiki_session", first.getName());
+        assertEquals("abc123", first.getValue());
+        assertEquals("geohashing.site", first.getDomain());
+        assertEquals("/", first.getPath());
+        assertTrue(first.isSecure());
+        assertNull(first.getExpiryDate());
+        assertFalse(((ClientCookie) first).containsAttribute(ClientCookie.DOMAIN_ATTR));
+        assertEquals("/", ((ClientCookie) first).getAttribute(ClientCookie.PATH_ATTR));
+
+        Cookie second = back.get(1);
+        assertEquals("def456", second.getValue());
+        assertFalse(second.isSecure());
+        assertEquals(4102444800000L, second.getExpiryDate().getTime());
+        assertEquals(".geohashing.site", ((ClientCookie) second).getAttribute(ClientCookie.DOMAIN_ATTR));
+        assertFalse(((ClientCookie) second).containsAttribute(ClientCookie.PATH_ATTR));
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * WikiUtilsTest.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.geohashdroid.wiki;
+
+import net.exclaimindustries.geohashdroid.R;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Feeds {@link WikiUtils#parseWikiResponse(InputStream, String...)} the sorts
+ * of things the wiki sends back, to make sure it keeps what it's asked for,
+ * skips everything else, and notices errors.  Then runs the edit calls against
+ * {@link FakeMediaWiki} to make sure appends, create-only edits, and section
+ * round trips land where they should.
+ */
+@RunWith(BlockJUnit4ClassRunner.class)
+public class WikiUtilsTest {
+    private static InputStream stream(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(Charset.forName("UTF-8")));
+    }
+
+    @Test
+    public void keepsPageAndText() throws Exception {
+        String xml = "<?xml version=\"1.0\"?><api><query><pages>"
+                + "<page pageid=\"1\" title=\"2026-10-19_45_-93\" touched=\"2026-10-19T12:00:00Z\" edittoken=\"abc+\\\">"
+                + "<revisions><rev xml:space=\"preserve\">== Expedition ==\n*Hi &amp; bye  -- ~~~</rev></revisions>"
+                + "</page><page pageid=\"2\" missing=\"\"/></pages></query></api>";
+
+        WikiUtils.WikiResponse response = WikiUtils.parseWikiResponse(stream(xml), "page", "rev");
+
+        WikiUtils.WikiElement page = response.require("page");
+        assertEquals("1", page.get("pageid"));
+        assertEquals("abc+\\", page.get("edittoken"));
+        assertFalse(page.has("missing"));
+
+        assertEquals("== Expedition ==\n*Hi & bye  -- ~~~", response.require("rev").text);
+
+        // Nobody asked for these.
+        assertNull(response.get("revisions"));
+        assertNull(response.get("query"));
+    }
+
+    @Test
+    public void emptyRevIsEmpty() throws Exception {
+        String xml = "<api><query><pages><page pageid=\"1\"><revisions><rev/></revisions></page></pages></query></api>";
+
+        assertEquals("", WikiUtils.parseWikiResponse(stream(xml), "page", "rev").require("rev").text);
+    }
+
+    @Test
+    public void errorsThrow() throws IOException {
+        String xml = "<api><error code=\"editconflict\" info=\"Edit conflict detected\"/></api>";
+
+        try {
+            WikiUtils.parseWikiResponse(stream(xml));
+            fail("An error response didn't throw");
+        } catch(WikiException we) {
+            assertEquals(R.string.wiki_error_conflict, we.getErrorTextId());
+        }
+    }
+
+    @Test
+    public void garbageThrows() throws IOException {
+        try {
+            WikiUtils.parseWikiResponse(stream("<html><body>502 Bad Gateway</bod"), "page");
+            fail("Broken XML didn't throw");
+        } catch(WikiException we) {
+            assertEquals(R.string.wiki_error_xml, we.getErrorTextId());
+        }
+    }
+
+    @Test
+    public void readsToTheEnd() throws Exception {
+        // Anything after the end of the document, and anything after the XML
+        // goes bad, still has to be read, or the connection can't be reused.
+        InputStream in = stream("<api><tokens csrftoken=\"one\"/></api>\n\n<!-- served in 0.1s -->\n");
+        WikiUtils.parseWikiResponse(in, "tokens");
+        assertEquals(-1, in.read());
+
+        in = stream("<api><tokens <<<" + new String(new char[10000]).replace('\0', ' '));
+        try {
+            WikiUtils.parseWikiResponse(in, "page");
+            fail("Broken XML didn't throw");
+        } catch(WikiException we) {
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void parserGetsReused() throws Exception {
+        // Same thread, same parser; make sure nothing from the first response
+        // leaks into the second.
+        WikiUtils.parseWikiResponse(stream("<api><tokens csrftoken=\"one\"/></api>"), "tokens");
+        WikiUtils.WikiResponse second = WikiUtils.parseWikiResponse(
+                stream("<api><general generator=\"MediaWiki 1.39.3\"/></api>"), "tokens", "general");
+
+        assertNull(second.get("tokens"));
+        assertTrue(second.require("general").has("generator"));
+    }
+
+    @Test
+    public void findsSections() throws Exception {
+        // Trimmed down from what action=parse&prop=sections says about a
+        // fresh expedition page, plus a transcluded section and a repeat.
+        String xml = "<api><parse title=\"2026-10-19 45 -93\" pageid=\"1\"><sections>"
+                + "<s toclevel=\"1\" level=\"2\" line=\"Location\" number=\"1\" index=\"1\" byteoffset=\"0\"/>"
+                + "<s toclevel=\"1\" level=\"2\" line=\"Expedition\" number=\"2\" index=\"2\" byteoffset=\"120\"/>"
+                + "<s toclevel=\"2\" level=\"3\" line=\"Notes\" number=\"2.1\" index=\"T-1\" fromtitle=\"Template:Notes\"/>"
+                + "<s toclevel=\"1\" level=\"2\" line=\"Photos \" number=\"3\" index=\"3\" byteoffset=\"300\"/>"
+                + "<s toclevel=\"1\" level=\"2\" line=\"Expedition\" number=\"4\" index=\"4\" byteoffset=\"400\"/>"
+                + "</sections></parse></api>";
+
+        HashMap<String, String> sections = WikiUtils.getSections(WikiUtils.parseWikiResponse(stream(xml), "s"));
+
+        assertEquals("2", sections.get("Expedition"));
+        assertEquals("3", sections.get("Photos"));
+        assertNull(sections.get("Notes"));
+        assertEquals(3, sections.size());
+    }
+
+    @Test
+    public void missingPageSaysSo() throws IOException {
+        try {
+            WikiUtils.parseWikiResponse(stream("<api><error code=\"missingtitle\" info=\"The page you specified doesn't exist.\"/></api>"), "s");
+            fail("A missing page didn't throw");
+        } catch(WikiException we) {
+            assertEquals(R.string.wiki_error_page_missing, we.getErrorTextId());
+        }
+    }
+
+    private static final String PAGE = "2026-10-19 45 -93";
+    private static final String EXPEDITION_PAGE = "== Location ==\nSomewhere in a field.\n\n"
+            + "== Expedition ==\n* First!\n\n"
+            + "== Photos ==\n<gallery>\nImage:one.jpg|One\n</gallery>\n\n"
+            + "[[Category:Meetup on 2026-10-19]]\n";
+
+    private static HashMap<String, String> formfields() {
+        HashMap<String, String> toReturn = new HashMap<>();
+        toReturn.put("token", "+\\");
+        toReturn.put("summary", "Test");
+        return toReturn;
+    }
+
+    @Test
+    public void appendGoesOnTheEndOfTheSection() throws Exception {
+        FakeMediaWiki wiki = new FakeMediaWiki();
+        wiki.pages.put(PAGE, EXPEDITION_PAGE);
+
+        String expedition = WikiUtils.getWikiSections(wiki, PAGE).get("Expedition");
+        WikiUtils.appendToWikiPage(wiki, PAGE, expedition, "* Second!\n", formfields());
+
+        assertTrue(wiki.pages.get(PAGE).contains("== Expedition ==\n* First!\n\n* Second!\n== Photos =="));
+        assertEquals("1", wiki.requests.get(wiki.requests.size() - 1).get("nocreate"));
+    }
+
+    @Test
+    public void appendWontMakeAPage() throws Exception {
+        FakeMediaWiki wiki = new FakeMediaWiki();
+
+        assertNull(WikiUtils.getWikiSections(wiki, PAGE));
+        try {
+            WikiUtils.appendToWikiPage(wiki, PAGE, null, "* Anybody here?\n", formfields());
+            fail("Appending to a missing page didn't throw");
+        } catch(WikiException we) {
+            assertEquals(R.string.wiki_error_page_missing, we.getErrorTextId());
+        }
+
+        assertFalse(wiki.pages.containsKey(PAGE));
+    }
+
+    @Test
+    public void createOnlyMakesThePage() throws Exception {
+        FakeMediaWiki wiki = new FakeMediaWiki();
+
+        assertTrue(WikiUtils.createWikiPage(wiki, PAGE, EXPEDITION_PAGE, formfields()));
+        assertEquals(EXPEDITION_PAGE, wiki.pages.get(PAGE));
+        assertEquals("1", wiki.requests.get(0).get("createonly"));
+    }
+
+    @Test
+    public void createOnlyLosesTheRace() throws Exception {
+        // The page isn't there when we look, but someone else makes it before
+        // our edit lands.  Theirs stays, and we're told it was already there.
+        final FakeMediaWiki wiki = new FakeMediaWiki();
+        final String theirs = "== Expedition ==\n* Got here first.\n";
+        wiki.beforeEdit = () -> {
+            if(!wiki.pages.containsKey(PAGE)) wiki.pages.put(PAGE, theirs);
+        };
+
+        assertNull(WikiUtils.getWikiSections(wiki, PAGE));
+        assertFalse(WikiUtils.createWikiPage(wiki, PAGE, EXPEDITION_PAGE, formfields()));
+        assertEquals(theirs, wiki.pages.get(PAGE));
+
+        // And what we had to say goes on theirs.
+        String expedition = WikiUtils.getWikiSections(wiki, PAGE).get("Expedition");
+        WikiUtils.appendToWikiPage(wiki, PAGE, expedition, "* Second!\n", formfields());
+        assertEquals(theirs + "* Second!\n", wiki.pages.get(PAGE));
+    }
+
+    @Test
+    public void photosSectionRoundTrip() throws Exception {
+        FakeMediaWiki wiki = new FakeMediaWiki();
+        wiki.pages.put(PAGE, EXPEDITION_PAGE);
+
+        String photos = WikiUtils.getWikiSections(wiki, PAGE).get("Photos");
+        assertEquals("3", photos);
+
+        // Only the section comes down...
+        HashMap<String, String> fields = formfields();
+        String section = WikiUtils.getWikiPage(wiki, PAGE, photos, fields);
+        assertEquals("3", wiki.requests.get(wiki.requests.size() - 1).get("rvsection"));
+        assertEquals("== Photos ==\n<gallery>\nImage:one.jpg|One\n</gallery>\n\n"
+                + "[[Category:Meetup on 2026-10-19]]\n", section);
+        assertEquals("2026-10-19T12:00:00Z", fields.get("basetimestamp"));
+
+        // ...and only the section goes back up.
+        WikiUtils.putWikiPage(wiki, PAGE, photos,
+                section.replace("</gallery>", "Image:two.jpg|Two\n</gallery>"), fields);
+        assertEquals("3", wiki.requests.get(wiki.requests.size() - 1).get("section"));
+        assertEquals(EXPEDITION_PAGE.replace("</gallery>", "Image:two.jpg|Two\n</gallery>"),
+                wiki.pages.get(PAGE));
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * GeoDistanceTest.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.tools;
+
+import android.location.Location;
+import android.util.Log;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>
+ * Checks {@link GeoDistance} against what Location.distanceBetween() has been
+ * saying all along, at a bunch of scales (GPS-fix-sized, graticule-sized, and
+ * halfway around the world), then times the two against each other.  As with
+ * the other benchmarks, the timings just get logged.
+ * </p>
+ *
+ * <p>
+ * Nearly antipodal points are left out on purpose.  Vincenty's formula doesn't
+ * reliably converge there, and the two implementations give up in slightly
+ * different ways; nobody's going to notice either way when the hashpoint's on
+ * the exact other side of the planet.
+ * </p>
+ */
+@RunWith(BlockJUnit4ClassRunner.class)
+public class GeoDistanceTest {
+    private static final String DEBUG_TAG = "GeoDistanceTest";
+
+    private static final int PAIR_COUNT = 20000;
+    private static final double ANTIPODAL_CUTOFF = 19000000.0;
+
+    private double[][] mPairs;
+
+    @Before
+    public void setUp() {
+        Random random = new Random(3141592L);
+        mPairs = new double[PAIR_COUNT][];
+
+        for(int i = 0; i < PAIR_COUNT; i++) {
+            double lat1 = random.nextDouble() * 178.0 - 89.0;
+            double lon1 = random.nextDouble() * 360.0 - 180.0;
+
+            // Spread the second point out at a few different scales.
+            double spread;
+            switch(i % 3) {
+                case 0:
+                    spread = 0.001;
+                    break;
+                case 1:
+                    spread = 1.0;
+                    break;
+                default:
+                    spread = 90.0;
+                    break;
+            }
+
+            double lat2 = Math.max(-90.0, Math.min(90.0, lat1 + (random.nextDouble() * 2.0 - 1.0) * spread));
+            double lon2 = lon1 + (random.nextDouble() * 2.0 - 1.0) * spread;
+            if(lon2 >= 180.0) lon2 -= 360.0;
+            if(lon2 < -180.0) lon2 += 360.0;
+
+            mPairs[i] = new double[] {lat1, lon1, lat2, lon2};
+        }
+    }
+
+    private static double reference(double[] p) {
+        float[] dist = new float[1];
+        Location.distanceBetween(p[0], p[1], p[2], p[3], dist);
+        return dist[0];
+    }
+
+    @Test
+    public void exactMatchesLocation() {
+        for(double[] p : mPairs) {
+            double expected = reference(p);
+            if(expected > ANTIPODAL_CUTOFF) continue;
+
+            // Location gives back a float, so that's as close as we can check.
+            assertEquals(expected, GeoDistance.distance(p[0], p[1], p[2], p[3]),
+                    Math.max(0.01, expected * 1e-6));
+        }
+    }
+
+    @Test
+    public void approximateWithinStatedError() {
+        for(double[] p : mPairs) {
+            double expected = reference(p);
+            if(expected > ANTIPODAL_CUTOFF || expected == 0.0) continue;
+
+            double approx = GeoDistance.approximate(p[0], p[1], p[2], p[3]);
+            assertTrue("Approximation off by too much at " + p[0] + "," + p[1] + " to " + p[2] + "," + p[3],
+                    Math.abs(approx - expected) / expected <= GeoDistance.APPROXIMATE_ERROR);
+        }
+    }
+
+    @Test
+    public void isWithinMatchesLocation() {
+        Random random = new Random(2718281L);
+
+        for(double[] p : mPairs) {
+            double expected = reference(p);
+            if(expected > ANTIPODAL_CUTOFF) continue;
+
+            // Pick ranges near the actual distance, since that's where it'd
+            // break if it's going to.
+            double range = expected * (0.99 + random.nextDouble() * 0.02);
+            assertEquals(expected <= range, GeoDistance.isWithin(p[0], p[1], p[2], p[3], range));
+        }
+
+        assertTrue(GeoDistance.isWithin(10.0, 10.0, 10.0, 10.0, 0.0));
+        assertTrue(!GeoDistance.isWithin(10.0, 10.0, 10.0, 10.0, -1.0));
+    }
+
+    @Test
+    public void benchmark() {
+        float[] dist = new float[1];
+        double sink = 0.0;
+
+        // Warm everything up first.
+        for(int round = 0; round < 3; round++) {
+            for(double[] p : mPairs) {
+                Location.distanceBetween(p[0], p[1], p[2], p[3], dist);
+                sink += dist[0];
+                sink += GeoDistance.distance(p[0], p[1], p[2], p[3]);
+                sink += GeoDistance.approximate(p[0], p[1], p[2], p[3]);
+            }
+        }
+
+        long start = System.nanoTime();
+        for(double[] p : mPairs) {
+            Location.distanceBetween(p[0], p[1], p[2], p[3], new float[1]);
+        }
+        long locationNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for(double[] p : mPairs) sink += GeoDistance.distance(p[0], p[1], p[2], p[3]);
+        long exactNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for(double[] p : mPairs) sink += GeoDistance.approximate(p[0], p[1], p[2], p[3]);
+        long approxNanos = System.nanoTime() - start;
+
+        // The usual morning sweep question: a 5km range, almost always no.
+        int hits = 0;
+        start = System.nanoTime();
+        for(double[] p : mPairs) {
+            if(GeoDistance.isWithin(p[0], p[1], p[2], p[3], 5000.0)) hits++;
+        }
+        long withinNanos = System.nanoTime() - start;
+
+        Log.i(DEBUG_TAG, String.format("%d pairs: Location.distanceBetween %.1f ns, exact %.1f ns, approximate %.1f ns, isWithin(5km) %.1f ns (%d hits) per call [%s]",
+                PAIR_COUNT,
+                (double)locationNanos / PAIR_COUNT,
+                (double)exactNanos / PAIR_COUNT,
+                (double)approxNanos / PAIR_COUNT,
+                (double)withinNanos / PAIR_COUNT,
+                hits,
+                sink > 0.0 ? "ok" : "?"));
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * LogGateTest.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.tools;
+
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * This tests {@link LogGate}, mostly to make sure a disabled level really does
+ * skip the formatting.  There's also a rough benchmark at the end comparing a
+ * gated call against the old concatenate-and-Log.v approach; it prints its
+ * results to the log rather than asserting anything about timing, since that
+ * would just make the test flaky on slow emulators.
+ */
+@RunWith(BlockJUnit4ClassRunner.class)
+public class LogGateTest {
+    private static final String DEBUG_TAG = "LogGateTest";
+    private static final int BENCH_ITERATIONS = 100000;
+
+    /** Counts how many times it got stringified. */
+    private static class Snitch {
+        int count = 0;
+
+        @Override
+        public String toString() {
+            count++;
+            return "snitch";
+        }
+    }
+
+    @After
+    public void resetLevel() {
+        LogGate.setMinimumLevel(Log.VERBOSE);
+    }
+
+    @Test
+    public void disabledLevelSkipsFormatting() {
+        LogGate.setMinimumLevel(Log.INFO);
+        Snitch snitch = new Snitch();
+
+        LogGate.v(DEBUG_TAG, "One %s", snitch);
+        LogGate.v(DEBUG_TAG, "Two %s %s", snitch, snitch);
+        LogGate.d(DEBUG_TAG, "Three %s %s %s", snitch, snitch, snitch);
+
+        assertEquals(0, snitch.count);
+    }
+
+    @Test
+    public void enabledLevelFormats() {
+        LogGate.setMinimumLevel(Log.VERBOSE);
+        Snitch snitch = new Snitch();
+
+        LogGate.v(DEBUG_TAG, "One %s", snitch);
+        LogGate.d(DEBUG_TAG, "Two %s %s", snitch, snitch);
+
+        assertEquals(3, snitch.count);
+    }
+
+    @Test
+    public void isLoggableRespectsLevel() {
+        LogGate.setMinimumLevel(Log.DEBUG);
+
+        assertFalse(LogGate.isLoggable(Log.VERBOSE));
+        assertTrue(LogGate.isLoggable(Log.DEBUG));
+        assertTrue(LogGate.isLoggable(Log.WARN));
+    }
+
+    @Test
+    public void benchmarkDisabledVersusConcatenation() {
+        LogGate.setMinimumLevel(Log.INFO);
+        Snitch snitch = new Snitch();
+
+        // The old way: build the string every time, whether or not anyone
+        // wants it.  The length sum is just there so the concatenation can't
+        // be optimized away.
+        long sink = 0;
+        long start = System.nanoTime();
+        for(int i = 0; i < BENCH_ITERATIONS; i++) {
+            String msg = "Hash data is in quick cache: " + snitch + ", " + snitch;
+            sink += msg.length();
+        }
+        long concatNanos = System.nanoTime() - start;
+        int concatStringifications = snitch.count;
+
+        snitch.count = 0;
+        start = System.nanoTime();
+        for(int i = 0; i < BENCH_ITERATIONS; i++) {
+            LogGate.v(DEBUG_TAG, "Hash data is in quick cache: %s, %s", snitch, snitch);
+        }
+        long gatedNanos = System.nanoTime() - start;
+
+        Log.i(DEBUG_TAG, "Concatenation: " + concatNanos / BENCH_ITERATIONS + "ns/call, "
+                + concatStringifications + " toString() calls (" + sink + " chars built)");
+        Log.i(DEBUG_TAG, "LogGate (disabled): " + gatedNanos / BENCH_ITERATIONS + "ns/call, "
+                + snitch.count + " toString() calls");
+
+        assertEquals(0, snitch.count);
+    }
+}
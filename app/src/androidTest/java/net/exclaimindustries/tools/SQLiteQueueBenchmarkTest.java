@@ -0,0 +1,284 @@
+/*
+ * SQLiteQueueBenchmarkTest.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.tools;
+
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * <p>
+ * Times {@link AbstractSQLiteQueueService}'s database operations with a big
+ * backlog sitting in the queue, which is what the wiki queue looks like after
+ * a long weekend of expeditions with no signal.  This pokes at the database
+ * methods directly through an {@link AbnormallyDurableSQLiteQueueService}
+ * that never actually gets started as a Service, so there's no thread or
+ * Handler timing muddying up the numbers.
+ * </p>
+ *
+ * <p>
+ * It checks the counts stay right along the way; the timings just get logged.
+ * </p>
+ */
+@RunWith(BlockJUnit4ClassRunner.class)
+public class SQLiteQueueBenchmarkTest {
+    private static final String DEBUG_TAG = "SQLiteQueueBenchmark";
+
+    private static final String EXTRA_PAYLOAD = "payload";
+    private static final String EXTRA_LANE = "lane";
+
+    /**
+     * Just enough of a queue to exercise the database.  Intents go through
+     * their own URI form for serialization.
+     */
+    static class BenchmarkQueue extends AbnormallyDurableSQLiteQueueService {
+        void attach(@NonNull Context c) {
+            attachBaseContext(c);
+        }
+
+        @NonNull
+        @Override
+        protected String getQueueName() {
+            return "SQLiteQueueBenchmarkTest";
+        }
+
+        @Nullable
+        @Override
+        protected String serializeIntent(@NonNull Intent i) {
+            return i.toUri(0);
+        }
+
+        @Nullable
+        @Override
+        protected Intent deserializeIntent(@NonNull String s) {
+            try {
+                return Intent.parseUri(s, 0);
+            } catch(Exception e) {
+                return null;
+            }
+        }
+
+        @Override
+        protected boolean resumeOnNewIntent() {
+            return false;
+        }
+
+        @Override
+        protected int getPriority(@NonNull Intent i) {
+            return i.getIntExtra(EXTRA_LANE, 0);
+        }
+
+        @Override
+        protected ReturnCode handleIntent(Intent i) {
+            return ReturnCode.CONTINUE;
+        }
+
+        @Override
+        protected void onQueuePause(Intent i) { }
+    }
+
+    private BenchmarkQueue mQueue;
+
+    @Before
+    public void setUp() {
+        mQueue = new BenchmarkQueue();
+        mQueue.attach(ApplicationProvider.getApplicationContext());
+        mQueue.clearQueue();
+    }
+
+    @After
+    public void tearDown() {
+        mQueue.clearQueue();
+        if(mQueue.mHelper != null) mQueue.mHelper.close();
+    }
+
+    private static Intent makeIntent(int n) {
+        // Roughly the size of a wiki message Intent, minus the picture.
+        StringBuilder sb = new StringBuilder();
+        for(int i = 0; i < 20; i++) sb.append("Lorem ipsum ").append(n).append(' ');
+        return new Intent("net.exclaimindustries.tools.BENCHMARK").putExtra(EXTRA_PAYLOAD, sb.toString());
+    }
+
+    private void runBacklog(int backlog) {
+        long start = System.nanoTime();
+        for(int i = 0; i < backlog; i++) mQueue.addIntentToQueue(makeIntent(i));
+        long enqueueNanos = System.nanoTime() - start;
+
+        assertEquals(backlog, mQueue.getQueueCount());
+
+        // QueueService asks for the count once per enqueue and once per
+        // processed item (twice, counting the broadcast), so this is a big
+        // deal with a deep queue.
+        final int countCalls = 1000;
+        start = System.nanoTime();
+        for(int i = 0; i < countCalls; i++) mQueue.getQueueCount();
+        long countNanos = System.nanoTime() - start;
+
+        // Drain a chunk off the front the way the queue thread does: count,
+        // peek, remove.
+        final int drain = Math.min(200, backlog);
+        start = System.nanoTime();
+        for(int i = 0; i < drain; i++) {
+            mQueue.getQueueCount();
+            assertNotNull(mQueue.peekNextIntentFromQueue());
+            mQueue.removeNextIntentFromQueue();
+        }
+        long drainNanos = System.nanoTime() - start;
+
+        assertEquals(backlog - drain, mQueue.getQueueCount());
+
+        Log.i(DEBUG_TAG, String.format("Backlog %d: enqueue %.1f us/item, count %.2f us/call, drain %.1f us/item",
+                backlog,
+                enqueueNanos / 1e3 / backlog,
+                countNanos / 1e3 / countCalls,
+                drainNanos / 1e3 / drain));
+
+        mQueue.clearQueue();
+        assertEquals(0, mQueue.getQueueCount());
+    }
+
+    @Test
+    public void countSurvivesReopen() {
+        for(int i = 0; i < 10; i++) mQueue.addIntentToQueue(makeIntent(i));
+        assertEquals(10, mQueue.getQueueCount());
+
+        // A brand new instance (as if the process had died) has to come up
+        // with the same count from the table itself.
+        mQueue.mHelper.close();
+        BenchmarkQueue other = new BenchmarkQueue();
+        other.attach(ApplicationProvider.getApplicationContext());
+        assertEquals(10, other.getQueueCount());
+
+        other.removeNextIntentFromQueue();
+        assertEquals(9, other.getQueueCount());
+        other.mHelper.close();
+    }
+
+    @Test
+    public void drainsInOrder() {
+        // These will all land in the same millisecond or two, so this is
+        // really checking the row ID tiebreaker (and that what comes back is
+        // the actual data, not the row ID).
+        for(int i = 0; i < 50; i++) mQueue.addIntentToQueue(makeIntent(i));
+
+        for(int i = 0; i < 50; i++) {
+            Intent next = mQueue.peekNextIntentFromQueue();
+            assertNotNull(next);
+            assertEquals(makeIntent(i).getStringExtra(EXTRA_PAYLOAD), next.getStringExtra(EXTRA_PAYLOAD));
+            mQueue.removeNextIntentFromQueue();
+        }
+
+        assertEquals(0, mQueue.getQueueCount());
+        assertNull(mQueue.peekNextIntentFromQueue());
+    }
+
+    @Test
+    public void removesFromMiddle() {
+        // This is what the parallel dispatcher does: look at a window off the
+        // front, finish something that isn't the head, and take it out.
+        for(int i = 0; i < 10; i++) mQueue.addIntentToQueue(makeIntent(i));
+
+        List<Intent> window = mQueue.peekIntentsFromQueue(4);
+        assertEquals(4, window.size());
+        for(int i = 0; i < 4; i++)
+            assertEquals(makeIntent(i).getStringExtra(EXTRA_PAYLOAD), window.get(i).getStringExtra(EXTRA_PAYLOAD));
+
+        mQueue.removeIntentFromQueue(window.get(2));
+        assertEquals(9, mQueue.getQueueCount());
+
+        // Removing it twice shouldn't take anything else with it.
+        mQueue.removeIntentFromQueue(window.get(2));
+        assertEquals(9, mQueue.getQueueCount());
+
+        window = mQueue.peekIntentsFromQueue(4);
+        assertEquals(makeIntent(0).getStringExtra(EXTRA_PAYLOAD), window.get(0).getStringExtra(EXTRA_PAYLOAD));
+        assertEquals(makeIntent(1).getStringExtra(EXTRA_PAYLOAD), window.get(1).getStringExtra(EXTRA_PAYLOAD));
+        assertEquals(makeIntent(3).getStringExtra(EXTRA_PAYLOAD), window.get(2).getStringExtra(EXTRA_PAYLOAD));
+        assertEquals(makeIntent(4).getStringExtra(EXTRA_PAYLOAD), window.get(3).getStringExtra(EXTRA_PAYLOAD));
+    }
+
+    @Test
+    public void leasesHideAndRelease() {
+        for(int i = 0; i < 3; i++) mQueue.addIntentToQueue(makeIntent(i));
+
+        // Taking the head leases it, so the next one along is the new head
+        // as far as anyone else is concerned, but it's still counted.
+        Intent first = mQueue.peekNextIntentFromQueue();
+        assertNotNull(first);
+        assertEquals(makeIntent(0).getStringExtra(EXTRA_PAYLOAD), first.getStringExtra(EXTRA_PAYLOAD));
+        assertEquals(3, mQueue.getQueueCount());
+
+        List<Intent> window = mQueue.peekIntentsFromQueue(10);
+        assertEquals(2, window.size());
+        assertEquals(makeIntent(1).getStringExtra(EXTRA_PAYLOAD), window.get(0).getStringExtra(EXTRA_PAYLOAD));
+
+        // Only one claim on the same row can win.
+        assertTrue(mQueue.claimIntentFromQueue(window.get(0)));
+        assertFalse(mQueue.claimIntentFromQueue(window.get(0)));
+        assertEquals(1, mQueue.peekIntentsFromQueue(10).size());
+
+        // Letting go of the first puts it right back at the front.
+        mQueue.releaseIntentToQueue(first);
+        window = mQueue.peekIntentsFromQueue(10);
+        assertEquals(2, window.size());
+        assertEquals(makeIntent(0).getStringExtra(EXTRA_PAYLOAD), window.get(0).getStringExtra(EXTRA_PAYLOAD));
+        assertEquals(makeIntent(2).getStringExtra(EXTRA_PAYLOAD), window.get(1).getStringExtra(EXTRA_PAYLOAD));
+
+        // Leased or not, it's all still in the table for a fresh instance to
+        // count.
+        mQueue.mHelper.close();
+        BenchmarkQueue other = new BenchmarkQueue();
+        other.attach(ApplicationProvider.getApplicationContext());
+        assertEquals(3, other.getQueueCount());
+        other.mHelper.close();
+    }
+
+    @Test
+    public void lanesGoFirst() {
+        // Everything in lane 1 first, then lane 0 behind it.  Lane 0 should
+        // still come out first, in the order it went in.
+        for(int i = 0; i < 3; i++) mQueue.addIntentToQueue(makeIntent(i).putExtra(EXTRA_LANE, 1));
+        for(int i = 3; i < 6; i++) mQueue.addIntentToQueue(makeIntent(i));
+
+        int[] expected = {3, 4, 5, 0, 1, 2};
+        for(int n : expected) {
+            Intent next = mQueue.peekNextIntentFromQueue();
+            assertNotNull(next);
+            assertEquals(makeIntent(n).getStringExtra(EXTRA_PAYLOAD), next.getStringExtra(EXTRA_PAYLOAD));
+            mQueue.removeNextIntentFromQueue();
+        }
+
+        assertEquals(0, mQueue.getQueueCount());
+    }
+
+    @Test
+    public void throughput() {
+        runBacklog(100);
+        runBacklog(1000);
+        runBacklog(10000);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * TokenBucketTest.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.tools;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks {@link TokenBucket}'s arithmetic with a clock that only moves when
+ * the test says so.
+ */
+@RunWith(BlockJUnit4ClassRunner.class)
+public class TokenBucketTest {
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    static class FakeClockBucket extends TokenBucket {
+        // This starts at zero even while the superclass constructor is
+        // asking, which is all it needs.
+        long mNow;
+
+        FakeClockBucket(int capacity, int tokens, long periodMillis) {
+            super(capacity, tokens, periodMillis);
+        }
+
+        @Override
+        long now() {
+            return mNow;
+        }
+
+        void advance(long millis) {
+            mNow += millis * NANOS_PER_MILLI;
+        }
+    }
+
+    @Test
+    public void burstThenRefill() {
+        // Four at once, then one every 15 seconds.
+        FakeClockBucket bucket = new FakeClockBucket(4, 4, 60000);
+
+        for(int i = 0; i < 4; i++) assertTrue(bucket.tryTake(1));
+        assertFalse(bucket.tryTake(1));
+        assertEquals(15000, bucket.getWaitMillis(1));
+
+        bucket.advance(10000);
+        assertEquals(5000, bucket.getWaitMillis(1));
+        assertFalse(bucket.tryTake(1));
+
+        bucket.advance(5000);
+        assertEquals(0, bucket.getWaitMillis(1));
+        assertTrue(bucket.tryTake(1));
+
+        // It never fills past capacity, no matter how long it sits.
+        bucket.advance(600000);
+        assertTrue(bucket.tryTake(4));
+        assertFalse(bucket.tryTake(1));
+    }
+
+    @Test
+    public void waitingDoesNotTake() {
+        FakeClockBucket bucket = new FakeClockBucket(2, 2, 1000);
+
+        assertTrue(bucket.tryTake(2));
+        bucket.getWaitMillis(1);
+        bucket.getWaitMillis(1);
+
+        bucket.advance(500);
+        assertTrue(bucket.tryTake(1));
+    }
+
+    @Test
+    public void oversizedRequestsWaitForFull() {
+        FakeClockBucket bucket = new FakeClockBucket(2, 1, 1000);
+
+        assertTrue(bucket.tryTake(1));
+        assertEquals(1000, bucket.getWaitMillis(10));
+
+        bucket.advance(1000);
+        assertTrue(bucket.tryTake(10));
+        assertEquals(2000, bucket.getWaitMillis(2));
+    }
+
+    @Test
+    public void drainEmptiesIt() {
+        FakeClockBucket bucket = new FakeClockBucket(3, 3, 3000);
+
+        bucket.drain();
+        assertFalse(bucket.tryTake(1));
+        assertEquals(1000, bucket.getWaitMillis(1));
+    }
+}
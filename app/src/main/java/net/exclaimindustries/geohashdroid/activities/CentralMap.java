@@ -11,10 +11,8 @@ import android.annotation.SuppressLint;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.backup.BackupManager;
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.graphics.Color;
@@ -22,7 +20,6 @@ import android.location.Location;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.Parcelable;
 import android.util.Log;
 import android.view.MenuItem;
 import android.view.View;
@@ -47,6 +44,8 @@ import net.exclaimindustries.geohashdroid.fragments.MapTypeDialogFragment;
 import net.exclaimindustries.geohashdroid.fragments.PermissionDeniedDialogFragment;
 import net.exclaimindustries.geohashdroid.fragments.VersionHistoryDialogFragment;
 import net.exclaimindustries.geohashdroid.services.AlarmWorker;
+import net.exclaimindustries.geohashdroid.services.StockResult;
+import net.exclaimindustries.geohashdroid.services.StockResultBus;
 import net.exclaimindustries.geohashdroid.services.StockWorker;
 import net.exclaimindustries.geohashdroid.util.ExpeditionMode;
 import net.exclaimindustries.geohashdroid.util.GHDConstants;
@@ -66,12 +65,9 @@ import org.xmlpull.v1.XmlPullParserException;
 
 import java.text.DateFormat;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Calendar;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -536,25 +532,18 @@ public class CentralMap
         }
     }
 
-    private class StockReceiver extends BroadcastReceiver {
+    private class StockReceiver implements StockResultBus.Listener {
         private final static String DEBUG_TAG = "StockReceiver";
 
-        // This allows us to NOT blast out responses if the current mode didn't
-        // request it.
-        private final Set<Long> mWaitingList;
-
-        public StockReceiver() {
-            mWaitingList = new HashSet<>();
-        }
-
         /**
-         * Adds the given ID to the waiting list.  If an ID comes back and it
-         * wasn't in the waiting list, it won't be dispatched to the modes.
+         * Subscribes to the given ID on the {@link StockResultBus}.  If an ID
+         * comes back and it wasn't subscribed to, it won't be dispatched to
+         * the modes (or, really, here at all).
          *
          * @param id the request ID
          */
         public void addToWaitingList(long id) {
-            mWaitingList.add(id);
+            StockResultBus.subscribe(id, this);
         }
 
         /**
@@ -563,62 +552,49 @@ public class CentralMap
         public void clearWaitingList() {
             // Yes, since we can have multiple IDs pointing to the same mode, we
             // have to do it this way.
-            mWaitingList.clear();
+            StockResultBus.unsubscribeAll(this);
+
+            // Whatever was in flight won't be coming here anymore, so the
+            // progress indicator shouldn't stick around waiting for it.
+            mProgress.animate().translationY(-mProgressHeight).alpha(0.0f);
         }
 
         @Override
-        public void onReceive(Context context, Intent intent) {
+        public void onStockResult(@NonNull StockResult result) {
             Log.d(DEBUG_TAG, "Stock has come in!");
 
             // Progress goes away!
             mProgress.animate().translationY(-mProgressHeight).alpha(0.0f);
 
-            Bundle bun = intent.getBundleExtra(StockWorker.EXTRA_STUFF);
-            assert bun != null;
-            bun.setClassLoader(getClassLoader());
-
             // A stock result arrives!  Let's get data!  That oughta tell us
             // whether or not we're even going to bother with it.
-            int reqFlags = bun.getInt(StockWorker.EXTRA_REQUEST_FLAGS, 0);
-            long reqId = bun.getLong(StockWorker.EXTRA_REQUEST_ID, -1);
-            Calendar cal = (Calendar)bun.getSerializable(StockWorker.EXTRA_DATE);
+            int reqFlags = result.getRequestFlags();
+            Calendar cal = result.getDate();
 
             // Now, if the flags state this was from the alarm or somewhere else
             // we weren't expecting, give up now.  We don't want it.
             if((reqFlags & StockWorker.FLAG_ALARM) != 0) return;
 
-            // Well, it's what we're looking for.  What was the result?  The
-            // default is RESPONSE_NETWORK_ERROR, as not getting a response code
-            // is a Bad Thing(tm).
-            int responseCode = bun.getInt(StockWorker.EXTRA_RESPONSE_CODE, StockWorker.RESPONSE_NETWORK_ERROR);
-
-            // Since the mode switchers wipe all requests from a given mode, all
-            // we need for a mode match is whether or not the item exists in the
-            // waiting list.
-            boolean modeMatches = mWaitingList.remove(reqId);
+            // Well, it's what we're looking for.  What was the result?
+            int responseCode = result.getResponseCode();
 
+            // Since the mode switchers unsubscribe everything from a given
+            // mode, and the bus only hands us IDs we subscribed to, anything
+            // that gets here is a mode match.
             if(responseCode == StockWorker.RESPONSE_OKAY) {
                 // Hey, would you look at that, it actually worked!  So, get
                 // the Info out of it and fire it away to the corresponding
-                // CentralMapMode, if applicable.
-                if(modeMatches) {
-                    Info received = bun.getParcelable(StockWorker.EXTRA_INFO);
-                    Parcelable[] pArr = bun.getParcelableArray(StockWorker.EXTRA_NEARBY_POINTS);
-
-                    Info[] nearby = null;
-                    if(pArr != null)
-                        nearby = Arrays.copyOf(pArr, pArr.length, Info[].class);
-                    if(received != null) {
-                        updateLastGraticule(received);
-                        mCurrentMode.handleInfo(received, nearby, reqFlags);
-                    }
-                } else {
-                    Log.w(DEBUG_TAG, "Request ID " + reqId + " was NOT expected by this mode, ignoring...");
+                // CentralMapMode.
+                Info received = result.getInfo();
+                Info[] nearby = result.getNearbyPoints();
+
+                if(received != null) {
+                    updateLastGraticule(received);
+                    mCurrentMode.handleInfo(received, nearby, reqFlags);
                 }
             } else {
                 // Make sure the mode knows what's up first.
-                if(modeMatches)
-                    mCurrentMode.handleLookupFailure(reqFlags, responseCode);
+                mCurrentMode.handleLookupFailure(reqFlags, responseCode);
 
                 if((reqFlags & StockWorker.FLAG_USER_INITIATED) != 0) {
                     // ONLY notify the user of an error if they specifically
@@ -830,24 +806,11 @@ public class CentralMap
         }
     }
 
-    @Override
-    protected void onStart() {
-        super.onStart();
-
-        // The receiver goes on during onStart, since the modes might need it
-        // before onResume has a chance to kick in.  This might actually be
-        // obsolete with the change away from GoogleApiClient.
-        IntentFilter filt = new IntentFilter();
-        filt.addAction(StockWorker.ACTION_STOCK_RESULT);
-        registerReceiver(mStockReceiver, filt);
-    }
-
-
-
     @Override
     protected void onStop() {
-        // The receiver goes right off as soon as we stop.
-        unregisterReceiver(mStockReceiver);
+        // Anything still in flight when we stop gets dropped, same as when
+        // this was a BroadcastReceiver that got unregistered here.
+        mStockReceiver.clearWaitingList();
 
         super.onStop();
     }
@@ -1136,6 +1099,19 @@ public class CentralMap
                 .putExtra(StockWorker.EXTRA_REQUEST_ID, date)
                 .putExtra(StockWorker.EXTRA_REQUEST_FLAGS, flags);
 
+        // If there's nearby points involved, the user gets to say how far out
+        // they go.
+        if((flags & StockWorker.FLAG_INCLUDE_NEARBY_POINTS) != 0) {
+            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
+            int radius;
+            try {
+                radius = Integer.parseInt(prefs.getString(GHDConstants.PREF_NEARBY_RADIUS, "1"));
+            } catch(NumberFormatException nfe) {
+                radius = 1;
+            }
+            i.putExtra(StockWorker.EXTRA_NEARBY_RADIUS, radius);
+        }
+
         mStockReceiver.addToWaitingList(date);
 
         StockWorker.enqueueWork(this, i);
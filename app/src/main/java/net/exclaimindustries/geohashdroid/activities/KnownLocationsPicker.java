@@ -55,6 +55,7 @@ import net.exclaimindustries.geohashdroid.R;
 import net.exclaimindustries.geohashdroid.util.GHDConstants;
 import net.exclaimindustries.geohashdroid.util.KnownLocation;
 import net.exclaimindustries.geohashdroid.util.KnownLocationPinData;
+import net.exclaimindustries.geohashdroid.util.KnownLocationStore;
 import net.exclaimindustries.geohashdroid.util.UnitConverter;
 import net.exclaimindustries.tools.BitmapTools;
 
@@ -897,7 +898,7 @@ public class KnownLocationsPicker
 
         mMarkerMap.forcePut(newMark, newLoc);
         mCircleMap.forcePut(circles, newLoc);
-        KnownLocation.storeKnownLocations(this, mLocations);
+        KnownLocationStore.getInstance(this).insert(newLoc);
 
         mActiveAddresses.remove(address);
         if(mActiveMarker != null) mActiveMarker.remove();
@@ -925,6 +926,7 @@ public class KnownLocationsPicker
             int oldIndex = mLocations.indexOf(existing);
             mLocations.remove(oldIndex);
             mLocations.add(oldIndex, newLoc);
+            KnownLocationStore.getInstance(this).update(existing, newLoc);
 
             // Since this is an existing KnownLocation, the marker should be in
             // that map, ripe for removal.
@@ -939,14 +941,14 @@ public class KnownLocationsPicker
         } else {
             // Brand new!
             mLocations.add(newLoc);
+            KnownLocationStore.getInstance(this).insert(newLoc);
         }
 
-        // In both cases, store the data and add a new marker.
+        // In both cases, add a new marker.
         Marker newMark = mMap.addMarker(makeExistingMarker(newLoc));
         List<Circle> circles = makeCircleList(newLoc);
         mMarkerMap.forcePut(newMark, newLoc);
         mCircleMap.forcePut(circles, newLoc);
-        KnownLocation.storeKnownLocations(this, mLocations);
 
         // And remove the marker from the map.  The visual one this time.
         if(mActiveMarker != null) mActiveMarker.remove();
@@ -971,10 +973,9 @@ public class KnownLocationsPicker
             c.remove();
         }
 
-        // Then, remove it from the location list and push that back to the
-        // preferences.
+        // Then, remove it from the location list and from the store.
         mLocations.remove(existing);
-        KnownLocation.storeKnownLocations(this, mLocations);
+        KnownLocationStore.getInstance(this).delete(existing);
 
         // Also, clear out the active location and marker.
         removeActiveKnownLocation();
@@ -21,6 +21,7 @@ import android.widget.EditText;
 import net.exclaimindustries.geohashdroid.R;
 import net.exclaimindustries.geohashdroid.services.WikiService;
 import net.exclaimindustries.geohashdroid.util.GHDConstants;
+import net.exclaimindustries.geohashdroid.wiki.WikiSession;
 import net.exclaimindustries.tools.QueueService;
 
 import androidx.preference.PreferenceManager;
@@ -78,11 +79,16 @@ public class LoginPromptDialog extends Activity {
 
             // We're pretty sure the okay button should only be enabled if
             // there's input in both fields.
+            String password = mPassword.getText().toString();
+            boolean passwordChanged = !password.equals(prefs.getString(GHDConstants.PREF_WIKI_PASS, ""));
             edit.putString(GHDConstants.PREF_WIKI_USER, mUsername.getText().toString());
-            edit.putString(GHDConstants.PREF_WIKI_PASS, mPassword.getText().toString());
+            edit.putString(GHDConstants.PREF_WIKI_PASS, password);
 
             edit.apply();
 
+            // A new password means whatever session we had is out.
+            if(passwordChanged) WikiSession.forget(LoginPromptDialog.this);
+
             BackupManager bm = new BackupManager(LoginPromptDialog.this);
             bm.dataChanged();
 
@@ -8,6 +8,7 @@
 
 package net.exclaimindustries.geohashdroid.activities;
 
+import android.app.Activity;
 import android.app.AlertDialog;
 import android.app.Dialog;
 import android.app.backup.BackupManager;
@@ -20,6 +21,8 @@ import android.content.SharedPreferences;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.provider.Settings;
 import android.text.InputType;
 import android.util.Log;
@@ -33,8 +36,21 @@ import net.exclaimindustries.geohashdroid.services.AlarmWorker;
 import net.exclaimindustries.geohashdroid.services.WikiService;
 import net.exclaimindustries.geohashdroid.util.GHDConstants;
 import net.exclaimindustries.geohashdroid.util.HashBuilder;
+import net.exclaimindustries.geohashdroid.util.KnownLocation;
+import net.exclaimindustries.geohashdroid.util.KnownLocationStore;
+import net.exclaimindustries.geohashdroid.util.KnownLocationTransfer;
+import net.exclaimindustries.geohashdroid.util.StockPostingHistory;
+import net.exclaimindustries.geohashdroid.wiki.WikiSession;
 import net.exclaimindustries.tools.QueueService;
 
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
 import java.util.Objects;
 
 import androidx.annotation.NonNull;
@@ -200,6 +216,107 @@ public class PreferencesScreen extends AppCompatActivity
      */
     public static class MapPreferenceFragment extends PreferenceFragmentCompat {
         private static final String KNOWN_NOTIFICATION_REMINDER_DIALOG = "KnownNotificationReminderDialog";
+        private static final String EXPORT_FORMAT_DIALOG = "ExportFormatDialog";
+
+        private static final int REQUEST_IMPORT = 1;
+        private static final int REQUEST_EXPORT_GPX = 2;
+        private static final int REQUEST_EXPORT_KML = 3;
+
+        /** Range, in meters, for imported locations that don't have one. */
+        private static final double IMPORT_DEFAULT_RANGE = 5000.0;
+
+        /**
+         * This asks which format to export known locations in.  Then it's
+         * off to the system's file picker.
+         */
+        public static class ExportFormatDialogFragment extends DialogFragment {
+            @NonNull
+            @Override
+            public Dialog onCreateDialog(Bundle savedInstanceState) {
+                return new AlertDialog.Builder(getActivity())
+                        .setTitle(R.string.pref_knownlocations_export_title)
+                        .setItems(R.array.known_locations_export_formats, (dialog, which) -> {
+                            Fragment target = getTargetFragment();
+                            if(target instanceof MapPreferenceFragment)
+                                ((MapPreferenceFragment) target).startExport(which == 0
+                                        ? KnownLocationTransfer.Format.GPX
+                                        : KnownLocationTransfer.Format.KML);
+                        })
+                        .setNegativeButton(R.string.cancel_label, (dialog, which) -> dismiss())
+                        .create();
+            }
+        }
+
+        private void startExport(@NonNull KnownLocationTransfer.Format format) {
+            boolean gpx = format == KnownLocationTransfer.Format.GPX;
+
+            Intent i = new Intent(Intent.ACTION_CREATE_DOCUMENT)
+                    .addCategory(Intent.CATEGORY_OPENABLE)
+                    .setType(gpx ? KnownLocationTransfer.MIME_GPX : KnownLocationTransfer.MIME_KML)
+                    .putExtra(Intent.EXTRA_TITLE, gpx ? "knownlocations.gpx" : "knownlocations.kml");
+
+            startActivityForResult(i, gpx ? REQUEST_EXPORT_GPX : REQUEST_EXPORT_KML);
+        }
+
+        @Override
+        public void onActivityResult(int requestCode, int resultCode, Intent data) {
+            super.onActivityResult(requestCode, resultCode, data);
+
+            if(resultCode != Activity.RESULT_OK || data == null || data.getData() == null) return;
+
+            final Uri uri = data.getData();
+            final Context context = requireContext().getApplicationContext();
+            final Handler handler = new Handler(Looper.getMainLooper());
+
+            // Either way, this is file I/O (and for imports, a whole lot of
+            // database writes), so off the main thread it goes.  The result
+            // comes back as a Toast, which doesn't care if this Fragment's
+            // gone by then.
+            switch(requestCode) {
+                case REQUEST_IMPORT:
+                    new Thread(() -> {
+                        String message;
+                        try(InputStream in = context.getContentResolver().openInputStream(uri)) {
+                            if(in == null) throw new IOException("Couldn't open " + uri);
+                            KnownLocationTransfer.ImportResult result =
+                                    KnownLocationTransfer.importInto(context, new BufferedInputStream(in), IMPORT_DEFAULT_RANGE);
+                            message = context.getString(R.string.pref_knownlocations_import_done,
+                                    result.imported, result.skipped);
+                        } catch(IOException | XmlPullParserException e) {
+                            Log.e(DEBUG_TAG, "Known location import failed", e);
+                            message = context.getString(R.string.pref_knownlocations_import_failed);
+                        }
+
+                        final String toast = message;
+                        handler.post(() -> Toast.makeText(context, toast, Toast.LENGTH_LONG).show());
+                    }).start();
+                    break;
+                case REQUEST_EXPORT_GPX:
+                case REQUEST_EXPORT_KML:
+                    final KnownLocationTransfer.Format format = requestCode == REQUEST_EXPORT_GPX
+                            ? KnownLocationTransfer.Format.GPX
+                            : KnownLocationTransfer.Format.KML;
+
+                    new Thread(() -> {
+                        String message;
+                        try(OutputStream out = context.getContentResolver().openOutputStream(uri)) {
+                            if(out == null) throw new IOException("Couldn't open " + uri);
+                            List<KnownLocation> locations = KnownLocationStore.getInstance(context).getAll();
+                            BufferedOutputStream buffered = new BufferedOutputStream(out);
+                            KnownLocationTransfer.exportLocations(locations, buffered, format);
+                            buffered.flush();
+                            message = context.getString(R.string.pref_knownlocations_export_done, locations.size());
+                        } catch(IOException e) {
+                            Log.e(DEBUG_TAG, "Known location export failed", e);
+                            message = context.getString(R.string.pref_knownlocations_export_failed);
+                        }
+
+                        final String toast = message;
+                        handler.post(() -> Toast.makeText(context, toast, Toast.LENGTH_LONG).show());
+                    }).start();
+                    break;
+            }
+        }
 
         @Override
         public void onCreatePreferences(Bundle savedInstanceState, String rootKey) {
@@ -210,6 +327,7 @@ public class PreferencesScreen extends AppCompatActivity
             bindPreferenceSummaryToValue(Objects.requireNonNull(findPreference(GHDConstants.PREF_DIST_UNITS)));
             bindPreferenceSummaryToValue(Objects.requireNonNull(findPreference(GHDConstants.PREF_COORD_UNITS)));
             bindPreferenceSummaryToValue(Objects.requireNonNull(findPreference(GHDConstants.PREF_STARTUP_BEHAVIOR)));
+            bindPreferenceSummaryToValue(Objects.requireNonNull(findPreference(GHDConstants.PREF_NEARBY_RADIUS)));
 
             // Day/Night mode isn't REALLY a setting per se, it's more an
             // interface to the day/night control, so we lose out on things like
@@ -307,6 +425,39 @@ public class PreferencesScreen extends AppCompatActivity
                     return true;
                 });
             }
+
+            // Importing and exporting both go through the system file picker.
+            pref = findPreference("_knownLocationsImport");
+
+            if(pref != null) {
+                pref.setOnPreferenceClickListener(preference -> {
+                    // GPX and KML files don't always come with the right MIME
+                    // type attached, so don't be too picky here.  The parser
+                    // will complain if it's not one or the other.
+                    Intent i = new Intent(Intent.ACTION_OPEN_DOCUMENT)
+                            .addCategory(Intent.CATEGORY_OPENABLE)
+                            .setType("*/*")
+                            .putExtra(Intent.EXTRA_MIME_TYPES, new String[] {
+                                    KnownLocationTransfer.MIME_GPX,
+                                    KnownLocationTransfer.MIME_KML,
+                                    "application/xml",
+                                    "text/xml",
+                                    "application/octet-stream"});
+                    startActivityForResult(i, REQUEST_IMPORT);
+                    return true;
+                });
+            }
+
+            pref = findPreference("_knownLocationsExport");
+
+            if(pref != null) {
+                pref.setOnPreferenceClickListener(preference -> {
+                    DialogFragment frag = new ExportFormatDialogFragment();
+                    frag.setTargetFragment(this, 0);
+                    frag.show(getParentFragmentManager(), EXPORT_FORMAT_DIALOG);
+                    return true;
+                });
+            }
         }
 
         /**
@@ -449,6 +600,9 @@ public class PreferencesScreen extends AppCompatActivity
             if(passwordPref != null) {
                 passwordPref.setOnPreferenceChangeListener((preference, newValue) -> {
                     mHasChanged = true;
+
+                    // Whatever the old password logged in, it's not us now.
+                    WikiSession.forget(requireContext());
                     return true;
                 });
 
@@ -516,6 +670,8 @@ public class PreferencesScreen extends AppCompatActivity
     public static class OtherPreferenceFragment extends PreferenceFragmentCompat {
         private static final String WIPE_DIALOG = "wipeDialog";
         private static final String RESET_BUGGING_ME_DIALOG = "resetBuggingMe";
+        private static final String POSTING_HISTORY_DIALOG = "postingHistory";
+        private static final String PREF_POSTING_HISTORY = "_stockPostingHistory";
 
         /**
          * This is the {@link DialogFragment} that shows up when the user wants
@@ -579,6 +735,73 @@ public class PreferencesScreen extends AppCompatActivity
             }
         }
 
+        /**
+         * This one just lists out every day in the stock posting history, in
+         * case anyone's curious as to why the alarm goes off when it does.
+         */
+        public static class PostingHistoryDialogFragment extends DialogFragment {
+            @NonNull
+            @Override
+            public Dialog onCreateDialog(Bundle savedInstanceState) {
+                List<StockPostingHistory.Entry> history = StockPostingHistory.getHistory(requireActivity());
+
+                StringBuilder message = new StringBuilder();
+                if(history.isEmpty()) {
+                    message.append(getString(R.string.dialog_stockpostinghistory_empty));
+                } else {
+                    // Most recent first, since that's probably what anyone
+                    // wants to see.
+                    for(int i = history.size() - 1; i >= 0; i--) {
+                        StockPostingHistory.Entry e = history.get(i);
+                        String posted = StockPostingHistory.formatMinute(e.postedMinute);
+                        if(posted == null && e.postedBy >= 0)
+                            posted = getString(R.string.dialog_stockpostinghistory_by,
+                                    StockPostingHistory.formatMinute(e.postedBy));
+
+                        if(message.length() != 0) message.append('\n');
+                        message.append(getString(R.string.dialog_stockpostinghistory_entry,
+                                e.date,
+                                posted != null ? posted : getString(R.string.dialog_stockpostinghistory_never),
+                                e.misses,
+                                e.errors));
+                    }
+                }
+
+                return new AlertDialog.Builder(getActivity()).setMessage(message)
+                        .setTitle(R.string.pref_stockpostinghistory_title)
+                        .setPositiveButton(R.string.dialog_stockpostinghistory_close, (dialog, which) -> dismiss())
+                        .setNegativeButton(R.string.dialog_stockpostinghistory_clear, (dialog, which) -> {
+                            dismiss();
+                            StockPostingHistory.clear(requireActivity());
+
+                            // Make sure the summary doesn't lie about it.
+                            Fragment target = getTargetFragment();
+                            if(target instanceof OtherPreferenceFragment)
+                                ((OtherPreferenceFragment) target).updatePostingHistorySummary();
+                        })
+                        .create();
+            }
+        }
+
+        private void updatePostingHistorySummary() {
+            Preference pref = findPreference(PREF_POSTING_HISTORY);
+            if(pref == null) return;
+
+            StockPostingHistory.Stats stats = StockPostingHistory.getStats(requireContext());
+
+            if(stats.daysObserved == 0) {
+                pref.setSummary(R.string.pref_stockpostinghistory_summary_none);
+            } else {
+                pref.setSummary(getString(R.string.pref_stockpostinghistory_summary,
+                        stats.daysObserved,
+                        StockPostingHistory.formatMinute(stats.medianMinute),
+                        StockPostingHistory.formatMinute(stats.earliestMinute),
+                        StockPostingHistory.formatMinute(stats.latestMinute),
+                        stats.averageMisses,
+                        stats.totalErrors));
+            }
+        }
+
         @Override
         public void onCreatePreferences(Bundle savedInstanceState, String rootKey) {
             setPreferencesFromResource(R.xml.pref_other, rootKey);
@@ -622,6 +845,19 @@ public class PreferencesScreen extends AppCompatActivity
                 });
             }
 
+            // The posting history is read-only, save for the clear button in
+            // its dialog.
+            pref = findPreference(PREF_POSTING_HISTORY);
+            if(pref != null) {
+                updatePostingHistorySummary();
+                pref.setOnPreferenceClickListener(preference -> {
+                    DialogFragment frag = new PostingHistoryDialogFragment();
+                    frag.setTargetFragment(this, 0);
+                    frag.show(getParentFragmentManager(), POSTING_HISTORY_DIALOG);
+                    return true;
+                });
+            }
+
             // As is the reminder unremindening.
             pref = findPreference("_resetBuggingMe");
             if(pref != null) {
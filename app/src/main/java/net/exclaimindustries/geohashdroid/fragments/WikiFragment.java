@@ -18,6 +18,7 @@ import android.text.Editable;
 import android.text.SpannableString;
 import android.text.TextWatcher;
 import android.text.style.UnderlineSpan;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -36,11 +37,13 @@ import net.exclaimindustries.geohashdroid.util.GHDConstants;
 import net.exclaimindustries.geohashdroid.util.Graticule;
 import net.exclaimindustries.geohashdroid.util.Info;
 import net.exclaimindustries.geohashdroid.util.UnitConverter;
+import net.exclaimindustries.geohashdroid.wiki.WikiImageStore;
 import net.exclaimindustries.geohashdroid.wiki.WikiImageUtils;
 import net.exclaimindustries.geohashdroid.wiki.WikiUtils;
 import net.exclaimindustries.tools.BitmapTools;
 import net.exclaimindustries.tools.LocationUtil;
 
+import java.io.IOException;
 import java.text.DateFormat;
 import java.util.Calendar;
 
@@ -56,6 +59,8 @@ import androidx.preference.PreferenceManager;
  * data off to {@link WikiService} when it's ready to go.
  */
 public class WikiFragment extends CentralMapExtraFragment {
+    private static final String DEBUG_TAG = "WikiFragment";
+
     private static final String PICTURE_URI = "pictureUri";
 
     private static final int GET_PICTURE = 1;
@@ -565,24 +570,51 @@ public class WikiFragment extends CentralMapExtraFragment {
                 .putExtra(WikiService.EXTRA_LOCATION, loc)
                 .putExtra(WikiService.EXTRA_INCLUDE_LOCATION, includeLocation);
         if(includePicture) {
-            // Now hold on!  Let's ALSO make the uploadable version here, as
-            // we're the ones with permission to open the file, NOT WikiService!
-            // This is actually a thing.  WikiService won't be on the same
-            // Context by the time it uploads, so that'd be a SecurityException.
-            byte[] pictureData = WikiImageUtils.createWikiImage(
-                    act,
-                    mInfo,
-                    mLastImageInfo.uri,
-                    loc,
-                    includeLocation);
-
             i.putExtra(WikiService.EXTRA_IMAGE, mPictureUri)
-                    .putExtra(WikiService.EXTRA_IMAGE_INFO, mLastImageInfo)
-                    .putExtra(WikiService.EXTRA_IMAGE_DATA, pictureData);
-        }
+                    .putExtra(WikiService.EXTRA_IMAGE_INFO, mLastImageInfo);
+
+            // Building the picture means decoding the whole thing, and
+            // storing it means an fsync, so neither of those goes on the main
+            // thread.  The post goes out from that thread once it's ready;
+            // startService doesn't care where it's called from.
+            final Info info = mInfo;
+            final Uri imageUri = mLastImageInfo.uri;
+            final Location imageLoc = loc;
+            new Thread(() -> {
+                // Now hold on!  Let's ALSO make the uploadable version here,
+                // as we're the ones with permission to open the file, NOT
+                // WikiService!  This is actually a thing.  WikiService won't
+                // be on the same Context by the time it uploads, so that'd be
+                // a SecurityException.
+                byte[] pictureData = WikiImageUtils.createWikiImage(
+                        act,
+                        info,
+                        imageUri,
+                        imageLoc,
+                        includeLocation);
+
+                // Write it out to a file so the queue only has to hang on to
+                // where it is.  If that fails for some reason, it can still
+                // ride along in the Intent the old way.  If there's no picture
+                // data at all, WikiService will complain about it when it
+                // gets there.
+                if(pictureData != null) {
+                    try {
+                        i.putExtra(WikiService.EXTRA_IMAGE_FILE,
+                                WikiImageStore.write(act, pictureData).getAbsolutePath());
+                    } catch(IOException ioe) {
+                        Log.w(DEBUG_TAG, "Couldn't write the picture to a file, sending it inline...", ioe);
+                        i.putExtra(WikiService.EXTRA_IMAGE_DATA, pictureData);
+                    }
+                }
 
-        // And away it goes!
-        act.startService(i);
+                // And away it goes!
+                act.startService(i);
+            }).start();
+        } else {
+            // And away it goes!
+            act.startService(i);
+        }
 
         // Post complete!  We're done here!
         if(mCloseListener != null)
@@ -0,0 +1,435 @@
+/*
+ * AlarmTrace.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.geohashdroid.services;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import net.exclaimindustries.tools.LogGate;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * <p>
+ * AlarmTrace keeps a timeline of each run of the stock alarm, from the moment
+ * {@link AlarmWorker.StockAlarmReceiver} wakes up through StockWorker, back
+ * through {@link AlarmWorker.StockReceiver}, and on to the KnownLocation
+ * sweep.  That chain bounces through WorkManager and broadcasts a few times,
+ * and without this, there's no telling which part of it ate the morning.
+ * </p>
+ *
+ * <p>
+ * Each run gets a trace ID (the time it started, in millis), which rides
+ * along in {@link #EXTRA_TRACE_ID} and, once it gets to StockWorker, as the
+ * request ID.  Every hop marks spans against that ID.  Since any of those hops
+ * might be in a fresh process, every span gets written out to its own
+ * SharedPreferences file as it happens.  The last {@link #MAX_RUNS} runs are
+ * kept around.
+ * </p>
+ */
+public final class AlarmTrace {
+    private static final String DEBUG_TAG = "AlarmTrace";
+
+    /**
+     * Intent extra carrying the trace ID, as a long, between hops that aren't
+     * StockWorker.
+     */
+    public static final String EXTRA_TRACE_ID = "net.exclaimindustries.geohashdroid.EXTRA_TRACE_ID";
+
+    /** The alarm (or network-back notice) went off. */
+    public static final String SPAN_ALARM_FIRED = "alarm-fired";
+    /** Time spent waiting for AlarmWorker to get picked up by WorkManager. */
+    public static final String SPAN_ALARM_QUEUE = "alarm-queue";
+    /** A stock request went out to StockWorker. */
+    public static final String SPAN_STOCK_REQUESTED = "stock-requested";
+    /** Time spent waiting for StockWorker to get picked up by WorkManager. */
+    public static final String SPAN_STOCK_QUEUE = "stock-queue";
+    /** StockWorker found what it wanted in the cache. */
+    public static final String SPAN_STOCK_CACHED = "stock-cached";
+    /** Time spent actually going to the network for a stock. */
+    public static final String SPAN_STOCK_FETCH = "stock-fetch";
+    /** The StockWorker result made it back to StockReceiver. */
+    public static final String SPAN_RESULT_RECEIVED = "result-received";
+    /** Time spent in the KnownLocation sweep. */
+    public static final String SPAN_SWEEP = "sweep";
+    /** The run finished with everything fetched. */
+    public static final String SPAN_DONE = "done";
+    /** The run gave up for now and set a retry alarm. */
+    public static final String SPAN_SNOOZED = "snoozed";
+    /** The run gave up for now and is waiting for the network. */
+    public static final String SPAN_WAITING_FOR_NETWORK = "waiting-for-network";
+
+    /** How many runs to keep. */
+    public static final int MAX_RUNS = 20;
+
+    private static final String PREFS_FILE = "AlarmTrace";
+    private static final String PREF_RUNS = "Runs";
+
+    private static final String JSON_ID = "id";
+    private static final String JSON_LABEL = "label";
+    private static final String JSON_SPANS = "spans";
+    private static final String JSON_NAME = "n";
+    private static final String JSON_START = "s";
+    private static final String JSON_DURATION = "d";
+
+    private static final Object sLock = new Object();
+
+    /**
+     * One span in a run.  Instant events have a duration of zero.
+     */
+    public static class Span {
+        /** The span's name, one of the SPAN_* constants. */
+        public final String name;
+        /** When it started, in millis. */
+        public final long start;
+        /** How long it took, in millis. */
+        public final long duration;
+
+        Span(@NonNull String name, long start, long duration) {
+            this.name = name;
+            this.start = start;
+            this.duration = duration;
+        }
+
+        /**
+         * Gets when the span ended.
+         *
+         * @return the end time, in millis
+         */
+        public long getEnd() {
+            return start + duration;
+        }
+    }
+
+    /**
+     * One run of the alarm, from when it fired until it either finished or
+     * gave up for the time being.
+     */
+    public static class Run {
+        /** The trace ID, which is also when the run started. */
+        public final long id;
+        /** What started the run (the alarm action, generally). */
+        public final String label;
+        /** All the spans, in the order they were marked. */
+        public final List<Span> spans = new ArrayList<>();
+
+        Run(long id, @NonNull String label) {
+            this.id = id;
+            this.label = label;
+        }
+
+        /**
+         * Gets the total time spent in a given kind of span.
+         *
+         * @param name the span name
+         * @return total milliseconds across all spans of that name
+         */
+        public long getTotal(@NonNull String name) {
+            long total = 0;
+            for(Span s : spans) {
+                if(s.name.equals(name)) total += s.duration;
+            }
+            return total;
+        }
+
+        /**
+         * Gets the total time spent sitting in WorkManager's queue, across
+         * both AlarmWorker and StockWorker.
+         *
+         * @return queue delay, in millis
+         */
+        public long getQueueMillis() {
+            return getTotal(SPAN_ALARM_QUEUE) + getTotal(SPAN_STOCK_QUEUE);
+        }
+
+        /**
+         * Gets the total time spent waiting on the network.
+         *
+         * @return network time, in millis
+         */
+        public long getNetworkMillis() {
+            return getTotal(SPAN_STOCK_FETCH);
+        }
+
+        /**
+         * Gets the total time spent in the KnownLocation sweep.
+         *
+         * @return sweep time, in millis
+         */
+        public long getSweepMillis() {
+            return getTotal(SPAN_SWEEP);
+        }
+
+        /**
+         * Gets the time from the start of the run to the end of the last span
+         * marked.
+         *
+         * @return end-to-end time, in millis
+         */
+        public long getEndToEndMillis() {
+            long last = id;
+            for(Span s : spans) last = Math.max(last, s.getEnd());
+            return last - id;
+        }
+
+        /**
+         * Determines if the run has finished (for good or otherwise).
+         *
+         * @return true if one of the terminal spans has been marked
+         */
+        public boolean isFinished() {
+            for(Span s : spans) {
+                if(s.name.equals(SPAN_DONE)
+                        || s.name.equals(SPAN_SNOOZED)
+                        || s.name.equals(SPAN_WAITING_FOR_NETWORK))
+                    return true;
+            }
+            return false;
+        }
+
+        /**
+         * Makes a one-line summary, suitable for logs.
+         *
+         * @return a summary
+         */
+        @NonNull
+        public String getSummary() {
+            return String.format(Locale.US,
+                    "%s run %d: %d ms end-to-end (queue %d ms, network %d ms, sweep %d ms)",
+                    label, id, getEndToEndMillis(), getQueueMillis(), getNetworkMillis(), getSweepMillis());
+        }
+
+        /**
+         * Makes a full multi-line timeline, each span offset from the start of
+         * the run.
+         *
+         * @return the timeline
+         */
+        @NonNull
+        public String getTimeline() {
+            StringBuilder builder = new StringBuilder(getSummary());
+            for(Span s : spans) {
+                builder.append(String.format(Locale.US, "\n  +%6d ms  %-20s %d ms",
+                        s.start - id, s.name, s.duration));
+            }
+            return builder.toString();
+        }
+    }
+
+    private AlarmTrace() { }
+
+    /**
+     * Starts a new run and marks {@link #SPAN_ALARM_FIRED}.
+     *
+     * @param context a Context
+     * @param label what's starting the run
+     * @return the new trace ID
+     */
+    public static long begin(@NonNull Context context, @NonNull String label) {
+        long now = System.currentTimeMillis();
+
+        synchronized(sLock) {
+            List<Run> runs = load(context);
+
+            // Two alarms in the same millisecond is pretty unlikely, but IDs
+            // have to be unique, so nudge it if need be.
+            if(!runs.isEmpty() && runs.get(runs.size() - 1).id >= now)
+                now = runs.get(runs.size() - 1).id + 1;
+
+            Run run = new Run(now, label);
+            run.spans.add(new Span(SPAN_ALARM_FIRED, now, 0));
+            runs.add(run);
+
+            while(runs.size() > MAX_RUNS) runs.remove(0);
+
+            save(context, runs);
+        }
+
+        LogGate.d(DEBUG_TAG, "Starting trace %s for %s", now, label);
+        return now;
+    }
+
+    /**
+     * Marks an instant event on a run.
+     *
+     * @param context a Context
+     * @param traceId the trace ID (nothing happens if negative)
+     * @param name the span name
+     */
+    public static void mark(@NonNull Context context, long traceId, @NonNull String name) {
+        long now = System.currentTimeMillis();
+        span(context, traceId, name, now, now);
+    }
+
+    /**
+     * Marks a span with a duration on a run.  If the span is one of the
+     * terminal ones, the run's summary gets logged, too.
+     *
+     * @param context a Context
+     * @param traceId the trace ID (nothing happens if negative)
+     * @param name the span name
+     * @param start when the span started, in millis
+     * @param end when the span ended, in millis
+     */
+    public static void span(@NonNull Context context,
+                            long traceId,
+                            @NonNull String name,
+                            long start,
+                            long end) {
+        if(traceId < 0) return;
+
+        Run finished = null;
+
+        synchronized(sLock) {
+            List<Run> runs = load(context);
+            Run run = findRun(runs, traceId);
+
+            if(run == null) {
+                // It must've aged out, or the trace got cleared in the
+                // meantime.  Not a big deal.
+                LogGate.d(DEBUG_TAG, "No trace %s to mark %s on", traceId, name);
+                return;
+            }
+
+            run.spans.add(new Span(name, start, Math.max(0, end - start)));
+            save(context, runs);
+
+            if(run.isFinished()) finished = run;
+        }
+
+        if(finished != null && LogGate.isLoggable(Log.DEBUG))
+            LogGate.d(DEBUG_TAG, finished.getTimeline());
+    }
+
+    /**
+     * Gets a specific run.
+     *
+     * @param context a Context
+     * @param traceId the trace ID
+     * @return the run, or null if it isn't around
+     */
+    @Nullable
+    public static Run getRun(@NonNull Context context, long traceId) {
+        synchronized(sLock) {
+            return findRun(load(context), traceId);
+        }
+    }
+
+    /**
+     * Gets every run still on record, oldest first.
+     *
+     * @param context a Context
+     * @return all the runs
+     */
+    @NonNull
+    public static List<Run> getRuns(@NonNull Context context) {
+        synchronized(sLock) {
+            return Collections.unmodifiableList(load(context));
+        }
+    }
+
+    /**
+     * Throws out every run on record.
+     *
+     * @param context a Context
+     */
+    public static void clear(@NonNull Context context) {
+        synchronized(sLock) {
+            getPrefs(context).edit().remove(PREF_RUNS).apply();
+        }
+    }
+
+    @Nullable
+    private static Run findRun(@NonNull List<Run> runs, long traceId) {
+        // Most recent first, since that's almost always the one we want.
+        for(int i = runs.size() - 1; i >= 0; i--) {
+            if(runs.get(i).id == traceId) return runs.get(i);
+        }
+        return null;
+    }
+
+    @NonNull
+    private static SharedPreferences getPrefs(@NonNull Context context) {
+        return context.getSharedPreferences(PREFS_FILE, Context.MODE_PRIVATE);
+    }
+
+    @NonNull
+    private static List<Run> load(@NonNull Context context) {
+        List<Run> toReturn = new ArrayList<>();
+
+        try {
+            JSONArray arr = new JSONArray(getPrefs(context).getString(PREF_RUNS, "[]"));
+
+            for(int i = 0; i < arr.length(); i++) {
+                JSONObject obj = arr.getJSONObject(i);
+                Run run = new Run(obj.getLong(JSON_ID), obj.getString(JSON_LABEL));
+
+                JSONArray spans = obj.getJSONArray(JSON_SPANS);
+                for(int j = 0; j < spans.length(); j++) {
+                    JSONObject span = spans.getJSONObject(j);
+                    run.spans.add(new Span(span.getString(JSON_NAME),
+                            span.getLong(JSON_START),
+                            span.getLong(JSON_DURATION)));
+                }
+
+                toReturn.add(run);
+            }
+        } catch(JSONException je) {
+            Log.e(DEBUG_TAG, "Couldn't parse the alarm traces, starting over!", je);
+            toReturn.clear();
+        }
+
+        return toReturn;
+    }
+
+    private static void save(@NonNull Context context, @NonNull List<Run> runs) {
+        JSONArray arr = new JSONArray();
+
+        try {
+            for(Run run : runs) {
+                JSONObject obj = new JSONObject();
+                obj.put(JSON_ID, run.id);
+                obj.put(JSON_LABEL, run.label);
+
+                JSONArray spans = new JSONArray();
+                for(Span s : run.spans) {
+                    JSONObject span = new JSONObject();
+                    span.put(JSON_NAME, s.name);
+                    span.put(JSON_START, s.start);
+                    span.put(JSON_DURATION, s.duration);
+                    spans.put(span);
+                }
+                obj.put(JSON_SPANS, spans);
+
+                arr.put(obj);
+            }
+        } catch(JSONException je) {
+            Log.e(DEBUG_TAG, "Couldn't serialize the alarm traces?", je);
+            return;
+        }
+
+        // apply(), not commit().  This gets called from onReceive, and a
+        // disk write there is exactly the sort of thing that makes the alarm
+        // late.  The in-memory prefs update right away, so the next hop in
+        // this process sees it, and Android flushes anything still pending
+        // before it considers the receiver (or a Service) finished.
+        getPrefs(context).edit().putString(PREF_RUNS, arr.toString()).apply();
+    }
+}
@@ -22,6 +22,8 @@ import android.os.Bundle;
 import android.os.Parcelable;
 import android.util.Log;
 
+import com.google.android.gms.maps.model.LatLng;
+
 import net.exclaimindustries.geohashdroid.R;
 import net.exclaimindustries.geohashdroid.activities.CentralMap;
 import net.exclaimindustries.geohashdroid.util.GHDConstants;
@@ -29,16 +31,21 @@ import net.exclaimindustries.geohashdroid.util.Graticule;
 import net.exclaimindustries.geohashdroid.util.HashBuilder;
 import net.exclaimindustries.geohashdroid.util.Info;
 import net.exclaimindustries.geohashdroid.util.KnownLocation;
+import net.exclaimindustries.geohashdroid.util.KnownLocationStore;
+import net.exclaimindustries.geohashdroid.util.KnownLocationSweep;
+import net.exclaimindustries.geohashdroid.util.StockPostingHistory;
 import net.exclaimindustries.geohashdroid.util.UnitConverter;
 import net.exclaimindustries.tools.DateTools;
 
 import java.text.DateFormat;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.TimeZone;
 
 import androidx.annotation.IdRes;
@@ -100,8 +107,11 @@ public class AlarmWorker
      * meaning the single-shot alarm would cancel the first one.
      * <p>
      * Do note, this intent should NOT be scheduled to be repeating.
+     * <p>
+     * This is package-private so the replay harness can kick off a run
+     * without also rescheduling the real alarm.
      */
-    private static final String STOCK_ALARM_RETRY = "net.exclaimindustries.geohashdroid.STOCK_ALARM_RETRY";
+    static final String STOCK_ALARM_RETRY = "net.exclaimindustries.geohashdroid.STOCK_ALARM_RETRY";
 
     /**
      * Intent sent when the network's come back up.  This tells the service to
@@ -142,11 +152,29 @@ public class AlarmWorker
      */
     private static final String DATA_STOCK_RESPONSE = "stockResponse";
     /**
-     * Data key for whether or not the Graticule that came in from a response
-     * from StockWorker is a 30W Graticule (which, in turn, tells whether or not
-     * AlarmWorker needs to do make another request).
+     * Data key for whether or not the Graticule that came in from a single
+     * (non-batch) response from StockWorker is a 30W Graticule (which, in
+     * turn, tells whether or not AlarmWorker needs to do make another
+     * request).
      */
     private static final String DATA_IS_30W = "is30w";
+    /**
+     * Data key for the (adjusted) stock date of a fresh result from
+     * StockWorker, in millis.  Only present if the stock actually came off the
+     * web rather than out of the cache, since that's the only time it tells us
+     * anything about when stocks get posted.
+     */
+    private static final String DATA_FRESH_STOCK_DATE = "freshStockDate";
+    /**
+     * Data key for the {@link AlarmTrace} ID this work belongs to, or -1 if
+     * it isn't part of a traced run.
+     */
+    private static final String DATA_TRACE_ID = "traceId";
+    /**
+     * Data key for when this work was enqueued, in millis, so we can tell how
+     * long it sat around waiting for WorkManager.
+     */
+    private static final String DATA_ENQUEUED_AT = "enqueuedAt";
 
     /**
      * Notification group for all non-globalhash notifications, if the user has
@@ -175,6 +203,8 @@ public class AlarmWorker
             // send out the Intent that says we're back.
             Intent i = new Intent(getApplicationContext(), AlarmWorker.class);
             i.setAction(STOCK_ALARM_NETWORK_BACK);
+            i.putExtra(AlarmTrace.EXTRA_TRACE_ID,
+                    AlarmTrace.begin(getApplicationContext(), STOCK_ALARM_NETWORK_BACK));
             AlarmWorker.enqueueWork(getApplicationContext(), i);
 
             // Aaaaand success.
@@ -195,6 +225,12 @@ public class AlarmWorker
             // of whatever we need handled.
             Intent i = new Intent(context, AlarmWorker.class);
             i.setAction(intent.getAction());
+
+            // Every alarm starts a fresh trace.
+            String action = intent.getAction();
+            if(action != null)
+                i.putExtra(AlarmTrace.EXTRA_TRACE_ID, AlarmTrace.begin(context, action));
+
             enqueueWork(context, i);
         }
     }
@@ -218,6 +254,11 @@ public class AlarmWorker
             if((flags & StockWorker.FLAG_ALARM) != 0) {
                 Log.d(DEBUG_TAG, "StockService returned with an alarming response!");
 
+                // The request ID on alarm requests is the trace ID.
+                AlarmTrace.mark(context,
+                        stuff.getLong(StockWorker.EXTRA_REQUEST_ID, -1L),
+                        AlarmTrace.SPAN_RESULT_RECEIVED);
+
                 // It's ours!  Send it to the wakeful part!
                 intent.setClass(context, AlarmWorker.class);
                 enqueueWork(context, intent);
@@ -349,9 +390,20 @@ public class AlarmWorker
         NotificationManagerCompat.from(context).cancel(R.id.alarm_notification);
     }
 
-    private static void snooze(@NonNull Context context) {
+    private static void snooze(@NonNull Context context,
+                               long traceId,
+                               boolean networkError) {
+        // How long we wait depends on how many times we've already been
+        // turned away today, and on how predictable the posting time has been
+        // historically.  StockPostingHistory works all that out.
         Calendar cal = Calendar.getInstance();
-        cal.add(Calendar.MINUTE, 30);
+        int failures = StockPostingHistory.recordMiss(context, cal, networkError);
+        long delay = StockPostingHistory.getRetryDelay(context, cal, failures, new Random());
+        cal.setTimeInMillis(cal.getTimeInMillis() + delay);
+
+        Log.d(DEBUG_TAG, "Failure #" + failures + " today, retrying in "
+                + (delay / 1000) + " seconds (" + cal.getTime() + ")");
+        AlarmTrace.mark(context, traceId, AlarmTrace.SPAN_SNOOZED);
 
         Intent alarmIntent = new Intent(context, StockAlarmReceiver.class);
         alarmIntent.setAction(STOCK_ALARM_RETRY);
@@ -371,13 +423,15 @@ public class AlarmWorker
 
     /**
      * <p>
-     * Sets up the next stock alarm (9:30am ET).  We need to do this rather than
+     * Sets up the next stock alarm (usually just after the stock tends to get
+     * posted, see {@link StockPostingHistory}).  We need to do this rather than
      * use setRepeating because Doze ruined that for us.
      * </p>
      *
      * <p>
      * This is a convenience method to always pass false to {@link #setNextAlarm(Context, boolean)}.
-     * That is, this may set an alarm for later today if it isn't 9:30am ET yet.
+     * That is, this may set an alarm for later today if the time hasn't come
+     * yet.
      * </p>
      *
      * @param context a Context
@@ -388,26 +442,28 @@ public class AlarmWorker
     }
 
     /**
-     * Sets up the next stock alarm (9:30am ET).  We need to do this rather than
+     * Sets up the next stock alarm (usually just after the stock tends to get
+     * posted, see {@link StockPostingHistory}).  We need to do this rather than
      * use setRepeating because Doze ruined that for us.
      *
      * @param context            a Context
-     * @param definitelyTomorrow true to always set the alarm for tomorrow, even if it's before 9:30am ET
+     * @param definitelyTomorrow true to always set the alarm for tomorrow, even if today's time hasn't come yet
      */
     private static void setNextAlarm(@NonNull Context context,
                                      boolean definitelyTomorrow) {
-        // We're aiming at 9:30am ET (with any applicable DST adjustments).  The
-        // NYSE opens at 9:00am ET, but in the interests of possible clock
-        // discrepancies and such (not to mention any delays in the stock
-        // reporting sites being updated), we'll wait the extra half hour.  The
-        // alarm should be the NEXT available 9:30am ET.  If the user wants to
-        // take a chance and get a stock value closer to 9:00am ET than that,
-        // well, they can do it themselves.
+        // We used to aim squarely at 9:30am ET every day.  Now, we aim just
+        // after whenever the stock has usually shown up on that weekday,
+        // falling back to 9:30am ET if we haven't seen enough mornings yet.
+        // It's never earlier than 9:30am ET, since the NYSE has to actually
+        // open first.  Note that tomorrow might be a different weekday with a
+        // different usual time, so that gets worked out fresh.
         Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("America/New_York"));
-        Calendar alarmTime = makeNineThirty(cal);
+        Calendar alarmTime = StockPostingHistory.getFirstAttemptTime(context, cal);
 
         if(definitelyTomorrow || alarmTime.before(cal)) {
-            alarmTime.add(Calendar.DAY_OF_MONTH, 1);
+            Calendar tomorrow = (Calendar) cal.clone();
+            tomorrow.add(Calendar.DAY_OF_MONTH, 1);
+            alarmTime = StockPostingHistory.getFirstAttemptTime(context, tomorrow);
         }
 
         Intent alarmIntent = new Intent(STOCK_ALARM);
@@ -426,44 +482,42 @@ public class AlarmWorker
                         Build.VERSION.SDK_INT >= Build.VERSION_CODES.M ? PendingIntent.FLAG_IMMUTABLE : 0));
     }
 
-    private static void sendRequest(@NonNull Context context,
-                                    @NonNull Graticule g) {
-        // The Graticule will be one of the dummies, as all we really care about
-        // is if it's 30W or not.  And we don't really care about it THAT much,
-        // just enough to put the right string in the notification.  Otherwise,
-        // StockService works it out.
-        Calendar cal = Calendar.getInstance();
-
-        // However, if it IS 30W, we want to generate a stock cache value for
-        // TOMORROW, as the 30W Rule allows us to know what tomorrow's hash is,
-        // and we WANT that owing to when it triggers.
-        if(g.uses30WRule()) cal.add(Calendar.DATE, 1);
-        cal = getMostRecentStockDate(cal);
-
-        Intent request = new Intent(context, StockWorker.class);
-        request.setAction(StockWorker.ACTION_STOCK_REQUEST)
-                .putExtra(StockWorker.EXTRA_GRATICULE, g)
-                .putExtra(StockWorker.EXTRA_DATE, cal)
-                .putExtra(StockWorker.EXTRA_REQUEST_ID, cal.getTimeInMillis() / 1000)
-                .putExtra(StockWorker.EXTRA_REQUEST_FLAGS, StockWorker.FLAG_ALARM)
-                .putExtra(StockWorker.EXTRA_RESPOND_TO, StockReceiver.class);
-
-        // The notification goes up first, if need be.
-        if(HashBuilder.getStoredStock(context, cal) != null) {
+    private static void sendRequests(@NonNull Context context, long traceId) {
+        // Both the 30W and non-30W hashes go in one batch.  The Graticules are
+        // just the dummies, as all we really care about is which side of 30W
+        // they're on.  StockWorker works out the rest.
+        Calendar cal = getMostRecentStockDate(Calendar.getInstance());
+
+        // However, for the 30W one, we want to generate a stock cache value
+        // for TOMORROW, as the 30W Rule allows us to know what tomorrow's hash
+        // is, and we WANT that owing to when it triggers.
+        Calendar cal30w = Calendar.getInstance();
+        cal30w.add(Calendar.DATE, 1);
+        cal30w = getMostRecentStockDate(cal30w);
+
+        // The notification goes up first, if need be.  The 30W one is the one
+        // that needs the newest stock, so that's the one to check.
+        if(HashBuilder.getStoredStock(context, cal30w) != null) {
             // Hold up, we've already got a stock for that.  Don't throw up the
-            // notification; StockService will send the Intent immediately.
+            // notification; StockWorker will send the Intent immediately.
             Log.d(DEBUG_TAG, "Stock is already cached for "
-                    + DateTools.getHyphenatedDateString(cal)
+                    + DateTools.getHyphenatedDateString(cal30w)
                     + ", ignoring the notification...");
         } else {
             Log.d(DEBUG_TAG, "Notification going up for a fetch on "
-                    + DateTools.getHyphenatedDateString(cal)
+                    + DateTools.getHyphenatedDateString(cal30w)
                     + "...");
-            showNotification(context, Info.makeAdjustedCalendar(cal, g));
+            showNotification(context, Info.makeAdjustedCalendar(cal30w, GHDConstants.DUMMY_YESTERDAY));
         }
 
         // THEN we send the request.
-        StockWorker.enqueueWork(context, request);
+        AlarmTrace.mark(context, traceId, AlarmTrace.SPAN_STOCK_REQUESTED);
+        StockWorker.enqueueBatchWork(context,
+                traceId >= 0 ? traceId : cal.getTimeInMillis() / 1000,
+                StockWorker.FLAG_ALARM,
+                Arrays.asList(GHDConstants.DUMMY_YESTERDAY, GHDConstants.DUMMY_TODAY),
+                Arrays.asList(cal30w, cal),
+                StockReceiver.class);
     }
 
     public AlarmWorker(Context appContext, WorkerParameters workerParams) {
@@ -482,12 +536,58 @@ public class AlarmWorker
         Bundle stuff = work.getBundleExtra(StockWorker.EXTRA_STUFF);
         boolean is30w = false;
         int response = StockWorker.RESPONSE_OKAY;
+        long freshStockDate = -1L;
+        long traceId = work.getLongExtra(AlarmTrace.EXTRA_TRACE_ID, -1L);
         if(stuff != null) {
+            // Results from StockWorker carry the trace ID as the request ID.
+            traceId = stuff.getLong(StockWorker.EXTRA_REQUEST_ID, -1L);
+
             stuff.setClassLoader(context.getClassLoader());
-            response = stuff.getInt(StockWorker.EXTRA_RESPONSE_CODE, StockWorker.RESPONSE_NETWORK_ERROR);
-            Parcelable p = stuff.getParcelable(StockWorker.EXTRA_GRATICULE);
-            if(p instanceof Graticule) {
-                is30w = ((Graticule) p).uses30WRule();
+            boolean fresh = (stuff.getInt(StockWorker.EXTRA_RESPONSE_FLAGS, 0) & StockWorker.FLAG_CACHED) == 0;
+
+            if(StockWorker.ACTION_STOCK_BATCH_RESULT.equals(work.getAction())) {
+                // A batch is only as good as its worst entry.  Whichever one
+                // failed first decides what we do next.
+                int[] codes = stuff.getIntArray(StockWorker.EXTRA_BATCH_RESPONSE_CODES);
+                Parcelable[] graticules = stuff.getParcelableArray(StockWorker.EXTRA_BATCH_GRATICULES);
+                long[] dates = stuff.getLongArray(StockWorker.EXTRA_BATCH_DATES);
+
+                if(codes == null || codes.length == 0) {
+                    response = StockWorker.RESPONSE_NETWORK_ERROR;
+                } else {
+                    for(int code : codes) {
+                        if(code != StockWorker.RESPONSE_OKAY) {
+                            response = code;
+                            break;
+                        }
+                    }
+                }
+
+                // Every entry in the alarm's batch is the same stock, so the
+                // first one's date is as good as any for the posting history.
+                if(response == StockWorker.RESPONSE_OKAY && fresh
+                        && dates != null && dates.length > 0
+                        && graticules != null && graticules.length > 0) {
+                    Calendar date = Calendar.getInstance();
+                    date.setTimeInMillis(dates[0]);
+                    Graticule g = graticules[0] instanceof Graticule ? (Graticule) graticules[0] : null;
+                    freshStockDate = Info.makeAdjustedCalendar(date, g).getTimeInMillis();
+                }
+            } else {
+                response = stuff.getInt(StockWorker.EXTRA_RESPONSE_CODE, StockWorker.RESPONSE_NETWORK_ERROR);
+                Parcelable p = stuff.getParcelable(StockWorker.EXTRA_GRATICULE);
+                Graticule g = null;
+                if(p instanceof Graticule) {
+                    g = (Graticule) p;
+                    is30w = g.uses30WRule();
+                }
+
+                // If this was a stock straight off the web, hang on to which
+                // date it was for.  That'll go in the posting history.
+                Object date = stuff.getSerializable(StockWorker.EXTRA_DATE);
+                if(response == StockWorker.RESPONSE_OKAY && fresh && date instanceof Calendar) {
+                    freshStockDate = Info.makeAdjustedCalendar((Calendar) date, g).getTimeInMillis();
+                }
             }
         }
 
@@ -497,6 +597,9 @@ public class AlarmWorker
                                 .putString(DATA_ACTION, work.getAction())
                                 .putBoolean(DATA_IS_30W, is30w)
                                 .putInt(DATA_STOCK_RESPONSE, response)
+                                .putLong(DATA_FRESH_STOCK_DATE, freshStockDate)
+                                .putLong(DATA_TRACE_ID, traceId)
+                                .putLong(DATA_ENQUEUED_AT, System.currentTimeMillis())
                                 .build())
                         .build());
     }
@@ -516,6 +619,12 @@ public class AlarmWorker
         // CONTEXT!
         Context context = getApplicationContext();
 
+        // TRACE!
+        long traceId = data.getLong(DATA_TRACE_ID, -1L);
+        AlarmTrace.span(context, traceId, AlarmTrace.SPAN_ALARM_QUEUE,
+                data.getLong(DATA_ENQUEUED_AT, System.currentTimeMillis()),
+                System.currentTimeMillis());
+
         // ALARM MANAGER!
         AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
 
@@ -553,6 +662,7 @@ public class AlarmWorker
             case STOCK_ALARM_RETRY:
             case STOCK_ALARM_NETWORK_BACK:
             case StockWorker.ACTION_STOCK_RESULT:
+            case StockWorker.ACTION_STOCK_BATCH_RESULT:
                 // Aha!  NOW we've got something!
                 Log.d(DEBUG_TAG, "AlarmWorker has business to attend to!");
 
@@ -588,7 +698,8 @@ public class AlarmWorker
                 // used to take care of.  It'll also tell us if the stock hasn't
                 // been posted just yet.  So, we can count on that for error
                 // checking.
-                if(action.equals(StockWorker.ACTION_STOCK_RESULT)) {
+                if(action.equals(StockWorker.ACTION_STOCK_RESULT)
+                        || action.equals(StockWorker.ACTION_STOCK_BATCH_RESULT)) {
                     Log.d(DEBUG_TAG, "Just got a stock result!");
 
                     int result = data.getInt(DATA_STOCK_RESPONSE,
@@ -601,48 +712,64 @@ public class AlarmWorker
                         Log.d(DEBUG_TAG, "No network connection available, waiting until we get one...");
 
                         waitForNetwork(context);
+                        AlarmTrace.mark(context, traceId, AlarmTrace.SPAN_WAITING_FOR_NETWORK);
 
                         clearNotification(context);
                     } else if(result == StockWorker.RESPONSE_NOT_POSTED_YET) {
                         // Not posted yet means we hit the snooze and try again
-                        // in a half hour or so.  Good night!
-                        Log.d(DEBUG_TAG, "Stock wasn't posted yet, snoozing for a half hour...");
-                        snooze(context);
+                        // in a bit.  Good night!
+                        Log.d(DEBUG_TAG, "Stock wasn't posted yet, snoozing...");
+                        snooze(context, traceId, false);
                         clearNotification(context);
                     } else if(result == StockWorker.RESPONSE_NETWORK_ERROR) {
                         // A network error that ISN'T "no connection" is usually
                         // really bad.  But, with Doze in effect, that might
                         // mean something weird with how it denies us network
                         // access, so let's just snooze for now.
-                        Log.w(DEBUG_TAG, "Network reported an error, snoozing for a half hour...");
-                        snooze(context);
+                        Log.w(DEBUG_TAG, "Network reported an error, snoozing...");
+                        snooze(context, traceId, true);
                         clearNotification(context);
                     } else if(result == StockWorker.RESPONSE_OKAY) {
+                        // If that one came fresh off the web, write down when
+                        // it showed up.  That's what tunes the alarm times.
+                        long freshStockDate = data.getLong(DATA_FRESH_STOCK_DATE, -1L);
+                        if(freshStockDate >= 0) {
+                            Calendar stockDate = Calendar.getInstance();
+                            stockDate.setTimeInMillis(freshStockDate);
+                            StockPostingHistory.recordPosted(context, Calendar.getInstance(), stockDate);
+                        }
+
                         // An okay response means the Graticule IS good.  If
                         // not, fix StockService.
                         if(is30w) {
-                            // If the response we just checked for was a 30W one
-                            // and it came back okay, then we fire off a check
-                            // for the non-30W one.
-                            Log.d(DEBUG_TAG, "That was the 30W response, going up to non-30W...");
-                            sendRequest(context, GHDConstants.DUMMY_TODAY);
+                            // A lone 30W result can only be from a request
+                            // made before the alarm started batching (that is,
+                            // an update landed mid-run).  The non-30W one
+                            // still needs doing, so just send the batch; the
+                            // 30W half of it will come right out of the cache.
+                            Log.d(DEBUG_TAG, "That was a lone 30W response, sending the batch...");
+                            sendRequests(context, traceId);
                         } else {
-                            // If, however, we got the non-30W back, then our
-                            // job is done!  Yay!
-                            Log.d(DEBUG_TAG, "The 30W response!  We're done!");
+                            // If, however, we got both back, then our job is
+                            // done!  Yay!
+                            Log.d(DEBUG_TAG, "Both responses are in!  We're done!");
                             clearNotification(context);
 
                             // And since it's done, we can go off to the part
                             // where we deal with KnownLocations!
+                            long sweepStart = System.currentTimeMillis();
                             doKnownLocations(context);
+                            AlarmTrace.span(context, traceId, AlarmTrace.SPAN_SWEEP,
+                                    sweepStart, System.currentTimeMillis());
+                            AlarmTrace.mark(context, traceId, AlarmTrace.SPAN_DONE);
                         }
                     }
                 } else {
                     // If it's NOT a result, that means we're starting a new
-                    // check at a 30W hash for some reason.  Doesn't matter what
-                    // reason.  We just need to do it.
-                    Log.d(DEBUG_TAG, "That wasn't a result, so asking for a 30W...");
-                    sendRequest(context, GHDConstants.DUMMY_YESTERDAY);
+                    // check for some reason.  Doesn't matter what reason.  We
+                    // just need to do it.
+                    Log.d(DEBUG_TAG, "That wasn't a result, so asking for both hashes...");
+                    sendRequests(context, traceId);
                 }
                 break;
             default:
@@ -719,33 +846,36 @@ public class AlarmWorker
         tomorrow.add(Calendar.DATE, 1);
 
         Info global = HashBuilder.getStoredInfo(context, today, null);
+        LatLng globalLatLng = global != null ? global.getFinalDestinationLatLng() : null;
 
-        for(KnownLocation kl : locations) {
-            // Every KnownLocation has a method to do this.  Maybe it's a wee
-            // bit inefficient and inelegant, but it does the job.
-            Info best;
-
-            try {
-                best = kl.getClosestInfo(context, (kl.is30w() ? tomorrow : today));
-            } catch(IllegalArgumentException iae) {
-                // This shouldn't happen under normal operation, but if this is
-                // the debug build and the party alarm's been triggered,
-                // makeNineThirty might refer to tomorrow (i.e. if the time zone
-                // is anywhere west of EST/EDT), which may not have a valid
-                // stock yet.  In that case, silently drop it and continue
-                // onward.  Chances are we'll skip all the known locations past
-                // this one anyway.
-                continue;
-            }
+        // The sweep works out every KnownLocation's closest Info in one go,
+        // sharing hashpoints between KnownLocations in the same or nearby
+        // Graticules.
+        Info[] closest = new KnownLocationSweep(context, today, tomorrow).findClosestInfos(locations);
+
+        for(int i = 0; i < locations.size(); i++) {
+            KnownLocation kl = locations.get(i);
+            Info best = closest[i];
+
+            // This shouldn't happen under normal operation, but if this is the
+            // debug build and the party alarm's been triggered, makeNineThirty
+            // might refer to tomorrow (i.e. if the time zone is anywhere west
+            // of EST/EDT), which may not have a valid stock yet.  In that
+            // case, silently drop it and continue onward.
+            if(best == null) continue;
 
             if(kl.isCloseEnough(best.getFinalDestinationLatLng())) {
                 KnownLocationMatchData data = new KnownLocationMatchData(kl, best, kl.getDistanceFrom(best));
                 matched.add(data);
             }
+        }
 
-            // The Globalhash will be handled as a separate notification,
-            // because frankly, that's sort of special.
-            if(global != null && kl.isCloseEnoughForGlobalhash(global.getFinalDestinationLatLng())) {
+        // The Globalhash will be handled as a separate notification, because
+        // frankly, that's sort of special.  It's also just the one point, so
+        // the spatial index can tell us who's in range without asking every
+        // single KnownLocation.
+        if(global != null) {
+            for(KnownLocation kl : KnownLocationStore.getInstance(context).getIndex().findInGlobalhashRange(globalLatLng)) {
                 KnownLocationMatchData data = new KnownLocationMatchData(kl, global, kl.getDistanceFrom(global));
                 matchedGlobal.add(data);
             }
@@ -0,0 +1,132 @@
+/*
+ * StockResult.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.geohashdroid.services;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import net.exclaimindustries.geohashdroid.util.Graticule;
+import net.exclaimindustries.geohashdroid.util.Info;
+
+import java.util.Calendar;
+
+/**
+ * A StockResult is everything a {@link StockWorker#ACTION_STOCK_RESULT}
+ * broadcast would carry, just as plain old objects.  This is what gets handed
+ * around by {@link StockResultBus} when the thing waiting for a stock is in
+ * the same process as StockWorker, which means nobody has to parcel or
+ * serialize anything.
+ */
+public class StockResult {
+    private final long mRequestId;
+    private final int mRequestFlags;
+    private final int mResponseFlags;
+    private final int mResponseCode;
+    private final Calendar mDate;
+    private final Graticule mGraticule;
+    private final Info mInfo;
+    private final Info[] mNearby;
+
+    StockResult(long requestId,
+                int requestFlags,
+                int responseFlags,
+                int responseCode,
+                @NonNull Calendar date,
+                @Nullable Graticule graticule,
+                @Nullable Info info,
+                @Nullable Info[] nearby) {
+        mRequestId = requestId;
+        mRequestFlags = requestFlags;
+        mResponseFlags = responseFlags;
+        mResponseCode = responseCode;
+        mDate = date;
+        mGraticule = graticule;
+        mInfo = info;
+        mNearby = nearby;
+    }
+
+    /**
+     * Gets the request ID, as per {@link StockWorker#EXTRA_REQUEST_ID}.
+     *
+     * @return the request ID
+     */
+    public long getRequestId() {
+        return mRequestId;
+    }
+
+    /**
+     * Gets the request flags, as per {@link StockWorker#EXTRA_REQUEST_FLAGS}.
+     *
+     * @return the request flags
+     */
+    public int getRequestFlags() {
+        return mRequestFlags;
+    }
+
+    /**
+     * Gets the response flags, as per {@link StockWorker#EXTRA_RESPONSE_FLAGS}.
+     *
+     * @return the response flags
+     */
+    public int getResponseFlags() {
+        return mResponseFlags;
+    }
+
+    /**
+     * Gets the response code.  This'll be one of the RESPONSE_* constants in
+     * {@link StockWorker}.
+     *
+     * @return the response code
+     */
+    public int getResponseCode() {
+        return mResponseCode;
+    }
+
+    /**
+     * Gets the date that was requested.
+     *
+     * @return the date
+     */
+    @NonNull
+    public Calendar getDate() {
+        return mDate;
+    }
+
+    /**
+     * Gets the Graticule that was requested.
+     *
+     * @return the Graticule, or null if this was a Globalhash
+     */
+    @Nullable
+    public Graticule getGraticule() {
+        return mGraticule;
+    }
+
+    /**
+     * Gets the Info that came back.
+     *
+     * @return the Info, or null if the response code wasn't
+     *         {@link StockWorker#RESPONSE_OKAY}
+     */
+    @Nullable
+    public Info getInfo() {
+        return mInfo;
+    }
+
+    /**
+     * Gets the nearby points, if {@link StockWorker#FLAG_INCLUDE_NEARBY_POINTS}
+     * was in the request.
+     *
+     * @return the nearby points, or null if there weren't any
+     */
+    @Nullable
+    public Info[] getNearbyPoints() {
+        return mNearby;
+    }
+}
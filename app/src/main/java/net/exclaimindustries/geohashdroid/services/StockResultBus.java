@@ -0,0 +1,121 @@
+/*
+ * StockResultBus.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.geohashdroid.services;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * <p>
+ * StockResultBus is how {@link StockWorker} talks to anything in the same
+ * process that's waiting on a stock.  You subscribe with the request ID you
+ * gave StockWorker, and when that request finishes, your
+ * {@link Listener} gets a {@link StockResult} on the main thread.  No
+ * Intents, no Bundles, no Parcels.
+ * </p>
+ *
+ * <p>
+ * Subscriptions are one-shot: once a result for an ID is delivered, that ID
+ * is forgotten.  If nobody's subscribed to an ID when its result comes in,
+ * StockWorker falls back to the usual broadcast.  Anything that explicitly
+ * asked for a broadcast with {@link StockWorker#EXTRA_RESPOND_TO} (that is,
+ * the manifest receivers, which might be waking up a fresh process) always
+ * gets a broadcast and never goes through here.
+ * </p>
+ */
+public final class StockResultBus {
+    /**
+     * Implement this to get StockResults.
+     */
+    public interface Listener {
+        /**
+         * Called on the main thread when a result comes in for a request ID
+         * this Listener subscribed to.
+         *
+         * @param result the result
+         */
+        void onStockResult(@NonNull StockResult result);
+    }
+
+    private static final Map<Long, Listener> sRoutes = new HashMap<>();
+    private static Handler sMainHandler;
+
+    private StockResultBus() { }
+
+    /**
+     * Subscribes a Listener to a request ID.  Only one Listener can be waiting
+     * on any given ID; a later subscription replaces an earlier one.
+     *
+     * @param requestId the request ID, as given to StockWorker
+     * @param listener who to tell
+     */
+    public static void subscribe(long requestId, @NonNull Listener listener) {
+        synchronized(sRoutes) {
+            sRoutes.put(requestId, listener);
+        }
+    }
+
+    /**
+     * Unsubscribes a Listener from every request ID it was waiting on.  Any
+     * result that was already on its way to the main thread won't be
+     * delivered, either.
+     *
+     * @param listener the Listener to remove
+     */
+    public static void unsubscribeAll(@NonNull Listener listener) {
+        synchronized(sRoutes) {
+            Iterator<Listener> it = sRoutes.values().iterator();
+            while(it.hasNext()) {
+                if(it.next() == listener) it.remove();
+            }
+        }
+    }
+
+    /**
+     * Hands a result off to whoever's subscribed to its request ID, if
+     * anyone.  This can be called from any thread; delivery happens on the
+     * main thread.
+     *
+     * @param result the result to deliver
+     * @return true if someone was subscribed, false if the caller should fall
+     *         back to some other means of delivery
+     */
+    static boolean publish(@NonNull final StockResult result) {
+        final long id = result.getRequestId();
+
+        synchronized(sRoutes) {
+            if(!sRoutes.containsKey(id)) return false;
+
+            if(sMainHandler == null)
+                sMainHandler = new Handler(Looper.getMainLooper());
+        }
+
+        sMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                // Look it up again now that we're on the main thread.  If the
+                // Listener unsubscribed in the meantime, it doesn't get it.
+                Listener listener;
+                synchronized(sRoutes) {
+                    listener = sRoutes.remove(id);
+                }
+
+                if(listener != null) listener.onStockResult(result);
+            }
+        });
+
+        return true;
+    }
+}
@@ -26,11 +26,14 @@ import net.exclaimindustries.geohashdroid.util.HashBuilder;
 import net.exclaimindustries.geohashdroid.util.HashBuilder.StockRunner;
 import net.exclaimindustries.geohashdroid.util.Info;
 import net.exclaimindustries.tools.AndroidUtil;
+import net.exclaimindustries.tools.DateTools;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.LinkedList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * <p>
@@ -44,6 +47,11 @@ import java.util.List;
  * the way the second generation did, so it takes the same Intent as before and
  * converts it into Worker-related stuff.  Still broadcasts at the end, though.
  * </p>
+ *
+ * <p>
+ * Well, usually.  If whoever made the request subscribed to its request ID on
+ * {@link StockResultBus}, the result goes there instead, no broadcast needed.
+ * </p>
  * 
  * @author Nicholas Killewald
  */
@@ -139,11 +147,36 @@ public class StockWorker extends Worker {
     /**
      * Key for nearby points, if {@link #FLAG_INCLUDE_NEARBY_POINTS} was
      * specified.  This will be an array of Info objects.  The order of the
-     * array is arbitrary.  There will usually be eight elements in it, though
-     * there may be fewer if the request is either at the poles or in rare
-     * 30W-related cases.
+     * array is arbitrary.  There will usually be eight elements in it (or more,
+     * if {@link #EXTRA_NEARBY_RADIUS} was bigger than 1), though there may be
+     * fewer if the request is either at the poles or in rare 30W-related
+     * cases.
      */
     public static final String EXTRA_NEARBY_POINTS = "net.exclaimindustries.geohashdroid.EXTRA_NEARBY_POINTS";
+    /**
+     * Key for how far out the nearby points go, if
+     * {@link #FLAG_INCLUDE_NEARBY_POINTS} was specified.  This is an int
+     * radius in graticules; 1 (the default) is the usual 3x3 ring, 2 is 5x5,
+     * and so on, up to {@link #MAX_NEARBY_RADIUS}.
+     */
+    public static final String EXTRA_NEARBY_RADIUS = "net.exclaimindustries.geohashdroid.EXTRA_NEARBY_RADIUS";
+
+    /**
+     * The biggest radius {@link #EXTRA_NEARBY_RADIUS} can be.  The points
+     * themselves are cheap to compute at any size, and CentralMap gets them
+     * over {@link StockResultBus}, so nothing gets parceled.  What runs out is
+     * the map: 25 makes for a 51x51 grid, or about 2,600 markers, which is
+     * most of a continent at mid-latitudes and about as many as Google Maps
+     * will pan around without stuttering on a middling phone.
+     */
+    public static final int MAX_NEARBY_RADIUS = 25;
+
+    /**
+     * The most nearby points that'll go out in a broadcast.  Unlike the bus,
+     * those DO have to fit through Binder, which gets cranky past a few
+     * hundred KB.  This is a 31x31 grid's worth.
+     */
+    private static final int MAX_BROADCAST_NEARBY_POINTS = 960;
     /**
      * <p>
      * Key for the class to which this request should respond.  As per Oreo,
@@ -172,6 +205,72 @@ public class StockWorker extends Worker {
      */
     public static final String EXTRA_RESPOND_TO = "net.exclaimindustries.geohashdroid.EXTRA_RESPOND_TO";
 
+    /**
+     * <p>
+     * Action that gets broadcast when StockWorker finishes a batch request
+     * (see {@link #enqueueBatchWork(Context, long, int, List, List, Class)}).
+     * Like {@link #ACTION_STOCK_RESULT}, everything's in a Bundle under
+     * {@link #EXTRA_STUFF}, but instead of one Graticule/date/Info/response
+     * code set, there's parallel arrays of them under the EXTRA_BATCH_*
+     * keys.  {@link #EXTRA_REQUEST_ID}, {@link #EXTRA_REQUEST_FLAGS}, and
+     * {@link #EXTRA_RESPONSE_FLAGS} are there as usual, with the latter
+     * having {@link #FLAG_CACHED} set only if nothing had to go to the web.
+     * </p>
+     *
+     * <p>
+     * Batches don't do {@link #FLAG_INCLUDE_NEARBY_POINTS}.  If you want nearby
+     * points, put them in the batch.
+     * </p>
+     */
+    public static final String ACTION_STOCK_BATCH_RESULT = "net.exclaimindustries.geohashdroid.STOCK_BATCH_RESULT";
+
+    /**
+     * Key for the Graticules in a batch result.  This is a Parcelable array of
+     * Graticules, with null entries meaning a Globalhash (or an entry that
+     * didn't make sense, but those have {@link #RESPONSE_INVALID_REQUEST} as
+     * their response code, so check that first).
+     */
+    public static final String EXTRA_BATCH_GRATICULES = "net.exclaimindustries.geohashdroid.EXTRA_BATCH_GRATICULES";
+    /**
+     * Key for the dates in a batch result.  This is a long array of
+     * milliseconds-since-epoch, lined up with {@link #EXTRA_BATCH_GRATICULES}.
+     */
+    public static final String EXTRA_BATCH_DATES = "net.exclaimindustries.geohashdroid.EXTRA_BATCH_DATES";
+    /**
+     * Key for the Infos in a batch result.  This is a Parcelable array of
+     * Infos, with null entries wherever the matching response code isn't
+     * {@link #RESPONSE_OKAY}.
+     */
+    public static final String EXTRA_BATCH_INFOS = "net.exclaimindustries.geohashdroid.EXTRA_BATCH_INFOS";
+    /**
+     * Key for the response codes in a batch result.  This is an int array,
+     * one per entry.
+     */
+    public static final String EXTRA_BATCH_RESPONSE_CODES = "net.exclaimindustries.geohashdroid.EXTRA_BATCH_RESPONSE_CODES";
+
+    /**
+     * The most entries that'll go in a single batch Worker.  WorkManager caps
+     * input Data at 10KB, so anything bigger than this gets split up into
+     * multiple Workers, each of which will broadcast its own result with the
+     * same request ID.
+     */
+    public static final int MAX_BATCH_SIZE = 200;
+
+    /** Data key for whether or not this is a batch request. */
+    private static final String DATA_BATCH = "isBatch";
+    /** Data key for the per-entry Globalhash flags in a batch request. */
+    private static final String DATA_BATCH_GLOBALHASH = "batchIsGlobalhash";
+    /**
+     * Data key for the per-entry Graticule latitudes in a batch request, in
+     * the same form as {@link #DATA_GRATICULE_LATITUDE}.  Globalhash entries
+     * get an empty string.
+     */
+    private static final String DATA_BATCH_LATITUDES = "batchGraticuleLatitudes";
+    /** Same as {@link #DATA_BATCH_LATITUDES}, but longitude. */
+    private static final String DATA_BATCH_LONGITUDES = "batchGraticuleLongitudes";
+    /** Data key for the per-entry dates in a batch request. */
+    private static final String DATA_BATCH_DATES = "batchDates";
+
     /**
      * Data key for whether or not this request is for a Globalhash and thus
      * won't have a Graticule latitude or longitude.
@@ -189,6 +288,12 @@ public class StockWorker extends Worker {
      * possibility of a -0 value for 0° to 1°W).
      */
     private static final String DATA_GRATICULE_LONGITUDE = "graticuleLongitude";
+    /**
+     * Data key for when the request was enqueued, in millis.  This only gets
+     * used for {@link AlarmTrace}, to see how long alarm requests sat in
+     * WorkManager's queue.
+     */
+    private static final String DATA_ENQUEUED_AT = "enqueuedAt";
 
     /**
      * Flag meaning this request came from the stock alarm around 9:30am EST.
@@ -243,6 +348,12 @@ public class StockWorker extends Worker {
     public static final int RESPONSE_NO_CONNECTION = -2;
     /** Error response if there was some network error involved. */
     public static final int RESPONSE_NETWORK_ERROR = -3;
+    /**
+     * Error response if the request itself didn't make sense (so far, only
+     * batch entries with a Graticule that couldn't be read back in).  Asking
+     * again won't help.
+     */
+    public static final int RESPONSE_INVALID_REQUEST = -4;
 
     /**
      * Convenience method for enqueuing work in to this Worker.  This is largely
@@ -290,7 +401,9 @@ public class StockWorker extends Worker {
                 .setInputData(new Data.Builder()
                         .putLong(EXTRA_REQUEST_ID, work.getLongExtra(EXTRA_REQUEST_ID, -1L))
                         .putInt(EXTRA_REQUEST_FLAGS, work.getIntExtra(EXTRA_REQUEST_FLAGS, 0))
+                        .putInt(EXTRA_NEARBY_RADIUS, work.getIntExtra(EXTRA_NEARBY_RADIUS, 1))
                         .putLong(EXTRA_DATE, date)
+                        .putLong(DATA_ENQUEUED_AT, System.currentTimeMillis())
                         .putString(EXTRA_RESPOND_TO, respondTo)
                         .putBoolean(DATA_GRATICULE_GLOBALHASH, isGlobalhash)
                         .putString(DATA_GRATICULE_LATITUDE, graticuleLatitude)
@@ -299,6 +412,74 @@ public class StockWorker extends Worker {
                 .build());
     }
 
+    /**
+     * <p>
+     * Enqueues a batch of Graticule/date pairs to be resolved in as few
+     * Workers as possible (one, unless there's more than
+     * {@link #MAX_BATCH_SIZE} of them).  Every pair on the same side of the
+     * 30W line on the same date shares a hash, so those only cost one cache
+     * or stock lookup total, not one each.
+     * </p>
+     *
+     * <p>
+     * The result comes back as a single {@link #ACTION_STOCK_BATCH_RESULT}
+     * broadcast per Worker.
+     * </p>
+     *
+     * @param context a Context
+     * @param requestId request ID to send back in the result
+     * @param flags request flags to send back in the result
+     * @param graticules Graticules to look up (null entries mean Globalhash)
+     * @param dates dates to look up, lined up with graticules
+     * @param respondTo class to explicitly send the result to, or null
+     * @throws IllegalArgumentException graticules and dates aren't the same size
+     */
+    public static void enqueueBatchWork(@NonNull Context context,
+                                        long requestId,
+                                        int flags,
+                                        @NonNull List<Graticule> graticules,
+                                        @NonNull List<Calendar> dates,
+                                        @Nullable Class<?> respondTo) {
+        if(graticules.size() != dates.size())
+            throw new IllegalArgumentException("There must be exactly one date per Graticule in a batch!");
+
+        String respondToName = respondTo != null ? respondTo.getName() : null;
+        List<OneTimeWorkRequest> requests = new ArrayList<>();
+
+        for(int start = 0; start < graticules.size(); start += MAX_BATCH_SIZE) {
+            int size = Math.min(MAX_BATCH_SIZE, graticules.size() - start);
+
+            boolean[] isGlobalhash = new boolean[size];
+            String[] lats = new String[size];
+            String[] lons = new String[size];
+            long[] millis = new long[size];
+
+            for(int i = 0; i < size; i++) {
+                Graticule g = graticules.get(start + i);
+                isGlobalhash[i] = g == null;
+                lats[i] = g != null ? g.getLatitudeString(true) : "";
+                lons[i] = g != null ? g.getLongitudeString(true) : "";
+                millis[i] = dates.get(start + i).getTimeInMillis();
+            }
+
+            requests.add(new OneTimeWorkRequest.Builder(StockWorker.class)
+                    .setInputData(new Data.Builder()
+                            .putBoolean(DATA_BATCH, true)
+                            .putLong(EXTRA_REQUEST_ID, requestId)
+                            .putInt(EXTRA_REQUEST_FLAGS, flags)
+                            .putString(EXTRA_RESPOND_TO, respondToName)
+                            .putBooleanArray(DATA_BATCH_GLOBALHASH, isGlobalhash)
+                            .putStringArray(DATA_BATCH_LATITUDES, lats)
+                            .putStringArray(DATA_BATCH_LONGITUDES, lons)
+                            .putLongArray(DATA_BATCH_DATES, millis)
+                            .build())
+                    .build());
+        }
+
+        if(!requests.isEmpty())
+            WorkManager.getInstance(context).enqueue(requests);
+    }
+
     public StockWorker(Context appContext, WorkerParameters workerParams) {
         super(appContext, workerParams);
     }
@@ -310,6 +491,9 @@ public class StockWorker extends Worker {
         // StockService code, as that's kinda simpler.
         Data data = getInputData();
 
+        if(data.getBoolean(DATA_BATCH, false))
+            return doBatchWork(data);
+
         long timestamp = data.getLong(EXTRA_DATE, -1L);
         if(timestamp == -1) {
             Log.e(DEBUG_TAG, "BAILING OUT: There's no date!");
@@ -320,6 +504,7 @@ public class StockWorker extends Worker {
 
         long requestId = data.getLong(EXTRA_REQUEST_ID, -1L);
         int flags = data.getInt(EXTRA_REQUEST_FLAGS, 0);
+        int nearbyRadius = data.getInt(EXTRA_NEARBY_RADIUS, 1);
 
         // Reconstruct the Graticule.
         Graticule graticule = null;
@@ -353,15 +538,23 @@ public class StockWorker extends Worker {
 
         Context context = getApplicationContext();
 
+        // Alarm requests use their trace ID as the request ID, so they can be
+        // followed through here.  Anything else, we don't bother.
+        long traceId = (flags & FLAG_ALARM) != 0 ? requestId : -1L;
+        AlarmTrace.span(context, traceId, AlarmTrace.SPAN_STOCK_QUEUE,
+                data.getLong(DATA_ENQUEUED_AT, System.currentTimeMillis()),
+                System.currentTimeMillis());
+
         // First, ask the stock cache if we've got an Info we can throw back.
         Info info = HashBuilder.getStoredInfo(context, cal, graticule);
 
         // If we got something, great!  Broadcast it right on out!
         if(info != null) {
             respFlags |= FLAG_CACHED;
+            AlarmTrace.mark(context, traceId, AlarmTrace.SPAN_STOCK_CACHED);
             Info[] nearby = null;
             if((flags & FLAG_INCLUDE_NEARBY_POINTS) != 0)
-                nearby = getNearbyPoints(context, cal, graticule);
+                nearby = getNearbyPoints(context, info, nearbyRadius);
             dispatchIntent(context, RESPONSE_OKAY, requestId, flags, respFlags, cal, graticule, info, nearby, respondTo);
         } else {
             // Otherwise, we need to go to the web.
@@ -371,7 +564,10 @@ public class StockWorker extends Worker {
                 dispatchIntent(context, RESPONSE_NO_CONNECTION, requestId, flags, respFlags, cal, graticule, null, null, respondTo);
             } else {
                 StockRunner runner = HashBuilder.requestStockRunner(context, cal, graticule);
+                long fetchStart = System.currentTimeMillis();
                 runner.runStock();
+                AlarmTrace.span(context, traceId, AlarmTrace.SPAN_STOCK_FETCH,
+                        fetchStart, System.currentTimeMillis());
 
                 // And the results are in!
                 int result = runner.getStatus();
@@ -382,7 +578,7 @@ public class StockWorker extends Worker {
                         Log.d(DEBUG_TAG, "Stock's good!  Away it goes!");
                         Info[] nearby = null;
                         if((flags & FLAG_INCLUDE_NEARBY_POINTS) != 0)
-                            nearby = getNearbyPoints(context, cal, graticule);
+                            nearby = getNearbyPoints(context, runner.getLastResultObject(), nearbyRadius);
                         dispatchIntent(context, RESPONSE_OKAY, requestId, flags, respFlags, cal, graticule, runner.getLastResultObject(), nearby, respondTo);
                         break;
                     case HashBuilder.StockRunner.ERROR_NOT_POSTED:
@@ -407,6 +603,218 @@ public class StockWorker extends Worker {
         return Result.success();
     }
 
+    @NonNull
+    private Result doBatchWork(@NonNull Data data) {
+        boolean[] isGlobalhash = data.getBooleanArray(DATA_BATCH_GLOBALHASH);
+        String[] lats = data.getStringArray(DATA_BATCH_LATITUDES);
+        String[] lons = data.getStringArray(DATA_BATCH_LONGITUDES);
+        long[] millis = data.getLongArray(DATA_BATCH_DATES);
+
+        if(isGlobalhash == null || lats == null || lons == null || millis == null
+                || lats.length != isGlobalhash.length
+                || lons.length != isGlobalhash.length
+                || millis.length != isGlobalhash.length) {
+            Log.e(DEBUG_TAG, "BAILING OUT: Batch data is missing or mismatched!");
+            return Result.failure();
+        }
+
+        long requestId = data.getLong(EXTRA_REQUEST_ID, -1L);
+        int flags = data.getInt(EXTRA_REQUEST_FLAGS, 0);
+
+        Class<?> respondTo = null;
+        String className = data.getString(EXTRA_RESPOND_TO);
+        if(className != null && className.length() > 0) {
+            try {
+                respondTo = Class.forName(className);
+            } catch(ClassNotFoundException cnfe) {
+                Log.e(DEBUG_TAG, "BAILING OUT: Couldn't load a class named '" + className + "'!");
+                return Result.failure();
+            }
+        }
+
+        Context context = getApplicationContext();
+
+        BatchResult result = resolveBatch(isGlobalhash, lats, lons, millis,
+                (cal, g) -> lookUp(context, cal, g));
+
+        dispatchBatchIntent(context, requestId, flags, result.allCached ? FLAG_CACHED : 0,
+                result.graticules, millis, result.infos, result.codes, respondTo);
+
+        return Result.success();
+    }
+
+    /**
+     * How a batch gets a hash it hasn't seen yet.  Only the response code,
+     * the response flags (that is, {@link #FLAG_CACHED}), and the Info of
+     * what comes back matter.
+     */
+    interface BatchLookup {
+        @NonNull
+        StockResult lookUp(@NonNull Calendar cal, @Nullable Graticule g);
+    }
+
+    /**
+     * What a batch comes out to, lined up with the entries that went in.
+     */
+    static class BatchResult {
+        final Graticule[] graticules;
+        final Info[] infos;
+        final int[] codes;
+        /** True if nothing had to go to the web. */
+        boolean allCached = true;
+        /** How many times the batch had to call its {@link BatchLookup}. */
+        int lookups;
+
+        BatchResult(int size) {
+            graticules = new Graticule[size];
+            infos = new Info[size];
+            codes = new int[size];
+        }
+    }
+
+    /**
+     * Works out a batch.  Every entry with the same date and the same 30W-ness
+     * has the same hash, so only one of each ever goes to the lookup.  The
+     * rest are just projected from whichever one got there first.  Failures
+     * get remembered the same way, so a stock that isn't posted yet doesn't
+     * get asked for two hundred times.
+     *
+     * @param isGlobalhash per-entry Globalhash flags
+     * @param lats per-entry Graticule latitudes, as strings
+     * @param lons per-entry Graticule longitudes, as strings
+     * @param millis per-entry dates
+     * @param lookup where to get hashes that haven't been seen yet
+     * @return the results
+     */
+    @NonNull
+    static BatchResult resolveBatch(@NonNull boolean[] isGlobalhash,
+                                    @NonNull String[] lats,
+                                    @NonNull String[] lons,
+                                    @NonNull long[] millis,
+                                    @NonNull BatchLookup lookup) {
+        int size = isGlobalhash.length;
+        BatchResult toReturn = new BatchResult(size);
+
+        Map<String, Info> resolved = new HashMap<>();
+        Map<String, Integer> failed = new HashMap<>();
+
+        for(int i = 0; i < size; i++) {
+            Calendar cal = Calendar.getInstance();
+            cal.setTimeInMillis(millis[i]);
+
+            Graticule g = null;
+            if(!isGlobalhash[i]) {
+                try {
+                    g = new Graticule(lats[i], lons[i]);
+                } catch(IllegalArgumentException | IndexOutOfBoundsException | NullPointerException e) {
+                    // A bad entry shouldn't sink the rest of the batch.  It
+                    // gets its own response code so nobody mistakes the null
+                    // Graticule for a Globalhash.
+                    Log.w(DEBUG_TAG, "Invalid graticule data in batch entry " + i + ", skipping...");
+                    toReturn.codes[i] = RESPONSE_INVALID_REQUEST;
+                    continue;
+                }
+            }
+            toReturn.graticules[i] = g;
+
+            String key = DateTools.getDateString(cal) + (Info.uses30WRule(cal, g) ? "W" : "");
+
+            Info template = resolved.get(key);
+            if(template != null) {
+                toReturn.infos[i] = HashBuilder.projectInfo(template, g);
+                toReturn.codes[i] = RESPONSE_OKAY;
+                continue;
+            }
+
+            Integer failure = failed.get(key);
+            if(failure != null) {
+                toReturn.codes[i] = failure;
+                continue;
+            }
+
+            // First time we've seen this key.  Off to the lookup.
+            StockResult looked = lookup.lookUp(cal, g);
+            toReturn.lookups++;
+            if((looked.getResponseFlags() & FLAG_CACHED) == 0)
+                toReturn.allCached = false;
+
+            Info info = looked.getResponseCode() == RESPONSE_OKAY ? looked.getInfo() : null;
+            if(info != null) {
+                resolved.put(key, info);
+                toReturn.infos[i] = info;
+                toReturn.codes[i] = RESPONSE_OKAY;
+            } else {
+                int code = looked.getResponseCode() == RESPONSE_OKAY
+                        ? RESPONSE_NETWORK_ERROR
+                        : looked.getResponseCode();
+                failed.put(key, code);
+                toReturn.codes[i] = code;
+            }
+        }
+
+        Log.d(DEBUG_TAG, "Batch of " + size + " resolved with " + toReturn.lookups + " lookup(s).");
+
+        return toReturn;
+    }
+
+    /**
+     * The real {@link BatchLookup}: the cache first, then the web.
+     */
+    @NonNull
+    private static StockResult lookUp(@NonNull Context context,
+                                      @NonNull Calendar cal,
+                                      @Nullable Graticule g) {
+        Info info = HashBuilder.getStoredInfo(context, cal, g);
+        if(info != null)
+            return new StockResult(-1L, 0, FLAG_CACHED, RESPONSE_OKAY, cal, g, info, null);
+
+        if(!AndroidUtil.isConnected(context))
+            return new StockResult(-1L, 0, 0, RESPONSE_NO_CONNECTION, cal, g, null, null);
+
+        StockRunner runner = HashBuilder.requestStockRunner(context, cal, g);
+        runner.runStock();
+
+        switch(runner.getStatus()) {
+            case HashBuilder.StockRunner.ALL_OKAY:
+                return new StockResult(-1L, 0, 0, RESPONSE_OKAY, cal, g, runner.getLastResultObject(), null);
+            case HashBuilder.StockRunner.ERROR_NOT_POSTED:
+                return new StockResult(-1L, 0, 0, RESPONSE_NOT_POSTED_YET, cal, g, null, null);
+            default:
+                return new StockResult(-1L, 0, 0, RESPONSE_NETWORK_ERROR, cal, g, null, null);
+        }
+    }
+
+    private static void dispatchBatchIntent(Context context,
+                                            long requestId,
+                                            int flags,
+                                            int respFlags,
+                                            Graticule[] graticules,
+                                            long[] dates,
+                                            Info[] infos,
+                                            int[] codes,
+                                            @Nullable Class<?> respondTo) {
+        Intent intent = new Intent(ACTION_STOCK_BATCH_RESULT);
+
+        if(respondTo != null)
+            intent.setClass(context, respondTo);
+
+        // Same Bundle dance as dispatchIntent.  The arrays keep this down to
+        // one trip across the process boundary no matter how big the batch.
+        Bundle bun = new Bundle();
+        bun.putLong(EXTRA_REQUEST_ID, requestId);
+        bun.putInt(EXTRA_REQUEST_FLAGS, flags);
+        bun.putInt(EXTRA_RESPONSE_FLAGS, respFlags);
+        bun.putParcelableArray(EXTRA_BATCH_GRATICULES, graticules);
+        bun.putLongArray(EXTRA_BATCH_DATES, dates);
+        bun.putParcelableArray(EXTRA_BATCH_INFOS, infos);
+        bun.putIntArray(EXTRA_BATCH_RESPONSE_CODES, codes);
+
+        intent.putExtra(EXTRA_STUFF, bun);
+
+        Log.d(DEBUG_TAG, "Dispatching batch intent...");
+        context.sendBroadcast(intent);
+    }
+
     private static void dispatchIntent(Context context,
                                        int responseCode,
                                        long requestId,
@@ -417,6 +825,16 @@ public class StockWorker extends Worker {
                                        Info info,
                                        Info[] nearby,
                                        @Nullable Class<?> respondTo) {
+        // If nobody asked for an explicit broadcast, see if someone in this
+        // process is waiting on the bus first.  That skips the whole
+        // Bundle-and-Parcel routine.
+        if(respondTo == null
+                && StockResultBus.publish(new StockResult(requestId, flags, respFlags,
+                        responseCode, date, graticule, info, nearby))) {
+            Log.d(DEBUG_TAG, "Result delivered in-process.");
+            return;
+        }
+
         // Welcome to central Intent dispatch.  How may I help you?
         Intent intent = new Intent(ACTION_STOCK_RESULT);
 
@@ -436,7 +854,9 @@ public class StockWorker extends Worker {
         bun.putSerializable(EXTRA_DATE, date);
         bun.putParcelable(EXTRA_GRATICULE, graticule);
         bun.putParcelable(EXTRA_INFO, info);
-        if(nearby != null && nearby.length != 0) {
+        if(nearby != null && nearby.length > MAX_BROADCAST_NEARBY_POINTS) {
+            Log.w(DEBUG_TAG, "Too many nearby points for a broadcast (" + nearby.length + "), leaving them out.");
+        } else if(nearby != null && nearby.length != 0) {
             bun.putParcelableArray(EXTRA_NEARBY_POINTS, nearby);
         }
 
@@ -447,57 +867,45 @@ public class StockWorker extends Worker {
         context.sendBroadcast(intent);
     }
 
-    private static Info[] getNearbyPoints(Context context, Calendar cal, Graticule g) {
-        if(g == null) return new Info[0];
-
-        List<Info> infos = new LinkedList<>();
-
-        // Hopefully, each nearby point is available.  In addition to cases
-        // involving the poles, I *think* there's cases where a 30W point IS
-        // available, but a neighboring non-30W point ISN'T.  We'll just ignore
-        // those cases.
-        for(int i = -1; i <= 1; i++) {
-            for(int j = -1; j <= 1; j++) {
-                // Zero and zero isn't a nearby point, that's the very point
-                // we're at right now!
-                if(i == 0 && j == 0) continue;
-
-                // If the user's truly adventurous enough to go to the 90N/S
-                // graticules, there aren't any nearby points north/south of
-                // where they are.  Also, the nearby points aren't going to
-                // be drawn anyway due to the projection, but hey, that's
-                // nitpicking.
-                if(Math.abs((g.isSouth() ? -1 : 1) * g.getLatitude() + i) > 90)
-                    continue;
-
-                // Make a new Graticule, properly offset...
-                Graticule offset = Graticule.createOffsetFrom(g, i, j);
-
-                // ...then do the request.  Check the cache first!
-                Info info = HashBuilder.getStoredInfo(context, cal, offset);
-                if(info == null) {
-                    // It's not in the cache.  Try to make it be in the cache.
-                    StockRunner runner = HashBuilder.requestStockRunner(context, cal, offset);
-                    runner.runStock();
-
-                    if(runner.getStatus() == HashBuilder.StockRunner.ALL_OKAY) {
-                        // We've got a winner!
-                        info = runner.getLastResultObject();
-                    }
-                    // We'll just ignore it if not.  The user doesn't need to be
-                    // bugged about cache failures or whatnot, they already got
-                    // what they were looking for.
-                }
+    @NonNull
+    private static Info[] getNearbyPoints(@NonNull Context context, @NonNull Info center, int radius) {
+        Graticule g = center.getGraticule();
+        if(g == null || !center.isValid() || radius < 1) return new Info[0];
+
+        radius = Math.min(radius, MAX_NEARBY_RADIUS);
+        Calendar cal = center.getCalendar();
+
+        // The center already covers every cell on its side of the 30W line.
+        // The only thing that might need a lookup is the other side, if the
+        // neighborhood reaches over there.  Checking one row's worth of
+        // columns is enough to know, since the 30W Rule only cares about
+        // longitude.
+        Graticule otherSideGraticule = null;
+        for(int j = -radius; j <= radius; j++) {
+            Graticule offset = Graticule.createOffsetFrom(g, 0, j);
+            if(Info.uses30WRule(cal, offset) != center.uses30WRule()) {
+                otherSideGraticule = offset;
+                break;
+            }
+        }
 
-                // Now, add that to the array, if it's not null...
-                if(info != null)
-                    infos.add(info);
+        Info otherSide = null;
+        if(otherSideGraticule != null) {
+            otherSide = HashBuilder.getStoredInfo(context, cal, otherSideGraticule);
+            if(otherSide == null) {
+                // It's not in the cache.  Try to make it be in the cache.  If
+                // that doesn't work, we just leave that side out.  The user
+                // doesn't need to be bugged about cache failures or whatnot,
+                // they already got what they were looking for.
+                StockRunner runner = HashBuilder.requestStockRunner(context, cal, otherSideGraticule);
+                runner.runStock();
 
-                // And continue on!
+                if(runner.getStatus() == HashBuilder.StockRunner.ALL_OKAY)
+                    otherSide = runner.getLastResultObject();
             }
         }
 
-        Info[] toReturn = new Info[8];
-        return infos.toArray(toReturn);
+        // Now it's all just arithmetic.
+        return HashBuilder.projectNeighborhood(center, radius, otherSide);
     }
 }
@@ -10,12 +10,11 @@ package net.exclaimindustries.geohashdroid.services;
 
 import android.Manifest;
 import android.annotation.SuppressLint;
-import android.app.AlarmManager;
 import android.app.PendingIntent;
-import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
+import android.database.SQLException;
 import android.location.Location;
 import android.net.Uri;
 import android.os.Build;
@@ -30,37 +29,38 @@ import net.exclaimindustries.geohashdroid.util.GHDConstants;
 import net.exclaimindustries.geohashdroid.util.Graticule;
 import net.exclaimindustries.geohashdroid.util.Info;
 import net.exclaimindustries.geohashdroid.wiki.WikiException;
+import net.exclaimindustries.geohashdroid.wiki.WikiImageStore;
 import net.exclaimindustries.geohashdroid.wiki.WikiImageUtils;
+import net.exclaimindustries.geohashdroid.wiki.WikiSession;
 import net.exclaimindustries.geohashdroid.wiki.WikiUtils;
 import net.exclaimindustries.tools.AndroidUtil;
 import net.exclaimindustries.tools.DateTools;
+import net.exclaimindustries.tools.LogGate;
 import net.exclaimindustries.tools.PlainSQLiteQueueService;
 import net.exclaimindustries.tools.QueueService;
+import net.exclaimindustries.tools.TokenBucket;
+import net.exclaimindustries.tools.queue.RetryPolicy;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Calendar;
 import java.util.HashMap;
-import java.util.UUID;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.core.app.ActivityCompat;
 import androidx.core.app.NotificationCompat;
 import androidx.core.app.NotificationManagerCompat;
 import androidx.preference.PreferenceManager;
-import androidx.work.Constraints;
-import androidx.work.ListenableWorker;
-import androidx.work.NetworkType;
-import androidx.work.OneTimeWorkRequest;
-import androidx.work.WorkManager;
-import androidx.work.WorkRequest;
-import androidx.work.Worker;
-import androidx.work.WorkerParameters;
 import cz.msebera.android.httpclient.impl.client.CloseableHttpClient;
-import cz.msebera.android.httpclient.impl.client.HttpClients;
 
 /**
  * <code>WikiService</code> is a background service that handles all wiki
@@ -72,53 +72,96 @@ import cz.msebera.android.httpclient.impl.client.HttpClients;
  */
 public class WikiService
         extends PlainSQLiteQueueService {
-    /**
-     * This Worker does little more than try to fire off a RESUME command once
-     * the network returns.
-     */
-    public static class ConnectivityWorker
-            extends Worker {
-        public ConnectivityWorker(@NonNull Context context,
-                                  @NonNull WorkerParameters workerParams) {
-            super(context, workerParams);
-        }
-
-        @NonNull
-        @Override
-        public Result doWork() {
-            // Just launch into the service.  The scheduler ONLY should've woken
-            // us up if we've got an internet connection, but if not, the queue
-            // will just pause anyway.
-            Intent i = new Intent(getApplicationContext(), WikiService.class);
-            i.putExtra(QueueService.COMMAND_EXTRA, QueueService.COMMAND_RESUME);
-            getApplicationContext().startService(i);
-
-            // Whatever the case, this was a smashing success.  Well done.
-            return ListenableWorker.Result.success();
-        }
-    }
-
     private static final String DEBUG_TAG = "WikiService";
 
     private NotificationManagerCompat mNotificationManager;
-    private AlarmManager mAlarmManager;
     private WakeLock mWakeLock;
 
-    private UUID mLastWikiConnectivityRequestId;
+    // When the current run of the queue started, so the image sweep at the
+    // end knows what's safe to delete.
+    private long mRunStarted;
 
     /** Matches the gallery section. */
     private static final Pattern RE_GALLERY = Pattern.compile("^(.*<gallery[^>]*>)(.*?)(</gallery>.*)$", Pattern.DOTALL);
     /** Matches the gallery section header. */
     private static final Pattern RE_GALLERY_SECTION = Pattern.compile("^(.*== Photos ==)(.*)$", Pattern.DOTALL);
-    /** Matches the expedition section. */
-    private static final Pattern RE_EXPEDITION = Pattern.compile("^(.*)(==+ ?Expedition ?==+.*?)(==+ ?.*? ?==+.*?)$", Pattern.DOTALL);
 
-    /** How long we wait (in millis) before retrying a throttled edit. */
-    private static final long THROTTLE_DELAY = 60000;
+    /** The heading of the section messages go in. */
+    private static final String SECTION_EXPEDITION = "Expedition";
+    /** The heading of the section the gallery lives in. */
+    private static final String SECTION_PHOTOS = "Photos";
+
+    /**
+     * Why the queue paused, stuck on the Intent that paused it so
+     * {@link #getRetryPolicy(Intent)} knows which policy to use.  Anything
+     * without one needs the user to step in.
+     */
+    private static final String EXTRA_PAUSE_REASON = "net.exclaimindustries.geohashdroid.EXTRA_PAUSE_REASON";
+
+    private static final int PAUSE_NEEDS_USER = 0;
+    private static final int PAUSE_NO_CONNECTION = 1;
+    private static final int PAUSE_THROTTLED = 2;
+    private static final int PAUSE_ERROR = 3;
+
+    /**
+     * Throttled by the wiki.  Wait a minute or so the first time, longer if
+     * it keeps happening, but keep at it; it'll let us through eventually.
+     */
+    private static final RetryPolicy THROTTLE_RETRY =
+            new RetryPolicy(60 * 1000, 30 * 60 * 1000, RetryPolicy.UNLIMITED, true);
+    /**
+     * No network.  WorkManager waits for one to show up, and the backoff's
+     * just there so a connection that keeps flickering in and out doesn't
+     * have us starting up every few seconds.
+     */
+    private static final RetryPolicy CONNECTION_RETRY =
+            new RetryPolicy(15 * 1000, 30 * 60 * 1000, RetryPolicy.UNLIMITED, true);
+    /**
+     * Something went wrong and we don't know what.  It might be the wiki
+     * having a bad day, so try a few more times, slowly, then leave it to the
+     * user (the error notification's up the whole time anyway).
+     */
+    private static final RetryPolicy ERROR_RETRY =
+            new RetryPolicy(2 * 60 * 1000, 60 * 60 * 1000, 5, true);
 
     /** The wakelock timeout (10 minutes). */
     private static final long WAKELOCK_TIMEOUT = 10 * 60 * 1000;
 
+    /**
+     * How many wiki pages we'll work on at once.  Edits to the same page still
+     * go one at a time (see {@link #getOrderingKey(Intent)}), so this only
+     * matters if the queue's got stuff for more than one expedition in it.
+     * Any more than this and we're just asking to get throttled.
+     */
+    private static final int MAX_CONCURRENT_PAGES = 3;
+
+    /**
+     * The most queued messages we'll stuff into a single edit.  Past this,
+     * the edit summary's getting silly anyway.
+     */
+    private static final int MAX_MESSAGES_PER_EDIT = 20;
+
+    /**
+     * How much older than the start of a run an image file has to be before
+     * the sweep at the end will take it, in case it belongs to a post that's
+     * still on its way to the queue.
+     */
+    private static final long IMAGE_SWEEP_GRACE = 60000;
+
+    /** The lane for plain messages.  These are small, so they go first. */
+    private static final int PRIORITY_MESSAGE = 0;
+    /** The lane for images, which can be a few hundred KB each. */
+    private static final int PRIORITY_IMAGE = 1;
+
+    // The wiki's rate limits, more or less.  Stock MediaWiki lets newer
+    // accounts (and anonymous posters) make eight edits and eight uploads a
+    // minute, so we stay under that with a bit of slack and don't burst past
+    // a handful at once.  These are static so they carry over from one run
+    // of the queue to the next; the wiki's counting per account, not per
+    // Service instance.
+    private static final TokenBucket sEditBucket = new TokenBucket(4, 6, 60000);
+    private static final TokenBucket sUploadBucket = new TokenBucket(2, 4, 60000);
+
     /**
      * The {@link Info} object for the current expedition.
      */
@@ -149,9 +192,19 @@ public class WikiService
      * Actual literal {@link android.graphics.Bitmap} image data to be uploaded.
      * This is needed because WikiService is a different Context from what
      * selected the image in the first place, causing a security exception.
+     * Prefer {@link #EXTRA_IMAGE_FILE} where possible; this still works, but
+     * it means the whole image rides around in the Intent.
      */
     public static final String EXTRA_IMAGE_DATA = "net.exclaimindustries.geohashdroid.EXTRA_IMAGE_DATA";
 
+    /**
+     * The same thing as {@link #EXTRA_IMAGE_DATA}, but already written out to
+     * a file by {@link WikiImageStore}.  Should be a String containing the
+     * path.  The queue only stores the path, the upload streams straight from
+     * the file, and the file gets deleted once it's uploaded.
+     */
+    public static final String EXTRA_IMAGE_FILE = "net.exclaimindustries.geohashdroid.EXTRA_IMAGE_FILE";
+
     /**
      * The {@link net.exclaimindustries.geohashdroid.wiki.WikiImageUtils.ImageInfo}
      * object associated with an image to be uploaded.  This gets generated in
@@ -192,9 +245,6 @@ public class WikiService
 
         // Also, get the NotificationManager on standby.
         mNotificationManager = NotificationManagerCompat.from(this);
-
-        // How alarming.  We need the AlarmManager.
-        mAlarmManager = (AlarmManager) getSystemService(Context.ALARM_SERVICE);
     }
 
     @Override
@@ -203,7 +253,7 @@ public class WikiService
         // now.
         if(!AndroidUtil.isConnected(this)) {
             showWaitingForConnectionNotification();
-            return ReturnCode.PAUSE;
+            return pause(i, PAUSE_NO_CONNECTION);
         }
 
         // Hey, there, Intent.  Got some extras for me?
@@ -213,6 +263,7 @@ public class WikiService
         Calendar timestamp;
         Uri imageLocation;
         byte[] imageData;
+        File imageFile;
         WikiImageUtils.ImageInfo imageInfo;
         boolean includeLocation;
 
@@ -223,6 +274,7 @@ public class WikiService
             timestamp = (Calendar) i.getSerializableExtra(EXTRA_TIMESTAMP);
             imageLocation = i.getParcelableExtra(EXTRA_IMAGE);
             imageData = i.getByteArrayExtra(EXTRA_IMAGE_DATA);
+            imageFile = WikiImageStore.resolve(this, i.getStringExtra(EXTRA_IMAGE_FILE));
             imageInfo = i.getParcelableExtra(EXTRA_IMAGE_INFO);
             includeLocation = i.getBooleanExtra(EXTRA_INCLUDE_LOCATION, true);
         } catch(ClassCastException cce) {
@@ -231,161 +283,286 @@ public class WikiService
             return ReturnCode.CONTINUE;
         }
 
-        // Prep an HttpClient for later...
-        try(CloseableHttpClient client = HttpClients.createDefault()) {
-            // To Preferences!
-            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
-            String username = prefs.getString(GHDConstants.PREF_WIKI_USER, "");
-            String password = prefs.getString(GHDConstants.PREF_WIKI_PASS, "");
-            if(info == null || message == null || timestamp == null) {
-                // If we're missing something vital, bail out.
-                Log.e(DEBUG_TAG, "Intent was missing some vital data (either Info, message, or timestamp), giving up...");
-                return ReturnCode.CONTINUE;
-            }
-            if(imageLocation != null && username.isEmpty()) {
-                // Also, if there's an image specified, make sure there's also a
-                // username.  The wiki does not allow anonymous image uploads.
-                // This one, unlike the previous one, produces an interruption
-                // so the user can enter in a username and password.
-                showPausingErrorNotification(getString(R.string.wiki_conn_anon_pic_error),
-                        resolveWikiExceptionActions(new WikiException(R.string.wiki_conn_anon_pic_error)));
-                return ReturnCode.PAUSE;
-            }
-            // Location becomes null if we're not including it.  Nothing should
-            // need to care.
-            if(!includeLocation) loc = null;
-            // If we got a username/password combo, try to log in.  This throws
-            // a WikiException if the login fails.
-            if(!username.isEmpty() && !password.isEmpty()) {
-                WikiUtils.login(client, username, password);
-            }
-
-            // Prep a page.  We want a populated formfields for later.
-            HashMap<String, String> formfields = new HashMap<>();
-            String expedition = WikiUtils.getWikiPageName(info);
+        // To Preferences!
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
+        String username = prefs.getString(GHDConstants.PREF_WIKI_USER, "");
+        String password = prefs.getString(GHDConstants.PREF_WIKI_PASS, "");
+        if(info == null || message == null || timestamp == null) {
+            // If we're missing something vital, bail out.
+            Log.e(DEBUG_TAG, "Intent was missing some vital data (either Info, message, or timestamp), giving up...");
+            return ReturnCode.CONTINUE;
+        }
+        if(imageLocation != null && username.isEmpty()) {
+            // Also, if there's an image specified, make sure there's also a
+            // username.  The wiki does not allow anonymous image uploads.
+            // This one, unlike the previous one, produces an interruption
+            // so the user can enter in a username and password.
+            showPausingErrorNotification(getString(R.string.wiki_conn_anon_pic_error),
+                    resolveWikiExceptionActions(new WikiException(R.string.wiki_conn_anon_pic_error)));
+            return pause(i, PAUSE_NEEDS_USER);
+        }
+        // Location becomes null if we're not including it.  Nothing should
+        // need to care.
+        final Location postLoc = includeLocation ? loc : null;
+
+        // The session takes care of logging in (if there's a username and
+        // password) and the edit token.  It might run all this twice if it
+        // turns out the login went stale, which is fine; a page that got made
+        // or an image that got uploaded the first time around will already be
+        // there the second time.
+        try {
+            return WikiSession.get(this).run(username, password, (client, formfields) -> {
+                String expedition = WikiUtils.getWikiPageName(info);
+
+                // I know this is making a monstrous, ugly method that's just a big
+                // if statement, but I tried breaking this down into more specific
+                // methods for image and not-image uploads, found there wasn't
+                // enough in common between them, and wound up with methods with
+                // ten or so arguments.  If anyone else has a better idea, feel free
+                // to suggest.
+                if(imageLocation != null) {
+                    // If there's an image location, the image info better be
+                    // defined.
+                    if(imageInfo == null) {
+                        throw new IllegalArgumentException("There's an image location, but there's no image info?");
+                    }
 
-            // This will be null if the page didn't exist to begin with.
-            String page = WikiUtils.getWikiPage(client, expedition, formfields);
+                    // Let's say there's an image specified.  Get the image's
+                    // filename, too.  Well, that is, the name it'll have on the
+                    // wiki.
+                    String wikiName = WikiImageUtils.getImageWikiName(info, imageInfo, username);
+
+                    // Make sure the image doesn't already exist.  If it does, we
+                    // can skip the upload.
+                    if(!WikiUtils.doesWikiPageExist(client, wikiName)) {
+                        if(imageFile == null && imageData == null) {
+                            // No image is a problem at this point...
+                            Log.w(DEBUG_TAG, "Trying to upload an image, but there was no image data or file at upload time?");
+                            showImageErrorNotification();
+                            return ReturnCode.CONTINUE;
+                        }
+
+                        // Upload now!  Do it!  Straight from the file, if we've
+                        // got one.
+                        String description = message + "\n\n" + WikiUtils.getWikiCategories(info);
+                        if(imageFile != null)
+                            WikiUtils.putWikiImage(client, wikiName, description, formfields, imageFile);
+                        else
+                            WikiUtils.putWikiImage(client, wikiName, description, formfields, imageData);
+                    } else {
+                        Log.w(DEBUG_TAG, "Trying to upload an image, but it already exists on the wiki?");
+                    }
 
-            // And if it IS null (or empty), then we ought to make said page.
-            if(page == null || page.trim().isEmpty()) {
-                // Aha!
-                WikiUtils.putWikiPage(client, expedition,
-                        WikiUtils.getWikiExpeditionTemplate(info, this),
-                        formfields);
+                    // Good, good.  Now, let's get some tags for posting.
+                    String locationTag = WikiUtils.makeLocationTag(postLoc);
+                    String prefixTag = WikiImageUtils.getImagePrefixTag(this, imageInfo, info);
+
+                    // The message is now going to be surrounded by tags.
+                    String tagged = message.trim() + locationTag;
+
+                    // And the gallery entry is the name of the file plus that
+                    // message.
+                    String galleryEntry = "\nImage:" + wikiName + "|" + tagged + "\n";
+
+                    // Make a summary...
+                    formfields.put("summary", prefixTag + tagged);
+
+                    // ...find where the gallery is...
+                    String photos = getOrMakeSections(client, info, expedition, formfields).get(SECTION_PHOTOS);
+
+                    if(photos != null) {
+                        // ...and put the entry in it.  That means a round trip
+                        // for the section's text, but only that section, and
+                        // the wiki can merge it if someone edits somewhere
+                        // else on the page in the meantime.
+                        String section = WikiUtils.getWikiPage(client, expedition, photos, formfields);
+                        if(section == null) throw new WikiException(R.string.wiki_error_unknown);
+
+                        // getWikiPage stomps on the summary, so it goes back.
+                        formfields.put("summary", prefixTag + tagged);
+                        WikiUtils.putWikiPage(client, expedition, photos,
+                                addGalleryEntryToPage(section, galleryEntry), formfields);
+                    } else {
+                        // No Photos section means someone's been mucking about
+                        // with the page on the web.  Just tack a gallery onto
+                        // the end, then.
+                        WikiUtils.appendToWikiPage(client, expedition, null,
+                                "\n<gallery>" + galleryEntry + "</gallery>\n", formfields);
+                    }
 
-                // And once it's there, we pull it back, as we'll be futzing
-                // about with it some more.
-                page = WikiUtils.getWikiPage(client, expedition, formfields);
-            }
+                    // The file's served its purpose.
+                    WikiImageStore.delete(this, imageFile);
 
-            // I know this is making a monstrous, ugly method that's just a big
-            // if statement, but I tried breaking this down into more specific
-            // methods for image and not-image uploads, found there wasn't
-            // enough in common between them, and wound up with methods with
-            // ten or so arguments.  If anyone else has a better idea, feel free
-            // to suggest.
-            if(imageLocation != null) {
-                // If there's an image location, the image info better be
-                // defined.
-                if(imageInfo == null) {
-                    throw new IllegalArgumentException("There's an image location, but there's no image info?");
+                } else {
+                    // If we DON'T have an image, it's just a plain message.  That's
+                    // a lot easier than an image, but the posting's different,
+                    // slightly.
+                    String locationTag = WikiUtils.makeLocationTag(postLoc);
+
+                    // The summary gets a prefix depending on if it's a retro or
+                    // live post.  Unlike images, "live" always applies if it's not
+                    // a retrohash.
+                    String summaryPrefix;
+                    if(info.isRetroHash())
+                        summaryPrefix = getString(R.string.wiki_post_message_summary_retro);
+                    else
+                        summaryPrefix = getString(R.string.wiki_post_message_summary);
+
+                    formfields.put("summary", summaryPrefix + " " + message);
+
+                    // And now, tack it onto the Expedition section.  And go!
+                    WikiUtils.appendToWikiPage(client, expedition,
+                            getOrMakeSections(client, info, expedition, formfields).get(SECTION_EXPEDITION),
+                            makeMessageLine(message, locationTag, timestamp),
+                            formfields);
                 }
 
-                // Let's say there's an image specified.  Get the image's
-                // filename, too.  Well, that is, the name it'll have on the
-                // wiki.
-                String wikiName = WikiImageUtils.getImageWikiName(info, imageInfo, username);
-
-                // Make sure the image doesn't already exist.  If it does, we
-                // can skip the upload.
-                if(!WikiUtils.doesWikiPageExist(client, wikiName)) {
-                    if(imageData == null) {
-                        // No image is a problem at this point...
-                        Log.w(DEBUG_TAG, "Trying to upload an image, but imageData was null at upload time?");
-                        showImageErrorNotification();
-                        return ReturnCode.CONTINUE;
-                    }
+                return ReturnCode.CONTINUE;
+            });
+        } catch(Exception e) {
+            return pauseForException(i, e);
+        }
+        // Eh, forget it.
+    }
 
-                    // Upload now!  Do it!
-                    String description = message + "\n\n" + WikiUtils.getWikiCategories(info);
-                    WikiUtils.putWikiImage(client, wikiName, description, formfields, imageData);
-                } else {
-                    Log.w(DEBUG_TAG, "Trying to upload an image, but it already exists on the wiki?");
-                }
+    @Override
+    protected ReturnCode handleIntents(@NonNull List<Intent> batch) {
+        // This is a run of plain messages for the same expedition (canBatch
+        // made sure of that), so they can all go in with one edit.  They go
+        // on the page in the order they were queued, each with its own
+        // timestamp, same as if they'd gone one at a time.
+        if(!AndroidUtil.isConnected(this)) {
+            showWaitingForConnectionNotification();
+            return pause(batch.get(0), PAUSE_NO_CONNECTION);
+        }
 
-                // Good, good.  Now, let's get some tags for posting.
-                String locationTag = WikiUtils.makeLocationTag(loc);
-                String prefixTag = WikiImageUtils.getImagePrefixTag(this, imageInfo, info);
+        Info info = batch.get(0).getParcelableExtra(EXTRA_INFO);
+        if(info == null) {
+            // canBatch shouldn't have let this through.
+            Log.e(DEBUG_TAG, "A batch of messages didn't have an Info, giving up...");
+            return ReturnCode.CONTINUE;
+        }
 
-                // The message is now going to be surrounded by tags.
-                message = message.trim() + locationTag;
+        LogGate.d(DEBUG_TAG, "Posting %d messages in one edit...", batch.size());
 
-                // And the gallery entry is the name of the file plus that
-                // message.
-                String galleryEntry = "\nImage:" + wikiName + "|" + message + "\n";
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
+        String username = prefs.getString(GHDConstants.PREF_WIKI_USER, "");
+        String password = prefs.getString(GHDConstants.PREF_WIKI_PASS, "");
 
-                // Then, add the gallery entry into the page...
-                page = addGalleryEntryToPage(page, galleryEntry);
+        try {
+            return WikiSession.get(this).run(username, password, (client, formfields) -> {
+                String expedition = WikiUtils.getWikiPageName(info);
+
+                StringBuilder lines = new StringBuilder();
+                StringBuilder summary = new StringBuilder(getString(info.isRetroHash()
+                        ? R.string.wiki_post_message_summary_retro
+                        : R.string.wiki_post_message_summary));
+                boolean first = true;
+
+                for(Intent i : batch) {
+                    String message = i.getStringExtra(EXTRA_MESSAGE);
+                    Calendar timestamp = (Calendar) i.getSerializableExtra(EXTRA_TIMESTAMP);
+                    Location loc = i.getBooleanExtra(EXTRA_INCLUDE_LOCATION, true)
+                            ? i.getParcelableExtra(EXTRA_LOCATION)
+                            : null;
+
+                    lines.append(makeMessageLine(message, WikiUtils.makeLocationTag(loc), timestamp));
+
+                    // The wiki will chop the summary off if it gets too long, so
+                    // no need to worry about that here.
+                    summary.append(first ? " " : " / ").append(message);
+                    first = false;
+                }
 
-                // ...make a summary...
-                formfields.put("summary", prefixTag + message);
+                formfields.put("summary", summary.toString());
+                WikiUtils.appendToWikiPage(client, expedition,
+                        getOrMakeSections(client, info, expedition, formfields).get(SECTION_EXPEDITION),
+                        lines.toString(), formfields);
 
-                // ...and out it goes!
-                WikiUtils.putWikiPage(client, expedition, page, formfields);
+                return ReturnCode.CONTINUE;
+            });
+        } catch(Exception e) {
+            return pauseForException(batch.get(0), e);
+        }
+    }
 
-            } else {
-                // If we DON'T have an image, it's just a plain message.  That's
-                // a lot easier than an image, but the posting's different,
-                // slightly.
-                String locationTag = WikiUtils.makeLocationTag(loc);
-
-                // The summary gets a prefix depending on if it's a retro or
-                // live post.  Unlike images, "live" always applies if it's not
-                // a retrohash.
-                String summaryPrefix;
-                if(info.isRetroHash())
-                    summaryPrefix = getString(R.string.wiki_post_message_summary_retro);
-                else
-                    summaryPrefix = getString(R.string.wiki_post_message_summary);
-
-                formfields.put("summary", summaryPrefix + " " + message);
-
-                // And now, insert text where need be on the page.
-                String before;
-                String after;
-
-                if(page == null) {
-                    // This shouldn't happen.  If it did, there's something very
-                    // wrong with the wiki.
-                    throw new WikiException(R.string.wiki_error_unknown);
-                }
+    @Override
+    protected int getMaxBatchSize() {
+        return MAX_MESSAGES_PER_EDIT;
+    }
 
-                Matcher expeditionq = RE_EXPEDITION.matcher(page);
-                if(expeditionq.matches()) {
-                    before = expeditionq.group(1) + expeditionq.group(2);
-                    after = expeditionq.group(3);
-                } else {
-                    // If the expedition section doesn't exist, well, just slap
-                    // it onto the end of the page.  This shouldn't happen
-                    // unless someone's mucking about with the page on the web.
-                    before = page;
-                    after = "";
-                }
+    @Override
+    protected boolean canBatch(@NonNull Intent first, @NonNull Intent next) {
+        // Only plain messages batch up, and only with other plain messages for
+        // the same page.  Images have their own upload to do, and anything
+        // missing vital data should go through handleIntent on its own so it
+        // gets thrown out the usual way.
+        if(!isBatchableMessage(first) || !isBatchableMessage(next)) return false;
+
+        String firstKey = getOrderingKey(first);
+        return firstKey != null && firstKey.equals(getOrderingKey(next));
+    }
 
-                String localtime = DateTools.getWikiDateString(timestamp);
+    private static boolean isBatchableMessage(@NonNull Intent i) {
+        try {
+            return !i.hasExtra(EXTRA_IMAGE)
+                    && i.getStringExtra(EXTRA_MESSAGE) != null
+                    && i.getSerializableExtra(EXTRA_TIMESTAMP) instanceof Calendar
+                    && i.getParcelableExtra(EXTRA_INFO) != null;
+        } catch(ClassCastException cce) {
+            return false;
+        }
+    }
 
-                // Attach requisite tags to the message...
-                message = "\n*" + message + "  -- ~~~" + locationTag + " "
-                        + localtime + "\n";
+    /**
+     * Gets the sections on the expedition page, making the page first from the
+     * template if it isn't there yet.  Whatever summary's in formfields goes
+     * with the new page, if it comes to that.  If a section we want isn't in
+     * here, something's gone odd with the page, and whatever it was should
+     * just go on the end of the page instead (that is, a null section).
+     */
+    @NonNull
+    private HashMap<String, String> getOrMakeSections(@NonNull CloseableHttpClient client,
+                                                      @NonNull Info info,
+                                                      @NonNull String expedition,
+                                                      @NonNull HashMap<String, String> formfields) throws Exception {
+        // This will be null if the page didn't exist to begin with.
+        HashMap<String, String> sections = WikiUtils.getWikiSections(client, expedition);
+
+        if(sections == null) {
+            // Aha!  Make it.  But only make it; if someone else beat us to it
+            // in the meantime, theirs stays and we use that.
+            WikiUtils.createWikiPage(client, expedition,
+                    WikiUtils.getWikiExpeditionTemplate(info, this),
+                    formfields);
+
+            sections = WikiUtils.getWikiSections(client, expedition);
+
+            // This shouldn't happen.  If it did, there's something very wrong
+            // with the wiki.
+            if(sections == null) throw new WikiException(R.string.wiki_error_unknown);
+        }
 
-                // And go!
-                WikiUtils.putWikiPage(client, expedition, before + message
-                        + after, formfields);
-            }
+        return sections;
+    }
 
-            return ReturnCode.CONTINUE;
-        } catch(WikiException we) {
+    @NonNull
+    private static String makeMessageLine(@NonNull String message,
+                                          @NonNull String locationTag,
+                                          @NonNull Calendar timestamp) {
+        // Attach requisite tags to the message...
+        return "\n*" + message + "  -- ~~~" + locationTag + " "
+                + DateTools.getWikiDateString(timestamp) + "\n";
+    }
+
+    private static ReturnCode pause(@NonNull Intent i, int reason) {
+        i.putExtra(EXTRA_PAUSE_REASON, reason);
+        return ReturnCode.PAUSE;
+    }
+
+    private ReturnCode pauseForException(@NonNull Intent i, @NonNull Exception e) {
+        if(e instanceof WikiException) {
+            WikiException we = (WikiException) e;
             // There's two possible exceptions we want to keep an eye on, both
             // of them related to throttling.  Since we're potentially posting
             // numerous edits one right after another (i.e. if the user's been
@@ -393,34 +570,65 @@ public class WikiService
             // queued up), throttling IS possible, and that can be handled by
             // waiting it out for a minute or so.
             if(we.getErrorTextId() == R.string.wiki_error_throttled || we.getErrorTextId() == R.string.wiki_error_rate_limit) {
+                // The buckets should've kept this from happening, but if it
+                // did anyway (someone else editing on the same account, say),
+                // start them over from empty so the retry doesn't go right
+                // back to hammering the wiki.
+                sEditBucket.drain();
+                sUploadBucket.drain();
                 showThrottleNotification();
-            } else {
-                // Otherwise, throw a normal notification.
-                showPausingErrorNotification(getString(we.getErrorTextId()), resolveWikiExceptionActions(we));
+                return pause(i, PAUSE_THROTTLED);
             }
 
-            return ReturnCode.PAUSE;
-        } catch(Exception e) {
-            // Okay, first off, are we still connected?  An Exception will get
-            // thrown if the connection just goes poof while we're trying to do
-            // something.
-            if(!AndroidUtil.isConnected(this)) {
-                // We're not!  Go to disconnected mode and wait.
-                showWaitingForConnectionNotification();
-            } else {
-                // Otherwise, we're kinda stumped.  Maybe the user will know
-                // what to do?
-                Log.e(DEBUG_TAG, "Unknown wiki problem", e);
-                showPausingErrorNotification(getString(R.string.wiki_notification_general_error), resolveWikiExceptionActions(null));
-            }
+            // Otherwise, throw a normal notification.  Login problems won't
+            // fix themselves, but anything else might.
+            showPausingErrorNotification(getString(we.getErrorTextId()), resolveWikiExceptionActions(we));
+            return pause(i, isLoginProblem(we.getErrorTextId()) ? PAUSE_NEEDS_USER : PAUSE_ERROR);
+        }
 
-            return ReturnCode.PAUSE;
+        // Okay, first off, are we still connected?  An Exception will get
+        // thrown if the connection just goes poof while we're trying to do
+        // something.
+        if(!AndroidUtil.isConnected(this)) {
+            // We're not!  Go to disconnected mode and wait.
+            showWaitingForConnectionNotification();
+            return pause(i, PAUSE_NO_CONNECTION);
+        }
+
+        // Otherwise, we're kinda stumped.  Maybe the user will know what to
+        // do?  Or maybe it'll just work next time.
+        Log.e(DEBUG_TAG, "Unknown wiki problem", e);
+        showPausingErrorNotification(getString(R.string.wiki_notification_general_error), resolveWikiExceptionActions(null));
+        return pause(i, PAUSE_ERROR);
+    }
+
+    private static boolean isLoginProblem(int errorTextId) {
+        return errorTextId == R.string.wiki_conn_anon_pic_error
+                || errorTextId == R.string.wiki_error_bad_password
+                || errorTextId == R.string.wiki_error_bad_username
+                || errorTextId == R.string.wiki_error_username_nonexistant
+                || errorTextId == R.string.wiki_error_bad_login;
+    }
+
+    @Nullable
+    @Override
+    protected RetryPolicy getRetryPolicy(@NonNull Intent i) {
+        switch(i.getIntExtra(EXTRA_PAUSE_REASON, PAUSE_NEEDS_USER)) {
+            case PAUSE_NO_CONNECTION:
+                return CONNECTION_RETRY;
+            case PAUSE_THROTTLED:
+                return THROTTLE_RETRY;
+            case PAUSE_ERROR:
+                return ERROR_RETRY;
+            default:
+                return null;
         }
-        // Eh, forget it.
     }
 
     @Override
     protected void onQueueStart() {
+        mRunStarted = System.currentTimeMillis();
+
         // WAKELOCK!  Front and center!
         mWakeLock.acquire(WAKELOCK_TIMEOUT);
 
@@ -454,6 +662,36 @@ public class WikiService
 
         // We might get an abort during pause, so...
         hidePausingErrorNotification();
+
+        // Now, clean up any image files nobody wants anymore.  Anything the
+        // queue still has a row for stays, obviously.  But WikiFragment writes
+        // its file BEFORE the Intent gets here, so a file with no row might
+        // just be one whose Intent is still on its way.  Those get a grace
+        // period from before this run started (or from now, if this is an
+        // abort and there wasn't a run).
+        long cutoff = (mRunStarted > 0 ? mRunStarted : System.currentTimeMillis()) - IMAGE_SWEEP_GRACE;
+        try {
+            WikiImageStore.sweep(this, cutoff, getQueuedImageFiles());
+        } catch(SQLException sqle) {
+            // If we can't tell what's in the queue, don't touch anything.
+            Log.e(DEBUG_TAG, "Couldn't read the queue, not sweeping image files!", sqle);
+        }
+    }
+
+    @NonNull
+    private Set<String> getQueuedImageFiles() throws SQLException {
+        Set<String> toReturn = new HashSet<>();
+
+        for(String data : getSerializedIntentsFromDatabase()) {
+            try {
+                String imageFile = new JSONObject(data).optString("imageFile");
+                if(!imageFile.isEmpty()) toReturn.add(imageFile);
+            } catch(JSONException je) {
+                // Whatever this is, it doesn't have a file we can see.
+            }
+        }
+
+        return toReturn;
     }
 
     @Override
@@ -486,11 +724,25 @@ public class WikiService
                 toReturn.put("image", uri.toString());
             }
 
-            // ...and a byte array.  That's the troublesome one, as it's large.
+            // ...and the image itself.  That's the troublesome one, as it's
+            // large, so it lives in its own file and we just keep the path.
+            String imageFile = i.getStringExtra(EXTRA_IMAGE_FILE);
             byte[] imageData = i.getByteArrayExtra(EXTRA_IMAGE_DATA);
-            if(imageData != null) {
-                toReturn.put("imageData",
-                        Base64.encodeToString(imageData, Base64.DEFAULT));
+            if(imageFile == null && imageData != null) {
+                // Something gave us raw data instead (or it's an old entry
+                // that's been around since before files).  Write it out now.
+                try {
+                    imageFile = WikiImageStore.write(this, imageData).getAbsolutePath();
+                } catch(IOException ioe) {
+                    // If that didn't work, fall back to the old way.  It's
+                    // big, but at least it's not lost.
+                    Log.w(DEBUG_TAG, "Couldn't write image data to a file, storing it inline...", ioe);
+                    toReturn.put("imageData",
+                            Base64.encodeToString(imageData, Base64.DEFAULT));
+                }
+            }
+            if(imageFile != null) {
+                toReturn.put("imageFile", imageFile);
             }
 
             // Info time!
@@ -593,7 +845,14 @@ public class WikiService
                 toReturn.putExtra(EXTRA_IMAGE, Uri.parse(image));
             }
 
-            // Image data, as a byte array.
+            // Image file, as a path.
+            String imageFile = incoming.optString("imageFile");
+            if(!imageFile.isEmpty()) {
+                toReturn.putExtra(EXTRA_IMAGE_FILE, imageFile);
+            }
+
+            // Image data, as a byte array, if it's an older entry or the file
+            // couldn't be written.
             String imageDataBase64 = incoming.optString("imageData");
             if(!imageDataBase64.isEmpty()) {
                 toReturn.putExtra(EXTRA_IMAGE_DATA,
@@ -667,6 +926,60 @@ public class WikiService
         }
     }
 
+    @Override
+    protected int getMaxConcurrency() {
+        return MAX_CONCURRENT_PAGES;
+    }
+
+    @Override
+    protected String getOrderingKey(@NonNull Intent i) {
+        // Everything for the same expedition page has to stay in order, both
+        // so messages show up in the order they were written and so two edits
+        // don't trip over each other on the same page.  Different pages can
+        // go whenever.  Anything without an Info will get thrown out by
+        // handleIntent anyway, so those can all share a key.
+        try {
+            Info info = i.getParcelableExtra(EXTRA_INFO);
+            return info == null ? null : WikiUtils.getWikiPageName(info);
+        } catch(ClassCastException cce) {
+            return null;
+        }
+    }
+
+    @Override
+    protected int getPriority(@NonNull Intent i) {
+        // Messages shouldn't have to wait for photo uploads to get done.
+        // Since messages and images for the same page were never guaranteed
+        // to go up in any particular order relative to each other on the
+        // page (they're in different sections), this is safe.
+        return i.hasExtra(EXTRA_IMAGE) ? PRIORITY_IMAGE : PRIORITY_MESSAGE;
+    }
+
+    @Override
+    protected long tryAcquirePermits(@NonNull List<Intent> batch) {
+        // A batch of messages is one edit.  An image is one upload and one
+        // edit for the gallery.  Making a brand new expedition page is one
+        // more edit, but that only happens once per page, and the slack in
+        // the buckets covers it.
+        int uploads = 0;
+        for(Intent i : batch) {
+            if(i.hasExtra(EXTRA_IMAGE)) uploads++;
+        }
+        int edits = uploads > 0 ? uploads : 1;
+
+        synchronized(sEditBucket) {
+            // Everything has to be there before any of it gets taken, else an
+            // image could eat up an edit and still have to wait on the upload.
+            long wait = Math.max(sEditBucket.getWaitMillis(edits),
+                    uploads > 0 ? sUploadBucket.getWaitMillis(uploads) : 0);
+            if(wait > 0) return wait;
+
+            sEditBucket.tryTake(edits);
+            if(uploads > 0) sUploadBucket.tryTake(uploads);
+            return 0;
+        }
+    }
+
     @Override
     protected boolean resumeOnNewIntent() {
         // Try to resume the queue on a new intent.  If it fails again, it'll
@@ -723,28 +1036,11 @@ public class WikiService
             mNotificationManager.notify(R.id.wiki_waiting_notification, builder.build());
         }
 
-        WorkRequest connectivityWorkRequest =
-                new OneTimeWorkRequest.Builder(ConnectivityWorker.class)
-                        .setConstraints(new Constraints.Builder()
-                                .setRequiredNetworkType(NetworkType.CONNECTED)
-                                .build())
-                        .build();
-
-        mLastWikiConnectivityRequestId = connectivityWorkRequest.getId();
-        WorkManager.getInstance(this).enqueue(connectivityWorkRequest);
+        // Coming back once the network does is getRetryPolicy's job now.
     }
 
     private void hideWaitingForConnectionNotification() {
         mNotificationManager.cancel(R.id.wiki_waiting_notification);
-
-        // If there's still a request waiting, cancel it.  This really shouldn't
-        // matter (worst case, it just means a stray RESUME will be shot off),
-        // and chances are the ID will be lost as soon as this service ends,
-        // but let's just try anyway.
-        if(mLastWikiConnectivityRequestId != null) {
-            WorkManager.getInstance(this)
-                    .cancelWorkById(mLastWikiConnectivityRequestId);
-        }
     }
 
     private void showPausingErrorNotification(String reason, NotificationCompat.Action[] actions) {
@@ -777,8 +1073,8 @@ public class WikiService
 
     private void showThrottleNotification() {
         if(ActivityCompat.checkSelfPermission(this, Manifest.permission.POST_NOTIFICATIONS) == PackageManager.PERMISSION_GRANTED) {
-            // Throttling just means we wait a minute before we try again.  The
-            // user is free to force the issue, however.
+            // Throttling just means we wait a bit before we try again (see
+            // THROTTLE_RETRY).  The user is free to force the issue, however.
             NotificationCompat.Builder builder = getFreshNotificationBuilder()
                     .setAutoCancel(true)
                     .setOngoing(true)
@@ -791,16 +1087,10 @@ public class WikiService
 
             mNotificationManager.notify(R.id.wiki_throttle_notification, builder.build());
         }
-
-        // Also, get the alarm ready.
-        mAlarmManager.set(AlarmManager.RTC_WAKEUP,
-                System.currentTimeMillis() + THROTTLE_DELAY,
-                getBasicCommandIntent(QueueService.COMMAND_RESUME));
     }
 
     private void hideThrottleNotification() {
         mNotificationManager.cancel(R.id.wiki_throttle_notification);
-        mAlarmManager.cancel(getBasicCommandIntent(QueueService.COMMAND_RESUME));
     }
 
     @SuppressLint("NewApi")
@@ -848,11 +1138,7 @@ public class WikiService
             id = we.getErrorTextId();
 
         NotificationCompat.Action[] toReturn = new NotificationCompat.Action[]{null,null,null};
-        if(id == R.string.wiki_conn_anon_pic_error
-                || id == R.string.wiki_error_bad_password
-                || id == R.string.wiki_error_bad_username
-                || id == R.string.wiki_error_username_nonexistant
-                || id == R.string.wiki_error_bad_login) {
+        if(isLoginProblem(id)) {
             toReturn[0] = new NotificationCompat.Action.Builder(
                     0,
                     getString(R.string.wiki_notification_action_update_login),
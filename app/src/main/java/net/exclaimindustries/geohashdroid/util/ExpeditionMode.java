@@ -29,6 +29,7 @@ import com.google.android.gms.maps.CameraUpdate;
 import com.google.android.gms.maps.CameraUpdateFactory;
 import com.google.android.gms.maps.GoogleMap;
 import com.google.android.gms.maps.Projection;
+import com.google.android.gms.maps.model.BitmapDescriptor;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.LatLngBounds;
 import com.google.android.gms.maps.model.Marker;
@@ -46,6 +47,7 @@ import net.exclaimindustries.geohashdroid.widgets.ZoomButtons;
 import net.exclaimindustries.tools.AndroidUtil;
 import net.exclaimindustries.tools.BitmapTools;
 import net.exclaimindustries.tools.DateTools;
+import net.exclaimindustries.tools.GeoDistance;
 import net.exclaimindustries.tools.LocationUtil;
 
 import java.text.DateFormat;
@@ -85,6 +87,10 @@ public class ExpeditionMode
     // quick way to switch to a new Info without having to call StockService.
     private final Map<Marker, Info> mNearbyPoints = new HashMap<>();
 
+    // Every nearby marker looks the same, so there's no sense rasterizing the
+    // vector over again for each one.
+    private BitmapDescriptor mNearbyIcon;
+
     private Info mCurrentInfo;
     private DisplayMetrics mMetrics;
 
@@ -460,10 +466,10 @@ public class ExpeditionMode
         final Graticule g = info.getGraticule();
         if(g == null) return;
 
-        // This will get called repeatedly up to eight times (in rare cases,
-        // five times) when we ask for nearby points.  All we need to do is put
-        // those points on the map, and stuff them in the map.  Two different
-        // varieties of map.
+        // This will get called once for every nearby point, which is usually
+        // eight times, but can be a couple thousand if the user cranked the
+        // radius all the way up.  All we need to do is put those points on
+        // the map, and stuff them in the map.  Two different varieties of map.
         synchronized(mNearbyPoints) {
             // The title might be a wee bit unwieldy, as it also has to include
             // the graticule's location.  We DO know that this isn't a
@@ -496,9 +502,12 @@ public class ExpeditionMode
             // Snippet!  Snippet good.
             String snippet = UnitConverter.makeFullCoordinateString(mCentralMap, info.getFinalLocation(), false, UnitConverter.OUTPUT_LONG);
 
+            if(mNearbyIcon == null)
+                mNearbyIcon = BitmapTools.bitmapDescriptorFromVector(mCentralMap, R.drawable.final_destination_disabled);
+
             Marker nearby = mMap.addMarker(new MarkerOptions()
                     .position(info.getFinalDestinationLatLng())
-                    .icon(BitmapTools.bitmapDescriptorFromVector(mCentralMap, R.drawable.final_destination_disabled))
+                    .icon(mNearbyIcon)
                     .alpha(0.5f)
                     .anchor(0.5f, 1.0f)
                     .title(title)
@@ -1086,7 +1095,8 @@ public class ExpeditionMode
             if(accuracy == 0.0f) accuracy = 5.0f;
 
             if(accuracy < GHDConstants.LOW_ACCURACY_THRESHOLD
-                    && mCurrentInfo.getDistanceInMeters(location) < accuracy) {
+                    && GeoDistance.isWithin(location.getLatitude(), location.getLongitude(),
+                            mCurrentInfo.getLatitude(), mCurrentInfo.getLongitude(), accuracy)) {
                 // VICTORY!
                 ErrorBanner banner = mCentralMap.getErrorBanner();
                 banner.setErrorStatus(ErrorBanner.Status.VICTORY);
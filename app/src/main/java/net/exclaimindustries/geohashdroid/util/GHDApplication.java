@@ -0,0 +1,42 @@
+/*
+ * GHDApplication.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.geohashdroid.util;
+
+import android.util.Log;
+
+import androidx.multidex.MultiDexApplication;
+
+import net.exclaimindustries.geohashdroid.BuildConfig;
+import net.exclaimindustries.tools.LogGate;
+
+/**
+ * The Application.  It's still a MultiDexApplication at heart, it just also
+ * gets a chance to set up process-wide things before any Activity, Service,
+ * Worker, or Receiver gets going.
+ */
+public class GHDApplication extends MultiDexApplication {
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        // Release builds don't need the verbose/debug chatter from the stock
+        // cache and queue code.  With this set, LogGate drops those before
+        // any formatting happens.
+        LogGate.setMinimumLevel(BuildConfig.DEBUG ? Log.VERBOSE : Log.INFO);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+
+        // The known location pins are the only thing we're holding on to
+        // purely for speed's sake, so they're the first to go.
+        KnownLocationMarkerCache.trimMemory(level);
+    }
+}
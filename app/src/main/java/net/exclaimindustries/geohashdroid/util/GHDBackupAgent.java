@@ -9,7 +9,11 @@
 package net.exclaimindustries.geohashdroid.util;
 
 import android.app.backup.BackupAgentHelper;
+import android.app.backup.BackupDataOutput;
 import android.app.backup.SharedPreferencesBackupHelper;
+import android.os.ParcelFileDescriptor;
+
+import java.io.IOException;
 
 /**
  * This is your standard run-of-the-mill BackupAgentHelper for pre-Marshmallow
@@ -34,6 +38,7 @@ public class GHDBackupAgent extends BackupAgentHelper {
                 GHDConstants.PREF_LAST_MAP_TYPE,
                 GHDConstants.PREF_LAST_SEEN_VERSION,
                 GHDConstants.PREF_NEARBY_POINTS,
+                GHDConstants.PREF_NEARBY_RADIUS,
                 GHDConstants.PREF_SHOW_KNOWN_LOCATIONS,
                 GHDConstants.PREF_STARTUP_BEHAVIOR,
                 GHDConstants.PREF_STOCK_ALARM,
@@ -45,4 +50,24 @@ public class GHDBackupAgent extends BackupAgentHelper {
         );
         addHelper(PREFS_BACKUP_KEY, helper);
     }
+
+    @Override
+    public void onBackup(ParcelFileDescriptor oldState,
+                         BackupDataOutput data,
+                         ParcelFileDescriptor newState) throws IOException {
+        // KnownLocations live in their own database now, but the backup still
+        // goes by preferences.  So, refresh the old preference blob right
+        // before the helper goes looking for it.
+        KnownLocationStore.getInstance(this).writeBackupBlob();
+        super.onBackup(oldState, data, newState);
+    }
+
+    @Override
+    public void onRestoreFinished() {
+        super.onRestoreFinished();
+
+        // And going the other way, whatever just got restored into the blob
+        // needs to go into the database.
+        KnownLocationStore.getInstance(this).restoreFromBackupBlob();
+    }
 }
@@ -39,6 +39,8 @@ public final class GHDConstants {
     public static final String PREF_STOCK_CACHE_SIZE = "StockCacheSize";
     /** Prefs key specifying to show nearby meetup points. */
     public static final String PREF_NEARBY_POINTS = "NearbyPoints";
+    /** Prefs key specifying how many graticules out the nearby points go. */
+    public static final String PREF_NEARBY_RADIUS = "NearbyRadius";
     /** Prefs key specifying to show known locations on the main map. */
     public static final String PREF_SHOW_KNOWN_LOCATIONS = "ShowKnownLocations";
     /** Prefs key that stores the known locations JSON blob. */
@@ -10,10 +10,12 @@ package net.exclaimindustries.geohashdroid.util;
 import android.content.Context;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import android.util.Log;
 
 import net.exclaimindustries.tools.DateTools;
 import net.exclaimindustries.tools.HexFraction;
+import net.exclaimindustries.tools.LogGate;
 import net.exclaimindustries.tools.MD5Tools;
 
 import java.io.BufferedReader;
@@ -23,7 +25,9 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.security.InvalidParameterException;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.List;
 import java.util.Locale;
 import java.util.Timer;
 import java.util.TimerTask;
@@ -61,6 +65,11 @@ public class HashBuilder {
     private static final Object locker = new Object();
     
     private static final String DEBUG_TAG = "HashBuilder";
+
+    // How far around a fresh stock's date storeLookahead looks for other dates
+    // that share it.
+    private static final int LOOKAHEAD_DAYS_BACK = 3;
+    private static final int LOOKAHEAD_DAYS_FORWARD = 7;
     
     private static StockStoreDatabase mStore;
     // This set allows for quick reloading of the most recent stock and hash in
@@ -70,6 +79,10 @@ public class HashBuilder {
     private static Info mLastInfo;
     private static Info mTwoInfosAgo;
 
+    // If not null, StockRunner goes here instead of the real servers.  This is
+    // only for replaying things against a local stand-in.
+    private static volatile String[] sServerOverride;
+
     /**
      * <code>StockRunner</code> is what fetches the stocks.  It spawns off
      * threads to fetch data, and once {@link #runStock()} returns, you'll be
@@ -145,11 +158,11 @@ public class HashBuilder {
          * </p>
          */
         public void runStock() {
-            Log.d(DEBUG_TAG, "Now starting a StockRunner for " +
-                DateTools.getHyphenatedDateString(mCal) +
-                    (mGrat == null ? " for the Globalhash" : " at " +
-                        mGrat.getTitleString(false))
-                    + "...");
+            if(LogGate.isLoggable(Log.DEBUG))
+                LogGate.d(DEBUG_TAG, "Now starting a StockRunner for %s%s...",
+                        DateTools.getHyphenatedDateString(mCal),
+                        (mGrat == null ? " for the Globalhash" : " at " +
+                                mGrat.getTitleString(false)));
             Info toReturn;
             String stock;
             
@@ -168,7 +181,7 @@ public class HashBuilder {
                 if(toReturn != null) {
                     // Hey, whadya know, we've got something!  Send this data
                     // back to the Handler and return!
-                    Log.d(DEBUG_TAG, "Found it in the cache!");
+                    LogGate.d(DEBUG_TAG, "Found it in the cache!");
                     mStatus = ALL_OKAY;
                     sendMessage(toReturn);
                     return;
@@ -186,8 +199,13 @@ public class HashBuilder {
                         stock = fetchStock(sCal);
                         // If this didn't throw an exception AND it's not blank,
                         // stash it in the database.
-                        if(stock.trim().length() != 0)
+                        if(stock.trim().length() != 0) {
                             storeStock(mContext, sCal, stock);
+
+                            // While we're here, a fresh stock means a bunch
+                            // of other days' hashes just became knowable.
+                            storeLookahead(mContext, sCal, stock);
+                        }
                     } catch (FileNotFoundException fnfe) {
                         // If we got a 404, assume it's not posted yet.
                         mStatus = ERROR_NOT_POSTED;
@@ -250,7 +268,11 @@ public class HashBuilder {
             int curStatus = ERROR_SERVER;
             String result = "";
 
-            for(String s : mServers) {
+            // Anything set up by a test harness takes precedence.
+            String[] servers = sServerOverride;
+            if(servers == null) servers = mServers;
+
+            for(String s : servers) {
                 // Do all our substitutions...
                 String location = s.replaceAll("%Y", Integer.toString(sCal.get(Calendar.YEAR)));
                 location = location.replaceAll("%m", sMonthStr);
@@ -412,6 +434,18 @@ public class HashBuilder {
         return new StockRunner(con, c, g);
     }
 
+    /**
+     * Points StockRunner at a different set of servers, in the same %Y/%m/%d
+     * format as the real ones.  This is strictly for test harnesses that want
+     * to run things against a local stand-in; pass null to go back to normal.
+     *
+     * @param servers the server URL templates, or null for the defaults
+     */
+    @VisibleForTesting
+    public static void setStockServerOverride(@Nullable String[] servers) {
+        sServerOverride = servers;
+    }
+
     /**
      * Attempt to construct an Info object from stored info and return it,
      * explicitly without going to the internet.  If this can't be done, this
@@ -427,11 +461,12 @@ public class HashBuilder {
     @Nullable
     public static Info getStoredInfo(@NonNull Context con, @NonNull Calendar c, @Nullable Graticule g) {
         // First, check the quick cache.  If it's in the quick cache, use it.
-        Log.v(DEBUG_TAG, "Checking caches for " + DateTools.getDateString(c)
-                + ((g == null || g.uses30WRule()) ? " with 30W rule" : " without 30W rule"));
+        if(LogGate.isLoggable(Log.VERBOSE))
+            LogGate.v(DEBUG_TAG, "Checking caches for %s %s", DateTools.getDateString(c),
+                    ((g == null || g.uses30WRule()) ? "with 30W rule" : "without 30W rule"));
         Info result = getQuickCache(c, g);
         if(result != null) {
-            Log.v(DEBUG_TAG, "Data found in quickcache!");
+            LogGate.v(DEBUG_TAG, "Data found in quickcache!");
             if(result.isGlobalHash()) return result;
             else return cloneInfo(result, g);
         }
@@ -442,7 +477,7 @@ public class HashBuilder {
         if(i == null)
             return null;
             
-        Log.v(DEBUG_TAG, "Data found in database!  Quickcaching...");
+        LogGate.v(DEBUG_TAG, "Data found in database!  Quickcaching...");
         // If it was in the main cache but not the quick cache, quick cache it.
         quickCache(i);
         return i;
@@ -460,7 +495,8 @@ public class HashBuilder {
     @Nullable
     public static String getStoredStock(@NonNull Context con, @NonNull Calendar c) {
         // We don't quickcache the stock values.
-        Log.v(DEBUG_TAG, "Going to the database for a stock for " + DateTools.getDateString(c));
+        if(LogGate.isLoggable(Log.VERBOSE))
+            LogGate.v(DEBUG_TAG, "Going to the database for a stock for %s", DateTools.getDateString(c));
         
         return getStore(con).getStock(c);
     }
@@ -502,6 +538,64 @@ public class HashBuilder {
         store.cleanup(con);
     }
 
+    /**
+     * <p>
+     * Works out and stores every hash that can be derived from a freshly
+     * fetched stock.  That's more than just the day it was fetched for: a
+     * Friday stock also covers Saturday and Sunday (and the 30W side of each of
+     * those a day later), and if the next weekday is a holiday, that too.
+     * Without this, each of those would wait until someone asked for them and
+     * then go through StockRunner separately.
+     * </p>
+     *
+     * <p>
+     * The hashes table only cares about the date and which side of the 30W
+     * line we're on, not the Graticule, so this covers the last-used
+     * Graticule, its neighbors, every KnownLocation, and anywhere else all at
+     * once.  Stocks get stored for any holiday dates, too, so that
+     * {@link #getStoredStock(Context, Calendar)} agrees with the hashes.
+     * </p>
+     *
+     * @param con Context used to retrieve the database
+     * @param sCal the (adjusted) date the stock was fetched for
+     * @param stock the stock itself
+     */
+    private synchronized static void storeLookahead(@NonNull Context con,
+                                                    @NonNull Calendar sCal,
+                                                    @NonNull String stock) {
+        String tradingDay = DateTools.getDateString(MarketCalendar.getTradingDay(sCal));
+        Graticule[] sides = {GHDConstants.DUMMY_TODAY, GHDConstants.DUMMY_YESTERDAY};
+        StockStoreDatabase store = getStore(con);
+        int stored = 0;
+
+        // A few days back covers the case where sCal was itself a holiday
+        // (the weekend before it shares its stock).  A week forward covers
+        // any realistic run of weekends and holidays after it.
+        Calendar cal = (Calendar) sCal.clone();
+        cal.add(Calendar.DAY_OF_MONTH, -LOOKAHEAD_DAYS_BACK);
+
+        for(int day = -LOOKAHEAD_DAYS_BACK; day <= LOOKAHEAD_DAYS_FORWARD; day++) {
+            for(Graticule g : sides) {
+                Calendar adjusted = Info.makeAdjustedCalendar(cal, g);
+
+                if(!DateTools.getDateString(MarketCalendar.getTradingDay(adjusted)).equals(tradingDay))
+                    continue;
+
+                // Both of these quietly ignore anything already stored.  They
+                // don't touch the quick cache, either, since none of this is
+                // what anyone's actually looking at right now.
+                store.storeStock(adjusted, stock);
+                store.storeInfo(createInfo(cal, stock, g));
+                stored++;
+            }
+
+            cal.add(Calendar.DAY_OF_MONTH, 1);
+        }
+
+        if(LogGate.isLoggable(Log.DEBUG))
+            LogGate.d(DEBUG_TAG, "Lookahead for %s covered %d date/side pairs", DateTools.getDateString(sCal), stored);
+    }
+
     /**
      * Wipes out the entire stock cache.  No, seriously.
      * 
@@ -592,6 +686,104 @@ public class HashBuilder {
         return new Info(lat, lon, g, i.getCalendar());
     }
     
+    /**
+     * <p>
+     * Builds a new Info object for some other Graticule (or the Globalhash)
+     * out of one we already have.  Every point on the same side of the 30W
+     * line on a given date shares the same hash (the Globalhash counts as
+     * being on the 30W side), so once you've got one of those, you've got all
+     * of them, no stock lookups needed.
+     * </p>
+     *
+     * <p>
+     * Unlike the private clone method, this one also handles a Globalhash on
+     * either end.
+     * </p>
+     *
+     * @param i existing, valid Info object
+     * @param g Graticule for the new Info, or null for the Globalhash
+     * @return a new Info object at g
+     * @throws InvalidParameterException i isn't valid, or it and g don't lie
+     *                                   on the same side of the 30W line
+     */
+    @NonNull
+    public static Info projectInfo(@NonNull Info i, @Nullable Graticule g) {
+        if(!i.isValid())
+            throw new InvalidParameterException("You can't project an invalid Info.");
+
+        if(i.uses30WRule() != Info.uses30WRule(i.getCalendar(), g))
+            throw new InvalidParameterException("The given Info and Graticule do not lie on the same side of the 30W line.");
+
+        if(g == null)
+            return new Info(i.getLatitudeHash(), i.getLongitudeHash(), null, i.getCalendar());
+
+        double lat = (g.getLatitude() + i.getLatitudeHash()) * (g.isSouth() ? -1 : 1);
+        double lon = (g.getLongitude() + i.getLongitudeHash()) * (g.isWest() ? -1 : 1);
+
+        return new Info(lat, lon, g, i.getCalendar());
+    }
+
+    /**
+     * <p>
+     * Builds every Info in a square neighborhood around some center Info,
+     * without going anywhere near the database or the internet.  A radius of
+     * 1 is the usual 3x3 nearby-points ring, 2 is 5x5, and so on.  The center
+     * itself isn't included.  Rows past the poles are skipped, and columns
+     * wrap around the planet, up to a radius of 179 (anything bigger than
+     * that would start repeating columns, so it gets clamped).
+     * </p>
+     *
+     * <p>
+     * Since the whole neighborhood is on the same date, there's at most two
+     * distinct hashes involved: one for each side of the 30W line.  The center
+     * covers its own side.  If the neighborhood spills over to the other side,
+     * pass in any valid Info from over there as otherSide; if that's null,
+     * those cells are just left out.
+     * </p>
+     *
+     * @param center valid, non-Globalhash Info in the middle
+     * @param radius how many graticules out to go in each direction
+     * @param otherSide valid Info on the same date on the other side of the
+     *                  30W line, or null if there isn't one
+     * @return all the Infos that could be built, in row-major order from the
+     *         southwest corner
+     * @throws InvalidParameterException center is a Globalhash or invalid
+     */
+    @NonNull
+    public static Info[] projectNeighborhood(@NonNull Info center, int radius, @Nullable Info otherSide) {
+        Graticule g = center.getGraticule();
+
+        if(g == null || !center.isValid())
+            throw new InvalidParameterException("You can't build a neighborhood around a globalhash or an invalid Info.");
+
+        int lonRadius = Math.min(radius, 179);
+        Calendar cal = center.getCalendar();
+        boolean center30W = center.uses30WRule();
+
+        // Rows go from 0 (89S) to 179 (89N), same as when parceling.
+        int centerRow = g.isSouth() ? 89 - g.getLatitude() : 90 + g.getLatitude();
+
+        List<Info> toReturn = new ArrayList<>();
+
+        for(int i = -radius; i <= radius; i++) {
+            int row = centerRow + i;
+            if(row < 0 || row > 179) continue;
+
+            for(int j = -lonRadius; j <= lonRadius; j++) {
+                if(i == 0 && j == 0) continue;
+
+                Graticule offset = Graticule.createOffsetFrom(g, i, j);
+
+                if(Info.uses30WRule(cal, offset) == center30W)
+                    toReturn.add(projectInfo(center, offset));
+                else if(otherSide != null)
+                    toReturn.add(projectInfo(otherSide, offset));
+            }
+        }
+
+        return toReturn.toArray(new Info[0]);
+    }
+
     /**
      * Generate the hash string from the date and stock price.  The REAL date,
      * that is.  Not a 30W Rule-adjusted date.
@@ -620,7 +812,7 @@ public class HashBuilder {
         
         // At any rate, first off, the most recent date/30W combo.  Then, the
         // second-most.  Failing THAT, return null.
-        Log.v(DEBUG_TAG, "Checking quickcache for data...");
+        LogGate.v(DEBUG_TAG, "Checking quickcache for data...");
         if(mLastInfo != null) {
             Calendar stored = mLastInfo.getCalendar();
             
@@ -630,7 +822,8 @@ public class HashBuilder {
                     && ((mLastInfo.getGraticule() == null && g == null)
                             || (mLastInfo.getGraticule() != null && g != null))
                     && mLastInfo.uses30WRule() == is30W) {
-                Log.v(DEBUG_TAG, "Hash data is in quick cache (mLastInfo): " + mLastInfo.getLatitudeHash() + ", " + mLastInfo.getLongitudeHash());
+                if(LogGate.isLoggable(Log.VERBOSE))
+                    LogGate.v(DEBUG_TAG, "Hash data is in quick cache (mLastInfo): %s, %s", mLastInfo.getLatitudeHash(), mLastInfo.getLongitudeHash());
                 return mLastInfo;
             }
         }
@@ -644,12 +837,13 @@ public class HashBuilder {
                     && ((mTwoInfosAgo.getGraticule() == null && g == null)
                             || (mTwoInfosAgo.getGraticule() != null && g != null))
                     && mTwoInfosAgo.uses30WRule() == is30W) {
-                Log.v(DEBUG_TAG, "Hash data is in quick cache (mTwoInfosAgo): " + mTwoInfosAgo.getLatitudeHash() + ", " + mTwoInfosAgo.getLongitudeHash());
+                if(LogGate.isLoggable(Log.VERBOSE))
+                    LogGate.v(DEBUG_TAG, "Hash data is in quick cache (mTwoInfosAgo): %s, %s", mTwoInfosAgo.getLatitudeHash(), mTwoInfosAgo.getLongitudeHash());
                 return mTwoInfosAgo;
             }
         }
         
-        Log.v(DEBUG_TAG, "Data wasn't in quickcache.");
+        LogGate.v(DEBUG_TAG, "Data wasn't in quickcache.");
         
         return null;
     }
@@ -20,6 +20,7 @@ import androidx.annotation.NonNull;
 import com.google.android.gms.maps.model.LatLng;
 
 import net.exclaimindustries.tools.DateTools;
+import net.exclaimindustries.tools.GeoDistance;
 
 /**
  * <p>
@@ -220,7 +221,7 @@ public class Info implements Parcelable {
      * @return the distance, in meters, to the final destination
      */
     public float getDistanceInMeters(@NonNull Location loc) {
-        return loc.distanceTo(getFinalLocation());
+        return (float)GeoDistance.distance(loc.getLatitude(), loc.getLongitude(), getLatitude(), getLongitude());
     }
 
     /**
@@ -248,7 +249,7 @@ public class Info implements Parcelable {
         // (that is, adjustment is needed).  If the date is May 26, 2008 or
         // earlier (and this isn't a globalhash), ignore it anyway (the 30W Rule
         // only applies to non-globalhashes AFTER it was created).
-        if(g == null || (cal.after(LIMIT_30W) && g.uses30WRule()))
+        if(uses30WRule(cal, g))
             cal.add(Calendar.DAY_OF_MONTH, -1);
         
         // Third, if this new date is a weekend, clamp it back to Friday.
@@ -270,11 +271,22 @@ public class Info implements Parcelable {
      * @return true if 30W or global, false if not
      */
     public boolean uses30WRule() {
-        // If mGraticule is null, this is always 30W.
-        if(mGraticule == null) return true;
-        
-        // Otherwise, just forward it to the graticule itself.
-        return mDate.after(LIMIT_30W) && mGraticule.uses30WRule();
+        return uses30WRule(mDate, mGraticule);
+    }
+
+    /**
+     * Determines if a point on the given date in the given Graticule follows
+     * the 30W Rule.  Any two date/Graticule pairs that give the same answer
+     * here (and have the same date) share the same hash values.
+     *
+     * @param c date to check (the real date, not an adjusted one)
+     * @param g Graticule to check, or null for a globalhash
+     * @return true if 30W or global, false if not
+     */
+    public static boolean uses30WRule(@NonNull Calendar c, @Nullable Graticule g) {
+        // If g is null, this is always 30W.  Otherwise, the Graticule decides,
+        // so long as the date is after the rule came into being.
+        return g == null || (c.after(LIMIT_30W) && g.uses30WRule());
     }
     
     /**
@@ -408,13 +420,29 @@ public class Info implements Parcelable {
             }
         }
 
+        // First pass: find the best rough estimate.  The haversine estimate
+        // is cheap, and it's good enough to rule out most of the nine.
+        double lat = loc.getLatitude();
+        double lon = loc.getLongitude();
+        double bestApprox = Double.MAX_VALUE;
+
+        if(info != null)
+            bestApprox = GeoDistance.approximate(lat, lon, info.getLatitude(), info.getLongitude());
+
+        for(Info i : nearby) {
+            if(i == null) continue;
+            bestApprox = Math.min(bestApprox, GeoDistance.approximate(lat, lon, i.getLatitude(), i.getLongitude()));
+        }
+
+        // Second pass: only the ones that could still win after accounting
+        // for the estimate's error get the exact (ellipsoid) treatment.
         Info nearest = null;
-        float bestDistance = Float.MAX_VALUE;
+        double bestDistance = Double.MAX_VALUE;
 
-        // First, if we got a single Info, start with that.
+        // If we got a single Info, start with that.
         if(info != null) {
             nearest = info;
-            bestDistance = loc.distanceTo(info.getFinalLocation());
+            bestDistance = GeoDistance.distance(lat, lon, info.getLatitude(), info.getLongitude());
         }
 
         // Now, loop through all the nearby Infos to see if any of those are any
@@ -422,7 +450,10 @@ public class Info implements Parcelable {
         for(Info i : nearby) {
             if(i == null) continue;
 
-            float dist = loc.distanceTo(i.getFinalLocation());
+            if(!GeoDistance.mightBeClosest(GeoDistance.approximate(lat, lon, i.getLatitude(), i.getLongitude()), bestApprox))
+                continue;
+
+            double dist = GeoDistance.distance(lat, lon, i.getLatitude(), i.getLongitude());
 
             if(dist < bestDistance) {
                 nearest = i;
@@ -433,7 +464,7 @@ public class Info implements Parcelable {
         // nearest can't be null here.  nearest gets assigned to be the single
         // info if it's not null, or at least one of the nearbys.  The only way
         // nearest can be null is if the distance of ALL the nearbys is equal to
-        // Float.MAX_VALUE, which is just absurd.
+        // Double.MAX_VALUE, which is just absurd.
         if(nearest == null)
             throw new IllegalArgumentException("You have impossible graticules that are somehow infinitely away from anything!");
 
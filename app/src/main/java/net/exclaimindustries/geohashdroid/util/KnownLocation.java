@@ -8,20 +8,16 @@
 
 package net.exclaimindustries.geohashdroid.util;
 
-import android.app.backup.BackupManager;
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.location.Location;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.util.Log;
 
-import com.google.android.gms.maps.model.BitmapDescriptorFactory;
 import com.google.android.gms.maps.model.CircleOptions;
 import com.google.android.gms.maps.model.Dash;
 import com.google.android.gms.maps.model.Gap;
@@ -30,9 +26,8 @@ import com.google.android.gms.maps.model.MarkerOptions;
 import com.google.android.gms.maps.model.PatternItem;
 
 import net.exclaimindustries.geohashdroid.R;
-import net.exclaimindustries.tools.LocationUtil;
+import net.exclaimindustries.tools.GeoDistance;
 
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -43,12 +38,12 @@ import java.util.Objects;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-import androidx.preference.PreferenceManager;
 
 /**
  * This represents a single known location.  It's got a LatLng and a name, as
- * well as a way to serialize itself out to a preference, mostly by making
- * itself into a JSON chunk.
+ * well as a way to serialize itself out to a JSON chunk (which is how they
+ * used to be stored, and how they still get backed up).  The actual storage
+ * is in {@link KnownLocationStore}.
  */
 public class KnownLocation implements Parcelable {
     private static final String JSON_NAME = "name";
@@ -64,6 +59,7 @@ public class KnownLocation implements Parcelable {
     private boolean mUseGlobalhashRange;
     private double mGlobalhashRange;
     private boolean mRestrictGraticule = false;
+    private long mId = -1;
 
     private static final String DEBUG_TAG = "KnownLocation";
 
@@ -127,6 +123,7 @@ public class KnownLocation implements Parcelable {
         dest.writeByte((byte)(mRestrictGraticule ? 0 : 1));
         dest.writeByte((byte)(mUseGlobalhashRange ? 0 : 1));
         dest.writeDouble(mGlobalhashRange);
+        dest.writeLong(mId);
     }
 
     public void readFromParcel(Parcel in) {
@@ -137,6 +134,7 @@ public class KnownLocation implements Parcelable {
         mRestrictGraticule = in.readByte() != 0;
         mUseGlobalhashRange = in.readByte() != 0;
         mGlobalhashRange = in.readDouble();
+        mId = in.readLong();
     }
 
     public static final Parcelable.Creator<KnownLocation> CREATOR = new Parcelable.Creator<KnownLocation>() {
@@ -181,41 +179,15 @@ public class KnownLocation implements Parcelable {
     }
 
     /**
-     * Gets all KnownLocations from Preferences and returns them as a List.
+     * Gets all KnownLocations and returns them as a List.  This comes out of
+     * {@link KnownLocationStore}'s snapshot, so it's cheap to call often.
      *
      * @param c a Context
      * @return a List full of KnownLocations (or an empty List)
      */
     @NonNull
     public static List<KnownLocation> getAllKnownLocations(@NonNull Context c) {
-        List<KnownLocation> toReturn = new ArrayList<>();
-
-        // To the preferences!
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(c);
-        String blob = prefs.getString(GHDConstants.PREF_KNOWN_LOCATIONS, "[]");
-
-        // I really hope this is a JSONArray...
-        JSONArray arr;
-        try {
-            arr = new JSONArray(blob);
-        } catch(JSONException je) {
-            Log.e(DEBUG_TAG, "Couldn't parse the known locations JSON blob!", je);
-            return toReturn;
-        }
-
-        // What's more, I really hope every entry in the JSONArray is a
-        // JSONObject that happens to be a KnownLocation...
-        for(int i = 0; i < arr.length(); i++) {
-            try {
-                JSONObject obj = arr.getJSONObject(i);
-                KnownLocation kl = deserialize(obj);
-                if(kl != null) toReturn.add(kl);
-            } catch(JSONException je) {
-                Log.e(DEBUG_TAG, "Item " + i + " in the known locations JSON blob wasn't a JSONObject!", je);
-            }
-        }
-
-        return toReturn;
+        return KnownLocationStore.getInstance(c).getAll();
     }
 
     /**
@@ -249,28 +221,29 @@ public class KnownLocation implements Parcelable {
     }
 
     /**
-     * Stores a bunch of KnownLocations to preferences.  Note that this <b>replaces</b>
-     * all currently-stored KnownLocations.
+     * Stores a bunch of KnownLocations.  Note that this <b>replaces</b> all
+     * currently-stored KnownLocations.  If you're only changing one, use
+     * {@link KnownLocationStore#insert(KnownLocation)} and friends instead.
      *
      * @param c a Context
      * @param locations a List of KnownLocations
      */
     public static void storeKnownLocations(@NonNull Context c, @NonNull List<KnownLocation> locations) {
-        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(c);
-        SharedPreferences.Editor edit = prefs.edit();
-
-        JSONArray arr = new JSONArray();
-
-        for(KnownLocation kl : locations) {
-            arr.put(kl.serialize());
-        }
+        KnownLocationStore.getInstance(c).replaceAll(locations);
+    }
 
-        // Man, that's easy.
-        edit.putString(GHDConstants.PREF_KNOWN_LOCATIONS, arr.toString());
-        edit.apply();
+    /**
+     * Gets the database ID of this KnownLocation, as assigned by
+     * {@link KnownLocationStore}.
+     *
+     * @return the ID, or -1 if this hasn't been stored
+     */
+    public long getId() {
+        return mId;
+    }
 
-        BackupManager bm = new BackupManager(c);
-        bm.dataChanged();
+    void setId(long id) {
+        mId = id;
     }
 
     /**
@@ -356,7 +329,7 @@ public class KnownLocation implements Parcelable {
      * @return the distance from here to the Info, in meters
      */
     public double getDistanceFrom(@NonNull Info info) {
-        return LocationUtil.latLngToLocation(mLocation).distanceTo(info.getFinalLocation());
+        return GeoDistance.distance(mLocation.latitude, mLocation.longitude, info.getLatitude(), info.getLongitude());
     }
 
     /**
@@ -370,13 +343,7 @@ public class KnownLocation implements Parcelable {
     public boolean isCloseEnough(@NonNull LatLng to) {
         if(mRange <= 0.0) return false;
 
-        // Stupid LatLngs.  I didn't have to deal with these conversions back
-        // when everything just used Locations...
-        float[] dist = new float[1];
-
-        Location.distanceBetween(mLocation.latitude, mLocation.longitude, to.latitude, to.longitude, dist);
-
-        return dist[0] <= mRange;
+        return isWithin(to, mRange);
     }
 
     /**
@@ -394,11 +361,21 @@ public class KnownLocation implements Parcelable {
 
         if(mGlobalhashRange <= 0.0) return false;
 
-        float[] dist = new float[1];
-
-        Location.distanceBetween(mLocation.latitude, mLocation.longitude, to.latitude, to.longitude, dist);
+        return isWithin(to, mGlobalhashRange);
+    }
 
-        return dist[0] <= mGlobalhashRange;
+    /**
+     * Checks if the given point is within range meters of here.  Most of the
+     * time when this gets called (i.e. the morning known location sweep), the
+     * answer is a resounding "no", which {@link GeoDistance} can usually
+     * figure out without doing the full ellipsoid distance calculation.
+     *
+     * @param to the LatLng to check
+     * @param range range, in meters
+     * @return true if close enough, false if not
+     */
+    private boolean isWithin(@NonNull LatLng to, double range) {
+        return GeoDistance.isWithin(mLocation.latitude, mLocation.longitude, to.latitude, to.longitude, range);
     }
 
     /**
@@ -437,7 +414,7 @@ public class KnownLocation implements Parcelable {
             for(int j = -1; j <= 1; j++) {
                 // Offset the base Graticule, if need be...
                 Graticule check = base;
-                if(i != 0 && j != 0) {
+                if(i != 0 || j != 0) {
                     check = Graticule.createOffsetFrom(base, i, j);
                 }
 
@@ -491,7 +468,7 @@ public class KnownLocation implements Parcelable {
 
         toReturn.flat(false)
                 .draggable(false)
-                .icon(BitmapDescriptorFactory.fromBitmap(buildMarkerBitmap(c)))
+                .icon(KnownLocationMarkerCache.getDescriptor(c, this))
                 .anchor(0.5f, 1.0f)
                 .position(mLocation)
                 .title(mName);
@@ -581,9 +558,16 @@ public class KnownLocation implements Parcelable {
         return toReturn;
     }
 
+    /**
+     * Draws this KnownLocation's pin.  This is only for
+     * {@link KnownLocationMarkerCache}; everyone else should go through that.
+     *
+     * @param c a Context, for resources
+     * @return a freshly-drawn pin Bitmap
+     */
     @SuppressWarnings("IntegerDivisionInFloatingPointContext")
     @NonNull
-    private Bitmap buildMarkerBitmap(@NonNull Context c) {
+    Bitmap buildMarkerBitmap(@NonNull Context c) {
         // Oh, this is going to be FUN.
         int dim = c.getResources().getDimensionPixelSize(R.dimen.known_location_marker_canvas_size);
         float radius = c.getResources().getDimension(R.dimen.known_location_pin_head_radius);
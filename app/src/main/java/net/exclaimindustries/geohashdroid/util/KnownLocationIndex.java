@@ -0,0 +1,373 @@
+/*
+ * KnownLocationIndex.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.geohashdroid.util;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import net.exclaimindustries.tools.GeoDistance;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * <p>
+ * A KnownLocationIndex is a spatial index over KnownLocations, so questions
+ * like "which KnownLocations have this point in range?" and "what are the
+ * closest few KnownLocations to here?" don't mean checking every single one.
+ * </p>
+ *
+ * <p>
+ * It's a pair of grids of one-degree cells (the same size as a Graticule, but
+ * keyed by signed floor()ed coordinates, so there's no 0N/0S confusion to deal
+ * with).  The range grid puts each KnownLocation in every cell its range
+ * (normal or globalhash, whichever's bigger) might reach, so a range query
+ * only has to look in the one cell the point's in.  The point grid puts each
+ * KnownLocation only in the cell it's actually in, and nearest-N queries
+ * spiral outward from there until nothing farther out could possibly be
+ * closer.  KnownLocations with enormous ranges that'd cover a silly number of
+ * cells go in a separate list that always gets checked.
+ * </p>
+ *
+ * <p>
+ * Adding and removing are both incremental; nothing gets rebuilt from
+ * scratch.  All methods are synchronized, so this can be shared between
+ * threads.
+ * </p>
+ */
+public class KnownLocationIndex {
+    /** Shortest a degree of latitude ever gets, in meters, rounded down. */
+    private static final double METERS_PER_DEGREE_MIN = 110500.0;
+
+    /**
+     * A radius, in meters, comfortably smaller than any the Earth has, for
+     * underestimating distances.
+     */
+    private static final double MIN_RADIUS = 6300000.0;
+
+    /**
+     * Any KnownLocation whose range would cover more cells than this goes in
+     * the oversized list instead.
+     */
+    private static final int MAX_CELLS_PER_LOCATION = 64;
+
+    private final Map<Long, List<KnownLocation>> mRangeCells = new HashMap<>();
+    private final Map<Long, List<KnownLocation>> mPointCells = new HashMap<>();
+    private final List<KnownLocation> mOversized = new ArrayList<>();
+    private int mSize;
+
+    /**
+     * Makes an empty index.
+     */
+    public KnownLocationIndex() { }
+
+    /**
+     * Makes an index with a bunch of KnownLocations already in it.
+     *
+     * @param locations the KnownLocations
+     */
+    public KnownLocationIndex(@NonNull Collection<KnownLocation> locations) {
+        for(KnownLocation kl : locations) add(kl);
+    }
+
+    /**
+     * Adds a KnownLocation to the index.
+     *
+     * @param kl the KnownLocation to add
+     */
+    public synchronized void add(@NonNull KnownLocation kl) {
+        LatLng ll = kl.getLatLng();
+        addToCell(mPointCells, cellKey(latCell(ll.latitude), lonCell(ll.longitude)), kl);
+
+        double range = getMaxRange(kl);
+        if(range > 0.0) {
+            int[] box = getCellBox(ll, range);
+
+            if(box == null) {
+                mOversized.add(kl);
+            } else {
+                for(int lat = box[0]; lat <= box[1]; lat++) {
+                    for(int lon = box[2]; lon <= box[3]; lon++) {
+                        addToCell(mRangeCells, cellKey(lat, wrapLonCell(lon)), kl);
+                    }
+                }
+            }
+        }
+
+        mSize++;
+    }
+
+    /**
+     * Removes a KnownLocation from the index.  If it wasn't there, nothing
+     * happens.
+     *
+     * @param kl the KnownLocation to remove
+     * @return true if it was there to remove
+     */
+    public synchronized boolean remove(@NonNull KnownLocation kl) {
+        LatLng ll = kl.getLatLng();
+        if(!removeFromCell(mPointCells, cellKey(latCell(ll.latitude), lonCell(ll.longitude)), kl))
+            return false;
+
+        double range = getMaxRange(kl);
+        if(range > 0.0) {
+            int[] box = getCellBox(ll, range);
+
+            if(box == null) {
+                mOversized.remove(kl);
+            } else {
+                for(int lat = box[0]; lat <= box[1]; lat++) {
+                    for(int lon = box[2]; lon <= box[3]; lon++) {
+                        removeFromCell(mRangeCells, cellKey(lat, wrapLonCell(lon)), kl);
+                    }
+                }
+            }
+        }
+
+        mSize--;
+        return true;
+    }
+
+    /**
+     * Throws out everything in the index and puts the given KnownLocations
+     * in instead.  Anyone else holding on to this index sees either all of
+     * the old ones or all of the new ones, never half of each.
+     *
+     * @param locations the new KnownLocations
+     */
+    public synchronized void replaceAll(@NonNull Collection<KnownLocation> locations) {
+        mRangeCells.clear();
+        mPointCells.clear();
+        mOversized.clear();
+        mSize = 0;
+
+        for(KnownLocation kl : locations) add(kl);
+    }
+
+    /**
+     * Gets how many KnownLocations are in the index.
+     *
+     * @return the count
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * Finds every KnownLocation that has the given point within its normal
+     * range, as per {@link KnownLocation#isCloseEnough(LatLng)}.
+     *
+     * @param point the point to check
+     * @return every KnownLocation in range (may be empty)
+     */
+    @NonNull
+    public synchronized List<KnownLocation> findInRange(@NonNull LatLng point) {
+        return findInRange(point, false);
+    }
+
+    /**
+     * Finds every KnownLocation that has the given point within its globalhash
+     * range, as per {@link KnownLocation#isCloseEnoughForGlobalhash(LatLng)}.
+     *
+     * @param point the point to check
+     * @return every KnownLocation in range (may be empty)
+     */
+    @NonNull
+    public synchronized List<KnownLocation> findInGlobalhashRange(@NonNull LatLng point) {
+        return findInRange(point, true);
+    }
+
+    /**
+     * Finds the closest KnownLocations to the given point, closest first.
+     *
+     * @param point the point to check
+     * @param count how many to find at most
+     * @return up to count KnownLocations, sorted by distance
+     */
+    @NonNull
+    public synchronized List<KnownLocation> findNearest(@NonNull LatLng point, int count) {
+        List<KnownLocation> toReturn = new ArrayList<>();
+        if(count <= 0 || mSize == 0) return toReturn;
+
+        // Max-heap on distance, so the farthest of the best-so-far is always
+        // right there to get kicked out.
+        PriorityQueue<double[]> best = new PriorityQueue<>(count + 1,
+                (a, b) -> Double.compare(b[0], a[0]));
+        List<KnownLocation> bestLocations = new ArrayList<>();
+
+        int centerLat = latCell(point.latitude);
+        int centerLon = lonCell(point.longitude);
+        int seen = 0;
+
+        // Spiral out ring by ring.  Ring zero is just the center cell.
+        for(int ring = 0; ring <= 360 && seen < mSize; ring++) {
+            // Before looking at this ring, see if it could possibly have
+            // anything closer than the worst of what we've got.
+            if(best.size() >= count && ring > 1) {
+                double lowerBound = getRingLowerBound(point, ring);
+                if(lowerBound > best.peek()[0]) break;
+            }
+
+            for(int lat = centerLat - ring; lat <= centerLat + ring; lat++) {
+                if(lat < -90 || lat > 89) continue;
+
+                boolean edgeRow = lat == centerLat - ring || lat == centerLat + ring;
+                int step = edgeRow ? 1 : Math.max(1, 2 * ring);
+
+                for(int lon = centerLon - ring; lon <= centerLon + ring; lon += step) {
+                    // Past 180 cells either way, we'd start wrapping into
+                    // cells we've already seen (and -180 and +180 are the
+                    // same cell, so only take one of them).
+                    int offset = lon - centerLon;
+                    if(offset <= -180 || offset > 180) continue;
+
+                    List<KnownLocation> cell = mPointCells.get(cellKey(lat, wrapLonCell(lon)));
+                    if(cell == null) continue;
+
+                    for(KnownLocation kl : cell) {
+                        seen++;
+                        LatLng ll = kl.getLatLng();
+                        double dist = GeoDistance.distance(point.latitude, point.longitude, ll.latitude, ll.longitude);
+
+                        if(best.size() < count || dist < best.peek()[0]) {
+                            bestLocations.add(kl);
+                            best.add(new double[] {dist, bestLocations.size() - 1});
+                            if(best.size() > count) best.poll();
+                        }
+                    }
+                }
+            }
+        }
+
+        // Unroll the heap (farthest first) into a closest-first list.
+        KnownLocation[] sorted = new KnownLocation[best.size()];
+        for(int i = sorted.length - 1; i >= 0; i--) {
+            sorted[i] = bestLocations.get((int)best.poll()[1]);
+        }
+        for(KnownLocation kl : sorted) toReturn.add(kl);
+
+        return toReturn;
+    }
+
+    @NonNull
+    private List<KnownLocation> findInRange(@NonNull LatLng point, boolean globalhash) {
+        List<KnownLocation> toReturn = new ArrayList<>();
+
+        List<KnownLocation> cell = mRangeCells.get(cellKey(latCell(point.latitude), lonCell(point.longitude)));
+        if(cell != null) {
+            for(KnownLocation kl : cell) {
+                if(globalhash ? kl.isCloseEnoughForGlobalhash(point) : kl.isCloseEnough(point))
+                    toReturn.add(kl);
+            }
+        }
+
+        for(KnownLocation kl : mOversized) {
+            if(globalhash ? kl.isCloseEnoughForGlobalhash(point) : kl.isCloseEnough(point))
+                toReturn.add(kl);
+        }
+
+        return toReturn;
+    }
+
+    private static double getMaxRange(@NonNull KnownLocation kl) {
+        double range = kl.getRange();
+        if(kl.usesGlobalhashRange()) range = Math.max(range, kl.getGlobalhashRange());
+        return range;
+    }
+
+    /**
+     * Works out the box of cells a range around a point might touch.  This
+     * uses the same overestimate as KnownLocation's own bounding-box check.
+     *
+     * @return {minLat, maxLat, minLon, maxLon} (longitudes unwrapped), or null
+     *         if it's too big and should go in the oversized list
+     */
+    private static int[] getCellBox(@NonNull LatLng ll, double range) {
+        double latSlack = range / METERS_PER_DEGREE_MIN;
+        double maxLat = Math.abs(ll.latitude) + latSlack;
+
+        // Too close to a pole, and longitude stops meaning much.
+        if(maxLat >= 89.0) return null;
+
+        double lonSlack = latSlack / Math.cos(Math.toRadians(maxLat));
+        if(lonSlack >= 180.0) return null;
+
+        int minLatCell = Math.max(-90, latCell(ll.latitude - latSlack));
+        int maxLatCell = Math.min(89, latCell(ll.latitude + latSlack));
+        int minLonCell = (int)Math.floor(ll.longitude - lonSlack);
+        int maxLonCell = (int)Math.floor(ll.longitude + lonSlack);
+
+        if((long)(maxLatCell - minLatCell + 1) * (maxLonCell - minLonCell + 1) > MAX_CELLS_PER_LOCATION)
+            return null;
+
+        return new int[] {minLatCell, maxLatCell, minLonCell, maxLonCell};
+    }
+
+    private static double getRingLowerBound(@NonNull LatLng point, int ring) {
+        // Anything in this ring is at least (ring - 1) whole cells away in
+        // latitude or in longitude, and we have to assume the worse of the
+        // two.  Latitude's easy.  Longitude's trickier, since the shortest way
+        // between two points way up north might cut across the pole instead
+        // of following the parallel, so that's the haversine formula with the
+        // latitude part left out (which can only make it smaller) and the
+        // cosines pushed out to the farthest latitude the ring reaches.  Both
+        // use a radius a bit under the smallest the Earth ever gets, so this
+        // is always a safe underestimate.
+        double degrees = ring - 1;
+        double latMeters = Math.toRadians(degrees) * MIN_RADIUS;
+
+        double farthestLat = Math.min(90.0, Math.abs(point.latitude) + ring + 1);
+        double halfLon = Math.toRadians(Math.min(180.0, degrees)) / 2.0;
+        double lonMeters = 2.0 * Math.asin(Math.cos(Math.toRadians(farthestLat)) * Math.sin(halfLon)) * MIN_RADIUS;
+
+        return Math.min(latMeters, lonMeters);
+    }
+
+    private static int latCell(double lat) {
+        return Math.max(-90, Math.min(89, (int)Math.floor(lat)));
+    }
+
+    private static int lonCell(double lon) {
+        return wrapLonCell((int)Math.floor(lon));
+    }
+
+    private static int wrapLonCell(int lon) {
+        // Cells run -180 through 179.
+        return ((lon + 180) % 360 + 360) % 360 - 180;
+    }
+
+    private static long cellKey(int lat, int lon) {
+        return ((long)lat << 32) | (lon & 0xffffffffL);
+    }
+
+    private static void addToCell(@NonNull Map<Long, List<KnownLocation>> cells,
+                                  long key,
+                                  @NonNull KnownLocation kl) {
+        List<KnownLocation> cell = cells.get(key);
+        if(cell == null) {
+            cell = new ArrayList<>();
+            cells.put(key, cell);
+        }
+        cell.add(kl);
+    }
+
+    private static boolean removeFromCell(@NonNull Map<Long, List<KnownLocation>> cells,
+                                          long key,
+                                          @NonNull KnownLocation kl) {
+        List<KnownLocation> cell = cells.get(key);
+        if(cell == null || !cell.remove(kl)) return false;
+        if(cell.isEmpty()) cells.remove(key);
+        return true;
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * KnownLocationMarkerCache.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.geohashdroid.util;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.maps.model.BitmapDescriptor;
+import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+import com.google.android.gms.maps.model.LatLng;
+
+import net.exclaimindustries.geohashdroid.R;
+import net.exclaimindustries.tools.LogGate;
+
+/**
+ * <p>
+ * Holds on to the pin images {@link KnownLocation#makeMarker(Context)} draws,
+ * so every redraw of the map (rotating the screen, coming back from another
+ * Activity, the picker refreshing after an edit) doesn't mean drawing every
+ * last pin from scratch again.
+ * </p>
+ *
+ * <p>
+ * A pin's look depends entirely on where it is (that's what
+ * {@link KnownLocationPinData} hashes up for the color and angle) and on how
+ * big things are in pixels on this screen, so that's what the key is made of.
+ * The name doesn't matter; that's in the marker title, not the image.  It's
+ * an LRU capped by how many bytes of Bitmap it's holding, and it empties out
+ * if the system says memory's getting tight.
+ * </p>
+ */
+public final class KnownLocationMarkerCache {
+    private static final String DEBUG_TAG = "KnownLocationMarkerCache";
+
+    /** The most this'll hold onto, in bytes, no matter how much heap there is. */
+    private static final int MAX_BYTES = 4 * 1024 * 1024;
+
+    private static LruCache<Key, Entry> sCache;
+
+    private KnownLocationMarkerCache() { }
+
+    static final class Key {
+        private final double mLatitude;
+        private final double mLongitude;
+        private final int mDensityDpi;
+        private final int mCanvasSize;
+
+        Key(@NonNull LatLng loc, int densityDpi, int canvasSize) {
+            mLatitude = loc.latitude;
+            mLongitude = loc.longitude;
+            mDensityDpi = densityDpi;
+            mCanvasSize = canvasSize;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(o == this) return true;
+            if(!(o instanceof Key)) return false;
+
+            Key other = (Key)o;
+            return Double.compare(mLatitude, other.mLatitude) == 0
+                    && Double.compare(mLongitude, other.mLongitude) == 0
+                    && mDensityDpi == other.mDensityDpi
+                    && mCanvasSize == other.mCanvasSize;
+        }
+
+        @Override
+        public int hashCode() {
+            int toReturn = 17;
+
+            long convert = Double.doubleToLongBits(mLatitude);
+            toReturn = 31 * toReturn + (int)(convert ^ (convert >>> 32));
+            convert = Double.doubleToLongBits(mLongitude);
+            toReturn = 31 * toReturn + (int)(convert ^ (convert >>> 32));
+            toReturn = 31 * toReturn + mDensityDpi;
+            toReturn = 31 * toReturn + mCanvasSize;
+
+            return toReturn;
+        }
+    }
+
+    private static final class Entry {
+        private final Bitmap mBitmap;
+        private BitmapDescriptor mDescriptor;
+
+        Entry(@NonNull Bitmap bitmap) {
+            mBitmap = bitmap;
+        }
+    }
+
+    @NonNull
+    private static synchronized LruCache<Key, Entry> getCache() {
+        if(sCache == null) {
+            int maxBytes = (int)Math.min(MAX_BYTES, Runtime.getRuntime().maxMemory() / 32);
+
+            sCache = new LruCache<Key, Entry>(maxBytes) {
+                @Override
+                protected int sizeOf(Key key, Entry value) {
+                    return value.mBitmap.getByteCount();
+                }
+            };
+        }
+
+        return sCache;
+    }
+
+    @NonNull
+    private static Key makeKey(@NonNull Context c, @NonNull KnownLocation kl) {
+        Configuration config = c.getResources().getConfiguration();
+        int dim = c.getResources().getDimensionPixelSize(R.dimen.known_location_marker_canvas_size);
+        return new Key(kl.getLatLng(), config.densityDpi, dim);
+    }
+
+    /**
+     * Gets the pin BitmapDescriptor for a KnownLocation, ready for
+     * MarkerOptions.icon().  This gets drawn only if it isn't already cached,
+     * and the same descriptor gets reused after that, so the Maps API doesn't
+     * have to take in a brand new image every time either.
+     *
+     * @param c a Context, for resources
+     * @param kl the KnownLocation
+     * @return the pin BitmapDescriptor
+     */
+    @NonNull
+    public static BitmapDescriptor getDescriptor(@NonNull Context c, @NonNull KnownLocation kl) {
+        Entry entry = getEntry(c, kl);
+
+        synchronized(entry) {
+            if(entry.mDescriptor == null)
+                entry.mDescriptor = BitmapDescriptorFactory.fromBitmap(entry.mBitmap);
+
+            return entry.mDescriptor;
+        }
+    }
+
+    @NonNull
+    private static Entry getEntry(@NonNull Context c, @NonNull KnownLocation kl) {
+        LruCache<Key, Entry> cache = getCache();
+        Key key = makeKey(c, kl);
+
+        Entry entry = cache.get(key);
+        if(entry == null) {
+            // Two threads might both draw the same pin here, but whichever one
+            // gets put in last wins and the other gets garbage-collected.  No
+            // harm done.
+            entry = new Entry(kl.buildMarkerBitmap(c));
+            cache.put(key, entry);
+        }
+
+        return entry;
+    }
+
+    /**
+     * Gets the pin Bitmap for a KnownLocation, drawing and caching it if need
+     * be, same as {@link #getDescriptor(Context, KnownLocation)} but without
+     * involving the Maps API.  This is for the tests.
+     */
+    @NonNull
+    static Bitmap getBitmap(@NonNull Context c, @NonNull KnownLocation kl) {
+        return getEntry(c, kl).mBitmap;
+    }
+
+    /** How many bytes of Bitmap are cached right now. */
+    static int size() {
+        return getCache().size();
+    }
+
+    /** How many bytes of Bitmap the cache will hold. */
+    static int maxSize() {
+        return getCache().maxSize();
+    }
+
+    /**
+     * Lets go of some or all of the cached pins, depending on how dire the
+     * system says things are.  Call this from onTrimMemory().
+     *
+     * @param level the level passed to onTrimMemory()
+     */
+    public static void trimMemory(int level) {
+        LruCache<Key, Entry> cache;
+        synchronized(KnownLocationMarkerCache.class) {
+            cache = sCache;
+        }
+        if(cache == null) return;
+
+        if(level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            LogGate.d(DEBUG_TAG, "Trim level %s, dropping every cached pin", level);
+            cache.evictAll();
+        } else if(level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            LogGate.d(DEBUG_TAG, "Trim level %s, dropping half the cached pins", level);
+            cache.trimToSize(cache.maxSize() / 2);
+        }
+    }
+
+    /**
+     * Empties the cache entirely.
+     */
+    public static void clear() {
+        getCache().evictAll();
+    }
+}
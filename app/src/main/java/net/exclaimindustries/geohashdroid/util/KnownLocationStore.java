@@ -0,0 +1,421 @@
+/*
+ * KnownLocationStore.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.geohashdroid.util;
+
+import android.app.backup.BackupManager;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.preference.PreferenceManager;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import net.exclaimindustries.tools.LogGate;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>
+ * The <code>KnownLocationStore</code> keeps KnownLocations in their own
+ * database table, one row apiece.  They used to live in one big JSON blob in
+ * preferences, which meant reading any of them meant parsing all of them, and
+ * changing any of them meant writing all of them back out.
+ * </p>
+ *
+ * <p>
+ * Reads come out of an in-memory snapshot, which gets thrown out whenever
+ * anything changes.  Since KnownLocations change about once in a blue moon and
+ * get read every time the map moves or the alarm goes off, that's most of the
+ * savings right there.  Each row also has the Graticule it's in, indexed, for
+ * when only one Graticule's worth is needed.
+ * </p>
+ *
+ * <p>
+ * The old preference blob still gets written, but only when a backup is
+ * actually being made (see {@link GHDBackupAgent}), not on every change.  The
+ * first time the database gets created, whatever's in the blob is imported.
+ * </p>
+ */
+public class KnownLocationStore {
+    private static final String DEBUG_TAG = "KnownLocationStore";
+
+    private static final String TABLE_KNOWN_LOCATIONS = "knownlocations";
+
+    private static final String KEY_ROWID = "_id";
+    private static final String KEY_NAME = "name";
+    private static final String KEY_LAT = "lat";
+    private static final String KEY_LON = "lon";
+    private static final String KEY_RANGE = "range";
+    /** Null if the KnownLocation doesn't use a separate globalhash range. */
+    private static final String KEY_GLOBALHASH_RANGE = "globalhashrange";
+    private static final String KEY_RESTRICT_GRATICULE = "restrictgraticule";
+    /** Graticule latitude, as per {@link Graticule#getLatitudeString(boolean)} with negatives. */
+    private static final String KEY_GRATICULE_LAT = "graticulelat";
+    /** Graticule longitude, as per {@link Graticule#getLongitudeString(boolean)} with negatives. */
+    private static final String KEY_GRATICULE_LON = "graticulelon";
+
+    private static final String[] ALL_COLUMNS = {KEY_ROWID, KEY_NAME, KEY_LAT, KEY_LON,
+            KEY_RANGE, KEY_GLOBALHASH_RANGE, KEY_RESTRICT_GRATICULE};
+
+    private static KnownLocationStore sInstance;
+
+    private final Context mContext;
+    private final DatabaseHelper mHelper;
+
+    // The snapshot.  Null means it needs to be reloaded.
+    private List<KnownLocation> mSnapshot;
+
+    // The spatial index.  Unlike the snapshot, this gets kept up to date as
+    // things change, rather than rebuilt.  Null means it hasn't been built
+    // yet (or replaceAll() threw it out).
+    private KnownLocationIndex mIndex;
+
+    private static class DatabaseHelper extends SQLiteOpenHelper {
+        private static final String DATABASE_NAME = "knownlocations";
+        private static final int DATABASE_VERSION = 1;
+
+        private static final String CREATE_TABLE =
+                "CREATE TABLE " + TABLE_KNOWN_LOCATIONS
+                        + " (" + KEY_ROWID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                        + KEY_NAME + " TEXT NOT NULL, "
+                        + KEY_LAT + " REAL NOT NULL, "
+                        + KEY_LON + " REAL NOT NULL, "
+                        + KEY_RANGE + " REAL NOT NULL, "
+                        + KEY_GLOBALHASH_RANGE + " REAL, "
+                        + KEY_RESTRICT_GRATICULE + " INTEGER NOT NULL, "
+                        + KEY_GRATICULE_LAT + " TEXT NOT NULL, "
+                        + KEY_GRATICULE_LON + " TEXT NOT NULL);";
+
+        private static final String CREATE_GRATICULE_INDEX =
+                "CREATE INDEX knownlocations_graticule ON " + TABLE_KNOWN_LOCATIONS
+                        + " (" + KEY_GRATICULE_LAT + ", " + KEY_GRATICULE_LON + ");";
+
+        private final Context mContext;
+
+        DatabaseHelper(@NonNull Context context) {
+            super(context, DATABASE_NAME, null, DATABASE_VERSION);
+            mContext = context;
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            db.execSQL(CREATE_TABLE);
+            db.execSQL(CREATE_GRATICULE_INDEX);
+
+            // Brand new database means this is the first run since the switch
+            // away from the preference blob (or the first run ever, in which
+            // case the blob's empty and nothing happens).  Bring over whatever
+            // was in there.
+            List<KnownLocation> old = readBlob(mContext);
+            for(KnownLocation kl : old) insertRow(db, kl);
+
+            Log.i(DEBUG_TAG, "Migrated " + old.size() + " known location(s) out of preferences.");
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            // Only one version so far.
+        }
+    }
+
+    private KnownLocationStore(@NonNull Context context) {
+        mContext = context.getApplicationContext();
+        mHelper = new DatabaseHelper(mContext);
+    }
+
+    /**
+     * Gets the one and only KnownLocationStore.
+     *
+     * @param c a Context (the application Context is what actually gets used)
+     * @return the store
+     */
+    @NonNull
+    public static synchronized KnownLocationStore getInstance(@NonNull Context c) {
+        if(sInstance == null) sInstance = new KnownLocationStore(c);
+        return sInstance;
+    }
+
+    /**
+     * Gets every KnownLocation, in the order they were added.  The List is a
+     * fresh copy, so feel free to mess with it; the KnownLocations in it are
+     * shared, though.
+     *
+     * @return all KnownLocations
+     */
+    @NonNull
+    public synchronized List<KnownLocation> getAll() {
+        if(mSnapshot == null) {
+            mSnapshot = Collections.unmodifiableList(query(null, null));
+            LogGate.d(DEBUG_TAG, "Reloaded the snapshot, %s known location(s)", mSnapshot.size());
+        }
+
+        return new ArrayList<>(mSnapshot);
+    }
+
+    /**
+     * Gets the spatial index over every KnownLocation.  This is the same
+     * object every time, and it stays current as KnownLocations get inserted,
+     * updated, deleted, and replaced, so it's fine to hang on to it.
+     *
+     * @return the index
+     */
+    @NonNull
+    public synchronized KnownLocationIndex getIndex() {
+        if(mIndex == null) {
+            mIndex = new KnownLocationIndex(getAll());
+            LogGate.d(DEBUG_TAG, "Built the spatial index, %s known location(s)", mIndex.size());
+        }
+
+        return mIndex;
+    }
+
+    /**
+     * Gets every KnownLocation in a given Graticule.  This goes straight to the
+     * database (using the index), not the snapshot.
+     *
+     * @param g the Graticule
+     * @return all KnownLocations in that Graticule
+     */
+    @NonNull
+    public synchronized List<KnownLocation> getInGraticule(@NonNull Graticule g) {
+        return query(KEY_GRATICULE_LAT + " = ? AND " + KEY_GRATICULE_LON + " = ?",
+                new String[] {g.getLatitudeString(true), g.getLongitudeString(true)});
+    }
+
+    /**
+     * Adds a new KnownLocation.  It gets its ID set in the process.
+     *
+     * @param kl the KnownLocation to add
+     */
+    public synchronized void insert(@NonNull KnownLocation kl) {
+        kl.setId(insertRow(mHelper.getWritableDatabase(), kl));
+        if(mIndex != null) mIndex.add(kl);
+        changed();
+    }
+
+    /**
+     * Adds a whole bunch of new KnownLocations in one transaction.  They all
+     * get their IDs set in the process.  This is for imports, where doing
+     * them one at a time would mean one transaction (and one backup
+     * notification) per KnownLocation.
+     *
+     * @param locations the KnownLocations to add
+     */
+    public synchronized void insertAll(@NonNull List<KnownLocation> locations) {
+        if(locations.isEmpty()) return;
+
+        SQLiteDatabase db = mHelper.getWritableDatabase();
+
+        db.beginTransaction();
+        try {
+            for(KnownLocation kl : locations) kl.setId(insertRow(db, kl));
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        if(mIndex != null) {
+            for(KnownLocation kl : locations) mIndex.add(kl);
+        }
+        changed();
+    }
+
+    /**
+     * Replaces an existing KnownLocation with a new one.  The new one takes
+     * over the old one's ID (and thus its place in line).  If the old one was
+     * never stored, this just inserts the new one.
+     *
+     * @param existing the KnownLocation being replaced
+     * @param replacement what to replace it with
+     */
+    public synchronized void update(@NonNull KnownLocation existing, @NonNull KnownLocation replacement) {
+        if(existing.getId() < 0) {
+            insert(replacement);
+            return;
+        }
+
+        mHelper.getWritableDatabase().update(TABLE_KNOWN_LOCATIONS,
+                makeContentValues(replacement),
+                KEY_ROWID + " = ?",
+                new String[] {Long.toString(existing.getId())});
+        replacement.setId(existing.getId());
+        if(mIndex != null) {
+            mIndex.remove(existing);
+            mIndex.add(replacement);
+        }
+        changed();
+    }
+
+    /**
+     * Deletes a KnownLocation.  If it was never stored, nothing happens.
+     *
+     * @param kl the KnownLocation to delete
+     */
+    public synchronized void delete(@NonNull KnownLocation kl) {
+        if(kl.getId() < 0) return;
+
+        mHelper.getWritableDatabase().delete(TABLE_KNOWN_LOCATIONS,
+                KEY_ROWID + " = ?",
+                new String[] {Long.toString(kl.getId())});
+        kl.setId(-1);
+        if(mIndex != null) mIndex.remove(kl);
+        changed();
+    }
+
+    /**
+     * Throws out every KnownLocation and replaces them with the given ones,
+     * all in one transaction.
+     *
+     * @param locations the new KnownLocations
+     */
+    public synchronized void replaceAll(@NonNull List<KnownLocation> locations) {
+        SQLiteDatabase db = mHelper.getWritableDatabase();
+
+        db.beginTransaction();
+        try {
+            db.delete(TABLE_KNOWN_LOCATIONS, null, null);
+            for(KnownLocation kl : locations) kl.setId(insertRow(db, kl));
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        // Anyone who already has the index keeps the same one, so it gets
+        // refilled instead of thrown away.
+        if(mIndex != null) mIndex.replaceAll(locations);
+        changed();
+    }
+
+    /**
+     * Writes every KnownLocation out to the old preference blob.  This is only
+     * for {@link GHDBackupAgent}, which still backs up preferences.  It's
+     * synchronized so a {@link #replaceAll(List)} can't land halfway through,
+     * and it commits instead of applying because the backup helper reads the
+     * preferences off disk right after this returns.
+     */
+    public synchronized void writeBackupBlob() {
+        JSONArray arr = new JSONArray();
+        for(KnownLocation kl : getAll()) arr.put(kl.serialize());
+
+        PreferenceManager.getDefaultSharedPreferences(mContext).edit()
+                .putString(GHDConstants.PREF_KNOWN_LOCATIONS, arr.toString())
+                .commit();
+    }
+
+    /**
+     * Replaces everything in the database with what's in the old preference
+     * blob.  This is for after {@link GHDBackupAgent} restores preferences.
+     */
+    public void restoreFromBackupBlob() {
+        replaceAll(readBlob(mContext));
+    }
+
+    private void changed() {
+        mSnapshot = null;
+        new BackupManager(mContext).dataChanged();
+    }
+
+    @NonNull
+    private List<KnownLocation> query(@Nullable String selection, @Nullable String[] selectionArgs) {
+        List<KnownLocation> toReturn = new ArrayList<>();
+
+        Cursor cursor = mHelper.getReadableDatabase().query(TABLE_KNOWN_LOCATIONS, ALL_COLUMNS,
+                selection, selectionArgs, null, null, KEY_ROWID);
+
+        if(cursor == null) {
+            Log.w(DEBUG_TAG, "HEY!  The cursor returned from the query was null!");
+            return toReturn;
+        }
+
+        try {
+            while(cursor.moveToNext()) {
+                String name = cursor.getString(1);
+                LatLng location = new LatLng(cursor.getDouble(2), cursor.getDouble(3));
+                double range = cursor.getDouble(4);
+                boolean restrict = cursor.getInt(6) != 0;
+
+                KnownLocation kl = cursor.isNull(5)
+                        ? new KnownLocation(name, location, range, restrict)
+                        : new KnownLocation(name, location, range, cursor.getDouble(5), restrict);
+                kl.setId(cursor.getLong(0));
+                toReturn.add(kl);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return toReturn;
+    }
+
+    private static long insertRow(@NonNull SQLiteDatabase db, @NonNull KnownLocation kl) {
+        return db.insert(TABLE_KNOWN_LOCATIONS, null, makeContentValues(kl));
+    }
+
+    @NonNull
+    private static ContentValues makeContentValues(@NonNull KnownLocation kl) {
+        ContentValues toGo = new ContentValues();
+        LatLng ll = kl.getLatLng();
+        Graticule g = new Graticule(ll);
+
+        toGo.put(KEY_NAME, kl.getName());
+        toGo.put(KEY_LAT, ll.latitude);
+        toGo.put(KEY_LON, ll.longitude);
+        toGo.put(KEY_RANGE, kl.getRange());
+        if(kl.usesGlobalhashRange())
+            toGo.put(KEY_GLOBALHASH_RANGE, kl.getGlobalhashRange());
+        else
+            toGo.putNull(KEY_GLOBALHASH_RANGE);
+        toGo.put(KEY_RESTRICT_GRATICULE, kl.isRestrictedGraticule() ? 1 : 0);
+        toGo.put(KEY_GRATICULE_LAT, g.getLatitudeString(true));
+        toGo.put(KEY_GRATICULE_LON, g.getLongitudeString(true));
+
+        return toGo;
+    }
+
+    @NonNull
+    private static List<KnownLocation> readBlob(@NonNull Context c) {
+        List<KnownLocation> toReturn = new ArrayList<>();
+
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(c);
+        String blob = prefs.getString(GHDConstants.PREF_KNOWN_LOCATIONS, "[]");
+
+        JSONArray arr;
+        try {
+            arr = new JSONArray(blob);
+        } catch(JSONException je) {
+            Log.e(DEBUG_TAG, "Couldn't parse the known locations JSON blob!", je);
+            return toReturn;
+        }
+
+        for(int i = 0; i < arr.length(); i++) {
+            try {
+                JSONObject obj = arr.getJSONObject(i);
+                KnownLocation kl = KnownLocation.deserialize(obj);
+                if(kl != null) toReturn.add(kl);
+            } catch(JSONException je) {
+                Log.e(DEBUG_TAG, "Item " + i + " in the known locations JSON blob wasn't a JSONObject!", je);
+            }
+        }
+
+        return toReturn;
+    }
+}
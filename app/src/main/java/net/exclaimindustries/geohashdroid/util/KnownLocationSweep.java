@@ -0,0 +1,206 @@
+/*
+ * KnownLocationSweep.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.geohashdroid.util;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import net.exclaimindustries.tools.GeoDistance;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * A KnownLocationSweep does what {@link KnownLocation#getClosestInfo(Context, Calendar)}
+ * does, but for a whole pile of KnownLocations at once.  Calling that method
+ * on each KnownLocation means nine cache lookups apiece, and with a few
+ * hundred KnownLocations, that adds up fast.
+ * </p>
+ *
+ * <p>
+ * Instead, this groups KnownLocations by the Graticule they're in, works out
+ * the nine surrounding hashpoints once per group, and remembers every
+ * hashpoint it's made so neighboring groups can share.  And since every
+ * Graticule on one side of the 30W line shares the same hash on any given
+ * date, the only cache lookups that ever happen are at most one per side per
+ * date.  Everything else is arithmetic.
+ * </p>
+ */
+public class KnownLocationSweep {
+    private final Context mContext;
+    private final Calendar mToday;
+    private final Calendar mTomorrow;
+
+    private final Map<Graticule, Info> mTodayInfos = new HashMap<>();
+    private final Map<Graticule, Info> mTomorrowInfos = new HashMap<>();
+
+    // One template Info per date per side of the 30W line.  Index 0 is non-30W,
+    // 1 is 30W.  The looked-up flags keep us from asking the cache again after
+    // it's already said no.
+    private final Info[] mTodayTemplates = new Info[2];
+    private final Info[] mTomorrowTemplates = new Info[2];
+    private final boolean[] mTodayLookedUp = new boolean[2];
+    private final boolean[] mTomorrowLookedUp = new boolean[2];
+
+    /**
+     * Sets up a sweep.  As in AlarmWorker, KnownLocations that use the 30W
+     * Rule get checked against tomorrow, everything else against today.
+     *
+     * @param context a Context, for the stock cache
+     * @param today the date to use for non-30W KnownLocations
+     * @param tomorrow the date to use for 30W KnownLocations
+     */
+    public KnownLocationSweep(@NonNull Context context,
+                              @NonNull Calendar today,
+                              @NonNull Calendar tomorrow) {
+        mContext = context;
+        mToday = today;
+        mTomorrow = tomorrow;
+    }
+
+    /**
+     * Finds the closest Info to each of the given KnownLocations.  The result
+     * lines up with the input list.  Entries will be null wherever
+     * {@link KnownLocation#getClosestInfo(Context, Calendar)} would've thrown
+     * (that is, the stock for that date isn't in the cache yet).
+     *
+     * @param locations the KnownLocations to check
+     * @return an array of the closest Infos, lined up with locations
+     */
+    @NonNull
+    public Info[] findClosestInfos(@NonNull List<KnownLocation> locations) {
+        Info[] toReturn = new Info[locations.size()];
+
+        // Group 'em up by Graticule and date.  Indices into the original list
+        // are what get stored, so we can put the results back in order.
+        Map<Graticule, List<Integer>> todayGroups = new HashMap<>();
+        Map<Graticule, List<Integer>> tomorrowGroups = new HashMap<>();
+
+        for(int i = 0; i < locations.size(); i++) {
+            KnownLocation kl = locations.get(i);
+            Graticule base = new Graticule(kl.getLatLng());
+            Map<Graticule, List<Integer>> groups = kl.is30w() ? tomorrowGroups : todayGroups;
+
+            List<Integer> group = groups.get(base);
+            if(group == null) {
+                group = new ArrayList<>();
+                groups.put(base, group);
+            }
+            group.add(i);
+        }
+
+        sweepGroups(locations, todayGroups, false, toReturn);
+        sweepGroups(locations, tomorrowGroups, true, toReturn);
+
+        return toReturn;
+    }
+
+    private void sweepGroups(@NonNull List<KnownLocation> locations,
+                             @NonNull Map<Graticule, List<Integer>> groups,
+                             boolean tomorrow,
+                             @NonNull Info[] results) {
+        Info[] candidates = new Info[9];
+
+        for(Map.Entry<Graticule, List<Integer>> entry : groups.entrySet()) {
+            Graticule base = entry.getKey();
+
+            // Work out all nine once for the whole group.  The center is at
+            // index 4.
+            boolean allPresent = true;
+            int index = 0;
+            for(int i = -1; i <= 1; i++) {
+                for(int j = -1; j <= 1; j++) {
+                    Graticule check = Graticule.createOffsetFrom(base, i, j);
+                    candidates[index] = getInfo(check, tomorrow);
+                    if(candidates[index] == null) allPresent = false;
+                    index++;
+                }
+            }
+
+            for(int locIndex : entry.getValue()) {
+                KnownLocation kl = locations.get(locIndex);
+
+                if(kl.isRestrictedGraticule()) {
+                    results[locIndex] = candidates[4];
+                    continue;
+                }
+
+                // Same as getClosestInfo: if any of the nine are missing, the
+                // whole thing's a wash.
+                if(!allPresent) continue;
+
+                results[locIndex] = findClosest(kl.getLatLng(), candidates);
+            }
+        }
+    }
+
+    @NonNull
+    private Info findClosest(@NonNull LatLng from, @NonNull Info[] candidates) {
+        // Rough estimates first, so only the serious contenders need the
+        // exact distance.
+        double bestApprox = Double.MAX_VALUE;
+        for(Info info : candidates) {
+            bestApprox = Math.min(bestApprox, GeoDistance.approximate(from.latitude, from.longitude,
+                    info.getLatitude(), info.getLongitude()));
+        }
+
+        double bestSoFar = Double.MAX_VALUE;
+        Info bestInfo = candidates[4];
+
+        for(Info info : candidates) {
+            double approx = GeoDistance.approximate(from.latitude, from.longitude,
+                    info.getLatitude(), info.getLongitude());
+            if(!GeoDistance.mightBeClosest(approx, bestApprox)) continue;
+
+            double dist = GeoDistance.distance(from.latitude, from.longitude,
+                    info.getLatitude(), info.getLongitude());
+
+            if(dist < bestSoFar) {
+                bestSoFar = dist;
+                bestInfo = info;
+            }
+        }
+
+        return bestInfo;
+    }
+
+    @Nullable
+    private Info getInfo(@NonNull Graticule g, boolean tomorrow) {
+        Map<Graticule, Info> infos = tomorrow ? mTomorrowInfos : mTodayInfos;
+
+        Info info = infos.get(g);
+        if(info != null) return info;
+
+        Calendar cal = tomorrow ? mTomorrow : mToday;
+        int side = Info.uses30WRule(cal, g) ? 1 : 0;
+        Info[] templates = tomorrow ? mTomorrowTemplates : mTodayTemplates;
+        boolean[] lookedUp = tomorrow ? mTomorrowLookedUp : mTodayLookedUp;
+
+        if(!lookedUp[side]) {
+            // First time on this side of the line for this date.  Whatever
+            // Graticule we're on now is as good as any for the lookup.
+            lookedUp[side] = true;
+            templates[side] = HashBuilder.getStoredInfo(mContext, cal, g);
+        }
+
+        if(templates[side] == null) return null;
+
+        info = HashBuilder.projectInfo(templates[side], g);
+        infos.put(g, info);
+        return info;
+    }
+}
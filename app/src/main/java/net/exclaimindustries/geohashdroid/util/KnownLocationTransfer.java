@@ -0,0 +1,498 @@
+/*
+ * KnownLocationTransfer.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.geohashdroid.util;
+
+import android.content.Context;
+import android.util.Log;
+import android.util.Xml;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.maps.model.LatLng;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlSerializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * Imports and exports KnownLocations as GPX waypoints or KML placemarks, for
+ * those people with more meetup points than anyone would want to tap into the
+ * picker one at a time.
+ * </p>
+ *
+ * <p>
+ * Both directions stream.  Importing uses a pull parser and hands off
+ * KnownLocations in batches as it goes (to {@link KnownLocationStore}, usually,
+ * which writes each batch in one transaction), so a huge file never has to be
+ * in memory all at once.  Exporting writes straight out through an
+ * XmlSerializer.
+ * </p>
+ *
+ * <p>
+ * The Geohash Droid-specific bits (range, globalhash range, graticule
+ * restriction) go in GPX extensions or KML ExtendedData.  Files from anywhere
+ * else won't have those, so anything missing a range gets whatever default
+ * the caller asks for.
+ * </p>
+ */
+public final class KnownLocationTransfer {
+    private static final String DEBUG_TAG = "KnownLocationTransfer";
+
+    /** The GPX 1.1 namespace. */
+    public static final String GPX_NAMESPACE = "http://www.topografix.com/GPX/1/1";
+    /** The KML 2.2 namespace. */
+    public static final String KML_NAMESPACE = "http://www.opengis.net/kml/2.2";
+    /** Our own namespace, for the GPX extensions. */
+    public static final String GHD_NAMESPACE = "http://geohashdroid.exclaimindustries.net/xmlschemas/knownlocation/1";
+
+    /** MIME type for GPX files. */
+    public static final String MIME_GPX = "application/gpx+xml";
+    /** MIME type for KML files. */
+    public static final String MIME_KML = "application/vnd.google-earth.kml+xml";
+
+    /** How many KnownLocations to hand off at a time while importing. */
+    public static final int BATCH_SIZE = 500;
+
+    private static final String EXTRA_RANGE = "range";
+    private static final String EXTRA_GLOBALHASH_RANGE = "globalhashRange";
+    private static final String EXTRA_RESTRICT = "restrictGraticule";
+
+    private static final String INDENT_FEATURE = "http://xmlpull.org/v1/doc/features.html#indent-output";
+
+    /** The two formats we can write. */
+    public enum Format {
+        GPX,
+        KML
+    }
+
+    /**
+     * Gets handed KnownLocations as they come out of an import, a batch at a
+     * time.  The List is reused for the next batch, so copy it if it needs to
+     * stick around.
+     */
+    public interface BatchListener {
+        void onBatch(@NonNull List<KnownLocation> batch);
+    }
+
+    /**
+     * What happened in an import.
+     */
+    public static class ImportResult {
+        /** How many KnownLocations were imported. */
+        public int imported;
+        /**
+         * How many waypoints or placemarks were skipped (no coordinates, or
+         * coordinates that made no sense).
+         */
+        public int skipped;
+    }
+
+    private KnownLocationTransfer() { }
+
+    /**
+     * Imports a GPX or KML file straight into {@link KnownLocationStore}.
+     * This does disk I/O and plenty of it, so keep it off the main thread.
+     *
+     * @param c a Context
+     * @param in the file
+     * @param defaultRange range (in meters) to use for anything that doesn't
+     *                     say what its range is
+     * @return what happened
+     * @throws IOException something went wrong reading
+     * @throws XmlPullParserException the file isn't valid XML, or isn't GPX or KML
+     */
+    @NonNull
+    public static ImportResult importInto(@NonNull Context c,
+                                          @NonNull InputStream in,
+                                          double defaultRange)
+            throws IOException, XmlPullParserException {
+        final KnownLocationStore store = KnownLocationStore.getInstance(c);
+        return importLocations(in, defaultRange, store::insertAll);
+    }
+
+    /**
+     * Reads KnownLocations out of a GPX or KML file, whichever it turns out to
+     * be.  They get handed off to the listener in batches of
+     * {@link #BATCH_SIZE} (the last one might be smaller).
+     *
+     * @param in the file
+     * @param defaultRange range (in meters) to use for anything that doesn't
+     *                     say what its range is
+     * @param listener where the batches go
+     * @return what happened
+     * @throws IOException something went wrong reading
+     * @throws XmlPullParserException the file isn't valid XML, or isn't GPX or KML
+     */
+    @NonNull
+    public static ImportResult importLocations(@NonNull InputStream in,
+                                               double defaultRange,
+                                               @NonNull BatchListener listener)
+            throws IOException, XmlPullParserException {
+        XmlPullParser parser = Xml.newPullParser();
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+        parser.setInput(in, null);
+
+        // Find the root element first to decide what we're dealing with.
+        int event = parser.getEventType();
+        while(event != XmlPullParser.START_TAG && event != XmlPullParser.END_DOCUMENT)
+            event = parser.next();
+
+        if(event == XmlPullParser.END_DOCUMENT)
+            throw new XmlPullParserException("That file's empty!");
+
+        Importer importer = new Importer(parser, defaultRange, listener);
+
+        switch(parser.getName()) {
+            case "gpx":
+                importer.readGpx();
+                break;
+            case "kml":
+                importer.readKml();
+                break;
+            default:
+                throw new XmlPullParserException("Expected a GPX or KML file, got a root element of <" + parser.getName() + ">", parser, null);
+        }
+
+        importer.flush();
+
+        Log.i(DEBUG_TAG, "Imported " + importer.result.imported + " known location(s), skipped " + importer.result.skipped);
+        return importer.result;
+    }
+
+    /**
+     * Writes KnownLocations out as a GPX or KML file.  The stream doesn't get
+     * closed.
+     *
+     * @param locations the KnownLocations to write
+     * @param out where to write them
+     * @param format which format to use
+     * @throws IOException something went wrong writing
+     */
+    public static void exportLocations(@NonNull Iterable<KnownLocation> locations,
+                                       @NonNull OutputStream out,
+                                       @NonNull Format format)
+            throws IOException {
+        XmlSerializer serializer = Xml.newSerializer();
+        serializer.setOutput(out, "UTF-8");
+        try {
+            serializer.setFeature(INDENT_FEATURE, true);
+        } catch(IllegalStateException ise) {
+            // Not every serializer does indenting.  It's just for looks anyway.
+        }
+
+        serializer.startDocument("UTF-8", null);
+
+        if(format == Format.GPX)
+            writeGpx(serializer, locations);
+        else
+            writeKml(serializer, locations);
+
+        serializer.endDocument();
+        serializer.flush();
+    }
+
+    private static void writeGpx(@NonNull XmlSerializer s, @NonNull Iterable<KnownLocation> locations)
+            throws IOException {
+        s.setPrefix("", GPX_NAMESPACE);
+        s.setPrefix("ghd", GHD_NAMESPACE);
+        s.startTag(GPX_NAMESPACE, "gpx");
+        s.attribute(null, "version", "1.1");
+        s.attribute(null, "creator", "Geohash Droid");
+
+        for(KnownLocation kl : locations) {
+            s.startTag(GPX_NAMESPACE, "wpt");
+            s.attribute(null, "lat", Double.toString(kl.getLatLng().latitude));
+            s.attribute(null, "lon", Double.toString(kl.getLatLng().longitude));
+
+            s.startTag(GPX_NAMESPACE, "name").text(kl.getName()).endTag(GPX_NAMESPACE, "name");
+
+            s.startTag(GPX_NAMESPACE, "extensions");
+            s.startTag(GHD_NAMESPACE, EXTRA_RANGE)
+                    .text(Double.toString(kl.getRange()))
+                    .endTag(GHD_NAMESPACE, EXTRA_RANGE);
+            if(kl.usesGlobalhashRange()) {
+                s.startTag(GHD_NAMESPACE, EXTRA_GLOBALHASH_RANGE)
+                        .text(Double.toString(kl.getGlobalhashRange()))
+                        .endTag(GHD_NAMESPACE, EXTRA_GLOBALHASH_RANGE);
+            }
+            s.startTag(GHD_NAMESPACE, EXTRA_RESTRICT)
+                    .text(Boolean.toString(kl.isRestrictedGraticule()))
+                    .endTag(GHD_NAMESPACE, EXTRA_RESTRICT);
+            s.endTag(GPX_NAMESPACE, "extensions");
+
+            s.endTag(GPX_NAMESPACE, "wpt");
+        }
+
+        s.endTag(GPX_NAMESPACE, "gpx");
+    }
+
+    private static void writeKml(@NonNull XmlSerializer s, @NonNull Iterable<KnownLocation> locations)
+            throws IOException {
+        s.setPrefix("", KML_NAMESPACE);
+        s.startTag(KML_NAMESPACE, "kml");
+        s.startTag(KML_NAMESPACE, "Document");
+        s.startTag(KML_NAMESPACE, "name").text("Geohash Droid known locations").endTag(KML_NAMESPACE, "name");
+
+        for(KnownLocation kl : locations) {
+            s.startTag(KML_NAMESPACE, "Placemark");
+            s.startTag(KML_NAMESPACE, "name").text(kl.getName()).endTag(KML_NAMESPACE, "name");
+
+            s.startTag(KML_NAMESPACE, "ExtendedData");
+            writeKmlData(s, EXTRA_RANGE, Double.toString(kl.getRange()));
+            if(kl.usesGlobalhashRange())
+                writeKmlData(s, EXTRA_GLOBALHASH_RANGE, Double.toString(kl.getGlobalhashRange()));
+            writeKmlData(s, EXTRA_RESTRICT, Boolean.toString(kl.isRestrictedGraticule()));
+            s.endTag(KML_NAMESPACE, "ExtendedData");
+
+            // KML, for whatever reason, goes longitude first.
+            s.startTag(KML_NAMESPACE, "Point");
+            s.startTag(KML_NAMESPACE, "coordinates")
+                    .text(kl.getLatLng().longitude + "," + kl.getLatLng().latitude)
+                    .endTag(KML_NAMESPACE, "coordinates");
+            s.endTag(KML_NAMESPACE, "Point");
+
+            s.endTag(KML_NAMESPACE, "Placemark");
+        }
+
+        s.endTag(KML_NAMESPACE, "Document");
+        s.endTag(KML_NAMESPACE, "kml");
+    }
+
+    private static void writeKmlData(@NonNull XmlSerializer s, @NonNull String name, @NonNull String value)
+            throws IOException {
+        s.startTag(KML_NAMESPACE, "Data");
+        s.attribute(null, "name", name);
+        s.startTag(KML_NAMESPACE, "value").text(value).endTag(KML_NAMESPACE, "value");
+        s.endTag(KML_NAMESPACE, "Data");
+    }
+
+    /**
+     * Does the actual reading.  This keeps track of the one waypoint or
+     * placemark currently being read and the batch being built up, and that's
+     * it.
+     */
+    private static class Importer {
+        private final XmlPullParser mParser;
+        private final double mDefaultRange;
+        private final BatchListener mListener;
+        private final List<KnownLocation> mBatch = new ArrayList<>(BATCH_SIZE);
+
+        final ImportResult result = new ImportResult();
+
+        // The current point being read.
+        private String mName;
+        private double mLat;
+        private double mLon;
+        private boolean mHasCoordinates;
+        private Double mRange;
+        private Double mGlobalhashRange;
+        private boolean mRestrict;
+
+        Importer(@NonNull XmlPullParser parser, double defaultRange, @NonNull BatchListener listener) {
+            mParser = parser;
+            mDefaultRange = defaultRange;
+            mListener = listener;
+        }
+
+        private void reset() {
+            mName = null;
+            mLat = 0.0;
+            mLon = 0.0;
+            mHasCoordinates = false;
+            mRange = null;
+            mGlobalhashRange = null;
+            mRestrict = false;
+        }
+
+        void readGpx() throws IOException, XmlPullParserException {
+            int event;
+            while((event = mParser.next()) != XmlPullParser.END_DOCUMENT) {
+                // Waypoints are all we're after.  Routes and tracks are just
+                // lots and lots of points that nobody wants as known
+                // locations.
+                if(event == XmlPullParser.START_TAG && mParser.getName().equals("wpt"))
+                    readWaypoint();
+            }
+        }
+
+        private void readWaypoint() throws IOException, XmlPullParserException {
+            reset();
+
+            String lat = mParser.getAttributeValue(null, "lat");
+            String lon = mParser.getAttributeValue(null, "lon");
+            if(lat != null && lon != null) {
+                try {
+                    mLat = Double.parseDouble(lat.trim());
+                    mLon = Double.parseDouble(lon.trim());
+                    mHasCoordinates = true;
+                } catch(NumberFormatException nfe) {
+                    // mHasCoordinates stays false, and it'll be skipped.
+                }
+            }
+
+            int depth = mParser.getDepth();
+            int event;
+            while((event = mParser.next()) != XmlPullParser.END_DOCUMENT) {
+                if(event == XmlPullParser.END_TAG && mParser.getDepth() == depth) break;
+                if(event != XmlPullParser.START_TAG) continue;
+
+                String tag = mParser.getName();
+                // The name we want is the waypoint's own, not some name
+                // buried in a link or something.
+                if(tag.equals("name") && mParser.getDepth() == depth + 1) {
+                    mName = mParser.nextText();
+                } else if(GHD_NAMESPACE.equals(mParser.getNamespace())) {
+                    readExtra(tag, mParser.nextText());
+                }
+            }
+
+            finishPoint();
+        }
+
+        void readKml() throws IOException, XmlPullParserException {
+            int event;
+            while((event = mParser.next()) != XmlPullParser.END_DOCUMENT) {
+                if(event == XmlPullParser.START_TAG && mParser.getName().equals("Placemark"))
+                    readPlacemark();
+            }
+        }
+
+        private void readPlacemark() throws IOException, XmlPullParserException {
+            reset();
+
+            boolean inPoint = false;
+            int depth = mParser.getDepth();
+            int event;
+            while((event = mParser.next()) != XmlPullParser.END_DOCUMENT) {
+                if(event == XmlPullParser.END_TAG) {
+                    if(mParser.getDepth() == depth) break;
+                    if(mParser.getName().equals("Point")) inPoint = false;
+                    continue;
+                }
+                if(event != XmlPullParser.START_TAG) continue;
+
+                switch(mParser.getName()) {
+                    case "name":
+                        if(mParser.getDepth() == depth + 1) mName = mParser.nextText();
+                        break;
+                    case "Point":
+                        inPoint = true;
+                        break;
+                    case "coordinates":
+                        if(inPoint) readKmlCoordinates(mParser.nextText());
+                        break;
+                    case "Data":
+                        String name = mParser.getAttributeValue(null, "name");
+                        String value = readKmlDataValue();
+                        if(name != null && value != null) readExtra(name, value);
+                        break;
+                }
+            }
+
+            finishPoint();
+        }
+
+        @Nullable
+        private String readKmlDataValue() throws IOException, XmlPullParserException {
+            String value = null;
+            int depth = mParser.getDepth();
+            int event;
+            while((event = mParser.next()) != XmlPullParser.END_DOCUMENT) {
+                if(event == XmlPullParser.END_TAG && mParser.getDepth() == depth) break;
+                if(event == XmlPullParser.START_TAG && mParser.getName().equals("value"))
+                    value = mParser.nextText();
+            }
+            return value;
+        }
+
+        private void readKmlCoordinates(@NonNull String text) {
+            // "lon,lat[,alt]", possibly with whitespace everywhere.  If it's
+            // somehow got multiple tuples, we only care about the first.
+            String[] tuple = text.trim().split("\\s+")[0].split(",");
+            if(tuple.length < 2) return;
+
+            try {
+                mLon = Double.parseDouble(tuple[0].trim());
+                mLat = Double.parseDouble(tuple[1].trim());
+                mHasCoordinates = true;
+            } catch(NumberFormatException nfe) {
+                // Skip it, then.
+            }
+        }
+
+        private void readExtra(@NonNull String name, @NonNull String value) {
+            value = value.trim();
+            try {
+                switch(name) {
+                    case EXTRA_RANGE:
+                        mRange = parseRange(value);
+                        break;
+                    case EXTRA_GLOBALHASH_RANGE:
+                        mGlobalhashRange = parseRange(value);
+                        break;
+                    case EXTRA_RESTRICT:
+                        mRestrict = Boolean.parseBoolean(value);
+                        break;
+                }
+            } catch(NumberFormatException nfe) {
+                // A junk range is the same as no range.
+            }
+        }
+
+        /**
+         * Parses a range, returning null for anything that isn't a usable
+         * distance.  Double.parseDouble will happily take "NaN", "Infinity",
+         * and negative numbers, none of which should get anywhere near the
+         * range checks (or the index).
+         */
+        @Nullable
+        private Double parseRange(@NonNull String value) {
+            double range = Double.parseDouble(value);
+            if(Double.isNaN(range) || Double.isInfinite(range) || range < 0.0) return null;
+            return range;
+        }
+
+        private void finishPoint() {
+            if(!mHasCoordinates
+                    || Double.isNaN(mLat) || Double.isNaN(mLon)
+                    || mLat < -90.0 || mLat > 90.0
+                    || mLon < -180.0 || mLon > 180.0) {
+                result.skipped++;
+                return;
+            }
+
+            LatLng ll = new LatLng(mLat, mLon);
+            String name = (mName == null || mName.trim().isEmpty())
+                    ? mLat + ", " + mLon
+                    : mName.trim();
+            double range = mRange != null ? mRange : mDefaultRange;
+
+            mBatch.add(mGlobalhashRange != null
+                    ? new KnownLocation(name, ll, range, mGlobalhashRange, mRestrict)
+                    : new KnownLocation(name, ll, range, mRestrict));
+            result.imported++;
+
+            if(mBatch.size() >= BATCH_SIZE) flush();
+        }
+
+        void flush() {
+            if(mBatch.isEmpty()) return;
+            mListener.onBatch(mBatch);
+            mBatch.clear();
+        }
+    }
+}
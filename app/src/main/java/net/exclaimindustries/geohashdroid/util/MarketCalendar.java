@@ -0,0 +1,150 @@
+/*
+ * MarketCalendar.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.geohashdroid.util;
+
+import androidx.annotation.NonNull;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+/**
+ * <p>
+ * MarketCalendar knows which days the NYSE is closed.  When it's closed, the
+ * "stock" for that day is just whatever the last opening value was, which
+ * means we can work out those days' hashes the moment the last trading day's
+ * stock comes in, no waiting around required.
+ * </p>
+ *
+ * <p>
+ * This only knows about the regularly-scheduled holidays.  Unscheduled
+ * closures (hurricanes, national days of mourning, that sort of thing) will
+ * look like trading days, which is the safe way to be wrong: we just won't
+ * precompute anything for them, and they'll get fetched like normal.
+ * </p>
+ */
+public final class MarketCalendar {
+    private MarketCalendar() { }
+
+    /**
+     * Determines if the NYSE is closed on the given date, be it for a weekend
+     * or a holiday.  Only the date fields of the Calendar are used.
+     *
+     * @param cal the date to check
+     * @return true if there's no trading that day
+     */
+    public static boolean isClosed(@NonNull Calendar cal) {
+        int dow = cal.get(Calendar.DAY_OF_WEEK);
+        return dow == Calendar.SATURDAY || dow == Calendar.SUNDAY || isHoliday(cal);
+    }
+
+    /**
+     * Determines if the given date is a scheduled NYSE holiday.  This doesn't
+     * count weekends.
+     *
+     * @param cal the date to check
+     * @return true if it's a weekday holiday
+     */
+    public static boolean isHoliday(@NonNull Calendar cal) {
+        int year = cal.get(Calendar.YEAR);
+        int month = cal.get(Calendar.MONTH);
+        int day = cal.get(Calendar.DAY_OF_MONTH);
+        int dow = cal.get(Calendar.DAY_OF_WEEK);
+
+        switch(month) {
+            case Calendar.JANUARY:
+                // New Year's Day.  If it's on a Sunday, it's observed Monday.
+                // If it's on a Saturday, it's just skipped, since moving it to
+                // Friday would put it in the previous year's books.
+                if((day == 1 && dow != Calendar.SATURDAY && dow != Calendar.SUNDAY)
+                        || (day == 2 && dow == Calendar.MONDAY)) return true;
+                // Martin Luther King, Jr. Day, third Monday, since 1998.
+                return year >= 1998 && isNthWeekday(day, dow, Calendar.MONDAY, 3);
+            case Calendar.FEBRUARY:
+                // Washington's Birthday, third Monday.
+                return isNthWeekday(day, dow, Calendar.MONDAY, 3);
+            case Calendar.MARCH:
+            case Calendar.APRIL:
+                return isGoodFriday(year, month, day);
+            case Calendar.MAY:
+                // Memorial Day, last Monday.
+                return dow == Calendar.MONDAY && day > 31 - 7;
+            case Calendar.JUNE:
+                // Juneteenth, since 2022.
+                return year >= 2022 && isObservedFixed(day, dow, 19);
+            case Calendar.JULY:
+                // Independence Day.
+                return isObservedFixed(day, dow, 4);
+            case Calendar.SEPTEMBER:
+                // Labor Day, first Monday.
+                return isNthWeekday(day, dow, Calendar.MONDAY, 1);
+            case Calendar.NOVEMBER:
+                // Thanksgiving, fourth Thursday.
+                return isNthWeekday(day, dow, Calendar.THURSDAY, 4);
+            case Calendar.DECEMBER:
+                // Christmas.
+                return isObservedFixed(day, dow, 25);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Walks back from the given date to the most recent day the NYSE was open,
+     * which is the day whose opening value would be used for the given date's
+     * stock.  If the given date is a trading day, it's returned as-is (well,
+     * as a clone).
+     *
+     * @param cal the date to start from
+     * @return a new Calendar on the most recent trading day on or before cal
+     */
+    @NonNull
+    public static Calendar getTradingDay(@NonNull Calendar cal) {
+        Calendar toReturn = (Calendar) cal.clone();
+
+        while(isClosed(toReturn)) toReturn.add(Calendar.DAY_OF_MONTH, -1);
+
+        return toReturn;
+    }
+
+    private static boolean isNthWeekday(int day, int dow, int wantedDow, int n) {
+        return dow == wantedDow && (day - 1) / 7 == n - 1;
+    }
+
+    private static boolean isObservedFixed(int day, int dow, int holiday) {
+        // Saturday holidays get observed on Friday, Sunday ones on Monday.
+        if(day == holiday) return dow != Calendar.SATURDAY && dow != Calendar.SUNDAY;
+        if(day == holiday - 1) return dow == Calendar.FRIDAY;
+        return day == holiday + 1 && dow == Calendar.MONDAY;
+    }
+
+    private static boolean isGoodFriday(int year, int month, int day) {
+        // The anonymous Gregorian algorithm for Easter.  Good Friday is two
+        // days before that.
+        int a = year % 19;
+        int b = year / 100;
+        int c = year % 100;
+        int d = b / 4;
+        int e = b % 4;
+        int f = (b + 8) / 25;
+        int g = (b - f + 1) / 3;
+        int h = (19 * a + b - d - g + 15) % 30;
+        int i = c / 4;
+        int k = c % 4;
+        int l = (32 + 2 * e + 2 * i - h - k) % 7;
+        int m = (a + 11 * h + 22 * l) / 451;
+        int easterMonth = (h + l - 7 * m + 114) / 31;
+        int easterDay = ((h + l - 7 * m + 114) % 31) + 1;
+
+        Calendar goodFriday = new GregorianCalendar(year, easterMonth - 1, easterDay);
+        goodFriday.add(Calendar.DAY_OF_MONTH, -2);
+
+        return goodFriday.get(Calendar.MONTH) == month
+                && goodFriday.get(Calendar.DAY_OF_MONTH) == day;
+    }
+}
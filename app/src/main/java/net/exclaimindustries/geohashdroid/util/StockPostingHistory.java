@@ -0,0 +1,566 @@
+/*
+ * StockPostingHistory.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.geohashdroid.util;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import net.exclaimindustries.tools.DateTools;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * <p>
+ * StockPostingHistory keeps track of when, in practice, the stock actually
+ * shows up on the servers each morning, so AlarmWorker can stop guessing.
+ * Every time the alarm gets a fresh (not cached) stock for the same day it
+ * asked, the time gets written down, along with how many times it had to try
+ * before that.  From there, the first attempt each day gets scheduled just
+ * after when that weekday's stock usually posts, and retries back off
+ * exponentially (with jitter) on a scale based on how spread out the posting
+ * times tend to be.
+ * </p>
+ *
+ * <p>
+ * Note that when the very first try of the day works, that's not a posting
+ * time at all; all it says is the stock was up by then, and it could've been
+ * up for an hour.  Those get kept separately as upper bounds.  Treating them
+ * as posting times would mean every success nudges the next first attempt a
+ * little later, forever, until it's sitting at {@link #LATEST_MINUTE}.  So
+ * instead, if the first try keeps working, the next one gets pushed a bit
+ * earlier to find out how early it can go.
+ * </p>
+ *
+ * <p>
+ * All times here are minutes after midnight, America/New_York.  The history
+ * lives in its own SharedPreferences file so it doesn't get dragged into
+ * backups along with the real preferences.
+ * </p>
+ */
+public class StockPostingHistory {
+    private static final String DEBUG_TAG = "StockPostingHistory";
+
+    private static final String PREFS_FILE = "StockPostingHistory";
+    private static final String PREF_HISTORY = "History";
+
+    private static final String JSON_DATE = "date";
+    private static final String JSON_DAY_OF_WEEK = "dow";
+    private static final String JSON_POSTED = "posted";
+    private static final String JSON_POSTED_BY = "postedBy";
+    private static final String JSON_MISSES = "misses";
+    private static final String JSON_ERRORS = "errors";
+
+    private static final TimeZone NEW_YORK = TimeZone.getTimeZone("America/New_York");
+
+    /** How many days of history to hang on to. */
+    static final int MAX_ENTRIES = 90;
+    /** How many samples a weekday needs before we trust it on its own. */
+    static final int MIN_SAMPLES = 3;
+    /**
+     * How many of the most recent days go into picking the first attempt.
+     * Probing earlier changes what we know day to day, so old days shouldn't
+     * outvote that for long.
+     */
+    static final int RECENT_DAYS = 10;
+
+    /** 9:30am, the old fixed alarm time, used when there's no history. */
+    static final int DEFAULT_MINUTE = 9 * 60 + 30;
+    /** The NYSE opens at 9:30am, so there's no point in trying earlier. */
+    static final int EARLIEST_MINUTE = 9 * 60 + 30;
+    /** And if it's usually not up by noon, something odd is going on. */
+    static final int LATEST_MINUTE = 12 * 60;
+    /** How long after the usual posting time to try. */
+    static final int MARGIN_MINUTES = 1;
+    /**
+     * How much earlier than last time to try once the first try's worked
+     * {@link #MIN_SAMPLES} days running.
+     */
+    static final int PROBE_MINUTES = 2;
+
+    /** Retry base interval bounds, in minutes. */
+    static final int MIN_RETRY_BASE = 2;
+    static final int MAX_RETRY_BASE = 15;
+    /** Retry base interval when there's no history to go on. */
+    static final int DEFAULT_RETRY_BASE = 5;
+    /** Retries never wait longer than this, in minutes. */
+    static final int MAX_RETRY_MINUTES = 60;
+
+    private static final Object sLock = new Object();
+
+    /**
+     * One day's worth of history.
+     */
+    public static class Entry {
+        /** The date, as per {@link DateTools#getDateString(Calendar)}. */
+        public final String date;
+        /** The day of the week, as per {@link Calendar#DAY_OF_WEEK}. */
+        public final int dayOfWeek;
+        /**
+         * Minute of the day it was first seen posted after having been seen
+         * not posted yet, or -1 if that didn't happen.
+         */
+        public int postedMinute;
+        /**
+         * Minute of the day the first try of the day found it already
+         * posted, or -1 if that didn't happen.  It was up by then, but
+         * there's no telling how long before.
+         */
+        public int postedBy;
+        /** How many times the server said it wasn't posted yet. */
+        public int misses;
+        /** How many times something went wrong with the network. */
+        public int errors;
+
+        Entry(@NonNull String date, int dayOfWeek) {
+            this.date = date;
+            this.dayOfWeek = dayOfWeek;
+            postedMinute = -1;
+            postedBy = -1;
+        }
+
+        /**
+         * Writes down a successful fetch at the given minute.  Only the first
+         * one counts.  If nothing's missed today, that's only an upper bound
+         * on when it posted; if something has, it's as close to the actual
+         * posting time as we're going to get.
+         *
+         * @param minute minute of the day
+         * @return true if this changed anything
+         */
+        boolean markPosted(int minute) {
+            if(postedMinute >= 0 || postedBy >= 0) return false;
+
+            if(misses > 0) postedMinute = minute;
+            else postedBy = minute;
+
+            return true;
+        }
+
+        /**
+         * Whether this day was seen posted at all, as a posting time or an
+         * upper bound.
+         */
+        boolean wasSeen() {
+            return postedMinute >= 0 || postedBy >= 0;
+        }
+
+        @NonNull
+        JSONObject serialize() throws JSONException {
+            JSONObject toReturn = new JSONObject();
+            toReturn.put(JSON_DATE, date);
+            toReturn.put(JSON_DAY_OF_WEEK, dayOfWeek);
+            toReturn.put(JSON_POSTED, postedMinute);
+            toReturn.put(JSON_POSTED_BY, postedBy);
+            toReturn.put(JSON_MISSES, misses);
+            toReturn.put(JSON_ERRORS, errors);
+            return toReturn;
+        }
+
+        @NonNull
+        static Entry deserialize(@NonNull JSONObject obj) throws JSONException {
+            Entry toReturn = new Entry(obj.getString(JSON_DATE), obj.getInt(JSON_DAY_OF_WEEK));
+            toReturn.postedMinute = obj.optInt(JSON_POSTED, -1);
+            toReturn.postedBy = obj.optInt(JSON_POSTED_BY, -1);
+            toReturn.misses = obj.optInt(JSON_MISSES, 0);
+            toReturn.errors = obj.optInt(JSON_ERRORS, 0);
+            return toReturn;
+        }
+    }
+
+    /**
+     * Summary statistics over the whole history.  Minutes are -1 if there's
+     * no data to speak of.
+     */
+    public static class Stats {
+        /** Days with a posting time recorded. */
+        public int daysObserved;
+        /** Median posting time. */
+        public int medianMinute = -1;
+        /** 75th percentile posting time (what the first attempt aims for). */
+        public int p75Minute = -1;
+        /** Earliest posting time seen. */
+        public int earliestMinute = -1;
+        /** Latest posting time seen. */
+        public int latestMinute = -1;
+        /** Average number of not-posted-yet responses per day. */
+        public double averageMisses;
+        /** Total network errors across the whole history. */
+        public int totalErrors;
+    }
+
+    private StockPostingHistory() { }
+
+    /**
+     * Records that a fresh stock was just fetched.  This only counts as a
+     * posting time if the stock is for today (in New York); otherwise, we
+     * were just catching up on an old one, which says nothing about when
+     * they post.
+     *
+     * @param context a Context
+     * @param now the current time
+     * @param stockDate the (adjusted) date of the stock that came in
+     */
+    public static void recordPosted(@NonNull Context context,
+                                    @NonNull Calendar now,
+                                    @NonNull Calendar stockDate) {
+        Calendar nyNow = toNewYork(now);
+        if(!DateTools.getDateString(nyNow).equals(DateTools.getDateString(stockDate)))
+            return;
+
+        synchronized(sLock) {
+            List<Entry> history = load(context);
+            Entry today = getOrAddEntry(history, nyNow);
+
+            if(today.markPosted(minuteOfDay(nyNow))) save(context, history);
+        }
+    }
+
+    /**
+     * Records a failed attempt for today.
+     *
+     * @param context a Context
+     * @param now the current time
+     * @param networkError true if it was a network error, false if the server
+     *                     just said it wasn't posted yet
+     * @return how many failures there have been today, including this one
+     */
+    public static int recordMiss(@NonNull Context context,
+                                 @NonNull Calendar now,
+                                 boolean networkError) {
+        Calendar nyNow = toNewYork(now);
+
+        synchronized(sLock) {
+            List<Entry> history = load(context);
+            Entry today = getOrAddEntry(history, nyNow);
+
+            if(networkError) today.errors++;
+            else today.misses++;
+
+            save(context, history);
+            return today.misses + today.errors;
+        }
+    }
+
+    /**
+     * Works out when the first attempt on the given day should be.
+     *
+     * @param context a Context
+     * @param day the day in question (only the date matters)
+     * @return a Calendar in America/New_York for the first attempt
+     */
+    @NonNull
+    public static Calendar getFirstAttemptTime(@NonNull Context context,
+                                               @NonNull Calendar day) {
+        Calendar toReturn = toNewYork(day);
+        List<Entry> history;
+
+        synchronized(sLock) {
+            history = load(context);
+        }
+
+        int minute = pickFirstAttemptMinute(history, toReturn.get(Calendar.DAY_OF_WEEK));
+
+        toReturn.set(Calendar.HOUR_OF_DAY, minute / 60);
+        toReturn.set(Calendar.MINUTE, minute % 60);
+        toReturn.set(Calendar.SECOND, 0);
+        toReturn.set(Calendar.MILLISECOND, 0);
+
+        return toReturn;
+    }
+
+    /**
+     * Works out how long to wait before the next retry.
+     *
+     * @param context a Context
+     * @param now the current time
+     * @param failures how many failures there have been today so far
+     * @param random source of jitter
+     * @return the delay, in milliseconds
+     */
+    public static long getRetryDelay(@NonNull Context context,
+                                     @NonNull Calendar now,
+                                     int failures,
+                                     @NonNull Random random) {
+        List<Entry> history;
+
+        synchronized(sLock) {
+            history = load(context);
+        }
+
+        return computeRetryDelay(history,
+                toNewYork(now).get(Calendar.DAY_OF_WEEK),
+                failures,
+                random.nextDouble());
+    }
+
+    /**
+     * Gets the whole history, most recent last.
+     *
+     * @param context a Context
+     * @return the history
+     */
+    @NonNull
+    public static List<Entry> getHistory(@NonNull Context context) {
+        synchronized(sLock) {
+            return load(context);
+        }
+    }
+
+    /**
+     * Works out summary stats for the whole history.
+     *
+     * @param context a Context
+     * @return the stats
+     */
+    @NonNull
+    public static Stats getStats(@NonNull Context context) {
+        return computeStats(getHistory(context));
+    }
+
+    /**
+     * Wipes out the history.
+     *
+     * @param context a Context
+     */
+    public static void clear(@NonNull Context context) {
+        synchronized(sLock) {
+            getPrefs(context).edit().remove(PREF_HISTORY).apply();
+        }
+    }
+
+    static int pickFirstAttemptMinute(@NonNull List<Entry> history, int dayOfWeek) {
+        List<Entry> days = getSeenDays(history, dayOfWeek);
+
+        // Not enough for this weekday alone?  Pool everything together.
+        if(days.size() < MIN_SAMPLES) days = getSeenDays(history, -1);
+        if(days.size() < MIN_SAMPLES) return DEFAULT_MINUTE;
+
+        // If the first try's worked the last few days running, all we know
+        // is it's been up by then.  Try a bit earlier than last time and see
+        // if it still works.  Sooner or later it won't, and that gives us a
+        // real posting time.
+        boolean firstTriesWorked = true;
+        for(int i = days.size() - MIN_SAMPLES; i < days.size(); i++) {
+            if(days.get(i).postedMinute >= 0) {
+                firstTriesWorked = false;
+                break;
+            }
+        }
+
+        int minute;
+        if(firstTriesWorked) {
+            minute = days.get(days.size() - 1).postedBy - PROBE_MINUTES;
+        } else {
+            // Otherwise, go by the actual posting times from the last few
+            // days.  The 75th percentile means the first try works most days
+            // without waiting around for the stragglers.  Upper bounds only
+            // count if there's nothing better; they'd just drag this later
+            // (adding the margin to them is how this used to creep toward
+            // noon), and the probing above takes care of going earlier.
+            List<Entry> recent = days.subList(Math.max(0, days.size() - RECENT_DAYS), days.size());
+            List<Integer> samples = new ArrayList<>(recent.size());
+            for(Entry e : recent) {
+                if(e.postedMinute >= 0) samples.add(e.postedMinute + MARGIN_MINUTES);
+            }
+            if(samples.isEmpty()) {
+                for(Entry e : recent) samples.add(e.postedBy);
+            }
+
+            Collections.sort(samples);
+            minute = percentile(samples, 0.75);
+        }
+
+        return Math.max(EARLIEST_MINUTE, Math.min(LATEST_MINUTE, minute));
+    }
+
+    static long computeRetryDelay(@NonNull List<Entry> history,
+                                  int dayOfWeek,
+                                  int failures,
+                                  double jitter) {
+        List<Integer> samples = getPostedMinutes(history, dayOfWeek);
+        if(samples.size() < MIN_SAMPLES) samples = getPostedMinutes(history, -1);
+
+        // The base interval scales with how spread out posting times are.  If
+        // it's always within a couple minutes, retry quickly; if it's all
+        // over the place, there's no sense hammering the server.
+        int base = DEFAULT_RETRY_BASE;
+        if(samples.size() >= MIN_SAMPLES) {
+            int spread = percentile(samples, 0.9) - percentile(samples, 0.25);
+            base = Math.max(MIN_RETRY_BASE, Math.min(MAX_RETRY_BASE, spread / 2));
+        }
+
+        // Exponential from there, capped.
+        int exponent = Math.max(0, Math.min(failures - 1, 10));
+        long delayMinutes = Math.min((long)MAX_RETRY_MINUTES, (long)base << exponent);
+
+        // Equal jitter: at least half the delay, plus up to the other half at
+        // random.  That keeps retries from lining up exactly while never
+        // coming back sooner than we'd want.
+        long delayMillis = delayMinutes * 60000L;
+        return delayMillis / 2 + (long)(jitter * (delayMillis / 2));
+    }
+
+    @NonNull
+    static Stats computeStats(@NonNull List<Entry> history) {
+        Stats toReturn = new Stats();
+        List<Integer> samples = getPostedMinutes(history, -1);
+
+        toReturn.daysObserved = samples.size();
+        if(!samples.isEmpty()) {
+            toReturn.medianMinute = percentile(samples, 0.5);
+            toReturn.p75Minute = percentile(samples, 0.75);
+            toReturn.earliestMinute = samples.get(0);
+            toReturn.latestMinute = samples.get(samples.size() - 1);
+        }
+
+        int misses = 0;
+        for(Entry e : history) {
+            misses += e.misses;
+            toReturn.totalErrors += e.errors;
+        }
+        if(!history.isEmpty()) toReturn.averageMisses = (double)misses / history.size();
+
+        return toReturn;
+    }
+
+    /**
+     * Gets the days that were seen posted at all (as a posting time or an
+     * upper bound), in order.
+     *
+     * @param history the history
+     * @param dayOfWeek the weekday to filter to, or -1 for all of them
+     * @return those days
+     */
+    @NonNull
+    private static List<Entry> getSeenDays(@NonNull List<Entry> history, int dayOfWeek) {
+        List<Entry> toReturn = new ArrayList<>();
+
+        for(Entry e : history) {
+            if(e.wasSeen() && (dayOfWeek < 0 || e.dayOfWeek == dayOfWeek))
+                toReturn.add(e);
+        }
+
+        return toReturn;
+    }
+
+    /**
+     * Gets a sorted list of posting minutes.  Upper bounds don't count.
+     *
+     * @param history the history
+     * @param dayOfWeek the weekday to filter to, or -1 for all of them
+     * @return posting minutes, sorted ascending
+     */
+    @NonNull
+    private static List<Integer> getPostedMinutes(@NonNull List<Entry> history, int dayOfWeek) {
+        List<Integer> toReturn = new ArrayList<>();
+
+        for(Entry e : history) {
+            if(e.postedMinute >= 0 && (dayOfWeek < 0 || e.dayOfWeek == dayOfWeek))
+                toReturn.add(e.postedMinute);
+        }
+
+        Collections.sort(toReturn);
+        return toReturn;
+    }
+
+    private static int percentile(@NonNull List<Integer> sorted, double p) {
+        // Nearest-rank.  We're dealing in whole minutes; interpolating would
+        // be putting on airs.
+        int rank = (int)Math.ceil(p * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, rank)));
+    }
+
+    @NonNull
+    private static Entry getOrAddEntry(@NonNull List<Entry> history, @NonNull Calendar nyNow) {
+        String date = DateTools.getDateString(nyNow);
+
+        if(!history.isEmpty()) {
+            Entry last = history.get(history.size() - 1);
+            if(last.date.equals(date)) return last;
+        }
+
+        Entry toReturn = new Entry(date, nyNow.get(Calendar.DAY_OF_WEEK));
+        history.add(toReturn);
+
+        while(history.size() > MAX_ENTRIES) history.remove(0);
+
+        return toReturn;
+    }
+
+    @NonNull
+    private static Calendar toNewYork(@NonNull Calendar cal) {
+        Calendar toReturn = Calendar.getInstance(NEW_YORK);
+        toReturn.setTimeInMillis(cal.getTimeInMillis());
+        return toReturn;
+    }
+
+    private static int minuteOfDay(@NonNull Calendar cal) {
+        return cal.get(Calendar.HOUR_OF_DAY) * 60 + cal.get(Calendar.MINUTE);
+    }
+
+    @NonNull
+    private static SharedPreferences getPrefs(@NonNull Context context) {
+        return context.getSharedPreferences(PREFS_FILE, Context.MODE_PRIVATE);
+    }
+
+    @NonNull
+    private static List<Entry> load(@NonNull Context context) {
+        List<Entry> toReturn = new ArrayList<>();
+        String raw = getPrefs(context).getString(PREF_HISTORY, "[]");
+
+        try {
+            JSONArray arr = new JSONArray(raw);
+            for(int i = 0; i < arr.length(); i++)
+                toReturn.add(Entry.deserialize(arr.getJSONObject(i)));
+        } catch(JSONException je) {
+            Log.e(DEBUG_TAG, "Couldn't parse the posting history, starting fresh!", je);
+            toReturn.clear();
+        }
+
+        return toReturn;
+    }
+
+    private static void save(@NonNull Context context, @NonNull List<Entry> history) {
+        JSONArray arr = new JSONArray();
+
+        try {
+            for(Entry e : history) arr.put(e.serialize());
+        } catch(JSONException je) {
+            Log.e(DEBUG_TAG, "Couldn't serialize the posting history?", je);
+            return;
+        }
+
+        getPrefs(context).edit().putString(PREF_HISTORY, arr.toString()).apply();
+    }
+
+    /**
+     * Formats a minute-of-the-day as an hour:minute string, for display.
+     *
+     * @param minute minute of the day, or -1
+     * @return something like "9:31", or null if minute was negative
+     */
+    @Nullable
+    public static String formatMinute(int minute) {
+        if(minute < 0) return null;
+        return String.format(java.util.Locale.US, "%d:%02d", minute / 60, minute % 60);
+    }
+}
@@ -17,6 +17,7 @@ import android.database.sqlite.SQLiteOpenHelper;
 import android.util.Log;
 
 import net.exclaimindustries.tools.DateTools;
+import net.exclaimindustries.tools.LogGate;
 
 import java.util.Calendar;
 
@@ -146,7 +147,7 @@ public class StockStoreDatabase {
             // does, return a -1.
             // TODO: No, wrong.  I need a better mechanism for that.
             if(getInfo(i.getCalendar(), i.getGraticule()) != null) {
-                Log.v(DEBUG_TAG, "Info already exists for that data, ignoring...");
+                LogGate.v(DEBUG_TAG, "Info already exists for that data, ignoring...");
                 return;
             }
             
@@ -157,9 +158,11 @@ public class StockStoreDatabase {
             toGo.put(KEY_HASHES_LATHASH, i.getLatitudeHash());
             toGo.put(KEY_HASHES_LONHASH, i.getLongitudeHash());
             
-            Log.v(DEBUG_TAG, "NOW STORING TO HASHES " + DateTools.getDateString(cal)
-                    + (i.uses30WRule() ? " (30W)" : "") + " : "
-                    + i.getLatitudeHash() + "," + i.getLongitudeHash());
+            if(LogGate.isLoggable(Log.VERBOSE))
+                LogGate.v(DEBUG_TAG, "NOW STORING TO HASHES %s%s : %s,%s",
+                        DateTools.getDateString(cal),
+                        (i.uses30WRule() ? " (30W)" : ""),
+                        i.getLatitudeHash(), i.getLongitudeHash());
 
             mDatabase.insert(TABLE_HASHES, null, toGo);
         }
@@ -178,7 +181,8 @@ public class StockStoreDatabase {
             // First, check over the database to make sure it doesn't already
             // exist.
             if(getStock(cal) != null) {
-                Log.v(DEBUG_TAG, "Stock price already exists in database for " + DateTools.getDateString(cal) + ", ignoring...");
+                if(LogGate.isLoggable(Log.VERBOSE))
+                    LogGate.v(DEBUG_TAG, "Stock price already exists in database for %s, ignoring...", DateTools.getDateString(cal));
                 return;
             }
             
@@ -187,8 +191,8 @@ public class StockStoreDatabase {
             toGo.put(KEY_STOCKS_DATE, DateTools.getDateString(cal));
             toGo.put(KEY_STOCKS_STOCK, stock);
             
-            Log.v(DEBUG_TAG, "NOW STORING TO STOCKS " + DateTools.getDateString(cal)
-                    + " : " + stock);
+            if(LogGate.isLoggable(Log.VERBOSE))
+                LogGate.v(DEBUG_TAG, "NOW STORING TO STOCKS %s : %s", DateTools.getDateString(cal), stock);
 
             mDatabase.insert(TABLE_STOCKS, null, toGo);
         }
@@ -207,7 +211,7 @@ public class StockStoreDatabase {
      */
     public Info getInfo(Calendar c, Graticule g) {
         synchronized(this) {
-            Log.v(DEBUG_TAG, "Querying the hashes database...");
+            LogGate.v(DEBUG_TAG, "Querying the hashes database...");
             // First, adjust the calendar if we need to.
             Info toReturn = null;
             
@@ -224,14 +228,17 @@ public class StockStoreDatabase {
             } else if(cursor.getCount() == 0) {
                 // If nothing resulted from this, the stock doesn't exist in the
                 // cache.
-                Log.v(DEBUG_TAG, "Info doesn't exist in database");
+                LogGate.v(DEBUG_TAG, "Info doesn't exist in database");
             } else {
                 // Otherwise, grab the first one we come across.
                 if(!cursor.moveToFirst()) return null;
                 
                 double latHash = cursor.getDouble(0);
                 double lonHash = cursor.getDouble(1);
-                Log.v(DEBUG_TAG, "Info found -- Today's lucky numbers are " + latHash + "," + lonHash);
+                // Guarded, since boxing the doubles would allocate even if
+                // verbose logging is off.
+                if(LogGate.isLoggable(Log.VERBOSE))
+                    LogGate.v(DEBUG_TAG, "Info found -- Today's lucky numbers are %s,%s", latHash, lonHash);
                 
                 // Get the destination set...
                 if(g != null) {
@@ -258,7 +265,7 @@ public class StockStoreDatabase {
      */
     public String getStock(Calendar cal) {
         synchronized(this) {
-            Log.v(DEBUG_TAG, "Querying the stock database...");
+            LogGate.v(DEBUG_TAG, "Querying the stock database...");
             
             String toReturn = null;
             
@@ -275,13 +282,13 @@ public class StockStoreDatabase {
             } else if(cursor.getCount() == 0) {
                 // If nothing resulted from this, the stock doesn't exist in the
                 // cache.
-                Log.v(DEBUG_TAG, "Stock doesn't exist in database");
+                LogGate.v(DEBUG_TAG, "Stock doesn't exist in database");
             } else {
                 // Otherwise, grab the first one we come across.
                 if(!cursor.moveToFirst()) return null;
                 
                 toReturn = cursor.getString(0);
-                Log.v(DEBUG_TAG, "Stock found -- Today's lucky number is " + toReturn);
+                LogGate.v(DEBUG_TAG, "Stock found -- Today's lucky number is %s", toReturn);
             }
             
             cursor.close();
@@ -299,7 +306,7 @@ public class StockStoreDatabase {
         synchronized(this) {
             SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(c);
             
-            Log.v(DEBUG_TAG, "Pruning database...");
+            LogGate.v(DEBUG_TAG, "Pruning database...");
             try {
                 // Presumably, initPrefs was already run from the GeohashDroid
                 // class.  Thus, if the pref doesn't exist at this point or
@@ -324,7 +331,8 @@ public class StockStoreDatabase {
                 // "DELETE FROM stocks WHERE _rowid < (highest - max);"
                 int deleted = mDatabase.delete(TABLE_STOCKS, KEY_STOCKS_ROWID + " <= " + (highest - max), null);
 
-                Log.v(DEBUG_TAG, "Stock rows deleted: " + deleted);
+                if(LogGate.isLoggable(Log.VERBOSE))
+                    LogGate.v(DEBUG_TAG, "Stock rows deleted: %d", deleted);
                 
                 // Now, do all that again, but for hashes.
                 
@@ -337,7 +345,8 @@ public class StockStoreDatabase {
                 
                 deleted = mDatabase.delete(TABLE_HASHES, KEY_HASHES_ROWID + " <= " + (highest - max), null);
                 
-                Log.v(DEBUG_TAG, "Info rows deleted: " + deleted);
+                if(LogGate.isLoggable(Log.VERBOSE))
+                    LogGate.v(DEBUG_TAG, "Info rows deleted: %d", deleted);
             } catch (Exception e) {
                 // If something went wrong, let it go.
                 Log.w(DEBUG_TAG, "HEY!  Couldn't prune the stock cache database: " + e.toString());
@@ -352,7 +361,7 @@ public class StockStoreDatabase {
     public boolean deleteCache() {
         synchronized(this) {
             try {
-                Log.v(DEBUG_TAG, "Emptying the stock cache...");
+                LogGate.v(DEBUG_TAG, "Emptying the stock cache...");
                 // KABOOM!
                 mDatabase.delete(TABLE_STOCKS, null, null);
                 mDatabase.delete(TABLE_HASHES, null, null);
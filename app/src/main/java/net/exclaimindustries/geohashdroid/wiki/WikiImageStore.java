@@ -0,0 +1,170 @@
+/*
+ * WikiImageStore.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.geohashdroid.wiki;
+
+import android.content.Context;
+import android.util.Log;
+
+import net.exclaimindustries.tools.LogGate;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Set;
+import java.util.UUID;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+/**
+ * <p>
+ * Keeps the finished, ready-to-upload JPEGs for queued wiki image posts in
+ * files of their own in app storage, so the queue only has to carry a path
+ * around.  Otherwise, every photo sitting in the queue would be a few hundred
+ * KB of byte array in memory, and even more than that once it's Base64'd into
+ * the database.
+ * </p>
+ *
+ * <p>
+ * Files get written to a temp name first and renamed into place once they're
+ * fully on disk, so anything with a real name is complete.  Nothing here
+ * knows which files the queue still wants; {@link #sweep(Context, long, Set)}
+ * is for cleaning up once the queue says which ones it's still holding.
+ * </p>
+ */
+public final class WikiImageStore {
+    private static final String DEBUG_TAG = "WikiImageStore";
+
+    private static final String DIRECTORY = "wiki_uploads";
+    private static final String SUFFIX = ".jpg";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private WikiImageStore() { }
+
+    @NonNull
+    private static File getDirectory(@NonNull Context c) {
+        // These are only ever meant to live until they're uploaded, so there's
+        // no sense in them getting backed up.
+        return new File(ContextCompat.getNoBackupFilesDir(c), DIRECTORY);
+    }
+
+    /**
+     * Writes image data out to a new file in the store.
+     *
+     * @param c a Context, for finding app storage
+     * @param data the JPEG data
+     * @return the new file
+     * @throws IOException if it couldn't be written
+     */
+    @NonNull
+    public static File write(@NonNull Context c, @NonNull byte[] data) throws IOException {
+        File dir = getDirectory(c);
+        if(!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("Couldn't make " + dir);
+
+        String name = UUID.randomUUID().toString();
+        File temp = new File(dir, name + TEMP_SUFFIX);
+        File dest = new File(dir, name + SUFFIX);
+
+        try(FileOutputStream out = new FileOutputStream(temp);
+            FileChannel channel = out.getChannel()) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while(buffer.hasRemaining()) channel.write(buffer);
+
+            // The whole point is for this to survive the process going away,
+            // so make sure it's actually on disk before we say it's there.
+            channel.force(true);
+        } catch(IOException ioe) {
+            if(!temp.delete()) Log.w(DEBUG_TAG, "Couldn't clean up " + temp);
+            throw ioe;
+        }
+
+        if(!temp.renameTo(dest)) {
+            if(!temp.delete()) Log.w(DEBUG_TAG, "Couldn't clean up " + temp);
+            throw new IOException("Couldn't rename " + temp + " to " + dest);
+        }
+
+        LogGate.d(DEBUG_TAG, "Wrote %d bytes to %s", data.length, dest);
+        return dest;
+    }
+
+    /**
+     * Gets a File from a path the queue stored, but only if it's actually one
+     * of ours and still exists.  Anything else (including a path that was
+     * tampered with or points somewhere else) comes back null.
+     *
+     * @param c a Context, for finding app storage
+     * @param path the path
+     * @return the File, or null if it's not there or not ours
+     */
+    @Nullable
+    public static File resolve(@NonNull Context c, @Nullable String path) {
+        if(path == null || path.isEmpty()) return null;
+
+        File file = new File(path);
+        File parent = file.getParentFile();
+        if(parent == null || !parent.equals(getDirectory(c)) || !file.isFile())
+            return null;
+
+        return file;
+    }
+
+    /**
+     * Deletes a file from the store once it's been uploaded (or given up on).
+     * Anything that isn't in the store is left alone.
+     *
+     * @param c a Context, for finding app storage
+     * @param file the file to delete (null is fine, nothing happens)
+     */
+    public static void delete(@NonNull Context c, @Nullable File file) {
+        if(file == null) return;
+
+        File parent = file.getParentFile();
+        if(parent == null || !parent.equals(getDirectory(c))) {
+            Log.w(DEBUG_TAG, "Not deleting " + file + ", it isn't one of ours");
+            return;
+        }
+
+        if(file.exists() && !file.delete())
+            Log.w(DEBUG_TAG, "Couldn't delete " + file);
+    }
+
+    /**
+     * Deletes everything in the store last touched before the given time,
+     * other than the files in keep.  The wiki queue calls this once it's
+     * done a run, with every path still in the queue as keep and a cutoff a
+     * bit before the run started.  The cutoff is for files that got written
+     * but whose Intents haven't made it into the queue yet; there's no way
+     * to know about those other than giving them some time.  This is also
+     * what cleans up after anything that got skipped or aborted.
+     *
+     * @param c a Context, for finding app storage
+     * @param olderThan the cutoff, in milliseconds since the epoch
+     * @param keep absolute paths of files the queue still wants
+     * @return how many files got deleted
+     */
+    public static int sweep(@NonNull Context c, long olderThan, @NonNull Set<String> keep) {
+        File[] files = getDirectory(c).listFiles();
+        if(files == null) return 0;
+
+        int deleted = 0;
+        for(File file : files) {
+            if(file.lastModified() < olderThan
+                    && !keep.contains(file.getAbsolutePath())
+                    && file.delete())
+                deleted++;
+        }
+
+        if(deleted > 0) LogGate.d(DEBUG_TAG, "Swept up %d old upload file(s)", deleted);
+        return deleted;
+    }
+}
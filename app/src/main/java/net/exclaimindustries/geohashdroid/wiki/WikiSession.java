@@ -0,0 +1,394 @@
+/*
+ * WikiSession.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.geohashdroid.wiki;
+
+import android.content.Context;
+import android.util.Log;
+
+import net.exclaimindustries.geohashdroid.R;
+import net.exclaimindustries.tools.KeystoreCipher;
+import net.exclaimindustries.tools.LogGate;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+import cz.msebera.android.httpclient.cookie.ClientCookie;
+import cz.msebera.android.httpclient.cookie.Cookie;
+import cz.msebera.android.httpclient.impl.client.BasicCookieStore;
+import cz.msebera.android.httpclient.impl.client.CloseableHttpClient;
+import cz.msebera.android.httpclient.impl.client.HttpClients;
+import cz.msebera.android.httpclient.impl.cookie.BasicClientCookie;
+
+/**
+ * <p>
+ * One login to the wiki, shared by everything that talks to it.  Logging in
+ * takes three or four round trips, and getting an edit token takes another,
+ * so doing all that for every single queued message adds up fast.  This keeps
+ * one HTTP client with one set of cookies and one edit token around, and only
+ * logs in again when the wiki says the session's no good anymore (or the
+ * username changes, or {@link #forget(Context)} says the password did).
+ * </p>
+ *
+ * <p>
+ * The cookies and token are also written out, sealed with a key from the
+ * Keystore (see {@link KeystoreCipher}), so the session survives the process
+ * being killed between queue runs.  On devices too old for that, it just
+ * lives as long as the process does.
+ * </p>
+ */
+public class WikiSession {
+    private static final String DEBUG_TAG = "WikiSession";
+
+    private static final String FILE_NAME = "wiki_session";
+    private static final String KEY_ALIAS = "net.exclaimindustries.geohashdroid.WIKI_SESSION";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * How many connections the shared client keeps open.  That's at least
+     * one per page WikiService works on at once, or they'd be waiting on each
+     * other for a connection.
+     */
+    private static final int MAX_CONNECTIONS = 4;
+
+    /**
+     * The actual work to be done with a session.  This might get called twice,
+     * if the first time says the session's expired, so be careful about
+     * anything that can't stand to happen twice.
+     *
+     * @param <T> whatever this comes back with
+     */
+    public interface Call<T> {
+        /**
+         * Does the work.
+         *
+         * @param client the (logged in, if need be) client
+         * @param formfields a fresh form fields map with the edit token (and
+         *                   anything else every edit needs) already in it
+         * @return whatever it returns
+         * @throws Exception anything that goes wrong
+         */
+        T run(@NonNull CloseableHttpClient client,
+              @NonNull HashMap<String, String> formfields) throws Exception;
+    }
+
+    private static WikiSession sInstance;
+
+    private final File mFile;
+    private final BasicCookieStore mCookies = new BasicCookieStore();
+    private final CloseableHttpClient mClient;
+
+    // Who the cookies belong to ("" for nobody), whether they're actually
+    // logged in, and the edit token that goes with them.  The generation goes
+    // up every time all that gets thrown out, so a bunch of threads that all
+    // find out the session expired at once only log in again once.
+    private String mUsername = "";
+    private boolean mLoggedIn;
+    private String mToken;
+    private int mGeneration;
+
+    // Set by forget() when the password changes out from under us.
+    private volatile boolean mForgotten;
+
+    /**
+     * Gets the session.  There's only the one.
+     *
+     * @param c a Context
+     * @return the session
+     */
+    @NonNull
+    public static synchronized WikiSession get(@NonNull Context c) {
+        if(sInstance == null) sInstance = new WikiSession(c.getApplicationContext());
+        return sInstance;
+    }
+
+    /**
+     * Throws out the session, both in memory and on disk.  Call this whenever
+     * the password changes.  The session only knows who it's logged in as,
+     * not what password got it there, so otherwise it'd carry right on with
+     * the old login (and keep it sealed up on disk) until the wiki itself
+     * says otherwise.
+     *
+     * @param c a Context
+     */
+    public static synchronized void forget(@NonNull Context c) {
+        // This gets called from the preferences screen, so it can't go
+        // waiting on the session's lock; that might be held by a login in
+        // progress.  Flag it, and the next run starts over.
+        if(sInstance != null) sInstance.mForgotten = true;
+
+        File file = new File(ContextCompat.getNoBackupFilesDir(c.getApplicationContext()), FILE_NAME);
+        if(file.exists() && !file.delete())
+            Log.w(DEBUG_TAG, "Couldn't delete the old session");
+    }
+
+    private WikiSession(@NonNull Context c) {
+        // Sealed or not, a backup of this wouldn't open anywhere else anyway.
+        mFile = new File(ContextCompat.getNoBackupFilesDir(c), FILE_NAME);
+        mClient = HttpClients.custom()
+                .setDefaultCookieStore(mCookies)
+                .setMaxConnPerRoute(MAX_CONNECTIONS)
+                .setMaxConnTotal(MAX_CONNECTIONS)
+                .build();
+        load();
+    }
+
+    /**
+     * Runs a Call with the session, logging in first if it's not already.  If
+     * the wiki comes back saying the session's expired (or the token's bad),
+     * this logs in again and gives the Call one more go.  An empty username or
+     * password means an anonymous session, same as always.
+     *
+     * @param username the wiki username
+     * @param password the wiki password
+     * @param call what to do
+     * @param <T> whatever the Call comes back with
+     * @return what the Call returned
+     * @throws WikiException problem with the wiki (including logging in),
+     *                       translate the ID
+     * @throws Exception anything else the Call threw
+     */
+    public <T> T run(@NonNull String username,
+                     @NonNull String password,
+                     @NonNull Call<T> call) throws Exception {
+        for(boolean retried = false; ; retried = true) {
+            HashMap<String, String> formfields = new HashMap<>();
+            int generation = prepare(username, password, formfields);
+
+            try {
+                return call.run(mClient, formfields);
+            } catch(WikiException we) {
+                if(retried || we.getErrorTextId() != R.string.wiki_error_session_expired)
+                    throw we;
+
+                LogGate.d(DEBUG_TAG, "The session went stale, logging in again...");
+                invalidate(generation);
+            }
+        }
+    }
+
+    private synchronized int prepare(@NonNull String username,
+                                     @NonNull String password,
+                                     @NonNull HashMap<String, String> formfields) throws Exception {
+        // Somebody else's cookies are no good to us, and neither are our own
+        // if they came from an old password.
+        if(mForgotten || !username.equals(mUsername)) {
+            mForgotten = false;
+            reset();
+            mUsername = username;
+        }
+
+        boolean changed = false;
+
+        if(!mLoggedIn && !username.isEmpty() && !password.isEmpty()) {
+            WikiUtils.login(mClient, username, password);
+            mLoggedIn = true;
+            mToken = null;
+            changed = true;
+        }
+
+        if(mToken == null) {
+            mToken = WikiUtils.getEditToken(mClient);
+            changed = mToken != null || changed;
+        }
+
+        if(changed) save();
+
+        if(mToken != null) formfields.put("token", mToken);
+
+        // Without this, an edit on an expired session would go through as an
+        // anonymous edit instead of failing, and nobody wants that.
+        if(mLoggedIn) formfields.put("assert", "user");
+
+        return mGeneration;
+    }
+
+    private synchronized void invalidate(int generation) {
+        // If the generation's moved on, someone else already did this.
+        if(generation != mGeneration) return;
+        reset();
+        save();
+    }
+
+    private void reset() {
+        mCookies.clear();
+        mLoggedIn = false;
+        mToken = null;
+        mGeneration++;
+    }
+
+    private void load() {
+        if(!KeystoreCipher.isAvailable() || !mFile.exists()) return;
+
+        try {
+            String sealed = readFile(mFile);
+            String plain = KeystoreCipher.open(KEY_ALIAS, sealed);
+            if(plain == null) {
+                // The key's gone, or this came from somewhere else.  Either
+                // way, start over.
+                if(!mFile.delete()) Log.w(DEBUG_TAG, "Couldn't delete a session that won't open");
+                return;
+            }
+
+            JSONObject json = new JSONObject(plain);
+            mUsername = json.optString("user", "");
+            mLoggedIn = json.optBoolean("loggedIn", false);
+            mToken = json.has("token") ? json.getString("token") : null;
+            for(Cookie cookie : cookiesFromJson(json.getJSONArray("cookies")))
+                mCookies.addCookie(cookie);
+
+            LogGate.d(DEBUG_TAG, "Loaded a session for \"%s\" with %d cookies", mUsername, mCookies.getCookies().size());
+        } catch(IOException | JSONException e) {
+            Log.w(DEBUG_TAG, "Couldn't load the saved session, starting over: " + e);
+            reset();
+        }
+    }
+
+    private void save() {
+        // If the password changed while we were logging in with the old
+        // one, that login isn't worth keeping.
+        if(!KeystoreCipher.isAvailable() || mForgotten) return;
+
+        // An anonymous session's just the standard anonymous token, which
+        // isn't worth keeping.
+        if(mUsername.isEmpty() || !mLoggedIn) {
+            if(mFile.exists() && !mFile.delete())
+                Log.w(DEBUG_TAG, "Couldn't delete the old session");
+            return;
+        }
+
+        try {
+            JSONObject json = new JSONObject();
+            json.put("user", mUsername);
+            json.put("loggedIn", mLoggedIn);
+            if(mToken != null) json.put("token", mToken);
+            json.put("cookies", cookiesToJson(mCookies.getCookies()));
+
+            String sealed = KeystoreCipher.seal(KEY_ALIAS, json.toString());
+            if(sealed != null) writeFile(mFile, sealed);
+        } catch(IOException | JSONException e) {
+            Log.w(DEBUG_TAG, "Couldn't save the session: " + e);
+        }
+    }
+
+    /**
+     * Turns cookies into JSON, with everything needed to put them back into
+     * a cookie store later.
+     *
+     * @param cookies the cookies
+     * @return a JSONArray of those cookies
+     * @throws JSONException if something doesn't go into JSON
+     */
+    @NonNull
+    static JSONArray cookiesToJson(@NonNull List<Cookie> cookies) throws JSONException {
+        JSONArray array = new JSONArray();
+
+        for(Cookie cookie : cookies) {
+            JSONObject json = new JSONObject();
+            json.put("name", cookie.getName());
+            json.put("value", cookie.getValue());
+            json.put("domain", cookie.getDomain());
+            json.put("path", cookie.getPath());
+            json.put("secure", cookie.isSecure());
+            if(cookie.getExpiryDate() != null)
+                json.put("expiry", cookie.getExpiryDate().getTime());
+
+            // Whether the domain and path were set by the server or just
+            // defaulted matters when matching cookies to requests.
+            if(cookie instanceof ClientCookie) {
+                ClientCookie client = (ClientCookie) cookie;
+                if(client.containsAttribute(ClientCookie.DOMAIN_ATTR))
+                    json.put("domainAttr", client.getAttribute(ClientCookie.DOMAIN_ATTR));
+                if(client.containsAttribute(ClientCookie.PATH_ATTR))
+                    json.put("pathAttr", client.getAttribute(ClientCookie.PATH_ATTR));
+            }
+
+            array.put(json);
+        }
+
+        return array;
+    }
+
+    /**
+     * Turns what {@link #cookiesToJson(List)} made back into cookies.
+     *
+     * @param array the JSONArray
+     * @return the cookies
+     * @throws JSONException if the JSON wasn't what it should be
+     */
+    @NonNull
+    static List<Cookie> cookiesFromJson(@NonNull JSONArray array) throws JSONException {
+        List<Cookie> cookies = new ArrayList<>(array.length());
+
+        for(int i = 0; i < array.length(); i++) {
+            JSONObject json = array.getJSONObject(i);
+
+            BasicClientCookie cookie = new BasicClientCookie(json.getString("name"), json.optString("value", ""));
+            cookie.setDomain(optStringOrNull(json, "domain"));
+            cookie.setPath(optStringOrNull(json, "path"));
+            cookie.setSecure(json.optBoolean("secure", false));
+            if(json.has("expiry"))
+                cookie.setExpiryDate(new Date(json.getLong("expiry")));
+            if(json.has("domainAttr"))
+                cookie.setAttribute(ClientCookie.DOMAIN_ATTR, json.getString("domainAttr"));
+            if(json.has("pathAttr"))
+                cookie.setAttribute(ClientCookie.PATH_ATTR, json.getString("pathAttr"));
+
+            cookies.add(cookie);
+        }
+
+        return cookies;
+    }
+
+    @Nullable
+    private static String optStringOrNull(@NonNull JSONObject json, @NonNull String name) throws JSONException {
+        return json.isNull(name) ? null : json.getString(name);
+    }
+
+    @NonNull
+    private static String readFile(@NonNull File file) throws IOException {
+        try(InputStream in = new FileInputStream(file)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while((read = in.read(buffer)) != -1) out.write(buffer, 0, read);
+            return new String(out.toByteArray(), UTF8);
+        }
+    }
+
+    private static void writeFile(@NonNull File file, @NonNull String data) throws IOException {
+        // Same trick as WikiImageStore: write it somewhere else, then rename
+        // it into place, so a half-written session never gets loaded.
+        File temp = new File(file.getPath() + ".tmp");
+        try(OutputStream out = new FileOutputStream(temp)) {
+            out.write(data.getBytes(UTF8));
+        }
+
+        if(!temp.renameTo(file)) {
+            if(!temp.delete()) temp.deleteOnExit();
+            throw new IOException("Couldn't move the session into place");
+        }
+    }
+}
@@ -13,18 +13,19 @@ import android.content.Context;
 import android.location.Location;
 import android.text.format.DateFormat;
 import android.util.Log;
+import android.util.Xml;
 
 import net.exclaimindustries.geohashdroid.R;
 import net.exclaimindustries.geohashdroid.util.Graticule;
 import net.exclaimindustries.geohashdroid.util.Info;
 import net.exclaimindustries.geohashdroid.util.UnitConverter;
-import net.exclaimindustries.tools.DOMUtil;
 import net.exclaimindustries.tools.DateTools;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -32,29 +33,34 @@ import java.net.URLEncoder;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import cz.msebera.android.httpclient.HttpEntity;
-import cz.msebera.android.httpclient.HttpResponse;
 import cz.msebera.android.httpclient.NameValuePair;
 import cz.msebera.android.httpclient.client.entity.UrlEncodedFormEntity;
+import cz.msebera.android.httpclient.client.methods.CloseableHttpResponse;
 import cz.msebera.android.httpclient.client.methods.HttpGet;
 import cz.msebera.android.httpclient.client.methods.HttpPost;
 import cz.msebera.android.httpclient.client.methods.HttpUriRequest;
 import cz.msebera.android.httpclient.entity.ContentType;
 import cz.msebera.android.httpclient.entity.mime.MultipartEntityBuilder;
 import cz.msebera.android.httpclient.entity.mime.content.ByteArrayBody;
+import cz.msebera.android.httpclient.entity.mime.content.ContentBody;
+import cz.msebera.android.httpclient.entity.mime.content.FileBody;
 import cz.msebera.android.httpclient.entity.mime.content.StringBody;
 import cz.msebera.android.httpclient.impl.client.CloseableHttpClient;
 import cz.msebera.android.httpclient.message.BasicNameValuePair;
+import cz.msebera.android.httpclient.util.EntityUtils;
 
 /**
  * Various stateless utility methods to query a mediawiki server
@@ -189,13 +195,82 @@ public class WikiUtils {
     }
 
     /**
-     * A bucketload of the usual stuff we grab from a wiki request.
+     * One element out of a wiki response: its attributes, and whatever text
+     * is directly inside it (not counting text inside any elements under it).
      */
-    private static class WikiResponse {
-        Document document;
-        Element rootElem;
+    static class WikiElement {
+        final HashMap<String, String> attributes = new HashMap<>();
+        String text = "";
+
+        boolean has(@NonNull String name) {
+            return attributes.containsKey(name);
+        }
+
+        @Nullable
+        String get(@NonNull String name) {
+            return attributes.get(name);
+        }
     }
 
+    /**
+     * A bucketload of the usual stuff we grab from a wiki request.  This is
+     * only the elements that were asked for, not the whole document;
+     * everything else gets skipped over as it streams past.
+     */
+    static class WikiResponse {
+        final HashMap<String, List<WikiElement>> elements = new HashMap<>();
+
+        /**
+         * Gets the first element with the given name.
+         *
+         * @param name the element's name
+         * @return the element, or null if there wasn't one
+         */
+        @Nullable
+        WikiElement get(@NonNull String name) {
+            List<WikiElement> list = elements.get(name);
+            return list == null ? null : list.get(0);
+        }
+
+        /**
+         * Gets every element with the given name, in document order.
+         *
+         * @param name the elements' name
+         * @return the elements (maybe none)
+         */
+        @NonNull
+        List<WikiElement> getAll(@NonNull String name) {
+            List<WikiElement> list = elements.get(name);
+            return list == null ? Collections.<WikiElement>emptyList() : list;
+        }
+
+        /**
+         * Gets an element that had better be there.
+         *
+         * @param name the element's name
+         * @return the element
+         * @throws WikiException if it's not there
+         */
+        @NonNull
+        WikiElement require(@NonNull String name) throws WikiException {
+            WikiElement toReturn = get(name);
+            if(toReturn == null) throw new WikiException(R.string.wiki_error_xml);
+            return toReturn;
+        }
+    }
+
+    /**
+     * One pull parser per thread, reset for each response.  WikiService talks
+     * to the wiki from a few threads at once, and parsers aren't thread-safe,
+     * but there's no reason to make a new one every time, either.
+     */
+    private static final ThreadLocal<XmlPullParser> sParser = new ThreadLocal<XmlPullParser>() {
+        @Override
+        protected XmlPullParser initialValue() {
+            return Xml.newPullParser();
+        }
+    };
+
     /**
      * This format is used for all latitude/longitude texts in the wiki.
      */
@@ -221,46 +296,139 @@ public class WikiUtils {
     }
 
     /**
-     * Returns the content of a http request as an XML Document.  This is to be
-     * used only when we know the response to a request will be XML.  Otherwise,
-     * this will probably throw an exception.
+     * Gets a {@link WikiResponse} for a wiki request, holding the named
+     * elements.  Because I was getting sick of all that boilerplate.  The
+     * response gets parsed as it comes in and only what was asked for is
+     * kept, so a big page doesn't wind up in memory as a whole DOM tree on
+     * top of the text itself.
      *
      * @param httpclient an active HTTP session
      * @param httpreq    an HTTP request (GET or POST)
-     * @return a Document containing the contents of the response
+     * @param wanted     the names of the elements to keep
+     * @return a WikiResponse containing WikiResponsey stuff
+     * @throws WikiException the wiki sent back an error, translate the ID
+     * @throws Exception     anything else happened, use getMessage
      */
-    private static Document getHttpDocument(@NonNull CloseableHttpClient httpclient,
-                                            @NonNull HttpUriRequest httpreq) throws Exception {
-        HttpResponse response = httpclient.execute(httpreq);
-
-        HttpEntity entity = response.getEntity();
-
-        return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(entity.getContent());
+    @NonNull
+    private static WikiResponse getWikiResponse(@NonNull CloseableHttpClient httpclient,
+                                                @NonNull HttpUriRequest httpreq,
+                                                @NonNull String... wanted) throws Exception {
+        try(CloseableHttpResponse response = httpclient.execute(httpreq)) {
+            HttpEntity entity = response.getEntity();
+            try(InputStream in = entity.getContent()) {
+                return parseWikiResponse(in, wanted);
+            } finally {
+                // parseWikiResponse already drains the stream, but make
+                // sure; closing the response with anything left unread
+                // throws the connection out of the pool instead of reusing
+                // it.
+                EntityUtils.consumeQuietly(entity);
+            }
+        }
     }
 
     /**
-     * Gets a standard {@link WikiResponse} object for a wiki request.  Because
-     * I was getting sick of all that boilerplate.
+     * The parsing half of
+     * {@link #getWikiResponse(CloseableHttpClient, HttpUriRequest, String...)}.
+     * This reads the stream all the way to the end, even if it stops parsing
+     * early (bad XML) or the parser's done before the stream is (anything
+     * after the end of the document), so the connection can go back in the
+     * pool afterward.
      *
-     * @param httpclient an active HTTP session
-     * @param httpreq    an HTTP request (GET or POST)
-     * @return a WikiResponse containing WikiResponsey stuff
+     * @param in     the response
+     * @param wanted the names of the elements to keep
+     * @return the WikiResponse
+     * @throws WikiException the response was an error, or not XML
+     * @throws IOException   the stream broke
      */
     @NonNull
-    private static WikiResponse getWikiResponse(@NonNull CloseableHttpClient httpclient,
-                                                @NonNull HttpUriRequest httpreq) throws Exception {
+    static WikiResponse parseWikiResponse(@NonNull InputStream in,
+                                          @NonNull String... wanted) throws WikiException, IOException {
         WikiResponse toReturn = new WikiResponse();
 
-        toReturn.document = getHttpDocument(httpclient, httpreq);
+        HashSet<String> names = new HashSet<>(Arrays.asList(wanted));
+        names.add("error");
+
+        // Whatever element is being kept at each depth, and its text so far.
+        // Depth's usually tiny, so these don't get big.
+        ArrayList<WikiElement> keeping = new ArrayList<>();
+        ArrayList<StringBuilder> texts = new ArrayList<>();
 
-        toReturn.rootElem = toReturn.document.getDocumentElement();
-        if(doesResponseHaveError(toReturn.rootElem)) {
-            throw new WikiException(getErrorTextId(findErrorCode(toReturn.rootElem)));
+        XmlPullParser parser = sParser.get();
+        try {
+            parser.setInput(in, null);
+
+            for(int event = parser.getEventType(); event != XmlPullParser.END_DOCUMENT; event = parser.next()) {
+                int depth = parser.getDepth();
+                while(keeping.size() <= depth) {
+                    keeping.add(null);
+                    texts.add(null);
+                }
+
+                switch(event) {
+                    case XmlPullParser.START_TAG:
+                        String name = parser.getName();
+                        if(names.contains(name)) {
+                            WikiElement elem = new WikiElement();
+                            for(int i = 0; i < parser.getAttributeCount(); i++)
+                                elem.attributes.put(parser.getAttributeName(i), parser.getAttributeValue(i));
+
+                            List<WikiElement> list = toReturn.elements.get(name);
+                            if(list == null) {
+                                list = new ArrayList<>(1);
+                                toReturn.elements.put(name, list);
+                            }
+                            list.add(elem);
+                            keeping.set(depth, elem);
+                            texts.set(depth, new StringBuilder());
+                        }
+                        break;
+                    case XmlPullParser.TEXT:
+                        if(texts.get(depth) != null) texts.get(depth).append(parser.getText());
+                        break;
+                    case XmlPullParser.END_TAG:
+                        if(keeping.get(depth) != null) {
+                            keeping.get(depth).text = texts.get(depth).toString();
+                            keeping.set(depth, null);
+                            texts.set(depth, null);
+                        }
+                        break;
+                }
+            }
+        } catch(XmlPullParserException xppe) {
+            throw new WikiException(R.string.wiki_error_xml);
+        } finally {
+            // Don't hang on to the stream until this thread's next response.
+            try {
+                parser.setInput(null);
+            } catch(XmlPullParserException xppe) {
+                // Whatever.
+            }
+
+            drain(in);
         }
 
+        WikiElement error = toReturn.get("error");
+        if(error != null) throw new WikiException(getErrorTextId(error.get("code")));
+
         return toReturn;
     }
 
+    /**
+     * Reads whatever's left of a stream and throws it away.  If the stream's
+     * broken, there's nothing left worth reading anyway, so that's ignored.
+     */
+    private static void drain(@NonNull InputStream in) {
+        byte[] buffer = new byte[4096];
+        try {
+            while(in.read(buffer) != -1) {
+                // Keep going.
+            }
+        } catch(IOException ioe) {
+            // Whatever.
+        }
+    }
+
     /**
      * Returns whether or not a given wiki page or file exists.
      *
@@ -278,18 +446,11 @@ public class WikiUtils {
         HttpGet httpget = new HttpGet(WIKI_API_URL + "?action=query&format=xml&titles="
                 + URLEncoder.encode(pagename, "UTF-8"));
 
-        WikiResponse response = getWikiResponse(httpclient, httpget);
-
-        Element pageElem;
-        try {
-            pageElem = DOMUtil.getFirstElement(response.rootElem, "page");
-        } catch(Exception e) {
-            throw new WikiException(R.string.wiki_error_xml);
-        }
+        WikiElement pageElem = getWikiResponse(httpclient, httpget, "page").require("page");
 
         // "invalid" or "missing" both resolve to the same answer: No.  Anything
         // else means yes.
-        return !(pageElem.hasAttribute("invalid") || pageElem.hasAttribute("missing"));
+        return !(pageElem.has("invalid") || pageElem.has("missing"));
     }
 
     /**
@@ -308,22 +469,38 @@ public class WikiUtils {
         // SiteInfo call!
         HttpGet httpget = new HttpGet(WIKI_API_URL + "?action=query&format=xml&meta=siteinfo&siprop=general");
 
-        WikiResponse response = getWikiResponse(httpclient, httpget);
-
-        Element generalElem;
-        try {
-            generalElem = DOMUtil.getFirstElement(response.rootElem, "general");
-        } catch(Exception e) {
-            throw new WikiException(R.string.wiki_error_xml);
-        }
+        WikiElement generalElem = getWikiResponse(httpclient, httpget, "general").require("general");
 
         // If the generator attribute isn't there, there's a problem.
-        if(!generalElem.hasAttribute("generator")) {
+        String generator = generalElem.get("generator");
+        if(generator == null) {
             throw new WikiException(R.string.wiki_error_xml);
         }
 
         // Finally, we've got us a WikiVersionData!
-        return new WikiVersionData(generalElem.getAttribute("generator"));
+        return new WikiVersionData(generator);
+    }
+
+    /**
+     * Gets an edit (CSRF) token for the current session.  This is good for
+     * every edit and upload until the session changes, so there's no need to
+     * ask for one each time; see {@link WikiSession}.  Wikis older than 1.24
+     * don't do tokens this way; for those, this returns null, and
+     * {@link #getWikiPage(CloseableHttpClient, String, HashMap)} picks one up
+     * the old way instead.
+     *
+     * @param httpclient an active HTTP session
+     * @return the token, or null if the wiki didn't give one
+     * @throws WikiException problem with the wiki, translate the ID
+     * @throws Exception     anything else happened, use getMessage
+     */
+    @Nullable
+    public static String getEditToken(@NonNull CloseableHttpClient httpclient) throws Exception {
+        HttpGet httpget = new HttpGet(WIKI_API_URL + "?action=query&format=xml&meta=tokens&type=csrf");
+
+        // No tokens element means an old wiki.
+        WikiElement tokenElem = getWikiResponse(httpclient, httpget, "tokens").get("tokens");
+        return tokenElem == null ? null : tokenElem.get("csrftoken");
     }
 
     /**
@@ -341,53 +518,60 @@ public class WikiUtils {
     public static String getWikiPage(@NonNull CloseableHttpClient httpclient,
                                      @NonNull String pagename,
                                      @Nullable HashMap<String, String> formfields) throws Exception {
+        return getWikiPage(httpclient, pagename, null, formfields);
+    }
+
+    /**
+     * Same as {@link #getWikiPage(CloseableHttpClient, String, HashMap)}, but
+     * only gets one section of the page (header included), if a section's
+     * given.  That's the one to send back to
+     * {@link #putWikiPage(CloseableHttpClient, String, String, String, HashMap)}
+     * with the same section.
+     *
+     * @param httpclient an active HTTP session
+     * @param pagename   the name of the wiki page
+     * @param section    the section number, as from {@link #getWikiSections(CloseableHttpClient, String)}, or null for the whole page
+     * @param formfields if not null, this hashmap will be filled with the correct HTML form fields to resubmit the page.
+     * @return the raw code of the section, or null if the page doesn't exist
+     * @throws WikiException problem with the wiki, translate the ID
+     * @throws Exception     anything else happened, use getMessage
+     */
+    public static String getWikiPage(@NonNull CloseableHttpClient httpclient,
+                                     @NonNull String pagename,
+                                     @Nullable String section,
+                                     @Nullable HashMap<String, String> formfields) throws Exception {
         // We can use a GET statement here.
         HttpGet httpget = new HttpGet(WIKI_API_URL + "?action=query&format=xml&prop="
                 + URLEncoder.encode("info|revisions", "UTF-8")
                 + "&rvprop=content&format=xml&intoken=edit&titles="
-                + URLEncoder.encode(pagename, "UTF-8"));
-
-        String page;
-        WikiResponse response = getWikiResponse(httpclient, httpget);
+                + URLEncoder.encode(pagename, "UTF-8")
+                + (section != null ? "&rvsection=" + URLEncoder.encode(section, "UTF-8") : ""));
 
-        Element pageElem;
-        Element text;
-        try {
-            pageElem = DOMUtil.getFirstElement(response.rootElem, "page");
-        } catch(Exception e) {
-            throw new WikiException(R.string.wiki_error_xml);
-        }
+        WikiResponse response = getWikiResponse(httpclient, httpget, "page", "rev");
+        WikiElement pageElem = response.require("page");
 
         // If we got an "invalid" attribute, the page not only doesn't exist,
         // but it CAN'T exist, and is therefore an error.
-        if(pageElem.hasAttribute("invalid"))
+        if(pageElem.has("invalid"))
             throw new WikiException(R.string.wiki_error_invalid_page);
 
         if(formfields != null) {
             // If we have a formfields hash ready, populate it with a couple
             // values.
             formfields.put("summary", "An expedition message sent via Geohash Droid for Android.");
-            if(pageElem.hasAttribute("edittoken"))
-                formfields.put("token", DOMUtil.getSimpleAttributeText(pageElem, "edittoken"));
-            if(pageElem.hasAttribute("touched"))
-                formfields.put("basetimestamp", DOMUtil.getSimpleAttributeText(pageElem, "touched"));
+            if(pageElem.has("edittoken"))
+                formfields.put("token", pageElem.get("edittoken"));
+            if(pageElem.has("touched"))
+                formfields.put("basetimestamp", pageElem.get("touched"));
         }
 
         // If we got a "missing" attribute, the page hasn't been made yet, so we
         // return null.
-        if(pageElem.hasAttribute("missing"))
+        if(pageElem.has("missing"))
             return null;
 
-        // Otherwise, get the text and fill out the form fields.
-        try {
-            text = DOMUtil.getFirstElement(pageElem, "rev");
-        } catch(Exception e) {
-            throw new WikiException(R.string.wiki_error_xml);
-        }
-
-        page = DOMUtil.getSimpleElementText(text);
-
-        return page;
+        // Otherwise, get the text.
+        return response.require("rev").text;
     }
 
     /**
@@ -403,6 +587,94 @@ public class WikiUtils {
     public static void putWikiPage(@NonNull CloseableHttpClient httpclient,
                                    @NonNull String pagename, String content,
                                    @NonNull HashMap<String, String> formfields) throws Exception {
+        putWikiPage(httpclient, pagename, null, content, formfields);
+    }
+
+    /**
+     * Replaces one section of a wiki page, or the entire page if the section
+     * is null.  The content needs to include the section's header, same as
+     * what {@link #getWikiPage(CloseableHttpClient, String, String, HashMap)}
+     * hands back.
+     *
+     * @param httpclient an active HTTP session
+     * @param pagename   the name of the wiki page
+     * @param section    the section number, or null for the whole page
+     * @param content    the new content of the section to be submitted
+     * @param formfields a hashmap with the fields needed (besides pagename and content; those will be filled in this method)
+     * @throws WikiException problem with the wiki, translate the ID
+     * @throws Exception     anything else happened, use getMessage
+     */
+    public static void putWikiPage(@NonNull CloseableHttpClient httpclient,
+                                   @NonNull String pagename,
+                                   @Nullable String section,
+                                   String content,
+                                   @NonNull HashMap<String, String> formfields) throws Exception {
+        ArrayList<NameValuePair> nvps = new ArrayList<>();
+        nvps.add(new BasicNameValuePair("text", content));
+        edit(httpclient, pagename, section, nvps, formfields);
+    }
+
+    /**
+     * Makes a new wiki page, but only if it isn't there already.  If someone
+     * else made it first (say, between checking whether it existed and
+     * getting here), theirs stays exactly as it is and this returns false.
+     *
+     * @param httpclient an active HTTP session
+     * @param pagename   the name of the wiki page
+     * @param content    the content of the new page
+     * @param formfields a hashmap with the fields needed (the edit token and summary, mostly)
+     * @return true if this made the page, false if it was already there
+     * @throws WikiException problem with the wiki, translate the ID
+     * @throws Exception     anything else happened, use getMessage
+     */
+    public static boolean createWikiPage(@NonNull CloseableHttpClient httpclient,
+                                         @NonNull String pagename,
+                                         @NonNull String content,
+                                         @NonNull HashMap<String, String> formfields) throws Exception {
+        ArrayList<NameValuePair> nvps = new ArrayList<>();
+        nvps.add(new BasicNameValuePair("text", content));
+        nvps.add(new BasicNameValuePair("createonly", "1"));
+
+        try {
+            edit(httpclient, pagename, null, nvps, formfields);
+            return true;
+        } catch(WikiException we) {
+            if(we.getErrorTextId() == R.string.wiki_error_page_exists) return false;
+            throw we;
+        }
+    }
+
+    /**
+     * Tacks text onto the end of one section of a wiki page, or onto the end
+     * of the whole page if the section is null.  The page itself never has to
+     * come down or go back up, so this costs the same no matter how big the
+     * page is, and it can't run into an edit conflict.  It won't make the
+     * page if it's not there, though.
+     *
+     * @param httpclient an active HTTP session
+     * @param pagename   the name of the wiki page
+     * @param section    the section number, or null for the whole page
+     * @param text       what to add
+     * @param formfields a hashmap with the fields needed (the edit token and summary, mostly)
+     * @throws WikiException problem with the wiki, translate the ID
+     * @throws Exception     anything else happened, use getMessage
+     */
+    public static void appendToWikiPage(@NonNull CloseableHttpClient httpclient,
+                                        @NonNull String pagename,
+                                        @Nullable String section,
+                                        @NonNull String text,
+                                        @NonNull HashMap<String, String> formfields) throws Exception {
+        ArrayList<NameValuePair> nvps = new ArrayList<>();
+        nvps.add(new BasicNameValuePair("appendtext", text));
+        nvps.add(new BasicNameValuePair("nocreate", "1"));
+        edit(httpclient, pagename, section, nvps, formfields);
+    }
+
+    private static void edit(@NonNull CloseableHttpClient httpclient,
+                             @NonNull String pagename,
+                             @Nullable String section,
+                             @NonNull ArrayList<NameValuePair> nvps,
+                             @NonNull HashMap<String, String> formfields) throws Exception {
         // If there's no edit token in the hash map, we can't do anything.
         if(!formfields.containsKey("token")) {
             throw new WikiException(R.string.wiki_error_protected);
@@ -410,11 +682,11 @@ public class WikiUtils {
 
         HttpPost httppost = new HttpPost(WIKI_API_URL);
 
-        ArrayList<NameValuePair> nvps = new ArrayList<>();
         nvps.add(new BasicNameValuePair("action", "edit"));
         nvps.add(new BasicNameValuePair("title", pagename));
-        nvps.add(new BasicNameValuePair("text", content));
         nvps.add(new BasicNameValuePair("format", "xml"));
+        if(section != null)
+            nvps.add(new BasicNameValuePair("section", section));
         for(String s : formfields.keySet()) {
             nvps.add(new BasicNameValuePair(s, formfields.get(s)));
         }
@@ -426,13 +698,65 @@ public class WikiUtils {
         // And really, that's it.  We're done!
     }
 
+    /**
+     * Gets the sections of a wiki page, by heading.  This is just the list of
+     * headings, not the page itself, so it's small no matter how much is on
+     * the page.  If a heading shows up more than once, the first one wins.
+     *
+     * @param httpclient an active HTTP session
+     * @param pagename   the name of the wiki page
+     * @return a map of section headings to section numbers, or null if the page doesn't exist
+     * @throws WikiException problem with the wiki, translate the ID
+     * @throws Exception     anything else happened, use getMessage
+     */
+    @Nullable
+    public static HashMap<String, String> getWikiSections(@NonNull CloseableHttpClient httpclient,
+                                                          @NonNull String pagename) throws Exception {
+        HttpGet httpget = new HttpGet(WIKI_API_URL + "?action=parse&format=xml&prop=sections&page="
+                + URLEncoder.encode(pagename, "UTF-8"));
+
+        try {
+            return getSections(getWikiResponse(httpclient, httpget, "s"));
+        } catch(WikiException we) {
+            if(we.getErrorTextId() == R.string.wiki_error_page_missing) return null;
+            throw we;
+        }
+    }
+
+    /**
+     * The parsing half of
+     * {@link #getWikiSections(CloseableHttpClient, String)}.
+     *
+     * @param response a response with the "s" elements in it
+     * @return a map of section headings to section numbers
+     */
+    @NonNull
+    static HashMap<String, String> getSections(@NonNull WikiResponse response) {
+        HashMap<String, String> toReturn = new HashMap<>();
+
+        for(WikiElement section : response.getAll("s")) {
+            String line = section.get("line");
+            String index = section.get("index");
+
+            // Sections that come from templates have indexes like "T-1", and
+            // they're not on this page, so they can't be edited from here.
+            if(line == null || index == null || index.isEmpty() || index.startsWith("T-"))
+                continue;
+
+            line = line.trim();
+            if(!toReturn.containsKey(line)) toReturn.put(line, index);
+        }
+
+        return toReturn;
+    }
+
     /**
      * Uploads an image to the wiki
      *
      * @param httpclient  an active HTTP session, wiki login has to have happened before.
      * @param filename    the name of the new image file
      * @param description the description of the image. An initial description will be used as page content for the image's wiki page
-     * @param formfields  a formfields hash as modified by getWikiPage containing an edittoken we can use (see the MediaWiki API for reasons why)
+     * @param formfields  a formfields hash with an edit token in it, from getWikiPage or a {@link WikiSession}
      * @param data        a ByteArray containing the raw image data (assuming jpeg encoding, currently).
      */
     public static void putWikiImage(@NonNull CloseableHttpClient httpclient,
@@ -440,40 +764,44 @@ public class WikiUtils {
                                     @NonNull String description,
                                     @NonNull HashMap<String, String> formfields,
                                     @NonNull byte[] data) throws Exception {
-        if(!formfields.containsKey("token")) {
-            throw new WikiException(R.string.wiki_error_unknown);
-        }
-
-        HttpPost httppost = new HttpPost(WIKI_API_URL);
-
-        // First, we need an edit token.  Let's get one.
-        ArrayList<NameValuePair> tnvps = new ArrayList<>();
-        tnvps.add(new BasicNameValuePair("action", "query"));
-        tnvps.add(new BasicNameValuePair("prop", "info"));
-        tnvps.add(new BasicNameValuePair("intoken", "edit"));
-        tnvps.add(new BasicNameValuePair("titles", "UPLOAD_AN_IMAGE"));
-        tnvps.add(new BasicNameValuePair("format", "xml"));
-
-        httppost.setEntity(new UrlEncodedFormEntity(tnvps, "utf-8"));
-
-        WikiResponse response = getWikiResponse(httpclient, httppost);
+        putWikiImage(httpclient, filename, description, formfields,
+                new ByteArrayBody(data, ContentType.create("image/jpeg", "utf-8"), filename));
+    }
 
-        // Hopefully, a token exists.  If not, a problem exists.
-        String token;
-        Element page;
-        try {
-            page = DOMUtil.getFirstElement(response.rootElem, "page");
-            token = DOMUtil.getSimpleAttributeText(page, "edittoken");
-        } catch(Exception e) {
-            throw new WikiException(R.string.wiki_error_xml);
-        }
+    /**
+     * Uploads an image to the wiki straight from a file.  The file gets
+     * streamed into the request as it goes out, so it never has to be in
+     * memory all at once.
+     *
+     * @param httpclient  an active HTTP session, wiki login has to have happened before.
+     * @param filename    the name of the new image file
+     * @param description the description of the image. An initial description will be used as page content for the image's wiki page
+     * @param formfields  a formfields hash with an edit token in it, from getWikiPage or a {@link WikiSession}
+     * @param file        the file containing the raw image data (assuming jpeg encoding, currently).
+     */
+    public static void putWikiImage(@NonNull CloseableHttpClient httpclient,
+                                    @NonNull String filename,
+                                    @NonNull String description,
+                                    @NonNull HashMap<String, String> formfields,
+                                    @NonNull File file) throws Exception {
+        putWikiImage(httpclient, filename, description, formfields,
+                new FileBody(file, ContentType.create("image/jpeg", "utf-8"), filename));
+    }
 
-        // We very much need an edit token here.
+    private static void putWikiImage(@NonNull CloseableHttpClient httpclient,
+                                     @NonNull String filename,
+                                     @NonNull String description,
+                                     @NonNull HashMap<String, String> formfields,
+                                     @NonNull ContentBody body) throws Exception {
+        // The edit token's the same one for the whole session, uploads
+        // included, so we don't need to go ask for another one.
+        String token = formfields.get("token");
         if(token == null) {
-            throw new WikiException(R.string.wiki_error_xml);
+            throw new WikiException(R.string.wiki_error_unknown);
         }
 
-        // TOKEN GET!  Now we've got us enough to get our upload on!
+        HttpPost httppost = new HttpPost(WIKI_API_URL);
+
         MultipartEntityBuilder builder = MultipartEntityBuilder.create()
                 .addPart("action", new StringBody("upload", ContentType.TEXT_PLAIN))
                 .addPart("filename", new StringBody(filename, ContentType.create("text/plain", "utf-8")))
@@ -482,7 +810,10 @@ public class WikiUtils {
                 .addPart("ignorewarnings", new StringBody("true", ContentType.TEXT_PLAIN))
                 .addPart("token", new StringBody(token, ContentType.TEXT_PLAIN))
                 .addPart("format", new StringBody("xml", ContentType.TEXT_PLAIN))
-                .addPart("file", new ByteArrayBody(data, ContentType.create("image/jpeg", "utf-8"), filename));
+                .addPart("file", body);
+
+        if(formfields.containsKey("assert"))
+            builder.addPart("assert", new StringBody(formfields.get("assert"), ContentType.TEXT_PLAIN));
 
         httppost.setEntity(builder.build());
 
@@ -521,14 +852,9 @@ public class WikiUtils {
             Log.d(DEBUG_TAG, "The wiki is running 1.27 or higher, going with the new login method...");
             HttpGet httpget = new HttpGet(WIKI_API_URL + "?action=query&format=xml&meta=tokens&type=login");
 
-            WikiResponse response = getWikiResponse(httpclient, httpget);
-
-            Element tokenElem;
-            String token;
-            try {
-                tokenElem = DOMUtil.getFirstElement(response.rootElem, "tokens");
-                token = DOMUtil.getSimpleAttributeText(tokenElem, "logintoken");
-            } catch(Exception e) {
+            WikiElement tokenElem = getWikiResponse(httpclient, httpget, "tokens").get("tokens");
+            String token = tokenElem == null ? null : tokenElem.get("logintoken");
+            if(token == null) {
                 Log.d(DEBUG_TAG, "Couldn't get a token!");
                 throw new WikiException(R.string.wiki_error_xml);
             }
@@ -540,27 +866,20 @@ public class WikiUtils {
             nvps.add(new BasicNameValuePair("password", wpPassword));
             nvps.add(new BasicNameValuePair("loginreturnurl", WIKI_API_URL));
             nvps.add(new BasicNameValuePair("logintoken", token));
+            // WikiSession hangs on to the cookies, so they might as well
+            // last longer than the server's idea of a browser session.
+            nvps.add(new BasicNameValuePair("rememberMe", "1"));
             nvps.add(new BasicNameValuePair("format", "xml"));
 
             httppost.setEntity(new UrlEncodedFormEntity(nvps, "utf-8"));
 
             Log.d(DEBUG_TAG, "Token obtained, trying login...");
-            response = getWikiResponse(httpclient, httppost);
+            String status = getWikiResponse(httpclient, httppost, "clientlogin")
+                    .require("clientlogin").get("status");
 
-            Element login;
-            String status;
-            try {
-                login = DOMUtil.getFirstElement(response.rootElem, "clientlogin");
-                status = DOMUtil.getSimpleAttributeText(login, "status");
-
-                // If we got a clientlogin response but no status in it, I
-                // just... what?
-                if(status == null) throw new WikiException(R.string.wiki_error_unknown);
-            } catch(WikiException we) {
-                throw we;
-            } catch (Exception e) {
-                throw new WikiException(R.string.wiki_error_xml);
-            }
+            // If we got a clientlogin response but no status in it, I
+            // just... what?
+            if(status == null) throw new WikiException(R.string.wiki_error_unknown);
 
             // Our result will hopefully either be PASS or FAIL.  If it's UI or
             // REDIRECT, we don't cover those cases just yet.  I really hope we
@@ -598,19 +917,11 @@ public class WikiUtils {
             httppost.setEntity(new UrlEncodedFormEntity(nvps, "utf-8"));
 
             Log.d(DEBUG_TAG, "Trying login...");
-            WikiResponse response = getWikiResponse(httpclient, httppost);
-
             // The result comes in as an XML chunk.  Since we're expecting the
             // cookies to be set properly, all we care about is the "result"
             // attribute of the "login" element.
-            Element login;
-            String result;
-            try {
-                login = DOMUtil.getFirstElement(response.rootElem, "login");
-                result = DOMUtil.getSimpleAttributeText(login, "result");
-            } catch(Exception e) {
-                throw new WikiException(R.string.wiki_error_xml);
-            }
+            WikiElement login = getWikiResponse(httpclient, httppost, "login").require("login");
+            String result = login.get("result");
 
             Log.d(DEBUG_TAG, "After login, result is " + result);
 
@@ -622,7 +933,7 @@ public class WikiUtils {
                 // Okay, do the same thing again, this time with the token we got
                 // the first time around.  Cookies will be set this time around, I
                 // think.
-                String token = DOMUtil.getSimpleAttributeText(login, "token");
+                String token = login.get("token");
 
                 httppost = new HttpPost(WIKI_API_URL);
 
@@ -636,17 +947,12 @@ public class WikiUtils {
                 httppost.setEntity(new UrlEncodedFormEntity(nvps, "utf-8"));
 
                 Log.d(DEBUG_TAG, "Sending it out...");
-                response = getWikiResponse(httpclient, httppost);
+                login = getWikiResponse(httpclient, httppost, "login").require("login");
 
                 Log.d(DEBUG_TAG, "Response has returned!");
 
                 // Again!
-                try {
-                    login = DOMUtil.getFirstElement(response.rootElem, "login");
-                    result = DOMUtil.getSimpleAttributeText(login, "result");
-                } catch(Exception e) {
-                    throw new WikiException(R.string.wiki_error_xml);
-                }
+                result = login.get("result");
             }
 
             // Check it.  If NeedToken was returned again, then the wiki is just
@@ -750,6 +1056,21 @@ public class WikiUtils {
             case "editconflict":
                 error = R.string.wiki_error_conflict;
                 break;
+            case "missingtitle":
+                error = R.string.wiki_error_page_missing;
+                break;
+            case "articleexists":
+                error = R.string.wiki_error_page_exists;
+                break;
+
+            // And these mean the session's gone bad somehow.  WikiSession
+            // logs in again when it sees this.
+            case "badtoken":
+            case "notloggedin":
+            case "assertuserfailed":
+            case "assertnameduserfailed":
+                error = R.string.wiki_error_session_expired;
+                break;
 
             // If all else fails, log what we got.
             default:
@@ -760,29 +1081,6 @@ public class WikiUtils {
         return error;
     }
 
-    private static boolean doesResponseHaveError(@Nullable Element elem) {
-        if(elem == null) return false;
-
-        try {
-            DOMUtil.getFirstElement(elem, "error");
-        } catch(Exception ex) {
-            return false;
-        }
-
-        return true;
-    }
-
-    private static String findErrorCode(@Nullable Element elem) {
-        if(elem == null) return "UnknownError";
-
-        try {
-            Element error = DOMUtil.getFirstElement(elem, "error");
-            return DOMUtil.getSimpleAttributeText(error, "code");
-        } catch(Exception ex) {
-            return "UnknownError";
-        }
-    }
-
     /**
      * Retrieves the wiki page name for the given data.  This accounts for
      * globalhashes, too.
@@ -890,11 +1188,13 @@ public class WikiUtils {
      * Makes a location tag for the wiki that links to OpenStreetMap.  Or just
      * returns an empty string if you gave it a null location.  That's entirely
      * valid; if the user's location isn't known, the tag should be empty.
+     * This is synchronized because DecimalFormat isn't thread-safe, and
+     * WikiService can be working on more than one page at once.
      *
      * @param loc the Location
      * @return an OpenStreetMap wiki tag
      */
-    public static String makeLocationTag(@Nullable Location loc) {
+    public static synchronized String makeLocationTag(@Nullable Location loc) {
         if(loc != null) {
             return " [https://openstreetmap.org/?mlat="
                     + mLatLonLinkFormat.format(loc.getLatitude())
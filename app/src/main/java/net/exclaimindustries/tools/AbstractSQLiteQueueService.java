@@ -12,6 +12,7 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
@@ -20,9 +21,15 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import android.util.Log;
 
+import net.exclaimindustries.tools.queue.QueueSchema;
+
+import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.WeakHashMap;
 
 /**
  * <p>
@@ -31,6 +38,17 @@ import java.util.List;
  * You're probably looking for a bit more implementation, like, say,
  * {@link PlainSQLiteQueueService} or {@link AbnormallyDurableSQLiteQueueService}.
  * </p>
+ *
+ * <p>
+ * Everything lives in the database the whole time.  Taking something off the
+ * front of the queue to work on doesn't remove it; it <i>leases</i> it,
+ * marking the row as taken for a while (see {@link #getLeaseTimeout()}) in
+ * the same transaction that finds it, so nothing else will pick it up in the
+ * meantime.  Finishing it deletes the row, and pausing on it lets the lease
+ * go so it's right back at the front.  If the process dies in the middle of
+ * something, the lease is simply forgotten the next time the database is
+ * opened, so nothing's lost and nothing's done twice on purpose.
+ * </p>
  */
 public abstract class AbstractSQLiteQueueService extends QueueService {
     private static final String DEBUG_TAG = "SQLiteQueueService";
@@ -38,28 +56,75 @@ public abstract class AbstractSQLiteQueueService extends QueueService {
     protected DatabaseHelper mHelper;
     private SQLiteDatabase mDatabase;
 
+    // The number of rows in the queue table, kept up to date as things go in
+    // and out so nobody has to ask SQLite every time.  -1 means it needs to be
+    // counted from scratch, which happens once every time the database gets
+    // opened.  Since that's derived from the table itself, it's right even if
+    // the process got killed halfway through something last time.
+    private int mCount = -1;
+
+    // The row ID of whatever getNextIntentFromDatabase() last handed out, so
+    // removeNextIntentFromDatabase() can delete exactly that without looking
+    // it up again.  -1 means we don't know.
+    private long mHeadRowId = -1;
+
+    // The row IDs of whatever getIntentsFromDatabase() handed out, so the
+    // parallel dispatcher can remove them later no matter where they are in
+    // the queue.  Intents don't override equals() or hashCode(), so this is
+    // keyed on the instance itself, and the weak keys mean anything the
+    // dispatcher looked at and didn't use just quietly drops out.
+    private final Map<Intent, Long> mRowIds = new WeakHashMap<>();
+
+    // Identifies leases taken out by this process.  Anything in the table
+    // leased by some other token is left over from a process that isn't
+    // around anymore.
+    private static final String LEASE_OWNER = UUID.randomUUID().toString();
+
+    // The table, order, and leasing rules all come from QueueSchema, which
+    // JdbcQueueStore uses too.  That way the benchmarks over in queuecore are
+    // measuring the same SQL that runs here.  These are just the old names
+    // for them.
+
+    /** By default, leases last ten minutes. */
+    private static final long DEFAULT_LEASE_TIMEOUT = QueueSchema.DEFAULT_LEASE_TIMEOUT;
+
     /** The name of the table storing everything. */
-    protected static final String TABLE_QUEUE = "queue";
+    protected static final String TABLE_QUEUE = QueueSchema.TABLE;
 
     /** Everybody needs a rowid, right? */
-    protected static final String KEY_QUEUE_ROWID = "_id";
+    protected static final String KEY_QUEUE_ROWID = QueueSchema.COLUMN_ROWID;
     /** The timestamp of the data.  We sort by this. */
-    protected static final String KEY_QUEUE_TIMESTAMP = "timestamp";
+    protected static final String KEY_QUEUE_TIMESTAMP = QueueSchema.COLUMN_TIMESTAMP;
     /** The serialized data itself.  Treat as an opaque string. */
-    protected static final String KEY_QUEUE_DATA = "data";
+    protected static final String KEY_QUEUE_DATA = QueueSchema.COLUMN_DATA;
+    /**
+     * When the current lease on this row runs out, in milliseconds since the
+     * epoch.  Anything at or below the current time isn't leased.
+     */
+    protected static final String KEY_QUEUE_LEASE_UNTIL = QueueSchema.COLUMN_LEASE_UNTIL;
+    /** Who holds the current lease, if anyone. */
+    protected static final String KEY_QUEUE_LEASE_OWNER = QueueSchema.COLUMN_LEASE_OWNER;
+    /**
+     * The priority lane, from {@link #getPriority(Intent)}.  Lower lanes come
+     * out first.
+     */
+    protected static final String KEY_QUEUE_PRIORITY = QueueSchema.COLUMN_PRIORITY;
+
+    /**
+     * The order the queue comes out in.  See {@link QueueSchema#ORDER}.
+     */
+    protected static final String QUEUE_ORDER = QueueSchema.ORDER;
 
     /**
      * We all need some help once in a while.  Databases moreso.
      */
     protected class DatabaseHelper extends SQLiteOpenHelper {
 
-        private static final int DATABASE_VERSION = 1;
+        private static final int DATABASE_VERSION = 4;
 
-        private static final String CREATE_QUEUE_TABLE =
-                "CREATE TABLE " + TABLE_QUEUE
-                        + " (" + KEY_QUEUE_ROWID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
-                        + KEY_QUEUE_TIMESTAMP + " INTEGER NOT NULL, "
-                        + KEY_QUEUE_DATA + " TEXT NOT NULL);";
+        private static final String CREATE_QUEUE_TABLE = QueueSchema.CREATE_TABLE;
+
+        private static final String CREATE_QUEUE_INDEX = QueueSchema.CREATE_INDEX;
 
         DatabaseHelper(Context context) {
             super(context, getQueueName(), null, DATABASE_VERSION);
@@ -68,11 +133,30 @@ public abstract class AbstractSQLiteQueueService extends QueueService {
         @Override
         public void onCreate(SQLiteDatabase db) {
             db.execSQL(CREATE_QUEUE_TABLE);
+            db.execSQL(CREATE_QUEUE_INDEX);
         }
 
         @Override
         public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-            // This is version 1, there's no upgrading right now.
+            // Version 3 added leases.  Everything already there starts out
+            // unleased.
+            if(oldVersion < 3) {
+                db.execSQL("ALTER TABLE " + TABLE_QUEUE + " ADD COLUMN "
+                        + KEY_QUEUE_LEASE_UNTIL + " INTEGER NOT NULL DEFAULT 0;");
+                db.execSQL("ALTER TABLE " + TABLE_QUEUE + " ADD COLUMN "
+                        + KEY_QUEUE_LEASE_OWNER + " TEXT;");
+            }
+
+            // Version 4 added lanes, which changes the sort order, so the
+            // index version 2 added on the old order gets replaced.  Anything
+            // already queued goes in lane 0, which keeps it in the order it
+            // was already in.
+            if(oldVersion < 4) {
+                db.execSQL("ALTER TABLE " + TABLE_QUEUE + " ADD COLUMN "
+                        + KEY_QUEUE_PRIORITY + " INTEGER NOT NULL DEFAULT 0;");
+                db.execSQL("DROP INDEX IF EXISTS " + TABLE_QUEUE + "_order;");
+                db.execSQL(CREATE_QUEUE_INDEX);
+            }
         }
     }
 
@@ -90,41 +174,76 @@ public abstract class AbstractSQLiteQueueService extends QueueService {
 
         mHelper = new DatabaseHelper(this);
         mDatabase = mHelper.getWritableDatabase();
+        mCount = -1;
+        mHeadRowId = -1;
+        mRowIds.clear();
+
+        // Any lease some other process took out is from a process that died
+        // holding it (we'd still have the database open if it were us), so
+        // those go back in the queue right now instead of waiting out the
+        // timeout.
+        ContentValues release = new ContentValues();
+        release.put(KEY_QUEUE_LEASE_UNTIL, 0);
+        release.putNull(KEY_QUEUE_LEASE_OWNER);
+        int released = mDatabase.update(TABLE_QUEUE, release,
+                QueueSchema.WHERE_STALE_LEASE, new String[]{LEASE_OWNER});
+        if(released > 0)
+            Log.i(DEBUG_TAG, "Released " + released + " lease(s) left over from a previous run");
+
         return mDatabase;
     }
 
     /**
-     * Queries the database for the current queue count.  Will return 0 if
+     * How long a lease lasts, in milliseconds.  If something's been leased
+     * this long without being finished or let go, it's assumed whatever was
+     * working on it got stuck, and it's up for grabs again.  The default is
+     * ten minutes, which matches how long WikiService holds its wakelock.
+     *
+     * @return the lease timeout
+     */
+    protected long getLeaseTimeout() {
+        return DEFAULT_LEASE_TIMEOUT;
+    }
+
+    @NonNull
+    private static String unleasedClause() {
+        return QueueSchema.WHERE_UNLEASED;
+    }
+
+    /**
+     * Adjusts the maintained count after rows were added or removed.  If the
+     * count hasn't been worked out yet, this doesn't do anything; it'll get
+     * counted properly when someone asks.
+     *
+     * @param delta how many rows were added (or removed, if negative)
+     */
+    private void adjustCount(int delta) {
+        if(mCount >= 0) mCount = Math.max(0, mCount + delta);
+    }
+
+    /**
+     * Gets the current queue count as it stands on the database.  This only
+     * actually goes to the database (with a COUNT(*), not a full query) the
+     * first time after the database is opened; after that, it's a counter
+     * that gets updated on every insert and delete.  Will return 0 if
      * anything goes wrong.
      *
      * @return the current queue count as it stands on the database
      */
     protected int getQueueCountFromDatabase() {
         synchronized(this) {
-            Cursor cursor = null;
             try {
                 SQLiteDatabase database = initDatabase();
 
-                // This oughta be easy.
-                cursor = database.query(TABLE_QUEUE, new String[]{KEY_QUEUE_ROWID},
-                        null, null, null, null,
-                        null);
-
-                if(cursor == null) {
-                    Log.w(DEBUG_TAG, "When getting the queue count, the Cursor was null!");
-                    return 0;
+                if(mCount < 0) {
+                    mCount = (int)DatabaseUtils.queryNumEntries(database, TABLE_QUEUE);
+                    LogGate.d(DEBUG_TAG, "Counted %d row(s) in the queue table", mCount);
                 }
 
-                int toReturn = cursor.getCount();
-                cursor.close();
-                return toReturn;
+                return mCount;
             } catch (SQLException sqle) {
                 Log.e(DEBUG_TAG, "Exception in getQueueCount()!", sqle);
                 return 0;
-            } finally {
-                if(cursor != null && !cursor.isClosed()) {
-                    cursor.close();
-                }
             }
         }
     }
@@ -140,6 +259,9 @@ public abstract class AbstractSQLiteQueueService extends QueueService {
                 SQLiteDatabase database = initDatabase();
 
                 database.delete(TABLE_QUEUE, null, null);
+                mCount = 0;
+                mHeadRowId = -1;
+                mRowIds.clear();
             } catch(SQLException sqle) {
                 Log.e(DEBUG_TAG, "Exception in clearQueue()!", sqle);
             }
@@ -170,15 +292,19 @@ public abstract class AbstractSQLiteQueueService extends QueueService {
             ContentValues toGo = new ContentValues();
             toGo.put(KEY_QUEUE_TIMESTAMP, time);
             toGo.put(KEY_QUEUE_DATA, data);
+            toGo.put(KEY_QUEUE_PRIORITY, getPriority(i));
 
-            database.insert(TABLE_QUEUE, null, toGo);
+            if(database.insert(TABLE_QUEUE, null, toGo) != -1)
+                adjustCount(1);
         }
     }
 
     /**
      * Removes the next intent from the database (that is, a remove, not a
-     * peek).  Don't call this unless you're either not using a queue or the
-     * service is paused.
+     * peek).  If {@link #getNextIntentFromDatabase()} was called first (which
+     * it usually is), this deletes exactly the row that one leased, by row
+     * ID, no query needed.  Otherwise, it deletes whatever's at the head,
+     * leased or not, which is what {@link #COMMAND_RESUME_SKIP_FIRST} wants.
      *
      * @throws SQLException if something SQL-y goes kerflooey
      */
@@ -186,10 +312,23 @@ public abstract class AbstractSQLiteQueueService extends QueueService {
         synchronized(this) {
             SQLiteDatabase database = initDatabase();
 
-            // Grab us exactly one entry, if that.
+            if(mHeadRowId >= 0) {
+                long rowId = mHeadRowId;
+                mHeadRowId = -1;
+
+                int deleted = database.delete(TABLE_QUEUE, KEY_QUEUE_ROWID + "=" + rowId, null);
+                adjustCount(-deleted);
+
+                // If that row was somehow already gone, fall back to whatever
+                // the head is now.
+                if(deleted > 0) return;
+            }
+
+            // Grab us exactly one entry, if that.  The index makes this cheap
+            // no matter how deep the queue is.
             Cursor cursor = database.query(TABLE_QUEUE, new String[]{KEY_QUEUE_ROWID},
                     null, null, null, null,
-                    KEY_QUEUE_TIMESTAMP + " ASC", "1");
+                    QUEUE_ORDER, "1");
 
             if(cursor == null) {
                 // I really hope this never comes up, else a LOT of methods will
@@ -198,28 +337,34 @@ public abstract class AbstractSQLiteQueueService extends QueueService {
                 return;
             }
 
-            if(cursor.getCount() == 0) {
-                Log.i(DEBUG_TAG, "Tried to remove next Intent but there's nothing in the database!");
-                return;
-            }
+            long rowId;
+            try {
+                if(!cursor.moveToFirst()) {
+                    Log.i(DEBUG_TAG, "Tried to remove next Intent but there's nothing in the database!");
+                    return;
+                }
 
-            // Otherwise, we have us our row ID.
-            cursor.moveToFirst();
-            int columnIndex = cursor.getColumnIndex(KEY_QUEUE_ROWID);
-            assert(columnIndex >= 0);
-            long rowId = cursor.getLong(columnIndex);
-            cursor.close();
+                // Otherwise, we have us our row ID.
+                rowId = cursor.getLong(0);
+            } finally {
+                cursor.close();
+            }
 
-            database.delete(TABLE_QUEUE, KEY_QUEUE_ROWID + "=" + rowId, null);
+            adjustCount(-database.delete(TABLE_QUEUE, KEY_QUEUE_ROWID + "=" + rowId, null));
         }
     }
 
     /**
-     * Gets the next Intent directly from the database (that is, a peek, not a
-     * remove).  Don't call this unless you're either not using a queue or the
-     * service is paused.
+     * Leases the next Intent from the database.  That's not a remove; the row
+     * stays right where it is, but nothing else will get it back from here
+     * or from {@link #getIntentsFromDatabase(int)} until the lease is let go
+     * (see {@link #releaseIntentInDatabase(Intent)}) or runs out.  Finding the
+     * head and leasing it happen in the same transaction.  This only ever
+     * reads the head of the queue.  If the head can't be deserialized, it
+     * gets deleted and the next one gets a shot.
      *
-     * @return the next Intent, or null if there is none
+     * @return the next Intent, or null if there's nothing left that isn't
+     *         already leased
      * @throws SQLException something went bad with SQL
      */
     @Nullable
@@ -227,67 +372,378 @@ public abstract class AbstractSQLiteQueueService extends QueueService {
         synchronized(this) {
             SQLiteDatabase database = initDatabase();
 
-            // We'll delete these when we're done with the Cursor.
-            List<Long> toDelete = new LinkedList<>();
+            mHeadRowId = -1;
+
+            database.beginTransaction();
+            try {
+                Intent toReturn = null;
+                long now = System.currentTimeMillis();
+
+                while(toReturn == null) {
+                    // Just the head, please.  Well, the head of what isn't
+                    // already spoken for.
+                    Cursor cursor = database.query(TABLE_QUEUE, new String[]{KEY_QUEUE_ROWID, KEY_QUEUE_DATA},
+                            unleasedClause(), new String[]{Long.toString(now)}, null, null,
+                            QUEUE_ORDER, "1");
+
+                    if(cursor == null) {
+                        // Problem!
+                        Log.w(DEBUG_TAG, "When getting the next Intent, the Cursor was null!");
+                        break;
+                    }
+
+                    long rowId;
+                    String data;
+                    try {
+                        if(!cursor.moveToFirst()) {
+                            // Not really a problem, but the queue's just
+                            // empty.
+                            break;
+                        }
+
+                        rowId = cursor.getLong(0);
+                        data = cursor.getString(1);
+                    } finally {
+                        cursor.close();
+                    }
+
+                    // Now, try to deserialize.  This'll be null if it should be
+                    // ignored.
+                    toReturn = deserializeIntent(data == null ? "" : data);
+
+                    if(toReturn != null) {
+                        lease(database, rowId, now);
+                        mHeadRowId = rowId;
+                        mRowIds.put(toReturn, rowId);
+                    } else {
+                        // If it IS null, delete it and try the next one.
+                        adjustCount(-database.delete(TABLE_QUEUE, KEY_QUEUE_ROWID + "=" + rowId, null));
+                    }
+                }
+
+                database.setTransactionSuccessful();
+                return toReturn;
+            } finally {
+                database.endTransaction();
+            }
+        }
+    }
+
+    private void lease(@NonNull SQLiteDatabase database, long rowId, long now) {
+        ContentValues values = new ContentValues();
+        values.put(KEY_QUEUE_LEASE_UNTIL, now + getLeaseTimeout());
+        values.put(KEY_QUEUE_LEASE_OWNER, LEASE_OWNER);
+        database.update(TABLE_QUEUE, values, KEY_QUEUE_ROWID + "=" + rowId, null);
+    }
+
+    /**
+     * Leases one specific Intent that came from
+     * {@link #getIntentsFromDatabase(int)}.  This only works if nobody else
+     * has leased it in the meantime; the check and the lease are one UPDATE,
+     * so two callers can't both win.
+     *
+     * @param i the Intent to lease
+     * @return true if it's ours now, false if it's already leased or gone
+     * @throws SQLException something went bad with SQL
+     */
+    protected final boolean leaseIntentInDatabase(@NonNull Intent i) throws SQLException {
+        synchronized(this) {
+            Long rowId = mRowIds.get(i);
+            if(rowId == null) return false;
+
+            SQLiteDatabase database = initDatabase();
+            long now = System.currentTimeMillis();
+
+            ContentValues values = new ContentValues();
+            values.put(KEY_QUEUE_LEASE_UNTIL, now + getLeaseTimeout());
+            values.put(KEY_QUEUE_LEASE_OWNER, LEASE_OWNER);
+            return database.update(TABLE_QUEUE, values, QueueSchema.WHERE_CLAIMABLE,
+                    new String[]{Long.toString(rowId), Long.toString(now)}) > 0;
+        }
+    }
+
+    /**
+     * Lets go of the lease on an Intent without removing it, so it's back in
+     * line right where it was.  This is what happens when the queue pauses on
+     * something.  If the Intent didn't come from the database, nothing
+     * happens.
+     *
+     * @param i the Intent to let go of
+     * @throws SQLException something went bad with SQL
+     */
+    protected final void releaseIntentInDatabase(@NonNull Intent i) throws SQLException {
+        synchronized(this) {
+            Long rowId = mRowIds.get(i);
+            if(rowId == null) return;
+
+            if(rowId == mHeadRowId) mHeadRowId = -1;
+
+            SQLiteDatabase database = initDatabase();
+            ContentValues values = new ContentValues();
+            values.put(KEY_QUEUE_LEASE_UNTIL, 0);
+            values.putNull(KEY_QUEUE_LEASE_OWNER);
+            database.update(TABLE_QUEUE, values, QueueSchema.WHERE_ID,
+                    new String[]{Long.toString(rowId)});
+        }
+    }
+
+    /**
+     * Gets up to the given number of Intents from the front of the database,
+     * in order, without removing or leasing them.  Anything already leased
+     * gets skipped.  Any that can't be deserialized get
+     * deleted along the way, same as in {@link #getNextIntentFromDatabase()}.
+     * The Intents returned can be handed to
+     * {@link #removeIntentFromDatabase(Intent)} later.
+     *
+     * @param max the most Intents to return
+     * @return the Intents at the front of the queue (may be empty)
+     * @throws SQLException something went bad with SQL
+     */
+    @NonNull
+    protected final List<Intent> getIntentsFromDatabase(int max) throws SQLException {
+        synchronized(this) {
+            SQLiteDatabase database = initDatabase();
+            List<Intent> toReturn = new ArrayList<>();
 
-            // Grab everything!  Sorted!
             Cursor cursor = database.query(TABLE_QUEUE, new String[]{KEY_QUEUE_ROWID, KEY_QUEUE_DATA},
-                    null, null, null, null,
-                    KEY_QUEUE_TIMESTAMP + " ASC");
+                    unleasedClause(), new String[]{Long.toString(System.currentTimeMillis())}, null, null,
+                    QUEUE_ORDER, Integer.toString(max));
 
             if(cursor == null) {
-                // Problem!
-                Log.w(DEBUG_TAG, "When getting the next Intent, the Cursor was null!");
-                return null;
+                Log.w(DEBUG_TAG, "When getting the next Intents, the Cursor was null!");
+                return toReturn;
             }
 
-            if(cursor.getCount() == 0) {
-                // Not really a problem, but the queue's just empty.
-                return null;
+            List<Long> broken = new ArrayList<>();
+            try {
+                while(cursor.moveToNext()) {
+                    long rowId = cursor.getLong(0);
+                    String data = cursor.getString(1);
+
+                    Intent intent = deserializeIntent(data == null ? "" : data);
+                    if(intent != null) {
+                        mRowIds.put(intent, rowId);
+                        toReturn.add(intent);
+                    } else {
+                        broken.add(rowId);
+                    }
+                }
+            } finally {
+                cursor.close();
             }
 
-            cursor.moveToFirst();
+            // Anything that wouldn't deserialize is just taking up space.
+            // That means this might come back a bit short of max even if
+            // there's more in the queue, but the next call will pick those up.
+            for(long rowId : broken)
+                adjustCount(-database.delete(TABLE_QUEUE, KEY_QUEUE_ROWID + "=" + rowId, null));
 
-            // Now, loop through until we find something we can use (or until
-            // we bottom out).
-            Intent toReturn = null;
+            return toReturn;
+        }
+    }
 
-            while(toReturn == null && !cursor.isAfterLast()) {
-                // Data!  Now!
-                int columnIndexRow = cursor.getColumnIndex(KEY_QUEUE_ROWID);
-                int columnIndexData = cursor.getColumnIndex(KEY_QUEUE_ROWID);
-                assert(columnIndexRow >= 0);
-                assert(columnIndexData >= 0);
+    /**
+     * Gets the serialized form of everything in the queue, leased or not,
+     * exactly as {@link #serializeIntent(Intent)} wrote it.  Nothing gets
+     * deserialized or leased; this is for subclasses that need to know what
+     * the queue is still holding on to (files, say) without disturbing it.
+     *
+     * @return the serialized Intents, in queue order (may be empty)
+     * @throws SQLException something went bad with SQL
+     */
+    @NonNull
+    protected final List<String> getSerializedIntentsFromDatabase() throws SQLException {
+        synchronized(this) {
+            SQLiteDatabase database = initDatabase();
+            List<String> toReturn = new ArrayList<>();
 
-                long rowId = cursor.getLong(columnIndexRow);
-                String data = cursor.getString(columnIndexData);
+            Cursor cursor = database.query(TABLE_QUEUE, new String[]{KEY_QUEUE_DATA},
+                    null, null, null, null, QUEUE_ORDER);
 
-                // Now, try to deserialize.  This'll be null if it should be
-                // ignored.
-                toReturn = deserializeIntent(data);
+            if(cursor == null) {
+                Log.w(DEBUG_TAG, "When getting the serialized Intents, the Cursor was null!");
+                return toReturn;
+            }
 
-                // And if it IS null, delete it afterward.
-                if(toReturn == null)
-                    toDelete.add(rowId);
+            try {
+                while(cursor.moveToNext()) {
+                    String data = cursor.getString(0);
+                    if(data != null) toReturn.add(data);
+                }
+            } finally {
+                cursor.close();
+            }
+
+            return toReturn;
+        }
+    }
+
+    /**
+     * Removes one specific Intent from the database, which must have come
+     * from {@link #getIntentsFromDatabase(int)} or
+     * {@link #getNextIntentFromDatabase()}.  This is how a lease gets
+     * finished off.  If it didn't come from there (or it's already been
+     * removed), nothing happens.
+     *
+     * @param i the Intent to remove
+     * @throws SQLException if something SQL-y goes kerflooey
+     */
+    protected final void removeIntentFromDatabase(@NonNull Intent i) throws SQLException {
+        synchronized(this) {
+            Long rowId = mRowIds.remove(i);
 
-                // The while loop will stop if we found something.  Move on!
-                cursor.moveToNext();
+            if(rowId == null) {
+                Log.w(DEBUG_TAG, "Tried to remove an Intent that didn't come from the database, ignoring...");
+                return;
             }
 
-            // So!  Let's wrap things up.  Get rid of the cursor.
-            cursor.close();
+            if(rowId == mHeadRowId) mHeadRowId = -1;
+
+            SQLiteDatabase database = initDatabase();
+            adjustCount(-database.delete(TABLE_QUEUE, KEY_QUEUE_ROWID + "=" + rowId, null));
+        }
+    }
 
-            // Now, delete everything that was null.
-            for(Long l : toDelete) {
-                database.delete(TABLE_QUEUE, KEY_QUEUE_ROWID + "=" + l, null);
+    /**
+     * Removes the row with the given row ID from the database, leased or not.
+     * This is for skipping whatever paused the queue, which might've been
+     * handed out by a different instance of the Service entirely.
+     *
+     * @param rowId the row ID
+     * @return true if there was a row to remove
+     * @throws SQLException if something SQL-y goes kerflooey
+     */
+    protected final boolean removeIntentFromDatabaseById(long rowId) throws SQLException {
+        synchronized(this) {
+            // If this instance handed it out, forget about that.
+            Iterator<Long> it = mRowIds.values().iterator();
+            while(it.hasNext()) {
+                if(it.next() == rowId) it.remove();
             }
+            if(rowId == mHeadRowId) mHeadRowId = -1;
 
-            // And return whatever our result was.  That result may very well be
-            // null.
-            return toReturn;
+            SQLiteDatabase database = initDatabase();
+            int deleted = database.delete(TABLE_QUEUE, KEY_QUEUE_ROWID + "=" + rowId, null);
+            adjustCount(-deleted);
+            return deleted > 0;
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        synchronized(this) {
+            if(mHelper != null) mHelper.close();
+        }
+
+        super.onDestroy();
+    }
+
+    @Override
+    protected int getQueueCount() {
+        return getQueueCountFromDatabase();
+    }
+
+    @Override
+    protected void clearQueue() {
+        clearQueueFromDatabase();
+    }
+
+    @Override
+    protected void addIntentToQueue(@NonNull Intent i) {
+        try {
+            writeIntentToDatabase(i);
+        } catch(SQLException sqle) {
+            Log.e(DEBUG_TAG, "Error adding Intent to the queue!", sqle);
+        }
+    }
+
+    @Override
+    protected Intent peekNextIntentFromQueue() {
+        try {
+            return getNextIntentFromDatabase();
+        } catch(SQLException sqle) {
+            Log.e(DEBUG_TAG, "Error getting the next Intent from the queue! (returning null)", sqle);
+            return null;
+        }
+    }
+
+    @Override
+    protected void removeNextIntentFromQueue() {
+        try {
+            removeNextIntentFromDatabase();
+        } catch(SQLException sqle) {
+            Log.e(DEBUG_TAG, "Error removing the next Intent from the queue!", sqle);
+        }
+    }
+
+    @NonNull
+    @Override
+    protected List<Intent> peekIntentsFromQueue(int max) {
+        try {
+            return getIntentsFromDatabase(max);
+        } catch(SQLException sqle) {
+            Log.e(DEBUG_TAG, "Error getting the next Intents from the queue! (returning nothing)", sqle);
+            return new ArrayList<>();
+        }
+    }
+
+    @Override
+    protected boolean claimIntentFromQueue(@NonNull Intent i) {
+        try {
+            return leaseIntentInDatabase(i);
+        } catch(SQLException sqle) {
+            Log.e(DEBUG_TAG, "Error leasing an Intent from the queue!", sqle);
+            return false;
         }
     }
 
+    @Override
+    protected void releaseIntentToQueue(@NonNull Intent i) {
+        try {
+            releaseIntentInDatabase(i);
+        } catch(SQLException sqle) {
+            // It'll come back on its own once the lease runs out.
+            Log.e(DEBUG_TAG, "Error releasing an Intent back to the queue!", sqle);
+        }
+    }
+
+    @Override
+    protected void removeIntentFromQueue(@NonNull Intent i) {
+        try {
+            removeIntentFromDatabase(i);
+        } catch(SQLException sqle) {
+            Log.e(DEBUG_TAG, "Error removing an Intent from the queue!", sqle);
+        }
+    }
+
+    @Override
+    protected long getIntentId(@NonNull Intent i) {
+        synchronized(this) {
+            Long rowId = mRowIds.get(i);
+            return rowId == null ? -1 : rowId;
+        }
+    }
+
+    @Override
+    protected boolean removeIntentFromQueueById(long id) {
+        try {
+            return removeIntentFromDatabaseById(id);
+        } catch(SQLException sqle) {
+            Log.e(DEBUG_TAG, "Error removing an Intent from the queue by ID!", sqle);
+            return false;
+        }
+    }
+
+    @Override
+    protected void onQueueLoad() {
+        // Everything's in the database already.  Nothing to load.
+    }
+
+    @Override
+    protected void onQueueUnload() {
+        // Same.  Anything that was leased got let go already.
+    }
+
     @Override
     protected void onQueueEmpty(boolean allProcessed) {
         // By default, nothing should happen.  This can be overridden.
@@ -21,6 +21,8 @@ import java.util.Locale;
  */
 public class DateTools {
 
+    // SimpleDateFormat isn't thread-safe, so anything using these has to be
+    // synchronized.  The wiki queue can call in from more than one thread.
     private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyyMMdd", Locale.ENGLISH);
     private static final SimpleDateFormat HYPHENATED_DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd", Locale.ENGLISH);
     private static final SimpleDateFormat WIKI_DATE_FORMAT = new SimpleDateFormat("HH:mm, d MMMM yyyy (z)", Locale.ENGLISH);
@@ -31,7 +33,7 @@ public class DateTools {
      * @param c Calendar from which to get the string
      * @return a YYYYMMDD string
      */
-    public static String getDateString(@NonNull Calendar c) {
+    public static synchronized String getDateString(@NonNull Calendar c) {
         return DATE_FORMAT.format(c.getTime());
     }
     
@@ -41,7 +43,7 @@ public class DateTools {
      * @param c Calendar from which to get the string
      * @return a YYYY-MM-DD string
      */
-    public static String getHyphenatedDateString(@NonNull Calendar c) {
+    public static synchronized String getHyphenatedDateString(@NonNull Calendar c) {
         // Turns out the SimpleDateFormat class does all the tricky work for me.
         // Huh.
         return HYPHENATED_DATE_FORMAT.format(c.getTime());
@@ -59,7 +61,7 @@ public class DateTools {
      * @param c a Calendar from which to get the string
      * @return a wiki-signature-like date string
      */
-    public static String getWikiDateString(@NonNull Calendar c) {
+    public static synchronized String getWikiDateString(@NonNull Calendar c) {
         return WIKI_DATE_FORMAT.format(c.getTime());
     }
 
@@ -0,0 +1,201 @@
+/*
+ * GeoDistance.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.tools;
+
+/**
+ * <p>
+ * <code>GeoDistance</code> does distances between latitude/longitude pairs
+ * without needing {@link android.location.Location} objects or
+ * <code>float[]</code> results to be allocated every time, and without doing
+ * the full ellipsoid math when a quick spherical estimate already answers the
+ * question.
+ * </p>
+ *
+ * <p>
+ * {@link #distance(double, double, double, double)} is the exact one.  It's
+ * Vincenty's inverse formula on the WGS84 ellipsoid, which is the same thing
+ * Location.distanceBetween() does, so the answers match up.
+ * {@link #approximate(double, double, double, double)} is the haversine
+ * formula on a sphere, which is always within {@link #APPROXIMATE_ERROR} of
+ * the exact answer (relatively speaking).  {@link #isWithin(double, double,
+ * double, double, double)} uses both, only bothering with the exact one if the
+ * approximation's too close to call.
+ * </p>
+ *
+ * <p>
+ * Everything's static and allocation-free, and there's nothing Android-specific
+ * in here, so it's safe to use from anywhere.
+ * </p>
+ */
+public class GeoDistance {
+    /** WGS84 semi-major axis, in meters. */
+    private static final double WGS84_A = 6378137.0;
+    /** WGS84 semi-minor axis, in meters. */
+    private static final double WGS84_B = 6356752.3142;
+    /** WGS84 flattening. */
+    private static final double WGS84_F = (WGS84_A - WGS84_B) / WGS84_A;
+    /** (a^2 - b^2) / b^2, which Vincenty's formula needs a lot of. */
+    private static final double WGS84_E2_PRIME = (WGS84_A * WGS84_A - WGS84_B * WGS84_B) / (WGS84_B * WGS84_B);
+
+    /** The mean radius of the Earth, in meters, for the spherical estimate. */
+    private static final double MEAN_RADIUS = 6371008.8;
+
+    /**
+     * The shortest a radian of latitude ever gets, in meters (at the equator),
+     * rounded down.  Any latitude difference times this is never longer than
+     * the real distance.
+     */
+    private static final double MIN_MERIDIONAL_RADIUS = 6335000.0;
+
+    /**
+     * The most {@link #approximate(double, double, double, double)} can be off
+     * from {@link #distance(double, double, double, double)}, as a fraction of
+     * the distance.  The worst case for a sphere against WGS84 is a bit over
+     * half a percent; this leaves some room on top of that.
+     */
+    public static final double APPROXIMATE_ERROR = 0.006;
+
+    private static final int MAX_ITERATIONS = 20;
+    private static final double CONVERGENCE = 1.0e-12;
+
+    private GeoDistance() { }
+
+    /**
+     * Gets the exact distance between two points on the WGS84 ellipsoid, in
+     * meters.  This should match Location.distanceBetween() to within float
+     * precision.
+     *
+     * @param lat1 latitude of the first point, in degrees
+     * @param lon1 longitude of the first point, in degrees
+     * @param lat2 latitude of the second point, in degrees
+     * @param lon2 longitude of the second point, in degrees
+     * @return the distance, in meters
+     */
+    public static double distance(double lat1, double lon1, double lat2, double lon2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double bigL = Math.toRadians(lon2) - Math.toRadians(lon1);
+
+        double u1 = Math.atan((1.0 - WGS84_F) * Math.tan(phi1));
+        double u2 = Math.atan((1.0 - WGS84_F) * Math.tan(phi2));
+
+        double cosU1 = Math.cos(u1);
+        double cosU2 = Math.cos(u2);
+        double sinU1 = Math.sin(u1);
+        double sinU2 = Math.sin(u2);
+        double cosU1cosU2 = cosU1 * cosU2;
+        double sinU1sinU2 = sinU1 * sinU2;
+
+        double sigma = 0.0;
+        double deltaSigma = 0.0;
+        double bigA = 0.0;
+        double lambda = bigL;
+
+        for(int i = 0; i < MAX_ITERATIONS; i++) {
+            double lambdaOrig = lambda;
+            double cosLambda = Math.cos(lambda);
+            double sinLambda = Math.sin(lambda);
+
+            double t1 = cosU2 * sinLambda;
+            double t2 = cosU1 * sinU2 - sinU1 * cosU2 * cosLambda;
+            double sinSigma = Math.sqrt(t1 * t1 + t2 * t2);
+            double cosSigma = sinU1sinU2 + cosU1cosU2 * cosLambda;
+            sigma = Math.atan2(sinSigma, cosSigma);
+
+            double sinAlpha = (sinSigma == 0.0) ? 0.0 : cosU1cosU2 * sinLambda / sinSigma;
+            double cosSqAlpha = 1.0 - sinAlpha * sinAlpha;
+            double cos2SM = (cosSqAlpha == 0.0) ? 0.0 : cosSigma - 2.0 * sinU1sinU2 / cosSqAlpha;
+            double cos2SMSq = cos2SM * cos2SM;
+
+            double uSquared = cosSqAlpha * WGS84_E2_PRIME;
+            bigA = 1.0 + (uSquared / 16384.0)
+                    * (4096.0 + uSquared * (-768.0 + uSquared * (320.0 - 175.0 * uSquared)));
+            double bigB = (uSquared / 1024.0)
+                    * (256.0 + uSquared * (-128.0 + uSquared * (74.0 - 47.0 * uSquared)));
+            double bigC = (WGS84_F / 16.0) * cosSqAlpha * (4.0 + WGS84_F * (4.0 - 3.0 * cosSqAlpha));
+
+            deltaSigma = bigB * sinSigma
+                    * (cos2SM + (bigB / 4.0)
+                    * (cosSigma * (-1.0 + 2.0 * cos2SMSq)
+                    - (bigB / 6.0) * cos2SM * (-3.0 + 4.0 * sinSigma * sinSigma) * (-3.0 + 4.0 * cos2SMSq)));
+
+            lambda = bigL + (1.0 - bigC) * WGS84_F * sinAlpha
+                    * (sigma + bigC * sinSigma * (cos2SM + bigC * cosSigma * (-1.0 + 2.0 * cos2SMSq)));
+
+            if(Math.abs(lambda - lambdaOrig) < CONVERGENCE) break;
+        }
+
+        return WGS84_B * bigA * (sigma - deltaSigma);
+    }
+
+    /**
+     * Gets a quick estimate of the distance between two points, in meters,
+     * using the haversine formula on a sphere.  This is always within
+     * {@link #APPROXIMATE_ERROR} (as a fraction) of the exact answer.
+     *
+     * @param lat1 latitude of the first point, in degrees
+     * @param lon1 longitude of the first point, in degrees
+     * @param lat2 latitude of the second point, in degrees
+     * @param lon2 longitude of the second point, in degrees
+     * @return the approximate distance, in meters
+     */
+    public static double approximate(double lat1, double lon1, double lat2, double lon2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double sinHalfDLat = Math.sin((phi2 - phi1) / 2.0);
+        double sinHalfDLon = Math.sin(Math.toRadians(lon2 - lon1) / 2.0);
+
+        double h = sinHalfDLat * sinHalfDLat
+                + Math.cos(phi1) * Math.cos(phi2) * sinHalfDLon * sinHalfDLon;
+
+        // Rounding can nudge h juuuust over 1 for antipodal points.
+        return 2.0 * MEAN_RADIUS * Math.asin(Math.sqrt(Math.min(1.0, h)));
+    }
+
+    /**
+     * Determines if two points are within a given range of each other.  This
+     * first throws out anything whose latitudes alone are too far apart (no
+     * trig needed), then tries the haversine estimate, and only falls back to
+     * the exact ellipsoid distance if the estimate is within its own margin
+     * of error of the range.  In the usual case (way out of range), that
+     * means the exact one never runs.
+     *
+     * @param lat1 latitude of the first point, in degrees
+     * @param lon1 longitude of the first point, in degrees
+     * @param lat2 latitude of the second point, in degrees
+     * @param lon2 longitude of the second point, in degrees
+     * @param range the range, in meters
+     * @return true if the exact distance is less than or equal to range
+     */
+    public static boolean isWithin(double lat1, double lon1, double lat2, double lon2, double range) {
+        if(range < 0.0) return false;
+
+        if(Math.toRadians(Math.abs(lat2 - lat1)) * MIN_MERIDIONAL_RADIUS > range) return false;
+
+        double approx = approximate(lat1, lon1, lat2, lon2);
+        if(approx * (1.0 - APPROXIMATE_ERROR) > range) return false;
+        if(approx * (1.0 + APPROXIMATE_ERROR) < range) return true;
+
+        return distance(lat1, lon1, lat2, lon2) <= range;
+    }
+
+    /**
+     * Determines if an approximate distance could possibly be the exact
+     * shortest distance of a bunch, given the shortest approximate distance
+     * of that bunch.  If this returns false, there's no need to work out the
+     * exact distance for that one; it's definitely not the closest.
+     *
+     * @param approx the approximate distance in question
+     * @param bestApprox the shortest approximate distance in the bunch
+     * @return true if approx might be the closest after all
+     */
+    public static boolean mightBeClosest(double approx, double bestApprox) {
+        return approx * (1.0 - APPROXIMATE_ERROR) <= bestApprox * (1.0 + APPROXIMATE_ERROR);
+    }
+}
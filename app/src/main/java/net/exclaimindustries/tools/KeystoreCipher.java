@@ -0,0 +1,137 @@
+/*
+ * KeystoreCipher.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.tools;
+
+import android.os.Build;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+import android.util.Base64;
+import android.util.Log;
+
+import java.nio.charset.Charset;
+import java.security.KeyStore;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+/**
+ * <p>
+ * Seals and opens small Strings with an AES key that lives in the Android
+ * Keystore, for anything that needs to be written to storage but shouldn't
+ * be readable by anyone who gets hold of the file.  The key never leaves the
+ * Keystore, so a sealed String only opens on the device that sealed it (and
+ * not after a backup gets restored somewhere else, which is the point).
+ * </p>
+ *
+ * <p>
+ * The Keystore only does AES from Marshmallow on.  Before that, there's
+ * nowhere safe to keep the key, so {@link #isAvailable()} says no and
+ * everything here returns null.  Callers should just not store whatever it
+ * was in that case.
+ * </p>
+ */
+public final class KeystoreCipher {
+    private static final String DEBUG_TAG = "KeystoreCipher";
+
+    private static final String KEYSTORE = "AndroidKeyStore";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int TAG_BITS = 128;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private KeystoreCipher() { }
+
+    /**
+     * Whether or not this device can seal anything at all.
+     *
+     * @return true if so
+     */
+    public static boolean isAvailable() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
+    }
+
+    /**
+     * Seals a String with the named key, making the key if it doesn't exist
+     * yet.
+     *
+     * @param alias the name of the key
+     * @param plain what to seal
+     * @return the sealed String, or null if it couldn't be sealed
+     */
+    @Nullable
+    public static String seal(@NonNull String alias, @NonNull String plain) {
+        if(!isAvailable()) return null;
+
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, getKey(alias));
+            byte[] sealed = cipher.doFinal(plain.getBytes(UTF8));
+
+            // The IV comes out of the Cipher, and we need it back to open
+            // this later, so it goes on the front.
+            return Base64.encodeToString(cipher.getIV(), Base64.NO_WRAP)
+                    + ":" + Base64.encodeToString(sealed, Base64.NO_WRAP);
+        } catch(Exception e) {
+            Log.w(DEBUG_TAG, "Couldn't seal with " + alias + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Opens something {@link #seal(String, String)} made.
+     *
+     * @param alias the name of the key it was sealed with
+     * @param sealed the sealed String
+     * @return the original String, or null if it couldn't be opened (wrong
+     *         key, key's gone, someone's been messing with the data, etc.)
+     */
+    @Nullable
+    public static String open(@NonNull String alias, @NonNull String sealed) {
+        if(!isAvailable()) return null;
+
+        int split = sealed.indexOf(':');
+        if(split < 0) return null;
+
+        try {
+            byte[] iv = Base64.decode(sealed.substring(0, split), Base64.NO_WRAP);
+            byte[] data = Base64.decode(sealed.substring(split + 1), Base64.NO_WRAP);
+
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, getKey(alias), new GCMParameterSpec(TAG_BITS, iv));
+            return new String(cipher.doFinal(data), UTF8);
+        } catch(Exception e) {
+            Log.w(DEBUG_TAG, "Couldn't open with " + alias + ": " + e);
+            return null;
+        }
+    }
+
+    @RequiresApi(Build.VERSION_CODES.M)
+    @NonNull
+    private static synchronized SecretKey getKey(@NonNull String alias) throws Exception {
+        KeyStore store = KeyStore.getInstance(KEYSTORE);
+        store.load(null);
+
+        KeyStore.Entry entry = store.getEntry(alias, null);
+        if(entry instanceof KeyStore.SecretKeyEntry)
+            return ((KeyStore.SecretKeyEntry) entry).getSecretKey();
+
+        KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE);
+        generator.init(new KeyGenParameterSpec.Builder(alias,
+                KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                .build());
+        return generator.generateKey();
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * LogGate.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.tools;
+
+import android.util.Log;
+
+import java.util.Locale;
+
+/**
+ * <p>
+ * A thin wrapper around {@link Log} for the chatty verbose and debug levels.
+ * The idea is that a disabled level should cost, at most, one field read and
+ * one compare.  Messages are passed as a format string and arguments, and the
+ * formatting (and thus any {@link Object#toString()} calls) only happens if
+ * the level is actually enabled.
+ * </p>
+ *
+ * <p>
+ * The fixed-arity overloads exist so the common one- and two-argument cases
+ * don't allocate a varargs array.  Primitive arguments still get boxed at the
+ * call site, though, so if you're logging doubles in a tight spot, wrap the
+ * call in {@link #isLoggable(int)} first.
+ * </p>
+ *
+ * <p>
+ * The minimum level defaults to {@link Log#VERBOSE}, meaning everything gets
+ * through until the app says otherwise with {@link #setMinimumLevel(int)}.
+ * Release builds that get run through R8 can also strip the {@code v} and
+ * {@code d} calls out entirely with an {@code -assumenosideeffects} rule.
+ * </p>
+ */
+public final class LogGate {
+    private static volatile int sMinimumLevel = Log.VERBOSE;
+
+    private LogGate() { }
+
+    /**
+     * Sets the lowest level that'll actually get logged.  Anything below this
+     * is dropped before any formatting happens.
+     *
+     * @param level one of the {@link Log} level constants
+     */
+    public static void setMinimumLevel(int level) {
+        sMinimumLevel = level;
+    }
+
+    /**
+     * Gets the lowest level that'll actually get logged.
+     *
+     * @return the current minimum level
+     */
+    public static int getMinimumLevel() {
+        return sMinimumLevel;
+    }
+
+    /**
+     * Determines if the given level will make it to the log.  Use this to
+     * guard anything that would be expensive to even set up (boxing
+     * primitives, walking a list, etc).
+     *
+     * @param level one of the {@link Log} level constants
+     * @return true if that level is enabled
+     */
+    public static boolean isLoggable(int level) {
+        return level >= sMinimumLevel;
+    }
+
+    /**
+     * Logs a verbose message as-is, without formatting.
+     *
+     * @param tag log tag
+     * @param msg message
+     */
+    public static void v(String tag, String msg) {
+        if(Log.VERBOSE >= sMinimumLevel) Log.v(tag, msg);
+    }
+
+    /**
+     * Logs a formatted verbose message with one argument.
+     *
+     * @param tag log tag
+     * @param format format string, as per {@link String#format(String, Object...)}
+     * @param arg the argument
+     */
+    public static void v(String tag, String format, Object arg) {
+        if(Log.VERBOSE >= sMinimumLevel) Log.v(tag, format(format, arg));
+    }
+
+    /**
+     * Logs a formatted verbose message with two arguments.
+     *
+     * @param tag log tag
+     * @param format format string, as per {@link String#format(String, Object...)}
+     * @param arg1 the first argument
+     * @param arg2 the second argument
+     */
+    public static void v(String tag, String format, Object arg1, Object arg2) {
+        if(Log.VERBOSE >= sMinimumLevel) Log.v(tag, format(format, arg1, arg2));
+    }
+
+    /**
+     * Logs a formatted verbose message with however many arguments.  Note
+     * that this one allocates the varargs array whether or not the level is
+     * enabled.
+     *
+     * @param tag log tag
+     * @param format format string, as per {@link String#format(String, Object...)}
+     * @param args the arguments
+     */
+    public static void v(String tag, String format, Object... args) {
+        if(Log.VERBOSE >= sMinimumLevel) Log.v(tag, format(format, args));
+    }
+
+    /**
+     * Logs a debug message as-is, without formatting.
+     *
+     * @param tag log tag
+     * @param msg message
+     */
+    public static void d(String tag, String msg) {
+        if(Log.DEBUG >= sMinimumLevel) Log.d(tag, msg);
+    }
+
+    /**
+     * Logs a formatted debug message with one argument.
+     *
+     * @param tag log tag
+     * @param format format string, as per {@link String#format(String, Object...)}
+     * @param arg the argument
+     */
+    public static void d(String tag, String format, Object arg) {
+        if(Log.DEBUG >= sMinimumLevel) Log.d(tag, format(format, arg));
+    }
+
+    /**
+     * Logs a formatted debug message with two arguments.
+     *
+     * @param tag log tag
+     * @param format format string, as per {@link String#format(String, Object...)}
+     * @param arg1 the first argument
+     * @param arg2 the second argument
+     */
+    public static void d(String tag, String format, Object arg1, Object arg2) {
+        if(Log.DEBUG >= sMinimumLevel) Log.d(tag, format(format, arg1, arg2));
+    }
+
+    /**
+     * Logs a formatted debug message with however many arguments.  Same
+     * varargs caveat as {@link #v(String, String, Object...)}.
+     *
+     * @param tag log tag
+     * @param format format string, as per {@link String#format(String, Object...)}
+     * @param args the arguments
+     */
+    public static void d(String tag, String format, Object... args) {
+        if(Log.DEBUG >= sMinimumLevel) Log.d(tag, format(format, args));
+    }
+
+    private static String format(String format, Object... args) {
+        // Locale.US so we don't get commas for decimal points in the logs on
+        // some devices.  These are for us, not the user.
+        return String.format(Locale.US, format, args);
+    }
+}
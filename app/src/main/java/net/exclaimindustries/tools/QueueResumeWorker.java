@@ -0,0 +1,69 @@
+/*
+ * QueueResumeWorker.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.tools;
+
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+/**
+ * The Worker {@link QueueService} schedules when it pauses and its
+ * {@link net.exclaimindustries.tools.queue.RetryPolicy} says to try again
+ * later.  When WorkManager gets around to it (the delay's up and, if it
+ * asked, there's a network), this sends a {@link QueueService#COMMAND_RESUME}
+ * to whichever QueueService scheduled it, along with how many times in a row
+ * that's happened so the next backoff can be longer.
+ */
+public class QueueResumeWorker extends Worker {
+    private static final String DEBUG_TAG = "QueueResumeWorker";
+
+    /** Input key for the class name of the QueueService to resume. */
+    static final String KEY_SERVICE = "service";
+    /** Input key for which retry this is. */
+    static final String KEY_ATTEMPT = "attempt";
+
+    public QueueResumeWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        String service = getInputData().getString(KEY_SERVICE);
+        if(service == null) {
+            Log.w(DEBUG_TAG, "No service to resume, ignoring...");
+            return Result.failure();
+        }
+
+        Class<?> cls;
+        try {
+            cls = Class.forName(service);
+        } catch(ClassNotFoundException cnfe) {
+            // Probably something scheduled by an older version that's since
+            // been renamed.  Nothing to do about it now.
+            Log.w(DEBUG_TAG, "Can't find " + service + " to resume it, ignoring...");
+            return Result.failure();
+        }
+
+        LogGate.d(DEBUG_TAG, "Resuming %s now...", service);
+
+        Context context = getApplicationContext();
+        Intent i = new Intent(context, cls)
+                .putExtra(QueueService.COMMAND_EXTRA, QueueService.COMMAND_RESUME)
+                .putExtra(QueueService.EXTRA_RETRY_ATTEMPT,
+                        getInputData().getInt(KEY_ATTEMPT, 0));
+        context.startService(i);
+
+        return Result.success();
+    }
+}
@@ -18,6 +18,24 @@ import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+
+import net.exclaimindustries.tools.queue.QueueEngine;
+import net.exclaimindustries.tools.queue.QueueHandler;
+import net.exclaimindustries.tools.queue.QueueStore;
+import net.exclaimindustries.tools.queue.RetryPolicy;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>
@@ -32,7 +50,38 @@ import androidx.annotation.Nullable;
  * to <code>IntentService</code>, it is NOT a subclass of it.  They just don't
  * work similarly enough under the hood to justify it.
  * </p>
- * 
+ *
+ * <p>
+ * By default, everything's handled one at a time, strictly in order.  If
+ * {@link #getMaxConcurrency()} says otherwise, Intents get handed out to a
+ * pool of worker threads instead, with {@link #getOrderingKey(Intent)}
+ * deciding what has to stay in order relative to what.  Intents with the same
+ * key are still handled one at a time in the order they came in; Intents with
+ * different keys can go at the same time.
+ * </p>
+ *
+ * <p>
+ * Intents can also be sorted into priority lanes with
+ * {@link #getPriority(Intent)}, so small, quick things don't have to wait
+ * behind big, slow ones, and kept under a rate limit with
+ * {@link #tryAcquirePermits(List)}, so the queue waits its turn instead of
+ * finding out the hard way.
+ * </p>
+ *
+ * <p>
+ * If the queue pauses and {@link #getRetryPolicy(Intent)} has a policy for
+ * whatever paused it, the queue resumes itself later through WorkManager,
+ * backing off a little more each time it pauses again without getting
+ * anywhere.
+ * </p>
+ *
+ * <p>
+ * The actual working through the queue happens in a {@link QueueEngine},
+ * which doesn't know anything about Android.  This class is the Android end
+ * of things: it takes commands and Intents as they come in, runs the engine
+ * on its own thread, and hands it the storage and handling methods below.
+ * </p>
+ *
  * @author Nicholas Killewald
  */
 public abstract class QueueService extends Service {
@@ -119,8 +168,39 @@ public abstract class QueueService extends Service {
      * String, and will be whatever {@link #getQueueName()} returns.
      */
     public static final String EXTRA_QUEUE_NAME = "net.exclaimindustries.tools.EXTRA_QUEUETHREAD_NAME";
+    /**
+     * Extra on a {@link #COMMAND_RESUME} that says it's the Nth automatic
+     * retry in a row, as scheduled through {@link #getRetryPolicy(Intent)}.
+     * Will be an int.  Anything else resuming the queue (the user, say)
+     * leaves it out, which starts the backoff over.
+     */
+    public static final String EXTRA_RETRY_ATTEMPT = "net.exclaimindustries.tools.EXTRA_QUEUETHREAD_RETRY_ATTEMPT";
+
+    /**
+     * How far down the queue the parallel dispatcher looks for something it
+     * can hand out, if the front of the queue is all stuck behind Intents that
+     * are already being worked on.  See
+     * {@link #peekIntentsFromQueue(int)}.
+     */
+    protected static final int DISPATCH_WINDOW = QueueEngine.DISPATCH_WINDOW;
+
+    // The ordering key and storage ID of whatever paused each queue (by queue
+    // name).  These outlive the Service instance, since a
+    // COMMAND_RESUME_SKIP_FIRST will almost certainly land on a new one.  If
+    // the process dies in between, we just fall back to skipping the head.
+    private static final Map<String, String> sPausedKeys = new ConcurrentHashMap<>();
+    private static final Map<String, Long> sPausedIds = new ConcurrentHashMap<>();
+
+    private static final Random sRetryRandom = new Random();
 
     private Thread mThread;
+    private volatile QueueEngine<Intent> mEngine;
+
+    // How many automatic retries in a row led up to this run, and whether
+    // this run has gotten anything done.  If it has, whatever was wrong
+    // before clearly isn't anymore, so the backoff starts over.
+    private int mRetryAttempt;
+    private volatile boolean mMadeProgress;
 
     @Override
     public void onCreate() {
@@ -186,6 +266,8 @@ public abstract class QueueService extends Service {
             }
 
             // It's a good command, send it off!
+            mRetryAttempt = 0;
+
             switch(command) {
                 case COMMAND_QUEUE_COUNT:
                     // Send out the queue count (if permitted).  That's all.
@@ -194,17 +276,22 @@ public abstract class QueueService extends Service {
                 case COMMAND_RESUME:
                     // Simply restart the thread.  The queue will start from
                     // where it left off.
-                    Log.d(DEBUG_TAG, "Restarting the thread now...");
+                    LogGate.d(DEBUG_TAG, "Restarting the thread now...");
+                    mRetryAttempt = intent.getIntExtra(EXTRA_RETRY_ATTEMPT, 0);
                     doNewThread();
                     break;
                 case COMMAND_RESUME_SKIP_FIRST:
-                    Log.d(DEBUG_TAG, "Restarting the thread now, skipping the first Intent...");
-                    removeNextIntentFromQueue();
+                    LogGate.d(DEBUG_TAG, "Restarting the thread now, skipping the first Intent...");
+                    removePausedIntentFromQueue();
                     doNewThread();
                     break;
                 case COMMAND_ABORT:
                     // Empty the queue (but call the callback first).
-                    Log.d(DEBUG_TAG, "Emptying out the queue (removing " + getQueueCount() + " Intents)...");
+                    // getQueueCount() might be a database hit, so don't even
+                    // ask unless someone's going to read it.
+                    if(LogGate.isLoggable(Log.DEBUG))
+                        LogGate.d(DEBUG_TAG, "Emptying out the queue (removing %d Intents)...", getQueueCount());
+                    cancelScheduledRetry();
                     onQueueEmpty(false);
                     clearQueue();
                     stopSelf();
@@ -215,25 +302,136 @@ public abstract class QueueService extends Service {
             }
         } else {
             // If this isn't a control message, add the intent to the queue.
-            Log.d(DEBUG_TAG, "Enqueueing an Intent!");
+            LogGate.d(DEBUG_TAG, "Enqueueing an Intent!");
             addIntentToQueue(intent);
+            if(!isThreadAlive()) mRetryAttempt = 0;
+
+            // If we're running in parallel, the dispatcher might be sitting
+            // around waiting for a worker to finish, but this one might be
+            // able to go right now on a free worker.  Let it know.
+            QueueEngine<Intent> engine = mEngine;
+            if(engine != null) engine.nudge();
             
             // Next, if the thread isn't already running, make it run.  If it IS
             // running, we'll just process the next one in turn normally.
             if(!isThreadAlive()
                     && (getQueueCount() <= 0 || resumeOnNewIntent())) {
-                Log.d(DEBUG_TAG, "Thread wasn't active, starting now!");
+                LogGate.d(DEBUG_TAG, "Thread wasn't active, starting now!");
                 doNewThread();
             }
         }
     }
     
     private void doNewThread() {
-        // Only call this if the old thread isn't running.
-        mThread = new Thread(new QueueThread(), "QueueService Runner");
+        // Only call this if the old thread isn't running.  Whatever paused us
+        // last time is old news now.
+        sPausedKeys.remove(getQueueName());
+        sPausedIds.remove(getQueueName());
+
+        // Same with any retry that was scheduled.  Whether it was that or
+        // something else that got us going, we're going now.
+        cancelScheduledRetry();
+        mMadeProgress = false;
+
+        final QueueEngine<Intent> engine = new QueueEngine<>(new IntentStore(), new IntentHandler());
+        mEngine = engine;
+
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                // The engine does all the actual work (and all the callbacks).
+                // All that's left for us is remembering what paused, if
+                // anything, and shutting the Service down.
+                try {
+                    if(engine.run() == QueueEngine.Outcome.PAUSED) {
+                        if(engine.getPausedKey() != null)
+                            sPausedKeys.put(getQueueName(), engine.getPausedKey());
+                        if(engine.getPausedId() >= 0)
+                            sPausedIds.put(getQueueName(), engine.getPausedId());
+                    }
+                } finally {
+                    mEngine = null;
+                }
+
+                stopSelf();
+            }
+        }, "QueueService Runner");
         mThread.start();
     }
 
+    /**
+     * Removes whatever Intent caused the last pause, for
+     * {@link #COMMAND_RESUME_SKIP_FIRST}.  If the storage gave that Intent an
+     * ID (see {@link #getIntentId(Intent)}), that's exactly what goes, even if
+     * something in a better lane has gotten in front of it since.  Otherwise,
+     * it's the first Intent with the same ordering key as the one that
+     * paused.
+     */
+    private void removePausedIntentFromQueue() {
+        Long pausedId = sPausedIds.remove(getQueueName());
+        QueueEngine.removePaused(new IntentStore(), new IntentHandler(),
+                sPausedKeys.remove(getQueueName()),
+                pausedId == null ? -1 : pausedId);
+    }
+
+    private String getRetryWorkName() {
+        return "QueueService.retry." + getQueueName();
+    }
+
+    /**
+     * Schedules the queue to resume itself later, if there's a policy for
+     * whatever paused it.  There's only ever one of these pending per queue;
+     * scheduling another replaces the last one, so repeated pauses can't pile
+     * up a storm of retries.
+     */
+    private void scheduleRetry(@NonNull Intent pausedBy) {
+        RetryPolicy policy = getRetryPolicy(pausedBy);
+        if(policy == null) return;
+
+        int attempt = mMadeProgress ? 0 : mRetryAttempt;
+        if(!policy.allowsAttempt(attempt)) {
+            LogGate.d(DEBUG_TAG, "Paused after %d retries in a row, giving up on retrying by myself.", attempt);
+            return;
+        }
+
+        long delay = policy.getDelay(attempt, sRetryRandom);
+        LogGate.d(DEBUG_TAG, "Retry %d scheduled in %d ms%s.", attempt + 1, delay,
+                policy.requiresNetwork() ? " (or once there's a network)" : "");
+
+        OneTimeWorkRequest.Builder builder = new OneTimeWorkRequest.Builder(QueueResumeWorker.class)
+                .setInitialDelay(delay, TimeUnit.MILLISECONDS)
+                .setInputData(new Data.Builder()
+                        .putString(QueueResumeWorker.KEY_SERVICE, getClass().getName())
+                        .putInt(QueueResumeWorker.KEY_ATTEMPT, attempt + 1)
+                        .build());
+        if(policy.requiresNetwork())
+            builder.setConstraints(new Constraints.Builder()
+                    .setRequiredNetworkType(NetworkType.CONNECTED)
+                    .build());
+
+        try {
+            WorkManager.getInstance(this).enqueueUniqueWork(getRetryWorkName(),
+                    ExistingWorkPolicy.REPLACE, builder.build());
+        } catch(IllegalStateException ise) {
+            // WorkManager wasn't initialized.  Nothing for it but to wait for
+            // someone to resume us by hand.
+            Log.w(DEBUG_TAG, "Couldn't schedule a retry: " + ise.getMessage());
+        }
+    }
+
+    private void cancelScheduledRetry() {
+        try {
+            WorkManager.getInstance(this).cancelUniqueWork(getRetryWorkName());
+        } catch(IllegalStateException ise) {
+            // If WorkManager isn't around, we couldn't have scheduled anything
+            // with it in the first place.
+        }
+    }
+
+    private ReturnCode handleBatch(@NonNull List<Intent> batch) {
+        return batch.size() == 1 ? handleIntent(batch.get(0)) : handleIntents(batch);
+    }
+
     /**
      * Determines if the thread is alive, part of which also involves
      * determining if the thread is not null.
@@ -251,53 +449,159 @@ public abstract class QueueService extends Service {
     public IBinder onBind(Intent arg0) {
         return null;
     }
-    
-    private class QueueThread implements Runnable {
 
+    /**
+     * Lets the {@link QueueEngine} get at the queue through the storage
+     * methods subclasses already implement.
+     */
+    private class IntentStore implements QueueStore<Intent> {
         @Override
-        public void run() {
-            // Load 'er up!
-            onQueueLoad();
-            onQueueStart();
-
-            while(getQueueCount() > 0) {
-                Intent i = peekNextIntentFromQueue();
-
-                Log.d(DEBUG_TAG, "Processing intent...");
-                
-                ReturnCode r = handleIntent(i);
-                
-                Log.d(DEBUG_TAG, "Intent processed, return code is " + r);
-                
-                // Return check!
-                if(r == ReturnCode.STOP) {
-                    // If the return code we got instructed us to stop entirely,
-                    // wipe the queue and bail out.
-                    Log.d(DEBUG_TAG, "Return said to stop, stopping now and abandoning " + getQueueCount() + " Intent(s).");
-                    onQueueEmpty(false);
-                    clearQueue();
-                    stopSelf();
-                    return;
-                } else if(r == ReturnCode.CONTINUE) {
-                    // CONTINUE means processing was a success, so we can yoink
-                    // the Intent from the front of the queue and scrap it.
-                    Log.d(DEBUG_TAG, "Return said to continue.");
-                    removeNextIntentFromQueue();
-                    onQueueItemProcessed();
-                } else if(r == ReturnCode.PAUSE) {
-                    // If we were told to pause, well, pause.  We'll be told to
-                    // try again later.
-                    Log.d(DEBUG_TAG, "Return said to pause.");
-                    onQueuePause(i);
-                    onQueueUnload();
-                    stopSelf();
-                    return;
-                }
+        public void add(Intent item, int priority) {
+            // Storage asks getPriority() on its own.
+            addIntentToQueue(item);
+        }
+
+        @Override
+        public int count() {
+            return getQueueCount();
+        }
+
+        @Override
+        public void clear() {
+            clearQueue();
+        }
+
+        @Override
+        public Intent claimNext() {
+            return peekNextIntentFromQueue();
+        }
+
+        @Override
+        public void removeNext() {
+            removeNextIntentFromQueue();
+        }
+
+        @Override
+        public List<Intent> peek(int max) {
+            return peekIntentsFromQueue(max);
+        }
+
+        @Override
+        public boolean claim(Intent item) {
+            return claimIntentFromQueue(item);
+        }
+
+        @Override
+        public void release(Intent item) {
+            releaseIntentToQueue(item);
+        }
+
+        @Override
+        public void remove(Intent item) {
+            removeIntentFromQueue(item);
+        }
+
+        @Override
+        public long getId(Intent item) {
+            return getIntentId(item);
+        }
+
+        @Override
+        public boolean removeById(long id) {
+            return removeIntentFromQueueById(id);
+        }
+    }
+
+    /**
+     * Same, but for the handling and callback methods.
+     */
+    private class IntentHandler extends QueueHandler<Intent> {
+        @Override
+        public QueueEngine.ReturnCode handle(List<Intent> batch) {
+            ReturnCode r = handleBatch(batch);
+
+            if(r == null) {
+                // This shouldn't happen, but if it does, treat it like a
+                // temporary problem.
+                Log.w(DEBUG_TAG, "Handling returned a null ReturnCode, pausing...");
+                return QueueEngine.ReturnCode.PAUSE;
+            }
+
+            switch(r) {
+                case CONTINUE:
+                    return QueueEngine.ReturnCode.CONTINUE;
+                case STOP:
+                    return QueueEngine.ReturnCode.STOP;
+                default:
+                    return QueueEngine.ReturnCode.PAUSE;
             }
-            // If we got here, then hey!  The thread's done!
-            Log.d(DEBUG_TAG, "Processing complete.");
-            onQueueEmpty(true);
-            stopSelf();
+        }
+
+        @Override
+        public int getMaxConcurrency() {
+            return QueueService.this.getMaxConcurrency();
+        }
+
+        @Override
+        public String getOrderingKey(Intent item) {
+            return QueueService.this.getOrderingKey(item);
+        }
+
+        @Override
+        public int getMaxBatchSize() {
+            return QueueService.this.getMaxBatchSize();
+        }
+
+        @Override
+        public boolean canBatch(Intent first, Intent next) {
+            return QueueService.this.canBatch(first, next);
+        }
+
+        @Override
+        public long tryAcquirePermits(List<Intent> batch) {
+            return QueueService.this.tryAcquirePermits(batch);
+        }
+
+        @Override
+        public void onQueueLoad() {
+            QueueService.this.onQueueLoad();
+        }
+
+        @Override
+        public void onQueueStart() {
+            QueueService.this.onQueueStart();
+        }
+
+        @Override
+        public void onQueueItemProcessed() {
+            mMadeProgress = true;
+            QueueService.this.onQueueItemProcessed();
+        }
+
+        @Override
+        public void onQueuePause(Intent item) {
+            QueueService.this.onQueuePause(item);
+            scheduleRetry(item);
+        }
+
+        @Override
+        public void onQueueUnload() {
+            QueueService.this.onQueueUnload();
+        }
+
+        @Override
+        public void onQueueEmpty(boolean allProcessed) {
+            QueueService.this.onQueueEmpty(allProcessed);
+        }
+
+        @Override
+        public void debug(String format, Object... args) {
+            LogGate.d(DEBUG_TAG, format, args);
+        }
+
+        @Override
+        public void warn(String message) {
+            Log.w(DEBUG_TAG, message);
         }
     }
 
@@ -306,10 +610,10 @@ public abstract class QueueService extends Service {
             Intent broadcast = new Intent(ACTION_QUEUE_COUNT);
             broadcast.putExtra(EXTRA_QUEUE_COUNT, getQueueCount());
             broadcast.putExtra(EXTRA_QUEUE_NAME, getQueueName());
-            Log.d(DEBUG_TAG, "Dispatching queue count...");
+            LogGate.d(DEBUG_TAG, "Dispatching queue count...");
             sendBroadcast(broadcast);
         } else {
-            Log.d(DEBUG_TAG, "NOT dispatching queue count (queueCountRequestsAllowed() returned false)...");
+            LogGate.d(DEBUG_TAG, "NOT dispatching queue count (queueCountRequestsAllowed() returned false)...");
         }
     }
 
@@ -330,7 +634,9 @@ public abstract class QueueService extends Service {
 
     /**
      * Gets the next Intent from the queue.  This is a peek operation, not a
-     * removal.
+     * removal.  If the implementation has some idea of claiming Intents (see
+     * {@link #claimIntentFromQueue(Intent)}), this should claim the one it
+     * returns, and skip over anything already claimed.
      *
      * @return the next Intent in the queue (may be null)
      * @see #removeNextIntentFromQueue()
@@ -338,6 +644,108 @@ public abstract class QueueService extends Service {
     @Nullable
     protected abstract Intent peekNextIntentFromQueue();
 
+    /**
+     * <p>
+     * Gets up to the given number of Intents from the front of the queue, in
+     * order, without removing any of them.  This is only used when running in
+     * parallel (see {@link #getMaxConcurrency()}), and anything this returns
+     * has to be something {@link #removeIntentFromQueue(Intent)} can find
+     * again.
+     * </p>
+     *
+     * <p>
+     * The default implementation only ever returns the head, which is always
+     * safe, but means nothing actually winds up running in parallel.  Override
+     * this (and {@link #removeIntentFromQueue(Intent)}) to get any good out of
+     * a worker pool.
+     * </p>
+     *
+     * @param max the most Intents to return
+     * @return a List of the Intents at the front of the queue (may be empty)
+     */
+    @NonNull
+    protected List<Intent> peekIntentsFromQueue(int max) {
+        Intent head = peekNextIntentFromQueue();
+        if(head == null || max <= 0) return Collections.emptyList();
+        return Collections.singletonList(head);
+    }
+
+    /**
+     * <p>
+     * Claims an Intent that {@link #peekIntentsFromQueue(int)} handed out, so
+     * nothing else will pick it up while it's being worked on.  If this
+     * returns false, the Intent won't be handled this time around.  Anything
+     * claimed will later be either removed with
+     * {@link #removeIntentFromQueue(Intent)} or let go with
+     * {@link #releaseIntentToQueue(Intent)}.
+     * </p>
+     *
+     * <p>
+     * {@link #peekNextIntentFromQueue()} is expected to claim the head on its
+     * own, if claiming means anything to the implementation.  The default
+     * implementation always says yes, which is fine for anything where
+     * there's only ever one thing working on the queue.
+     * </p>
+     *
+     * @param i the Intent to claim
+     * @return true if it's claimed, false if something else already has it
+     */
+    protected boolean claimIntentFromQueue(@NonNull Intent i) {
+        return true;
+    }
+
+    /**
+     * Lets go of an Intent that was claimed (either by
+     * {@link #claimIntentFromQueue(Intent)} or by
+     * {@link #peekNextIntentFromQueue()}) without removing it.  This happens
+     * when handling it says to pause.  It should go back in the queue right
+     * where it was.  The default implementation does nothing.
+     *
+     * @param i the Intent to let go of
+     */
+    protected void releaseIntentToQueue(@NonNull Intent i) {
+        // By default, claiming doesn't do anything, so neither does this.
+    }
+
+    /**
+     * Removes one specific Intent from the queue, wherever it is.  This will
+     * be one that {@link #peekIntentsFromQueue(int)} handed out.  The default
+     * implementation just removes the head, which matches the default
+     * implementation of that.
+     *
+     * @param i the Intent to remove
+     */
+    protected void removeIntentFromQueue(@NonNull Intent i) {
+        removeNextIntentFromQueue();
+    }
+
+    /**
+     * Gets an ID for an Intent that's currently claimed, one that'll still
+     * mean that exact entry in the queue after the Service goes away and
+     * comes back (a row ID, for instance).  This is how
+     * {@link #COMMAND_RESUME_SKIP_FIRST} finds what paused.  The default
+     * implementation doesn't do IDs, meaning skipping goes by ordering key
+     * instead.
+     *
+     * @param i the Intent
+     * @return an ID (zero or more), or -1 if there isn't one
+     */
+    protected long getIntentId(@NonNull Intent i) {
+        return -1;
+    }
+
+    /**
+     * Removes the entry in the queue with an ID from
+     * {@link #getIntentId(Intent)}.  The default implementation never has
+     * anything to remove, since it never hands out IDs.
+     *
+     * @param id the ID
+     * @return true if it was removed, false if it wasn't there
+     */
+    protected boolean removeIntentFromQueueById(long id) {
+        return false;
+    }
+
     /**
      * Returns the number of Intents left in the queue.  You may want to
      * synchronize this against the instance of the service.  Try not to make
@@ -384,6 +792,123 @@ public abstract class QueueService extends Service {
         return true;
     }
 
+    /**
+     * <p>
+     * How many Intents can be handled at once.  The default is 1, meaning
+     * everything goes one at a time in a single thread, the way it always
+     * has.  Anything higher means a pool of that many worker threads, with
+     * {@link #getOrderingKey(Intent)} keeping things in order where they need
+     * to be.  This is checked every time the queue starts up.
+     * </p>
+     *
+     * <p>
+     * If you go higher than 1, {@link #handleIntent(Intent)} has to be safe to
+     * call from several threads at once.  Everything else (the callbacks, the
+     * storage) still only gets called from one thread at a time.  A PAUSE or
+     * STOP from any worker stops anything new from being handed out; whatever
+     * else is already running gets to finish first, then the queue pauses or
+     * stops as usual.
+     * </p>
+     *
+     * @return the most Intents to handle at once
+     */
+    protected int getMaxConcurrency() {
+        return 1;
+    }
+
+    /**
+     * Gets the ordering key for an Intent.  Intents with the same key will
+     * always be handled one at a time, in the order they were queued.
+     * Intents with different keys may be handled at the same time, if
+     * {@link #getMaxConcurrency()} allows it.  Null (the default) counts as
+     * the same key as an empty string, so if everything's null, everything's
+     * in order.
+     *
+     * @param i the Intent in question
+     * @return its key, or null
+     */
+    @Nullable
+    protected String getOrderingKey(@NonNull Intent i) {
+        return null;
+    }
+
+    /**
+     * <p>
+     * Gets the priority lane an Intent goes in.  Lower numbers come out of the
+     * queue first; within a lane, it's still first in, first out.  This gets
+     * asked once, when the Intent goes into the queue, and it's up to the
+     * storage to actually keep things in lane order (the SQLite queues do).
+     * The default is to put everything in lane 0, which is just a plain FIFO.
+     * </p>
+     *
+     * <p>
+     * Note that lanes win out over ordering keys.  If something in a lower
+     * lane has the same key as something in a higher lane, the lower one goes
+     * first, even if it came in later.  Don't split things into lanes that
+     * can't stand being reordered like that.
+     * </p>
+     *
+     * @param i the Intent in question
+     * @return its lane
+     */
+    protected int getPriority(@NonNull Intent i) {
+        return 0;
+    }
+
+    /**
+     * <p>
+     * Asks permission to handle a batch (or just one Intent) right now, for
+     * anything that needs to stay under some sort of rate limit.  If it can
+     * go, this should take whatever it needs out of the limit (so the next
+     * call knows about it) and return 0.  If it can't, it shouldn't take
+     * anything, and should return how many milliseconds to wait before asking
+     * again.  The default is to always say go.
+     * </p>
+     *
+     * <p>
+     * When running one at a time, a batch that has to wait goes back in the
+     * queue and the thread sleeps, then looks at the front of the queue again
+     * (in case something in a better lane came in).  When running in
+     * parallel, the dispatcher moves on to whatever else it can hand out and
+     * comes back once the wait's up, so one slow class of Intent doesn't hold
+     * up everything else.  This gets called from the queue thread or the
+     * dispatcher, never from more than one thread at once.
+     * </p>
+     *
+     * @param batch the Intents about to be handled
+     * @return 0 to go ahead, or how many milliseconds until it's worth asking
+     *         again
+     */
+    protected long tryAcquirePermits(@NonNull List<Intent> batch) {
+        return 0;
+    }
+
+    /**
+     * <p>
+     * Decides whether the queue should resume itself after pausing on the
+     * given Intent, and if so, how long to back off first.  Return null to
+     * stay paused until someone sends a {@link #COMMAND_RESUME} (which is
+     * what the default does, and what anything needing the user's attention
+     * should do).  Whatever sort of problem it was, {@link #handleIntent(Intent)}
+     * can leave a note about it in the Intent's extras to look at here.
+     * </p>
+     *
+     * <p>
+     * The retry's scheduled through WorkManager, so it'll happen even if the
+     * process gets killed in the meantime.  The backoff keeps growing as long
+     * as retries keep pausing without handling anything; as soon as one
+     * Intent gets through, or anything else resumes the queue, it starts
+     * over.  This gets called right after {@link #onQueuePause(Intent)}.
+     * </p>
+     *
+     * @param i the Intent that caused the pause
+     * @return a policy, or null to not retry
+     */
+    @Nullable
+    protected RetryPolicy getRetryPolicy(@NonNull Intent i) {
+        return null;
+    }
+
     /**
      * Subclasses get this called every time something from the queue comes in
      * to be processed.  This will not be called on the main thread.  There will
@@ -397,6 +922,64 @@ public abstract class QueueService extends Service {
      */
     protected abstract ReturnCode handleIntent(Intent i);
 
+    /**
+     * <p>
+     * Handles several Intents at once, as gathered up by
+     * {@link #canBatch(Intent, Intent)}.  This only gets called with two or
+     * more Intents; single ones still go to {@link #handleIntent(Intent)}.
+     * The batch lives or dies as one: CONTINUE removes all of them from the
+     * queue, PAUSE leaves all of them there, and the first one is what gets
+     * passed to {@link #onQueuePause(Intent)}.
+     * </p>
+     *
+     * <p>
+     * The default implementation just hands them to
+     * {@link #handleIntent(Intent)} one at a time, in order, and stops at the
+     * first one that doesn't come back CONTINUE, returning whatever that was.
+     * That's no faster than not batching at all, but it means overriding
+     * {@link #canBatch(Intent, Intent)} and {@link #getMaxBatchSize()} alone
+     * won't blow up.  Do note that if it pauses partway through, the ones
+     * before it in the batch stay in the queue and will be handled again on
+     * resume, so a real batching queue should override this.
+     * </p>
+     *
+     * @param batch the Intents to handle, in queue order
+     * @return a ReturnCode indicating what the queue should do next
+     */
+    protected ReturnCode handleIntents(@NonNull List<Intent> batch) {
+        for(Intent i : batch) {
+            ReturnCode code = handleIntent(i);
+            if(code != ReturnCode.CONTINUE) return code;
+        }
+
+        return ReturnCode.CONTINUE;
+    }
+
+    /**
+     * The most Intents {@link #handleIntents(List)} will be handed at once.
+     * The default is 1, meaning no batching at all.
+     *
+     * @return the largest batch to make
+     */
+    protected int getMaxBatchSize() {
+        return 1;
+    }
+
+    /**
+     * Decides if an Intent can go in the same batch as the one at the start of
+     * that batch.  Batches are always made of Intents that are next to each
+     * other in the queue (or next to each other within their ordering key,
+     * if running in parallel), so the first one this says no to ends the
+     * batch.  The default is to never batch.
+     *
+     * @param first the first Intent in the batch
+     * @param next the Intent that might join it
+     * @return true if next can be handled along with first
+     */
+    protected boolean canBatch(@NonNull Intent first, @NonNull Intent next) {
+        return false;
+    }
+
     /**
      * This gets called immediately before {@link #onQueueStart()}.  Here, you
      * want to load the queue into memory, if need be.  It's perfectly
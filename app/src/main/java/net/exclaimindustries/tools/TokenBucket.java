@@ -0,0 +1,119 @@
+/*
+ * TokenBucket.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.tools;
+
+/**
+ * <p>
+ * A plain old token bucket, for keeping something under a rate limit before
+ * the other end has to tell us about it.  The bucket holds up to some number
+ * of tokens and refills at a steady rate; taking tokens out when there's not
+ * enough in there doesn't block, it just tells you how long you'd need to
+ * wait, and you can decide what to do with that.
+ * </p>
+ *
+ * <p>
+ * This is safe to share between threads.  It uses {@link System#nanoTime()}
+ * for its clock, so it doesn't care if the wall clock changes.
+ * </p>
+ */
+public class TokenBucket {
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private final int mCapacity;
+    private final double mTokensPerNano;
+
+    private double mTokens;
+    private long mLastRefill;
+
+    /**
+     * Makes a new bucket, starting out full.
+     *
+     * @param capacity the most tokens the bucket can hold, which is also the
+     *                 biggest burst it'll allow
+     * @param tokens how many tokens get added back...
+     * @param periodMillis ...every this many milliseconds
+     * @throws IllegalArgumentException if any of those aren't positive
+     */
+    public TokenBucket(int capacity, int tokens, long periodMillis) {
+        if(capacity <= 0 || tokens <= 0 || periodMillis <= 0)
+            throw new IllegalArgumentException("Capacity, tokens, and period all need to be positive");
+
+        mCapacity = capacity;
+        mTokensPerNano = (double)tokens / (periodMillis * NANOS_PER_MILLI);
+        mTokens = capacity;
+        mLastRefill = now();
+    }
+
+    /**
+     * The current time, in nanoseconds, from whatever arbitrary start point.
+     * This only exists so tests can move time along on their own.
+     *
+     * @return now
+     */
+    long now() {
+        return System.nanoTime();
+    }
+
+    private void refill() {
+        long now = now();
+        mTokens = Math.min(mCapacity, mTokens + (now - mLastRefill) * mTokensPerNano);
+        mLastRefill = now;
+    }
+
+    private int clamp(int tokens) {
+        // Asking for more than the bucket can ever hold would mean waiting
+        // forever, so that just means waiting for a full bucket.
+        return Math.max(0, Math.min(tokens, mCapacity));
+    }
+
+    /**
+     * Figures out how long it'd be until the given number of tokens are in
+     * the bucket.  This doesn't take anything.
+     *
+     * @param tokens how many tokens you want
+     * @return how many milliseconds until they're there, or 0 if they're
+     *         there right now
+     */
+    public synchronized long getWaitMillis(int tokens) {
+        refill();
+
+        double missing = clamp(tokens) - mTokens;
+        if(missing <= 0) return 0;
+
+        // Round up, so waiting this long is always long enough.
+        return (long)Math.ceil(missing / mTokensPerNano / NANOS_PER_MILLI);
+    }
+
+    /**
+     * Takes the given number of tokens out of the bucket, if they're there.
+     * If they're not, nothing gets taken.
+     *
+     * @param tokens how many tokens to take
+     * @return true if they were taken, false if there weren't enough
+     */
+    public synchronized boolean tryTake(int tokens) {
+        refill();
+
+        int wanted = clamp(tokens);
+        if(mTokens < wanted) return false;
+
+        mTokens -= wanted;
+        return true;
+    }
+
+    /**
+     * Empties the bucket out.  This is for when the other end says we went
+     * over its limit anyway, so everything waits for the refill instead of
+     * going right back to hammering it.
+     */
+    public synchronized void drain() {
+        refill();
+        mTokens = 0;
+    }
+}
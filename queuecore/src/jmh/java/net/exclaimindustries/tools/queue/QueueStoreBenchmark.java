@@ -0,0 +1,168 @@
+/*
+ * QueueStoreBenchmark.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.tools.queue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Throughput and latency for the queue stores and the engine, with various
+ * amounts of backlog sitting in the queue.  "sqlite" is {@link JdbcQueueStore}
+ * on a file in the temp directory, which is as close as a desktop gets to
+ * what the wiki queue does on a phone; "memory" is there as the floor.
+ * </p>
+ *
+ * <p>
+ * That's not the same as measuring the phone, mind.  The SQL is the same
+ * ({@link QueueSchema} is shared with {@code AbstractSQLiteQueueService}),
+ * but the shipped store goes through Android's SQLiteDatabase, with its own
+ * Intent serialization and row bookkeeping, and none of that runs here.
+ * Treat these numbers as what the schema and the engine cost, not as
+ * on-device timings.
+ * </p>
+ *
+ * <ul>
+ *     <li>{@code enqueue} adds one item.  The backlog gets reset every
+ *     iteration, so it creeps up a bit over the course of one.</li>
+ *     <li>{@code dequeue} claims the head and removes it, then puts a new
+ *     item at the back so the backlog stays put.  Subtract {@code enqueue}
+ *     to get the dequeue by itself.</li>
+ *     <li>{@code drain} runs a whole {@link QueueEngine} over the backlog
+ *     until it's empty, with a handler that doesn't do anything.  That's
+ *     the queue's own overhead per run.</li>
+ * </ul>
+ *
+ * <p>
+ * Run with {@code ./gradlew :queuecore:jmh}.  Everything's reported both as
+ * throughput and as sampled latency, so the percentiles show up too.
+ * </p>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class QueueStoreBenchmark {
+    @Param({"memory", "sqlite"})
+    public String store;
+
+    @Param({"100", "1000", "10000"})
+    public int backlog;
+
+    private static final QueueCodec<String> CODEC = new QueueCodec<String>() {
+        @Override
+        public String encode(String item) {
+            return item;
+        }
+
+        @Override
+        public String decode(String data) {
+            return data;
+        }
+    };
+
+    /** Does nothing at all, as fast as it can. */
+    private static final QueueHandler<String> NOTHING = new QueueHandler<String>() {
+        @Override
+        public QueueEngine.ReturnCode handle(List<String> batch) {
+            return QueueEngine.ReturnCode.CONTINUE;
+        }
+    };
+
+    private File mFile;
+    private Connection mConnection;
+    private QueueStore<String> mStore;
+    private int mNext;
+
+    /**
+     * Makes an item about the size of a wiki message, minus the picture.
+     * Each one's a fresh object, which the memory store needs.
+     */
+    private String makeItem() {
+        StringBuilder sb = new StringBuilder(260);
+        int n = mNext++;
+        for(int i = 0; i < 20; i++) sb.append("Lorem ipsum ").append(n).append(' ');
+        return sb.toString();
+    }
+
+    private void fill() {
+        mStore.clear();
+        for(int i = 0; i < backlog; i++) mStore.add(makeItem(), 0);
+    }
+
+    @Setup(Level.Trial)
+    public void open() throws IOException, SQLException {
+        if("sqlite".equals(store)) {
+            mFile = File.createTempFile("queuebench", ".db");
+            mConnection = DriverManager.getConnection("jdbc:sqlite:" + mFile.getAbsolutePath());
+            mStore = new JdbcQueueStore<>(mConnection, CODEC);
+        } else {
+            mStore = new MemoryQueueStore<>();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws SQLException {
+        if(mStore instanceof JdbcQueueStore) ((JdbcQueueStore<String>)mStore).close();
+        if(mConnection != null) mConnection.close();
+        if(mFile != null && !mFile.delete()) mFile.deleteOnExit();
+    }
+
+    @Setup(Level.Iteration)
+    public void refill() {
+        fill();
+    }
+
+    @Benchmark
+    public void enqueue() {
+        mStore.add(makeItem(), 0);
+    }
+
+    @Benchmark
+    public String dequeue() {
+        String head = mStore.claimNext();
+        mStore.removeNext();
+        mStore.add(makeItem(), 0);
+        return head;
+    }
+
+    /**
+     * The state for {@code drain}, which needs a full queue before every
+     * single call.  Filling it doesn't count toward the time.
+     */
+    @State(Scope.Thread)
+    public static class Full {
+        @Setup(Level.Invocation)
+        public void fill(QueueStoreBenchmark bench) {
+            bench.fill();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public QueueEngine.Outcome drain(Full full) {
+        return new QueueEngine<>(mStore, NOTHING).run();
+    }
+}
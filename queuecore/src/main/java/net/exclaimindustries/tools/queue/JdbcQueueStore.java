@@ -0,0 +1,389 @@
+/*
+ * JdbcQueueStore.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.tools.queue;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * <p>
+ * A {@link QueueStore} in an SQLite database, by way of JDBC.  The table,
+ * index, order, and leasing rules all come from {@link QueueSchema}, same as
+ * the Android {@code AbstractSQLiteQueueService}, so it's a fair stand-in for
+ * that when measuring things off of a device.  What's different is the
+ * plumbing around it: JDBC prepared statements here, Android's SQLiteDatabase
+ * there.
+ * </p>
+ *
+ * <p>
+ * Claims are leases, same as on Android: the row stays put, but it's marked
+ * as taken until some time in the future, and the check and the mark are one
+ * UPDATE so two claims can't both win.  Leases left over from some other
+ * store (one that went away without letting go) are released when this one
+ * opens.  The count is kept in memory after the first time it's asked for,
+ * so this should be the only thing writing to the table.
+ * </p>
+ *
+ * <p>
+ * This doesn't own the Connection; closing the store only closes the
+ * statements it made.
+ * </p>
+ *
+ * @param <T> whatever's in the queue
+ */
+public class JdbcQueueStore<T> implements QueueStore<T>, Closeable {
+    /** By default, leases last ten minutes, same as on Android. */
+    public static final long DEFAULT_LEASE_TIMEOUT = QueueSchema.DEFAULT_LEASE_TIMEOUT;
+
+    private static final String TABLE_QUEUE = QueueSchema.TABLE;
+
+    private final Connection mConnection;
+    private final QueueCodec<T> mCodec;
+    private final long mLeaseTimeout;
+    private final String mOwner = UUID.randomUUID().toString();
+
+    private final PreparedStatement mInsert;
+    private final PreparedStatement mSelectHead;
+    private final PreparedStatement mSelectWindow;
+    private final PreparedStatement mLease;
+    private final PreparedStatement mRelease;
+    private final PreparedStatement mDelete;
+    private final PreparedStatement mSelectAnyHead;
+
+    private int mCount = -1;
+
+    // Row IDs of what's been handed out, by identity.  Claimed items stay in
+    // here until they're released or removed.  Anything that was only peeked
+    // at gets forgotten the next time someone peeks, since by then whoever
+    // asked has either claimed it or moved on.
+    private final Map<T, Long> mClaimed = new IdentityHashMap<>();
+    private Map<T, Long> mPeeked = new IdentityHashMap<>();
+
+    private T mHead;
+
+    /**
+     * Opens a store with the default lease timeout.
+     *
+     * @param connection an open SQLite connection, with autocommit on
+     * @param codec for turning items into Strings and back
+     * @throws QueueStoreException if the table couldn't be set up
+     */
+    public JdbcQueueStore(Connection connection, QueueCodec<T> codec) {
+        this(connection, codec, DEFAULT_LEASE_TIMEOUT);
+    }
+
+    /**
+     * Opens a store.  The table gets made if it isn't there yet.
+     *
+     * @param connection an open SQLite connection, with autocommit on
+     * @param codec for turning items into Strings and back
+     * @param leaseTimeout how long a claim lasts, in milliseconds, before
+     *                     it's assumed whatever claimed it got stuck
+     * @throws QueueStoreException if the table couldn't be set up
+     */
+    public JdbcQueueStore(Connection connection, QueueCodec<T> codec, long leaseTimeout) {
+        mConnection = connection;
+        mCodec = codec;
+        mLeaseTimeout = leaseTimeout;
+
+        try {
+            try(Statement statement = connection.createStatement()) {
+                statement.execute(QueueSchema.CREATE_TABLE);
+                statement.execute(QueueSchema.CREATE_INDEX);
+            }
+
+            String letGo = " SET " + QueueSchema.COLUMN_LEASE_UNTIL + "=0, "
+                    + QueueSchema.COLUMN_LEASE_OWNER + "=NULL WHERE ";
+            String rowAndData = "SELECT " + QueueSchema.COLUMN_ROWID + ", " + QueueSchema.COLUMN_DATA
+                    + " FROM " + TABLE_QUEUE + " WHERE " + QueueSchema.WHERE_UNLEASED
+                    + " ORDER BY " + QueueSchema.ORDER + " LIMIT ";
+
+            try(PreparedStatement stale = connection.prepareStatement("UPDATE " + TABLE_QUEUE
+                    + letGo + QueueSchema.WHERE_STALE_LEASE)) {
+                stale.setString(1, mOwner);
+                stale.executeUpdate();
+            }
+
+            mInsert = connection.prepareStatement("INSERT INTO " + TABLE_QUEUE
+                    + " (" + QueueSchema.COLUMN_TIMESTAMP + ", " + QueueSchema.COLUMN_DATA + ", "
+                    + QueueSchema.COLUMN_PRIORITY + ") VALUES (?, ?, ?)");
+            mSelectHead = connection.prepareStatement(rowAndData + "1");
+            mSelectWindow = connection.prepareStatement(rowAndData + "?");
+            mSelectAnyHead = connection.prepareStatement("SELECT " + QueueSchema.COLUMN_ROWID
+                    + " FROM " + TABLE_QUEUE + " ORDER BY " + QueueSchema.ORDER + " LIMIT 1");
+            mLease = connection.prepareStatement("UPDATE " + TABLE_QUEUE
+                    + " SET " + QueueSchema.COLUMN_LEASE_UNTIL + "=?, " + QueueSchema.COLUMN_LEASE_OWNER
+                    + "=? WHERE " + QueueSchema.WHERE_CLAIMABLE);
+            mRelease = connection.prepareStatement("UPDATE " + TABLE_QUEUE + letGo + QueueSchema.WHERE_ID);
+            mDelete = connection.prepareStatement("DELETE FROM " + TABLE_QUEUE + " WHERE " + QueueSchema.WHERE_ID);
+        } catch(SQLException sqle) {
+            throw new QueueStoreException("Couldn't set up the queue table", sqle);
+        }
+    }
+
+    private void adjustCount(int delta) {
+        if(mCount >= 0) mCount = Math.max(0, mCount + delta);
+    }
+
+    private int deleteRow(long rowId) throws SQLException {
+        mDelete.setLong(1, rowId);
+        int deleted = mDelete.executeUpdate();
+        adjustCount(-deleted);
+        return deleted;
+    }
+
+    private boolean leaseRow(long rowId, long now) throws SQLException {
+        mLease.setLong(1, now + mLeaseTimeout);
+        mLease.setString(2, mOwner);
+        mLease.setLong(3, rowId);
+        mLease.setLong(4, now);
+        return mLease.executeUpdate() > 0;
+    }
+
+    private T decode(String data) {
+        return mCodec.decode(data == null ? "" : data);
+    }
+
+    @Override
+    public synchronized void add(T item, int priority) {
+        String data = mCodec.encode(item);
+
+        try {
+            mInsert.setLong(1, System.currentTimeMillis());
+            mInsert.setString(2, data == null ? "" : data);
+            mInsert.setInt(3, priority);
+            adjustCount(mInsert.executeUpdate());
+        } catch(SQLException sqle) {
+            throw new QueueStoreException("Couldn't add to the queue", sqle);
+        }
+    }
+
+    @Override
+    public synchronized int count() {
+        if(mCount < 0) {
+            try(Statement statement = mConnection.createStatement();
+                ResultSet results = statement.executeQuery("SELECT COUNT(*) FROM " + TABLE_QUEUE)) {
+                mCount = results.next() ? results.getInt(1) : 0;
+            } catch(SQLException sqle) {
+                throw new QueueStoreException("Couldn't count the queue", sqle);
+            }
+        }
+
+        return mCount;
+    }
+
+    @Override
+    public synchronized void clear() {
+        try(Statement statement = mConnection.createStatement()) {
+            statement.executeUpdate("DELETE FROM " + TABLE_QUEUE);
+            mCount = 0;
+            mClaimed.clear();
+            mPeeked.clear();
+            mHead = null;
+        } catch(SQLException sqle) {
+            throw new QueueStoreException("Couldn't clear the queue", sqle);
+        }
+    }
+
+    @Override
+    public synchronized T claimNext() {
+        mHead = null;
+
+        try {
+            while(true) {
+                long now = System.currentTimeMillis();
+                long rowId;
+                String data;
+
+                mSelectHead.setLong(1, now);
+                try(ResultSet results = mSelectHead.executeQuery()) {
+                    if(!results.next()) return null;
+                    rowId = results.getLong(1);
+                    data = results.getString(2);
+                }
+
+                T item = decode(data);
+                if(item == null) {
+                    // Can't do anything with this one, so it's just taking up
+                    // space.
+                    deleteRow(rowId);
+                    continue;
+                }
+
+                // The lease only goes through if nobody beat us to it since
+                // the SELECT.  If somebody did, try whatever's next.
+                if(leaseRow(rowId, now)) {
+                    mClaimed.put(item, rowId);
+                    mHead = item;
+                    return item;
+                }
+            }
+        } catch(SQLException sqle) {
+            throw new QueueStoreException("Couldn't get the next item from the queue", sqle);
+        }
+    }
+
+    @Override
+    public synchronized void removeNext() {
+        T head = mHead;
+        mHead = null;
+
+        try {
+            if(head != null) {
+                Long rowId = mClaimed.remove(head);
+                if(rowId != null && deleteRow(rowId) > 0) return;
+            }
+
+            // Nothing handed out (or it's gone already), so it's whatever's
+            // at the front, claimed or not.
+            long rowId;
+            try(ResultSet results = mSelectAnyHead.executeQuery()) {
+                if(!results.next()) return;
+                rowId = results.getLong(1);
+            }
+
+            deleteRow(rowId);
+        } catch(SQLException sqle) {
+            throw new QueueStoreException("Couldn't remove the next item from the queue", sqle);
+        }
+    }
+
+    @Override
+    public synchronized List<T> peek(int max) {
+        List<T> toReturn = new ArrayList<>();
+        Map<T, Long> peeked = new IdentityHashMap<>();
+        List<Long> broken = new ArrayList<>();
+
+        try {
+            mSelectWindow.setLong(1, System.currentTimeMillis());
+            mSelectWindow.setInt(2, max);
+            try(ResultSet results = mSelectWindow.executeQuery()) {
+                while(results.next()) {
+                    long rowId = results.getLong(1);
+                    T item = decode(results.getString(2));
+
+                    if(item != null) {
+                        peeked.put(item, rowId);
+                        toReturn.add(item);
+                    } else {
+                        broken.add(rowId);
+                    }
+                }
+            }
+
+            for(long rowId : broken) deleteRow(rowId);
+        } catch(SQLException sqle) {
+            throw new QueueStoreException("Couldn't look at the front of the queue", sqle);
+        }
+
+        mPeeked = peeked;
+        return toReturn;
+    }
+
+    @Override
+    public synchronized boolean claim(T item) {
+        Long rowId = mPeeked.get(item);
+        if(rowId == null) return false;
+
+        try {
+            if(!leaseRow(rowId, System.currentTimeMillis())) return false;
+        } catch(SQLException sqle) {
+            throw new QueueStoreException("Couldn't claim an item", sqle);
+        }
+
+        mPeeked.remove(item);
+        mClaimed.put(item, rowId);
+        return true;
+    }
+
+    @Override
+    public synchronized void release(T item) {
+        Long rowId = mClaimed.remove(item);
+        if(rowId == null) return;
+
+        if(item == mHead) mHead = null;
+
+        try {
+            mRelease.setLong(1, rowId);
+            mRelease.executeUpdate();
+        } catch(SQLException sqle) {
+            throw new QueueStoreException("Couldn't release an item", sqle);
+        }
+    }
+
+    @Override
+    public synchronized void remove(T item) {
+        Long rowId = mClaimed.remove(item);
+        if(rowId == null) rowId = mPeeked.remove(item);
+        if(rowId == null) return;
+
+        if(item == mHead) mHead = null;
+
+        try {
+            deleteRow(rowId);
+        } catch(SQLException sqle) {
+            throw new QueueStoreException("Couldn't remove an item", sqle);
+        }
+    }
+
+    @Override
+    public synchronized long getId(T item) {
+        Long rowId = mClaimed.get(item);
+        if(rowId == null) rowId = mPeeked.get(item);
+        return rowId == null ? -1 : rowId;
+    }
+
+    @Override
+    public synchronized boolean removeById(long id) {
+        // Forget about any copy of it we've handed out, too.
+        forgetRow(mClaimed, id);
+        forgetRow(mPeeked, id);
+
+        try {
+            return deleteRow(id) > 0;
+        } catch(SQLException sqle) {
+            throw new QueueStoreException("Couldn't remove an item", sqle);
+        }
+    }
+
+    private void forgetRow(Map<T, Long> rows, long rowId) {
+        Iterator<Map.Entry<T, Long>> it = rows.entrySet().iterator();
+        while(it.hasNext()) {
+            Map.Entry<T, Long> entry = it.next();
+            if(entry.getValue() == rowId) {
+                if(entry.getKey() == mHead) mHead = null;
+                it.remove();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        PreparedStatement[] statements = {mInsert, mSelectHead, mSelectWindow, mSelectAnyHead,
+                mLease, mRelease, mDelete};
+
+        for(PreparedStatement statement : statements) {
+            try {
+                statement.close();
+            } catch(SQLException sqle) {
+                // Not much to be done about it.
+            }
+        }
+    }
+}
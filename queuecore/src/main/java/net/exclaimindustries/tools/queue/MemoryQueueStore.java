@@ -0,0 +1,163 @@
+/*
+ * MemoryQueueStore.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.tools.queue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * <p>
+ * A {@link QueueStore} that just keeps everything in memory.  Nothing
+ * survives the process going away, so this is mostly good for tests, and for
+ * giving the benchmarks something to compare the real stores against.
+ * </p>
+ *
+ * <p>
+ * Items are tracked by identity, so every item added should be its own
+ * object.  Adding the same instance twice won't end well.
+ * </p>
+ *
+ * @param <T> whatever's in the queue
+ */
+public class MemoryQueueStore<T> implements QueueStore<T> {
+    private static class Node<T> {
+        final T item;
+        final int priority;
+        final long sequence;
+        boolean claimed;
+
+        Node(T item, int priority, long sequence) {
+            this.item = item;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+    }
+
+    private final TreeSet<Node<T>> mNodes = new TreeSet<>(new Comparator<Node<T>>() {
+        @Override
+        public int compare(Node<T> a, Node<T> b) {
+            if(a.priority != b.priority) return a.priority < b.priority ? -1 : 1;
+            return Long.compare(a.sequence, b.sequence);
+        }
+    });
+
+    private final Map<T, Node<T>> mByItem = new IdentityHashMap<>();
+    private long mNextSequence;
+    private Node<T> mHead;
+
+    @Override
+    public synchronized void add(T item, int priority) {
+        Node<T> node = new Node<>(item, priority, mNextSequence++);
+        mNodes.add(node);
+        mByItem.put(item, node);
+    }
+
+    @Override
+    public synchronized int count() {
+        return mNodes.size();
+    }
+
+    @Override
+    public synchronized void clear() {
+        mNodes.clear();
+        mByItem.clear();
+        mHead = null;
+    }
+
+    @Override
+    public synchronized T claimNext() {
+        mHead = null;
+
+        for(Node<T> node : mNodes) {
+            if(!node.claimed) {
+                node.claimed = true;
+                mHead = node;
+                return node.item;
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public synchronized void removeNext() {
+        Node<T> node = mHead;
+        mHead = null;
+
+        if(node == null || !mNodes.contains(node)) {
+            if(mNodes.isEmpty()) return;
+            node = mNodes.first();
+        }
+
+        removeNode(node);
+    }
+
+    @Override
+    public synchronized List<T> peek(int max) {
+        List<T> toReturn = new ArrayList<>();
+
+        for(Node<T> node : mNodes) {
+            if(toReturn.size() >= max) break;
+            if(!node.claimed) toReturn.add(node.item);
+        }
+
+        return toReturn;
+    }
+
+    @Override
+    public synchronized boolean claim(T item) {
+        Node<T> node = mByItem.get(item);
+        if(node == null || node.claimed) return false;
+
+        node.claimed = true;
+        return true;
+    }
+
+    @Override
+    public synchronized void release(T item) {
+        Node<T> node = mByItem.get(item);
+        if(node == null) return;
+
+        node.claimed = false;
+        if(node == mHead) mHead = null;
+    }
+
+    @Override
+    public synchronized void remove(T item) {
+        Node<T> node = mByItem.get(item);
+        if(node != null) removeNode(node);
+    }
+
+    @Override
+    public synchronized long getId(T item) {
+        Node<T> node = mByItem.get(item);
+        return node == null ? -1 : node.sequence;
+    }
+
+    @Override
+    public synchronized boolean removeById(long id) {
+        for(Node<T> node : mNodes) {
+            if(node.sequence == id) {
+                removeNode(node);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void removeNode(Node<T> node) {
+        mNodes.remove(node);
+        mByItem.remove(node.item);
+        if(node == mHead) mHead = null;
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * QueueCodec.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.tools.queue;
+
+/**
+ * Turns queue items into Strings and back, for any {@link QueueStore} that
+ * keeps things somewhere other than memory.  This is the same job
+ * {@code QueueService}'s serializeIntent and deserializeIntent do.
+ *
+ * @param <T> whatever's in the queue
+ */
+public interface QueueCodec<T> {
+    /**
+     * Turns an item into a String.
+     *
+     * @param item the item
+     * @return the item as a String (null counts as an empty string)
+     */
+    String encode(T item);
+
+    /**
+     * Turns a String from {@link #encode(Object)} back into an item.
+     *
+     * @param data the String
+     * @return the item, or null if it should just be thrown away
+     */
+    T decode(String data);
+}
@@ -0,0 +1,491 @@
+/*
+ * QueueEngine.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.tools.queue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * The part of a queue that actually works through it: pulls things out of a
+ * {@link QueueStore}, hands them to a {@link QueueHandler}, and does whatever
+ * the {@link ReturnCode} says.  This doesn't know anything about Android;
+ * {@code QueueService} wraps one of these up in a Service, and anything else
+ * (tests, benchmarks) can just call {@link #run()} on whatever thread it
+ * likes.
+ * </p>
+ *
+ * <p>
+ * One call to {@link #run()} is one run of the queue: it goes until the queue
+ * is empty, something pauses, or something stops.  If the handler's
+ * {@link QueueHandler#getMaxConcurrency()} is 1, everything goes one at a
+ * time on the calling thread.  Otherwise, the calling thread becomes a
+ * dispatcher handing batches out to a pool of workers, never more than one
+ * per ordering key at once.  Either way, everything other than
+ * {@link QueueHandler#handle(List)} only ever happens on the calling thread.
+ * </p>
+ *
+ * <p>
+ * An engine is good for one run.  Make a new one for the next.
+ * </p>
+ *
+ * @param <T> whatever's in the queue
+ */
+public class QueueEngine<T> {
+    /**
+     * How far down the queue the parallel dispatcher (or the batcher) looks
+     * for something it can hand out.
+     */
+    public static final int DISPATCH_WINDOW = 50;
+
+    /** Codes returned from handling that tell the queue what to do next. */
+    public enum ReturnCode {
+        /** Everything went fine.  Remove it and keep going. */
+        CONTINUE,
+        /**
+         * Stop for now and try again later.  Whatever returned this stays in
+         * the queue, right where it was.
+         */
+        PAUSE,
+        /** Stop entirely.  The queue gets emptied out. */
+        STOP
+    }
+
+    /** How a run ended. */
+    public enum Outcome {
+        /** The queue ran out. */
+        EMPTY,
+        /** Something said to pause.  See {@link #getPausedKey()}. */
+        PAUSED,
+        /** Something said to stop, and the queue was cleared. */
+        STOPPED
+    }
+
+    private final QueueStore<T> mStore;
+    private final QueueHandler<T> mHandler;
+
+    private final Object mLock = new Object();
+    private final List<Result> mFinished = new ArrayList<>();
+    private boolean mNudged;
+
+    private volatile String mPausedKey;
+    private volatile long mPausedId = -1;
+
+    private class Result {
+        final List<T> batch;
+        final String key;
+        final ReturnCode code;
+
+        Result(List<T> batch, String key, ReturnCode code) {
+            this.batch = batch;
+            this.key = key;
+            this.code = code;
+        }
+    }
+
+    private class Worker implements Runnable {
+        private final List<T> mBatch;
+        private final String mKey;
+
+        Worker(List<T> batch, String key) {
+            mBatch = batch;
+            mKey = key;
+        }
+
+        @Override
+        public void run() {
+            // If handling blows up, it'll take things down just like it
+            // would've on one thread, but just in case it doesn't, the
+            // dispatcher still needs to hear about it.
+            ReturnCode r = ReturnCode.PAUSE;
+            try {
+                mHandler.debug("Processing %d item(s) with key %s...", mBatch.size(), mKey);
+                r = mHandler.handle(mBatch);
+                mHandler.debug("Item(s) with key %s processed, return code is %s", mKey, r);
+            } finally {
+                synchronized(mLock) {
+                    mFinished.add(new Result(mBatch, mKey, r));
+                    mLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes a new engine.
+     *
+     * @param store where the queue is
+     * @param handler what to do with it
+     */
+    public QueueEngine(QueueStore<T> store, QueueHandler<T> handler) {
+        mStore = store;
+        mHandler = handler;
+    }
+
+    /**
+     * Lets a parallel run know something new went into the store, in case
+     * it's sitting around waiting and the new thing could go right now.  This
+     * is safe to call from any thread, at any time.
+     */
+    public void nudge() {
+        synchronized(mLock) {
+            mNudged = true;
+            mLock.notifyAll();
+        }
+    }
+
+    /**
+     * Gets the ordering key of whatever paused the last run, for handing to
+     * {@link #removePaused(QueueStore, QueueHandler, String, long)} later if
+     * the user decides to skip it.
+     *
+     * @return the key (empty string for a null key), or null if the run
+     *         didn't pause
+     */
+    public String getPausedKey() {
+        return mPausedKey;
+    }
+
+    /**
+     * Gets the store's ID (see {@link QueueStore#getId(Object)}) for whatever
+     * paused the last run, also for handing to
+     * {@link #removePaused(QueueStore, QueueHandler, String, long)}.
+     *
+     * @return the ID, or -1 if the run didn't pause or the store couldn't say
+     */
+    public long getPausedId() {
+        return mPausedId;
+    }
+
+    /**
+     * <p>
+     * Removes whatever paused a run.  If there's an ID from
+     * {@link #getPausedId()}, that's exactly the item that gets removed, and
+     * if it's not in the store anymore, nothing is.  Going by key alone isn't
+     * good enough here, since something in a better lane with the same key can
+     * show up while the queue's paused and sort ahead of it.
+     * </p>
+     *
+     * <p>
+     * Without an ID, this falls back to the first item in the store with the
+     * key from {@link #getPausedKey()}, and if the key is null or nothing has
+     * that key either (say, the process died in between and both were
+     * forgotten), this just removes the first thing in the store.
+     * </p>
+     *
+     * @param store where the queue is
+     * @param handler for working out keys
+     * @param pausedKey the key from {@link #getPausedKey()}, or null
+     * @param pausedId the ID from {@link #getPausedId()}, or -1
+     * @param <T> whatever's in the queue
+     */
+    public static <T> void removePaused(QueueStore<T> store, QueueHandler<T> handler, String pausedKey, long pausedId) {
+        if(pausedId >= 0) {
+            if(!store.removeById(pausedId))
+                handler.warn("Whatever paused the queue is already gone, not skipping anything...");
+            return;
+        }
+
+        if(pausedKey != null) {
+            for(T item : store.peek(DISPATCH_WINDOW)) {
+                if(pausedKey.equals(makeOrderingKey(handler, item))) {
+                    store.remove(item);
+                    return;
+                }
+            }
+
+            handler.warn("Couldn't find what paused the queue, skipping the head instead...");
+        }
+
+        store.removeNext();
+    }
+
+    private static <T> String makeOrderingKey(QueueHandler<T> handler, T item) {
+        String key = handler.getOrderingKey(item);
+        return key == null ? "" : key;
+    }
+
+    /**
+     * Gathers up a batch starting at the given spot in a window off the front
+     * of the queue.  If a key is given, anything with a different key gets
+     * stepped over (it's not in the way of anything in this key), but the
+     * first item with the same key that can't join the batch ends it, so
+     * nothing ever jumps ahead of something it should've come after.
+     */
+    private List<T> collectBatch(List<T> window, int start, String key) {
+        T first = window.get(start);
+        int max = mHandler.getMaxBatchSize();
+
+        if(max <= 1) return Collections.singletonList(first);
+
+        List<T> toReturn = new ArrayList<>();
+        toReturn.add(first);
+
+        for(int index = start + 1; index < window.size() && toReturn.size() < max; index++) {
+            T next = window.get(index);
+            if(key != null && !key.equals(makeOrderingKey(mHandler, next))) continue;
+            if(!mHandler.canBatch(first, next)) break;
+            toReturn.add(next);
+        }
+
+        return toReturn;
+    }
+
+    /**
+     * Claims everything in a batch, in order, stopping at the first one that
+     * can't be claimed (anything after that would be jumping ahead of it).
+     */
+    private List<T> claimBatch(List<T> batch) {
+        List<T> toReturn = new ArrayList<>(batch.size());
+        for(T item : batch) {
+            if(!mStore.claim(item)) break;
+            toReturn.add(item);
+        }
+        return toReturn;
+    }
+
+    /**
+     * Runs through the queue until it's empty, something pauses, or something
+     * stops.  This blocks until then.
+     *
+     * @return how it ended
+     */
+    public Outcome run() {
+        mPausedKey = null;
+        mPausedId = -1;
+
+        mHandler.onQueueLoad();
+        mHandler.onQueueStart();
+
+        int max = mHandler.getMaxConcurrency();
+        return max > 1 ? runParallel(max) : runSequential();
+    }
+
+    private Outcome runSequential() {
+        boolean batching = mHandler.getMaxBatchSize() > 1;
+
+        while(mStore.count() > 0) {
+            // If we're batching, grab however much of the front of the queue
+            // can go together.  Otherwise, it's just the head.
+            List<T> batch;
+            if(batching) {
+                List<T> window = mStore.peek(DISPATCH_WINDOW);
+                batch = window.isEmpty()
+                        ? Collections.<T>emptyList()
+                        : claimBatch(collectBatch(window, 0, null));
+            } else {
+                T head = mStore.claimNext();
+                batch = head == null
+                        ? Collections.<T>emptyList()
+                        : Collections.singletonList(head);
+            }
+
+            if(batch.isEmpty()) {
+                // The count says there's something there, but nothing came
+                // back that we can work on (it's all claimed by something
+                // else, or the storage is having a bad day).  Call it a run.
+                mHandler.warn("Queue count is nonzero, but there was nothing available to process...");
+                break;
+            }
+
+            long wait = mHandler.tryAcquirePermits(batch);
+            if(wait > 0) {
+                // Not yet.  Put it back and have a nap.  It might not be the
+                // first thing in line when we wake up, if something in a
+                // better lane shows up in the meantime.
+                mHandler.debug("Rate limited, waiting %d ms...", wait);
+                for(T waiting : batch) mStore.release(waiting);
+                try {
+                    Thread.sleep(wait);
+                } catch(InterruptedException ie) {
+                    mHandler.warn("Interrupted while waiting out a rate limit, checking in...");
+                }
+                continue;
+            }
+
+            mHandler.debug("Processing %d item(s)...", batch.size());
+            ReturnCode r = mHandler.handle(batch);
+            mHandler.debug("Item(s) processed, return code is %s", r);
+
+            if(r == ReturnCode.STOP) {
+                return finishStopped();
+            } else if(r == ReturnCode.CONTINUE) {
+                // Success, so out it goes (along with anything that went
+                // with it).
+                if(batching) {
+                    for(T done : batch) mStore.remove(done);
+                } else {
+                    mStore.removeNext();
+                }
+                mHandler.onQueueItemProcessed();
+            } else if(r == ReturnCode.PAUSE) {
+                // Whatever we were working on goes back in line right where
+                // it was.  Get its ID first, while the store still has it
+                // claimed.
+                long id = mStore.getId(batch.get(0));
+                for(T paused : batch) mStore.release(paused);
+                return finishPaused(batch, makeOrderingKey(mHandler, batch.get(0)), id);
+            }
+        }
+
+        return finishEmpty();
+    }
+
+    private Outcome runParallel(int max) {
+        ExecutorService pool = Executors.newFixedThreadPool(max);
+        Set<String> busyKeys = new HashSet<>();
+        int inFlight = 0;
+
+        Result pausedBy = null;
+        long pausedId = -1;
+        boolean stopped = false;
+
+        try {
+            while(true) {
+                List<Result> done;
+                synchronized(mLock) {
+                    done = new ArrayList<>(mFinished);
+                    mFinished.clear();
+                    mNudged = false;
+                }
+
+                for(Result result : done) {
+                    inFlight--;
+                    busyKeys.remove(result.key);
+
+                    if(result.code == ReturnCode.CONTINUE) {
+                        for(T item : result.batch) mStore.remove(item);
+                        mHandler.onQueueItemProcessed();
+                    } else if(result.code == ReturnCode.PAUSE) {
+                        // The first pause is the one we report.  Anything
+                        // else that pauses while we're winding down stays in
+                        // the queue just the same.
+                        if(pausedBy == null) {
+                            pausedBy = result;
+                            pausedId = mStore.getId(result.batch.get(0));
+                        }
+                        for(T item : result.batch) mStore.release(item);
+                    } else if(result.code == ReturnCode.STOP) {
+                        stopped = true;
+                    }
+                }
+
+                boolean windingDown = stopped || pausedBy != null;
+
+                // If anything had to wait on a rate limit this time around,
+                // this is how long until the soonest one's worth another try.
+                // 0 means nothing's waiting.
+                long retryIn = 0;
+
+                if(!windingDown && inFlight < max) {
+                    // Walk down the queue in order.  The first item we see for
+                    // a given key is the only one of that key that can go; if
+                    // that key's already busy (and that first item is the one
+                    // it's busy with), everything else with that key waits.
+                    List<T> window = mStore.peek(DISPATCH_WINDOW);
+                    Set<String> seen = new HashSet<>();
+
+                    for(int index = 0; index < window.size(); index++) {
+                        if(inFlight >= max) break;
+
+                        String key = makeOrderingKey(mHandler, window.get(index));
+                        if(!seen.add(key) || busyKeys.contains(key)) continue;
+
+                        // If something else got to this one first, this key's
+                        // off limits for this pass.
+                        List<T> batch = claimBatch(collectBatch(window, index, key));
+                        if(batch.isEmpty()) continue;
+
+                        // Same if it's over its rate limit.  Something else
+                        // further down might not be.
+                        long wait = mHandler.tryAcquirePermits(batch);
+                        if(wait > 0) {
+                            for(T waiting : batch) mStore.release(waiting);
+                            retryIn = retryIn == 0 ? wait : Math.min(retryIn, wait);
+                            continue;
+                        }
+
+                        busyKeys.add(key);
+                        inFlight++;
+                        pool.execute(new Worker(batch, key));
+                    }
+
+                    // With nothing running, the first thing in the window
+                    // always goes unless it's rate limited, so if nothing's
+                    // running or waiting now, the queue's empty.
+                    if(inFlight == 0 && retryIn == 0) break;
+
+                    if(retryIn > 0)
+                        mHandler.debug("Rate limited, checking back in %d ms...", retryIn);
+                }
+
+                if(inFlight == 0 && windingDown) break;
+
+                // Wait for something to finish (or for something new to show
+                // up that might be able to go right now, or for a rate limit
+                // to run out).
+                long deadline = retryIn > 0
+                        ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryIn)
+                        : 0;
+                synchronized(mLock) {
+                    while(mFinished.isEmpty() && !mNudged) {
+                        long timeout = 0;
+                        if(deadline != 0) {
+                            timeout = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                            if(timeout <= 0) break;
+                        }
+
+                        try {
+                            mLock.wait(timeout);
+                        } catch(InterruptedException ie) {
+                            // Nobody should be interrupting us, so just go
+                            // back around and see what's what.
+                            mHandler.warn("Dispatcher interrupted, checking in...");
+                            break;
+                        }
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        if(stopped) return finishStopped();
+        if(pausedBy != null) return finishPaused(pausedBy.batch, pausedBy.key, pausedId);
+        return finishEmpty();
+    }
+
+    private Outcome finishStopped() {
+        mHandler.debug("Return said to stop, stopping now and abandoning %d item(s).", mStore.count());
+        mHandler.onQueueEmpty(false);
+        mStore.clear();
+        return Outcome.STOPPED;
+    }
+
+    private Outcome finishPaused(List<T> batch, String key, long id) {
+        mHandler.debug("Return said to pause (key %s, ID %d).", key, id);
+        mPausedKey = key;
+        mPausedId = id;
+        mHandler.onQueuePause(batch.get(0));
+        mHandler.onQueueUnload();
+        return Outcome.PAUSED;
+    }
+
+    private Outcome finishEmpty() {
+        mHandler.debug("Processing complete.");
+        mHandler.onQueueEmpty(true);
+        return Outcome.EMPTY;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * QueueHandler.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.tools.queue;
+
+import java.util.List;
+
+/**
+ * <p>
+ * The part of a queue that actually knows what to do with what's in it.  A
+ * {@link QueueEngine} pulls things out of a {@link QueueStore} and hands them
+ * to {@link #handle(List)}, and calls the rest of these as the queue starts,
+ * pauses, and finishes.
+ * </p>
+ *
+ * <p>
+ * Everything other than {@link #handle(List)} has a reasonable default.  The
+ * defaults make for a plain, one-at-a-time, strictly in order queue with no
+ * batching and no rate limiting.
+ * </p>
+ *
+ * @param <T> whatever's in the queue
+ */
+public abstract class QueueHandler<T> {
+    /**
+     * Handles a batch of items.  Unless {@link #getMaxBatchSize()} and
+     * {@link #canBatch(Object, Object)} say otherwise, that's always just one
+     * item.  The batch lives or dies as one: CONTINUE removes all of it, PAUSE
+     * leaves all of it in the queue, and STOP empties the whole queue.
+     *
+     * <p>
+     * If {@link #getMaxConcurrency()} is more than 1, this gets called from
+     * several threads at once.  Nothing else in here does.
+     * </p>
+     *
+     * @param batch the items to handle, in queue order
+     * @return what the queue should do next
+     */
+    public abstract QueueEngine.ReturnCode handle(List<T> batch);
+
+    /**
+     * How many batches can be handled at once.  Anything more than 1 means
+     * a pool of worker threads, with {@link #getOrderingKey(Object)} keeping
+     * things in order where they need to be.
+     *
+     * @return the most batches to handle at once (default 1)
+     */
+    public int getMaxConcurrency() {
+        return 1;
+    }
+
+    /**
+     * Gets the ordering key for an item.  Items with the same key are always
+     * handled one at a time, in queue order.  Null is the same key as an
+     * empty string.
+     *
+     * @param item the item in question
+     * @return its key, or null (the default)
+     */
+    public String getOrderingKey(T item) {
+        return null;
+    }
+
+    /**
+     * The most items that'll go in one batch.
+     *
+     * @return the largest batch to make (default 1, meaning no batching)
+     */
+    public int getMaxBatchSize() {
+        return 1;
+    }
+
+    /**
+     * Decides if an item can join a batch.  Batches are made of items next to
+     * each other in the queue (within their ordering key, if running in
+     * parallel), so the first one this says no to ends the batch.
+     *
+     * @param first the first item in the batch
+     * @param next the item that might join it
+     * @return true if they can go together (default false)
+     */
+    public boolean canBatch(T first, T next) {
+        return false;
+    }
+
+    /**
+     * Asks permission to handle a batch right now, for staying under a rate
+     * limit.  If it can go, take whatever it costs out of the limit and
+     * return 0.  If it can't, don't take anything, and return how many
+     * milliseconds until it's worth asking again.  The engine will move on to
+     * something else (or wait) in the meantime.
+     *
+     * @param batch the items about to be handled
+     * @return 0 to go, or milliseconds to wait (default 0)
+     */
+    public long tryAcquirePermits(List<T> batch) {
+        return 0;
+    }
+
+    /** Called first thing in a run, before {@link #onQueueStart()}. */
+    public void onQueueLoad() { }
+
+    /** Called right before anything in a run gets handled. */
+    public void onQueueStart() { }
+
+    /**
+     * Called once per batch that comes back CONTINUE, after it's been
+     * removed from the store.
+     */
+    public void onQueueItemProcessed() { }
+
+    /**
+     * Called when the queue pauses.  Everything that was being worked on is
+     * already back in the store by now.
+     *
+     * @param item the first item of the batch that paused
+     */
+    public void onQueuePause(T item) { }
+
+    /**
+     * Called after {@link #onQueuePause(Object)}, as the opposite of
+     * {@link #onQueueLoad()}.
+     */
+    public void onQueueUnload() { }
+
+    /**
+     * Called when the queue's done.  On a STOP, the store gets cleared after
+     * this returns.
+     *
+     * @param allProcessed true if the queue just ran out, false if something
+     *                     said STOP
+     */
+    public void onQueueEmpty(boolean allProcessed) { }
+
+    /**
+     * Debug chatter from the engine.  It doesn't go anywhere by default.
+     *
+     * @param format a {@link String#format(String, Object...)} format
+     * @param args the arguments
+     */
+    public void debug(String format, Object... args) { }
+
+    /**
+     * Warnings from the engine.  These don't go anywhere by default, either.
+     *
+     * @param message the warning
+     */
+    public void warn(String message) { }
+}
@@ -0,0 +1,103 @@
+/*
+ * QueueSchema.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.tools.queue;
+
+/**
+ * <p>
+ * The table, index, order, and leasing rules for a queue kept in SQLite.
+ * Both {@link JdbcQueueStore} and the Android
+ * {@code AbstractSQLiteQueueService} build their SQL out of these, so what
+ * gets benchmarked off of a device is the same queue that runs on one, not
+ * a copy that happens to look like it.
+ * </p>
+ *
+ * <p>
+ * Leasing works like this: a row is free if its {@link #COLUMN_LEASE_UNTIL}
+ * is at or before now.  Claiming a row sets that to some time in the future
+ * and stamps {@link #COLUMN_LEASE_OWNER}, and the check and the claim are
+ * one UPDATE ({@link #WHERE_CLAIMABLE}) so two claims can't both win.
+ * Letting go sets it back to 0 and the owner to NULL.  Any lease held by an
+ * owner other than whoever just opened the table is from something that went
+ * away without letting go, and gets let go right then
+ * ({@link #WHERE_STALE_LEASE}).
+ * </p>
+ *
+ * <p>
+ * This is all SQLite's dialect.  Anything else would need some tweaking.
+ * </p>
+ */
+public final class QueueSchema {
+    private QueueSchema() { }
+
+    /** By default, leases last ten minutes. */
+    public static final long DEFAULT_LEASE_TIMEOUT = 10 * 60 * 1000;
+
+    /** The name of the table storing everything. */
+    public static final String TABLE = "queue";
+
+    /** Everybody needs a rowid, right? */
+    public static final String COLUMN_ROWID = "_id";
+    /** When the item went in.  Sorted on within a lane. */
+    public static final String COLUMN_TIMESTAMP = "timestamp";
+    /** The encoded item itself.  Treat as an opaque string. */
+    public static final String COLUMN_DATA = "data";
+    /**
+     * When the current lease on this row runs out, in milliseconds since the
+     * epoch.  Anything at or below the current time isn't leased.
+     */
+    public static final String COLUMN_LEASE_UNTIL = "lease_until";
+    /** Who holds the current lease, if anyone. */
+    public static final String COLUMN_LEASE_OWNER = "lease_owner";
+    /** The priority lane.  Lower lanes come out first. */
+    public static final String COLUMN_PRIORITY = "priority";
+
+    /** The name of the index {@link #ORDER} walks. */
+    public static final String INDEX_LANE_ORDER = TABLE + "_lane_order";
+
+    /**
+     * The order the queue comes out in: by lane, then by time within the
+     * lane.  The row ID breaks ties, since two items can easily come in
+     * within the same millisecond.  This matches the index, so SQLite can
+     * walk it instead of sorting the whole table.
+     */
+    public static final String ORDER = COLUMN_PRIORITY + " ASC, "
+            + COLUMN_TIMESTAMP + " ASC, " + COLUMN_ROWID + " ASC";
+
+    /** Makes the table, if it isn't there already. */
+    public static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS " + TABLE
+            + " (" + COLUMN_ROWID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + COLUMN_TIMESTAMP + " INTEGER NOT NULL, "
+            + COLUMN_DATA + " TEXT NOT NULL, "
+            + COLUMN_LEASE_UNTIL + " INTEGER NOT NULL DEFAULT 0, "
+            + COLUMN_LEASE_OWNER + " TEXT, "
+            + COLUMN_PRIORITY + " INTEGER NOT NULL DEFAULT 0)";
+
+    /** Makes the index for {@link #ORDER}, if it isn't there already. */
+    public static final String CREATE_INDEX = "CREATE INDEX IF NOT EXISTS " + INDEX_LANE_ORDER
+            + " ON " + TABLE + " (" + COLUMN_PRIORITY + ", " + COLUMN_TIMESTAMP + ", " + COLUMN_ROWID + ")";
+
+    /** One row, by ID.  The argument is the row ID. */
+    public static final String WHERE_ID = COLUMN_ROWID + "=?";
+
+    /** Rows nobody has a lease on.  The argument is the current time. */
+    public static final String WHERE_UNLEASED = COLUMN_LEASE_UNTIL + "<=?";
+
+    /**
+     * One row, but only if nobody has a lease on it.  The arguments are the
+     * row ID and the current time.
+     */
+    public static final String WHERE_CLAIMABLE = WHERE_ID + " AND " + WHERE_UNLEASED;
+
+    /**
+     * Rows leased by anyone other than the given owner.  The argument is the
+     * owner that's opening the table.
+     */
+    public static final String WHERE_STALE_LEASE = COLUMN_LEASE_OWNER + " IS NOT NULL AND "
+            + COLUMN_LEASE_OWNER + "!=?";
+}
@@ -0,0 +1,129 @@
+/*
+ * QueueStore.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.tools.queue;
+
+import java.util.List;
+
+/**
+ * <p>
+ * Wherever a {@link QueueEngine} keeps its queue.  Items come out in lane
+ * order (lower lanes first), and first in, first out within a lane.
+ * </p>
+ *
+ * <p>
+ * Handing something out to be worked on is a <i>claim</i>: the item stays in
+ * the store, but nothing else will get it back from {@link #claimNext()} or
+ * {@link #peek(int)} until it's either removed (it's done) or released (it
+ * paused and should go back in line right where it was).  A store that only
+ * ever has one thing working on it can treat claims as a formality, but it
+ * still has to get the ordering right.
+ * </p>
+ *
+ * <p>
+ * The items {@link #peek(int)} and {@link #claimNext()} hand out are what get
+ * passed back to {@link #claim(Object)}, {@link #release(Object)}, and
+ * {@link #remove(Object)}, so the store can keep track of them by identity
+ * if it needs to.  The engine only ever calls into the store from one thread
+ * at a time, but whatever's adding to the store might be on another, so
+ * stores should be thread-safe.
+ * </p>
+ *
+ * @param <T> whatever's in the queue
+ */
+public interface QueueStore<T> {
+    /**
+     * Adds an item to the back of its lane.
+     *
+     * @param item the item to add
+     * @param priority the item's lane (lower goes first)
+     */
+    void add(T item, int priority);
+
+    /**
+     * Gets how many items are in the store, claimed or not.  This gets called
+     * a lot, so it should be cheap.
+     *
+     * @return the number of items in the store
+     */
+    int count();
+
+    /**
+     * Empties out the store entirely, claimed items included.
+     */
+    void clear();
+
+    /**
+     * Claims the first item that isn't already claimed and returns it.
+     *
+     * @return the item, or null if there's nothing available
+     */
+    T claimNext();
+
+    /**
+     * Removes whatever {@link #claimNext()} last handed out, or the first
+     * item in the store if it didn't hand anything out (or that's already
+     * gone).
+     */
+    void removeNext();
+
+    /**
+     * Gets up to the given number of unclaimed items from the front of the
+     * store, in order, without claiming or removing any of them.
+     *
+     * @param max the most items to return
+     * @return the items (may be empty, never null)
+     */
+    List<T> peek(int max);
+
+    /**
+     * Claims an item that {@link #peek(int)} handed out.  This has to be
+     * atomic; if two callers try to claim the same item, only one wins.
+     *
+     * @param item the item to claim
+     * @return true if it's claimed now, false if something else got to it
+     *         first or it's gone
+     */
+    boolean claim(T item);
+
+    /**
+     * Lets go of a claimed item without removing it.  If it wasn't claimed,
+     * nothing happens.
+     *
+     * @param item the item to release
+     */
+    void release(T item);
+
+    /**
+     * Removes an item that {@link #peek(int)} or {@link #claimNext()} handed
+     * out, wherever it is in the store.  If it's already gone, nothing
+     * happens.
+     *
+     * @param item the item to remove
+     */
+    void remove(T item);
+
+    /**
+     * Gets an ID for an item the store handed out that'll still point at the
+     * same item later, even once the item itself is long gone (a database row
+     * ID, say).  The engine asks for this while the item's still claimed.
+     *
+     * @param item the item
+     * @return the ID, or -1 if the store doesn't know the item or can't do IDs
+     */
+    long getId(T item);
+
+    /**
+     * Removes the item with an ID from {@link #getId(Object)}, claimed or
+     * not, wherever it is in the store.
+     *
+     * @param id the ID
+     * @return true if it was removed, false if it was already gone
+     */
+    boolean removeById(long id);
+}
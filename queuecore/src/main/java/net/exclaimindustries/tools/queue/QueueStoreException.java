@@ -0,0 +1,22 @@
+/*
+ * QueueStoreException.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.tools.queue;
+
+/**
+ * Thrown when a {@link QueueStore} can't get at whatever it's storing things
+ * in.  It's unchecked, since there's not a whole lot the engine could do
+ * about it anyway.
+ */
+public class QueueStoreException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public QueueStoreException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
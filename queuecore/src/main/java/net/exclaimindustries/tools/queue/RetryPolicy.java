@@ -0,0 +1,110 @@
+/*
+ * RetryPolicy.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.tools.queue;
+
+import java.util.Random;
+
+/**
+ * <p>
+ * How long to wait before trying a paused queue again on its own: capped
+ * exponential backoff, with jitter.  The first retry waits around the base
+ * delay, each one after that waits around twice as long as the last, and
+ * nothing ever waits longer than the maximum.  The jitter means the actual
+ * wait is somewhere between half of that and all of it, so a bunch of
+ * things that all paused at the same moment (say, everything that was
+ * waiting on the same network to come back) don't all come back at the same
+ * moment, too.
+ * </p>
+ *
+ * <p>
+ * This only works out the numbers.  Actually scheduling anything is up to
+ * whoever's using it.
+ * </p>
+ */
+public class RetryPolicy {
+    /** Pass this as maxAttempts to keep retrying forever. */
+    public static final int UNLIMITED = -1;
+
+    private final long mBaseDelay;
+    private final long mMaxDelay;
+    private final int mMaxAttempts;
+    private final boolean mRequiresNetwork;
+
+    /**
+     * Makes a policy.
+     *
+     * @param baseDelay the delay before the first retry, in milliseconds
+     * @param maxDelay the longest any retry will wait, in milliseconds
+     * @param maxAttempts how many retries in a row to make before giving up
+     *                    and waiting for someone to step in, or
+     *                    {@link #UNLIMITED}
+     * @param requiresNetwork true if a retry shouldn't happen until there's a
+     *                        network connection, on top of the delay
+     * @throws IllegalArgumentException if baseDelay isn't positive or
+     *                                  maxDelay is smaller than it
+     */
+    public RetryPolicy(long baseDelay, long maxDelay, int maxAttempts, boolean requiresNetwork) {
+        if(baseDelay <= 0 || maxDelay < baseDelay)
+            throw new IllegalArgumentException("The base delay needs to be positive and no more than the max delay");
+
+        mBaseDelay = baseDelay;
+        mMaxDelay = maxDelay;
+        mMaxAttempts = maxAttempts;
+        mRequiresNetwork = requiresNetwork;
+    }
+
+    /**
+     * Whether or not to retry, given how many retries in a row have already
+     * happened without getting anywhere.
+     *
+     * @param attempt the number of retries so far (0 for the first pause)
+     * @return true to retry, false to give up
+     */
+    public boolean allowsAttempt(int attempt) {
+        return mMaxAttempts == UNLIMITED || attempt < mMaxAttempts;
+    }
+
+    /**
+     * Whether or not retries should wait for a network connection.
+     *
+     * @return true if so
+     */
+    public boolean requiresNetwork() {
+        return mRequiresNetwork;
+    }
+
+    /**
+     * Gets the longest the given retry could wait, before jitter.
+     *
+     * @param attempt the number of retries so far (0 for the first pause)
+     * @return the cap on the delay, in milliseconds
+     */
+    public long getCeiling(int attempt) {
+        long ceiling = mBaseDelay;
+        for(int i = 0; i < attempt && ceiling < mMaxDelay; i++) {
+            // Doubling past the max (or past a long) isn't going to help.
+            ceiling = ceiling > mMaxDelay / 2 ? mMaxDelay : ceiling * 2;
+        }
+        return Math.min(ceiling, mMaxDelay);
+    }
+
+    /**
+     * Works out how long to wait before the given retry.  That's somewhere
+     * between half of {@link #getCeiling(int)} and all of it.
+     *
+     * @param attempt the number of retries so far (0 for the first pause)
+     * @param random where the jitter comes from
+     * @return the delay, in milliseconds
+     */
+    public long getDelay(int attempt, Random random) {
+        long ceiling = getCeiling(Math.max(0, attempt));
+        long half = ceiling / 2;
+        return half + (long)(random.nextDouble() * (ceiling - half));
+    }
+}
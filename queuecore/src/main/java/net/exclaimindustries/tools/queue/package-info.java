@@ -0,0 +1,7 @@
+/**
+ * The guts of {@code net.exclaimindustries.tools.QueueService}, minus
+ * Android.  Nothing in here can touch Android classes, so the queue can be
+ * tested and benchmarked on a plain JVM.  Since the app still uses this, it
+ * also can't use anything an API 19 device doesn't have.
+ */
+package net.exclaimindustries.tools.queue;
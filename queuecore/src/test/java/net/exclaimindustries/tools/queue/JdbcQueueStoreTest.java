@@ -0,0 +1,217 @@
+/*
+ * JdbcQueueStoreTest.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.tools.queue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks {@link JdbcQueueStore} against an SQLite file: ordering, lanes,
+ * leases, and what's left after the store goes away and comes back.
+ */
+@RunWith(BlockJUnit4ClassRunner.class)
+public class JdbcQueueStoreTest {
+    /** Strings as themselves, except "broken" won't decode. */
+    static final QueueCodec<String> CODEC = new QueueCodec<String>() {
+        @Override
+        public String encode(String item) {
+            return item;
+        }
+
+        @Override
+        public String decode(String data) {
+            return "broken".equals(data) ? null : new String(data);
+        }
+    };
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    private File mFile;
+    private Connection mConnection;
+    private JdbcQueueStore<String> mStore;
+
+    private JdbcQueueStore<String> open() throws SQLException {
+        mConnection = DriverManager.getConnection("jdbc:sqlite:" + mFile.getAbsolutePath());
+        return new JdbcQueueStore<>(mConnection, CODEC);
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        mFile = new File(mFolder.getRoot(), "queue.db");
+        mStore = open();
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        mStore.close();
+        mConnection.close();
+    }
+
+    @Test
+    public void drainsInLaneOrder() {
+        mStore.add("image 1", 1);
+        mStore.add("message 1", 0);
+        mStore.add("image 2", 1);
+        mStore.add("message 2", 0);
+        assertEquals(4, mStore.count());
+
+        String[] expected = {"message 1", "message 2", "image 1", "image 2"};
+        for(String next : expected) {
+            assertEquals(next, mStore.claimNext());
+            mStore.removeNext();
+        }
+
+        assertEquals(0, mStore.count());
+        assertNull(mStore.claimNext());
+    }
+
+    @Test
+    public void leasesHideAndRelease() {
+        for(int i = 0; i < 3; i++) mStore.add("item " + i, 0);
+
+        String first = mStore.claimNext();
+        assertEquals("item 0", first);
+        assertEquals(3, mStore.count());
+
+        List<String> window = mStore.peek(10);
+        assertEquals(2, window.size());
+        assertEquals("item 1", window.get(0));
+
+        assertTrue(mStore.claim(window.get(0)));
+        assertFalse(mStore.claim(window.get(0)));
+        assertEquals(1, mStore.peek(10).size());
+
+        mStore.release(first);
+        window = mStore.peek(10);
+        assertEquals(2, window.size());
+        assertEquals("item 0", window.get(0));
+        assertEquals("item 2", window.get(1));
+    }
+
+    @Test
+    public void removesFromMiddle() {
+        for(int i = 0; i < 5; i++) mStore.add("item " + i, 0);
+
+        List<String> window = mStore.peek(5);
+        mStore.remove(window.get(2));
+        mStore.remove(window.get(2));
+        assertEquals(4, mStore.count());
+
+        window = mStore.peek(5);
+        assertEquals(4, window.size());
+        assertEquals("item 3", window.get(2));
+    }
+
+    @Test
+    public void removesByIdAcrossLanes() {
+        mStore.add("image 1", 1);
+        String image = mStore.claimNext();
+        long id = mStore.getId(image);
+        assertTrue(id >= 0);
+        mStore.release(image);
+
+        // Something in a better lane goes ahead of it, but the ID still
+        // points right at the image.
+        mStore.add("message 1", 0);
+        assertTrue(mStore.removeById(id));
+        assertFalse(mStore.removeById(id));
+        assertEquals(1, mStore.count());
+        assertEquals("message 1", mStore.claimNext());
+    }
+
+    @Test
+    public void throwsOutWhatWontDecode() {
+        mStore.add("broken", 0);
+        mStore.add("fine", 0);
+
+        assertEquals("fine", mStore.claimNext());
+        assertEquals(1, mStore.count());
+    }
+
+    @Test
+    public void leasesComeBackAfterReopen() throws SQLException {
+        mStore.add("item 0", 0);
+        mStore.add("item 1", 0);
+        assertNotNull(mStore.claimNext());
+
+        // As if this store went away without finishing or letting go.
+        mStore.close();
+        mConnection.close();
+        mStore = open();
+
+        assertEquals(2, mStore.count());
+        assertEquals(2, mStore.peek(10).size());
+        assertEquals("item 0", mStore.claimNext());
+    }
+
+    @Test
+    public void runsAnEngine() {
+        for(int i = 0; i < 20; i++) mStore.add("item " + i, i % 2);
+
+        final StringBuilder seen = new StringBuilder();
+        QueueHandler<String> handler = new QueueHandler<String>() {
+            @Override
+            public QueueEngine.ReturnCode handle(List<String> batch) {
+                for(String item : batch) seen.append(item).append(',');
+                return QueueEngine.ReturnCode.CONTINUE;
+            }
+
+            @Override
+            public int getMaxBatchSize() {
+                return 4;
+            }
+
+            @Override
+            public boolean canBatch(String first, String next) {
+                return true;
+            }
+        };
+
+        assertEquals(QueueEngine.Outcome.EMPTY, new QueueEngine<>(mStore, handler).run());
+        assertEquals(0, mStore.count());
+        assertTrue(seen.toString().startsWith("item 0,item 2,item 4,"));
+        assertTrue(seen.toString().endsWith("item 17,item 19,"));
+    }
+
+    @Test
+    public void headQueryWalksTheIndex() throws SQLException {
+        // If the order and the index ever drift apart, SQLite goes back to
+        // sorting the whole table on every claim.
+        StringBuilder plan = new StringBuilder();
+        try(Statement statement = mConnection.createStatement();
+            ResultSet results = statement.executeQuery("EXPLAIN QUERY PLAN SELECT "
+                    + QueueSchema.COLUMN_ROWID + " FROM " + QueueSchema.TABLE
+                    + " ORDER BY " + QueueSchema.ORDER + " LIMIT 1")) {
+            while(results.next()) plan.append(results.getString("detail")).append('\n');
+        }
+
+        assertTrue(plan.toString(), plan.indexOf(QueueSchema.INDEX_LANE_ORDER) >= 0);
+        assertFalse(plan.toString(), plan.indexOf("TEMP B-TREE") >= 0);
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * QueueEngineTest.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.tools.queue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs {@link QueueEngine} through the flows QueueService depends on: plain
+ * in-order processing, pausing and skipping, stopping, batching, rate limits,
+ * and ordering keys when running in parallel.  Everything's in a
+ * {@link MemoryQueueStore}; the stores get their own tests.
+ */
+@RunWith(BlockJUnit4ClassRunner.class)
+public class QueueEngineTest {
+    /**
+     * A queue item.  The key is the ordering key, and the code is what
+     * handling it returns.
+     */
+    static class Item {
+        final int id;
+        final String key;
+        final QueueEngine.ReturnCode code;
+
+        Item(int id, String key, QueueEngine.ReturnCode code) {
+            this.id = id;
+            this.key = key;
+            this.code = code;
+        }
+
+        @Override
+        public String toString() {
+            return "Item " + id;
+        }
+    }
+
+    /**
+     * Writes down everything that happens to it.
+     */
+    static class RecordingHandler extends QueueHandler<Item> {
+        final List<Integer> handled = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<List<Integer>>());
+        final List<String> events = new ArrayList<>();
+        int concurrency = 1;
+        int batchSize = 1;
+
+        // For checking nothing with the same key ever runs at once.
+        final Set<String> running = new HashSet<>();
+        volatile boolean overlapped;
+
+        @Override
+        public QueueEngine.ReturnCode handle(List<Item> batch) {
+            String key = batch.get(0).key;
+            synchronized(running) {
+                if(key != null && !running.add(key)) overlapped = true;
+            }
+
+            try {
+                // Give the other workers a chance to trip over this one.
+                if(concurrency > 1) Thread.sleep(5);
+            } catch(InterruptedException ie) {
+                // Whatever.
+            }
+
+            List<Integer> ids = new ArrayList<>();
+            for(Item item : batch) ids.add(item.id);
+            batches.add(ids);
+
+            synchronized(running) {
+                if(key != null) running.remove(key);
+            }
+
+            QueueEngine.ReturnCode code = batch.get(0).code;
+            if(code == QueueEngine.ReturnCode.CONTINUE) handled.addAll(ids);
+            return code;
+        }
+
+        @Override
+        public int getMaxConcurrency() {
+            return concurrency;
+        }
+
+        @Override
+        public String getOrderingKey(Item item) {
+            return item.key;
+        }
+
+        @Override
+        public int getMaxBatchSize() {
+            return batchSize;
+        }
+
+        @Override
+        public boolean canBatch(Item first, Item next) {
+            return first.code == QueueEngine.ReturnCode.CONTINUE && next.code == QueueEngine.ReturnCode.CONTINUE;
+        }
+
+        @Override
+        public void onQueueStart() {
+            events.add("start");
+        }
+
+        @Override
+        public void onQueuePause(Item item) {
+            events.add("pause " + item.id);
+        }
+
+        @Override
+        public void onQueueEmpty(boolean allProcessed) {
+            events.add("empty " + allProcessed);
+        }
+    }
+
+    private static Item ok(int id) {
+        return new Item(id, null, QueueEngine.ReturnCode.CONTINUE);
+    }
+
+    private static Item ok(int id, String key) {
+        return new Item(id, key, QueueEngine.ReturnCode.CONTINUE);
+    }
+
+    @Test
+    public void runsInOrder() {
+        MemoryQueueStore<Item> store = new MemoryQueueStore<>();
+        RecordingHandler handler = new RecordingHandler();
+        for(int i = 0; i < 10; i++) store.add(ok(i), 0);
+
+        assertEquals(QueueEngine.Outcome.EMPTY, new QueueEngine<>(store, handler).run());
+        assertEquals(0, store.count());
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), handler.handled);
+        assertEquals(Arrays.asList("start", "empty true"), handler.events);
+    }
+
+    @Test
+    public void lanesGoFirst() {
+        MemoryQueueStore<Item> store = new MemoryQueueStore<>();
+        RecordingHandler handler = new RecordingHandler();
+        store.add(ok(0), 1);
+        store.add(ok(1), 1);
+        store.add(ok(2), 0);
+
+        new QueueEngine<>(store, handler).run();
+        assertEquals(Arrays.asList(2, 0, 1), handler.handled);
+    }
+
+    @Test
+    public void pausesAndSkips() {
+        MemoryQueueStore<Item> store = new MemoryQueueStore<>();
+        RecordingHandler handler = new RecordingHandler();
+        store.add(ok(0), 0);
+        store.add(new Item(1, null, QueueEngine.ReturnCode.PAUSE), 0);
+        store.add(ok(2), 0);
+
+        QueueEngine<Item> engine = new QueueEngine<>(store, handler);
+        assertEquals(QueueEngine.Outcome.PAUSED, engine.run());
+        assertEquals(2, store.count());
+        assertEquals("", engine.getPausedKey());
+        assertEquals(Arrays.asList("start", "pause 1"), handler.events);
+
+        // Skip the one that paused, then the rest should go.
+        QueueEngine.removePaused(store, handler, engine.getPausedKey(), engine.getPausedId());
+        assertEquals(QueueEngine.Outcome.EMPTY, new QueueEngine<>(store, handler).run());
+        assertEquals(Arrays.asList(0, 2), handler.handled);
+    }
+
+    @Test
+    public void stopClears() {
+        MemoryQueueStore<Item> store = new MemoryQueueStore<>();
+        RecordingHandler handler = new RecordingHandler();
+        store.add(ok(0), 0);
+        store.add(new Item(1, null, QueueEngine.ReturnCode.STOP), 0);
+        store.add(ok(2), 0);
+
+        QueueEngine<Item> engine = new QueueEngine<>(store, handler);
+        assertEquals(QueueEngine.Outcome.STOPPED, engine.run());
+        assertEquals(0, store.count());
+        assertNull(engine.getPausedKey());
+        assertEquals(Arrays.asList("start", "empty false"), handler.events);
+    }
+
+    @Test
+    public void batchesStopAtTheFirstMisfit() {
+        MemoryQueueStore<Item> store = new MemoryQueueStore<>();
+        RecordingHandler handler = new RecordingHandler();
+        handler.batchSize = 3;
+        for(int i = 0; i < 5; i++) store.add(ok(i), 0);
+        store.add(new Item(5, null, QueueEngine.ReturnCode.PAUSE), 0);
+        store.add(ok(6), 0);
+
+        assertEquals(QueueEngine.Outcome.PAUSED, new QueueEngine<>(store, handler).run());
+        assertEquals(Arrays.asList(
+                Arrays.asList(0, 1, 2),
+                Arrays.asList(3, 4),
+                Collections.singletonList(5)), handler.batches);
+        assertEquals(2, store.count());
+    }
+
+    @Test
+    public void waitsOutRateLimits() {
+        MemoryQueueStore<Item> store = new MemoryQueueStore<>();
+        final int[] asked = {0};
+        RecordingHandler handler = new RecordingHandler() {
+            @Override
+            public long tryAcquirePermits(List<Item> batch) {
+                // Everything has to ask twice.
+                return asked[0]++ % 2 == 0 ? 5 : 0;
+            }
+        };
+        for(int i = 0; i < 3; i++) store.add(ok(i), 0);
+
+        assertEquals(QueueEngine.Outcome.EMPTY, new QueueEngine<>(store, handler).run());
+        assertEquals(Arrays.asList(0, 1, 2), handler.handled);
+        assertEquals(6, asked[0]);
+    }
+
+    @Test
+    public void keysStayInOrderInParallel() {
+        MemoryQueueStore<Item> store = new MemoryQueueStore<>();
+        RecordingHandler handler = new RecordingHandler();
+        handler.concurrency = 3;
+        for(int i = 0; i < 60; i++) store.add(ok(i, "key" + (i % 4)), 0);
+
+        assertEquals(QueueEngine.Outcome.EMPTY, new QueueEngine<>(store, handler).run());
+        assertEquals(0, store.count());
+        assertEquals(60, handler.handled.size());
+        assertTrue("Two items with the same key ran at once", !handler.overlapped);
+
+        // Within each key, it's still first come, first served.
+        int[] last = {-1, -1, -1, -1};
+        for(int id : handler.handled) {
+            assertTrue(id > last[id % 4]);
+            last[id % 4] = id;
+        }
+    }
+
+    @Test
+    public void parallelPauseLetsTheRestFinish() {
+        MemoryQueueStore<Item> store = new MemoryQueueStore<>();
+        RecordingHandler handler = new RecordingHandler();
+        handler.concurrency = 2;
+        store.add(new Item(0, "a", QueueEngine.ReturnCode.PAUSE), 0);
+        store.add(ok(1, "a"), 0);
+        store.add(ok(2, "b"), 0);
+
+        QueueEngine<Item> engine = new QueueEngine<>(store, handler);
+        assertEquals(QueueEngine.Outcome.PAUSED, engine.run());
+        assertEquals("a", engine.getPausedKey());
+
+        // Item 2 had a different key and was already running, so it got to
+        // finish.  Item 1 was stuck behind item 0.
+        assertEquals(Collections.singletonList(2), handler.handled);
+        assertEquals(2, store.count());
+
+        QueueEngine.removePaused(store, handler, engine.getPausedKey(), engine.getPausedId());
+        List<Item> left = store.peek(10);
+        assertEquals(1, left.size());
+        assertEquals(1, left.get(0).id);
+    }
+
+    @Test
+    public void skipsThePausedItemEvenIfSomethingJumpsAhead() {
+        MemoryQueueStore<Item> store = new MemoryQueueStore<>();
+        RecordingHandler handler = new RecordingHandler();
+        store.add(new Item(0, "a", QueueEngine.ReturnCode.PAUSE), 1);
+
+        QueueEngine<Item> engine = new QueueEngine<>(store, handler);
+        assertEquals(QueueEngine.Outcome.PAUSED, engine.run());
+
+        // While it's paused, something with the same key shows up in a
+        // better lane.  That's at the front now, but it's not what paused.
+        store.add(ok(1, "a"), 0);
+        assertEquals(1, store.peek(10).get(0).id);
+
+        QueueEngine.removePaused(store, handler, engine.getPausedKey(), engine.getPausedId());
+        List<Item> left = store.peek(10);
+        assertEquals(1, left.size());
+        assertEquals(1, left.get(0).id);
+
+        // Skipping again doesn't take anything else with it.
+        QueueEngine.removePaused(store, handler, engine.getPausedKey(), engine.getPausedId());
+        assertEquals(1, store.count());
+    }
+}
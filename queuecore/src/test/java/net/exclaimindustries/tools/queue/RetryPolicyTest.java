@@ -0,0 +1,76 @@
+/*
+ * RetryPolicyTest.java
+ * Copyright (C) 2026 Nicholas Killewald
+ *
+ * This file is distributed under the terms of the BSD license.
+ * The source package should have a LICENSE file at the toplevel.
+ */
+
+package net.exclaimindustries.tools.queue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.BlockJUnit4ClassRunner;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that {@link RetryPolicy} backs off, stops backing off at the cap,
+ * stays inside its jitter range, and knows when to give up.
+ */
+@RunWith(BlockJUnit4ClassRunner.class)
+public class RetryPolicyTest {
+    @Test
+    public void doublesUpToTheCap() {
+        RetryPolicy policy = new RetryPolicy(1000, 30000, RetryPolicy.UNLIMITED, false);
+
+        assertEquals(1000, policy.getCeiling(0));
+        assertEquals(2000, policy.getCeiling(1));
+        assertEquals(16000, policy.getCeiling(4));
+        assertEquals(30000, policy.getCeiling(5));
+        assertEquals(30000, policy.getCeiling(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void jitterStaysInRange() {
+        RetryPolicy policy = new RetryPolicy(60000, 3600000, RetryPolicy.UNLIMITED, false);
+        Random random = new Random(1234L);
+        Set<Long> seen = new HashSet<>();
+
+        for(int attempt = 0; attempt < 10; attempt++) {
+            long ceiling = policy.getCeiling(attempt);
+            for(int i = 0; i < 100; i++) {
+                long delay = policy.getDelay(attempt, random);
+                assertTrue(delay >= ceiling / 2);
+                assertTrue(delay <= ceiling);
+                seen.add(delay);
+            }
+        }
+
+        // If that all came out the same, it's not much of a jitter.
+        assertTrue(seen.size() > 100);
+    }
+
+    @Test
+    public void givesUp() {
+        RetryPolicy policy = new RetryPolicy(1000, 1000, 3, true);
+
+        assertTrue(policy.allowsAttempt(0));
+        assertTrue(policy.allowsAttempt(2));
+        assertFalse(policy.allowsAttempt(3));
+        assertTrue(policy.requiresNetwork());
+
+        assertTrue(new RetryPolicy(1000, 1000, RetryPolicy.UNLIMITED, false).allowsAttempt(1000000));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsBackwardsDelays() {
+        new RetryPolicy(5000, 1000, 1, false);
+    }
+}